@@ -0,0 +1,96 @@
+package org.example;
+
+import software.amazon.awssdk.services.redshiftdata.model.DescribeStatementResponse;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Learns how long each statement shape takes and schedules the first poll at the predicted
+ * median completion time. Later polls back off geometrically from there.
+ * <p>
+ * Latencies come from {@code CreatedAt}/{@code UpdatedAt} of the final describe response, which
+ * include queueing time, and fall back to the server-side {@code Duration}. Statements without a
+ * known fingerprint share one global histogram.
+ */
+public class AdaptivePollingStrategy implements PollingStrategy {
+
+    private final Map<String, RollingLatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final RollingLatencyHistogram global;
+    private final int windowSize;
+    private final long defaultFirstDelayMillis;
+    private final long minDelayMillis;
+    private final long maxDelayMillis;
+    private final double multiplier;
+
+    public AdaptivePollingStrategy() {
+        this(128, 250, 20, 5_000, 1.5);
+    }
+
+    /**
+     * @param windowSize              number of recent samples kept per fingerprint
+     * @param defaultFirstDelayMillis first delay used until a fingerprint has samples
+     * @param minDelayMillis          lower bound for every delay
+     * @param maxDelayMillis          upper bound for every delay
+     * @param multiplier              geometric backoff factor applied after the first poll
+     */
+    public AdaptivePollingStrategy(int windowSize, long defaultFirstDelayMillis, long minDelayMillis,
+                                   long maxDelayMillis, double multiplier) {
+        this.windowSize = windowSize;
+        this.defaultFirstDelayMillis = defaultFirstDelayMillis;
+        this.minDelayMillis = minDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.multiplier = multiplier;
+        this.global = new RollingLatencyHistogram(windowSize);
+    }
+
+    @Override
+    public long firstDelayMillis(String fingerprint) {
+        long median = predictedMedianMillis(fingerprint);
+        return clamp(median < 0 ? defaultFirstDelayMillis : median);
+    }
+
+    @Override
+    public long nextDelayMillis(String fingerprint, int polls, long previousDelayMillis) {
+        // After the first poll the delay is relative to the previous one, so start the geometric
+        // series from a fraction of the predicted median rather than from the median itself.
+        long base = polls <= 1 ? Math.max(minDelayMillis, previousDelayMillis / 8) : previousDelayMillis;
+        return clamp((long) (base * multiplier));
+    }
+
+    @Override
+    public void onFinished(String fingerprint, DescribeStatementResponse response) {
+        long latency = latencyMillis(response);
+        if (latency < 0) {
+            return;
+        }
+        global.record(latency);
+        if (fingerprint != null) {
+            histograms.computeIfAbsent(fingerprint, key -> new RollingLatencyHistogram(windowSize)).record(latency);
+        }
+    }
+
+    /**
+     * @param fingerprint the SQL fingerprint, or {@code null} for the global prediction
+     * @return the predicted median completion time, or -1 if there are no samples yet
+     */
+    public long predictedMedianMillis(String fingerprint) {
+        RollingLatencyHistogram histogram = fingerprint == null ? null : histograms.get(fingerprint);
+        return histogram == null ? global.percentile(50) : histogram.percentile(50);
+    }
+
+    static long latencyMillis(DescribeStatementResponse response) {
+        if (response.createdAt() != null && response.updatedAt() != null) {
+            return Duration.between(response.createdAt(), response.updatedAt()).toMillis();
+        }
+        if (response.duration() != null && response.duration() >= 0) {
+            return response.duration() / 1_000_000;
+        }
+        return -1;
+    }
+
+    private long clamp(long delayMillis) {
+        return Math.max(minDelayMillis, Math.min(maxDelayMillis, delayMillis));
+    }
+}
@@ -0,0 +1,455 @@
+package org.example;
+
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.http.SdkHttpResponse;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Limits the Data API calls of one client per operation, before they reach the SDK.
+ * <p>
+ * Every limited operation has a token bucket for its request rate and a cap on the permits in
+ * flight. A permit is held from admission until it is released, so for {@code ExecuteStatement}
+ * callers can hold it until the statement finishes and cap the number of running statements, not
+ * just of running calls. The rate adapts AIMD-style: every throttling error halves it (at most once
+ * per second, down to a floor), and every success adds back a little, about {@code increase}
+ * requests/sec per second of successful traffic, up to the configured rate. Errors are seen when a
+ * permit is released, which is after the SDK gave up retrying; register
+ * {@link #throttlingInterceptor()} on the client to also back off on every throttled attempt.
+ * <p>
+ * Callers either wait asynchronously with {@link #acquire(String)} or fail fast with
+ * {@link #tryAcquire(String)}, and {@link #call} and {@link #tryCall} wrap one SDK call in a
+ * permit. Waiters queue in FIFO order up to a bound; beyond it, and on the fail-fast path, calls
+ * are rejected with an {@link AdmissionRejectedException}. Operations without limits are admitted
+ * immediately.
+ */
+public class AdmissionController implements AutoCloseable {
+
+    public static final String EXECUTE_STATEMENT = "ExecuteStatement";
+    public static final String DESCRIBE_STATEMENT = "DescribeStatement";
+    public static final String GET_STATEMENT_RESULT = "GetStatementResult";
+
+    private static final long DECREASE_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer;
+    private final boolean ownsTimer;
+    private volatile boolean closed;
+
+    public AdmissionController() {
+        this(new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "redshift-admission-timer");
+            thread.setDaemon(true);
+            return thread;
+        }), true);
+    }
+
+    /**
+     * @param timer wakes up callers waiting for tokens; it is not shut down by {@link #close()}
+     */
+    public AdmissionController(ScheduledExecutorService timer) {
+        this(timer, false);
+    }
+
+    private AdmissionController(ScheduledExecutorService timer, boolean ownsTimer) {
+        this.timer = timer;
+        this.ownsTimer = ownsTimer;
+    }
+
+    /**
+     * Applies the default Data API quotas: 30 ExecuteStatement, 100 DescribeStatement and 20
+     * GetStatementResult calls per second, with at most 200, 100 and 50 of them in flight.
+     *
+     * @return this controller
+     */
+    public AdmissionController withDataApiQuotas() {
+        return limit(EXECUTE_STATEMENT, 30, 200)
+                .limit(DESCRIBE_STATEMENT, 100, 100)
+                .limit(GET_STATEMENT_RESULT, 20, 50);
+    }
+
+    /**
+     * Limits an operation with a one-second burst, a tenth of a request per second of additive
+     * increase and room for 10,000 waiters.
+     *
+     * @see #limit(String, double, int, int, double, int)
+     */
+    public AdmissionController limit(String operation, double requestsPerSecond, int maxInFlight) {
+        return limit(operation, requestsPerSecond, (int) Math.ceil(requestsPerSecond), maxInFlight,
+                requestsPerSecond / 10, 10_000);
+    }
+
+    /**
+     * @param requestsPerSecond the highest sustained rate
+     * @param burst             the bucket size
+     * @param maxInFlight       the maximum number of unreleased permits
+     * @param increase          how much the rate recovers per second of successful calls
+     * @param maxQueued         the maximum number of waiting callers
+     * @return this controller
+     */
+    public AdmissionController limit(String operation, double requestsPerSecond, int burst, int maxInFlight,
+                                     double increase, int maxQueued) {
+        if (requestsPerSecond <= 0 || burst < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("Limits for " + operation + " must be positive");
+        }
+        lanes.put(operation, new Lane(operation, requestsPerSecond, burst, maxInFlight, increase, maxQueued));
+        return this;
+    }
+
+    /**
+     * Waits asynchronously for a permit.
+     *
+     * @return a {@link CompletableFuture} with the permit, or failed with an
+     * {@link AdmissionRejectedException} if too many callers are already waiting
+     */
+    public CompletableFuture<Permit> acquire(String operation) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new AdmissionRejectedException(operation, "Admission controller closed"));
+        }
+        Lane lane = lanes.get(operation);
+        return lane == null ? CompletableFuture.completedFuture(Permit.UNLIMITED) : lane.acquire();
+    }
+
+    /**
+     * @return a permit if one is available right now, {@code null} otherwise
+     */
+    public Permit tryAcquire(String operation) {
+        if (closed) {
+            return null;
+        }
+        Lane lane = lanes.get(operation);
+        return lane == null ? Permit.UNLIMITED : lane.tryAcquire();
+    }
+
+    /**
+     * Runs one call under a permit that is released, with its outcome, when the call completes.
+     */
+    public <T> CompletableFuture<T> call(String operation, Supplier<CompletableFuture<T>> call) {
+        return acquire(operation).thenCompose(permit -> run(permit, call));
+    }
+
+    /**
+     * Like {@link #call}, but fails with an {@link AdmissionRejectedException} instead of waiting.
+     */
+    public <T> CompletableFuture<T> tryCall(String operation, Supplier<CompletableFuture<T>> call) {
+        Permit permit = tryAcquire(operation);
+        if (permit == null) {
+            return CompletableFuture.failedFuture(new AdmissionRejectedException(operation, "No permit available"));
+        }
+        return run(permit, call);
+    }
+
+    private static <T> CompletableFuture<T> run(Permit permit, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        return result.whenComplete((value, exception) -> permit.release(exception));
+    }
+
+    /**
+     * @return the current, possibly reduced, rate of an operation, or {@code -1} if it is not limited
+     */
+    public double currentRate(String operation) {
+        Lane lane = lanes.get(operation);
+        return lane == null ? -1 : lane.currentRate();
+    }
+
+    /**
+     * @return the number of callers waiting for a permit of an operation
+     */
+    public int queued(String operation) {
+        Lane lane = lanes.get(operation);
+        return lane == null ? 0 : lane.queued();
+    }
+
+    /**
+     * @return the number of unreleased permits of an operation
+     */
+    public int inFlight(String operation) {
+        Lane lane = lanes.get(operation);
+        return lane == null ? 0 : lane.inFlight();
+    }
+
+    /**
+     * @return the number of throttling errors and throttled attempts reported for an operation
+     */
+    public long throttled(String operation) {
+        Lane lane = lanes.get(operation);
+        return lane == null ? 0 : lane.throttled();
+    }
+
+    /**
+     * Backs off an operation as if a call had been throttled.
+     */
+    public void onThrottled(String operation) {
+        Lane lane = lanes.get(operation);
+        if (lane != null) {
+            lane.onThrottled();
+        }
+    }
+
+    /**
+     * @return an interceptor that reports every throttled attempt of a client's calls, including
+     * the ones the SDK retries
+     */
+    public ExecutionInterceptor throttlingInterceptor() {
+        return new ExecutionInterceptor() {
+            @Override
+            public void afterTransmission(Context.AfterTransmission context, ExecutionAttributes attributes) {
+                SdkHttpResponse response = context.httpResponse();
+                boolean throttled = response.statusCode() == 429 || response.firstMatchingHeader("x-amzn-ErrorType")
+                        .filter(type -> type.startsWith("ThrottlingException"))
+                        .isPresent();
+                if (throttled) {
+                    onThrottled(attributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME));
+                }
+            }
+        };
+    }
+
+    /**
+     * @return {@code true} if the error, or its cause, is a throttling response from the service
+     */
+    public static boolean isThrottling(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        for (; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SdkServiceException && ((SdkServiceException) cause).isThrottlingException()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rejects every waiting caller and stops the timer if this controller created it.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (ownsTimer) {
+            timer.shutdownNow();
+        }
+        lanes.values().forEach(lane -> lane.rejectAll("Admission controller closed"));
+    }
+
+    /**
+     * An admitted call. Release it exactly once, with the call's error or {@code null}.
+     */
+    public abstract static class Permit {
+        private static final Permit UNLIMITED = new Permit() {
+            @Override
+            public void release(Throwable outcome) {
+            }
+        };
+
+        public abstract void release(Throwable outcome);
+    }
+
+    private final class Lane {
+        private final String operation;
+        private final double maxRate;
+        private final double minRate;
+        private final int burst;
+        private final int maxInFlight;
+        private final double increase;
+        private final int maxQueued;
+        private final ArrayDeque<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+        private double rate;
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+        private long lastDecreaseNanos = System.nanoTime() - DECREASE_COOLDOWN_NANOS;
+        private int inFlight;
+        private long throttled;
+        private boolean wakeUpScheduled;
+
+        private Lane(String operation, double rate, int burst, int maxInFlight, double increase, int maxQueued) {
+            this.operation = operation;
+            this.maxRate = rate;
+            this.minRate = Math.min(rate, 0.5);
+            this.rate = rate;
+            this.burst = burst;
+            this.tokens = burst;
+            this.maxInFlight = maxInFlight;
+            this.increase = increase;
+            this.maxQueued = maxQueued;
+        }
+
+        private CompletableFuture<Permit> acquire() {
+            Permit permit;
+            CompletableFuture<Permit> waiter;
+            synchronized (this) {
+                // Checked under the lock, so that close() either sees this waiter or it is not added.
+                if (closed) {
+                    return CompletableFuture.failedFuture(new AdmissionRejectedException(operation, "Admission controller closed"));
+                }
+                if (waiters.isEmpty() && (permit = take()) != null) {
+                    return CompletableFuture.completedFuture(permit);
+                }
+                if (waiters.size() >= maxQueued) {
+                    return CompletableFuture.failedFuture(
+                            new AdmissionRejectedException(operation, maxQueued + " callers already waiting"));
+                }
+                waiter = new CompletableFuture<>();
+                waiters.add(waiter);
+            }
+            dispatch();
+            return waiter;
+        }
+
+        private synchronized Permit tryAcquire() {
+            return waiters.isEmpty() ? take() : null;
+        }
+
+        // Called with the lock held.
+        private Permit take() {
+            refill();
+            if (inFlight >= maxInFlight || tokens < 1) {
+                return null;
+            }
+            tokens--;
+            inFlight++;
+            return new LanePermit();
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastRefillNanos) * rate / 1e9);
+            lastRefillNanos = now;
+        }
+
+        private void dispatch() {
+            while (true) {
+                CompletableFuture<Permit> waiter;
+                Permit permit;
+                synchronized (this) {
+                    if (waiters.isEmpty()) {
+                        return;
+                    }
+                    permit = take();
+                    if (permit == null) {
+                        // Out of tokens: wake up when the next one is due. Out of slots: a release wakes us.
+                        if (tokens < 1 && inFlight < maxInFlight && !wakeUpScheduled && !closed && !scheduleWakeUp()) {
+                            break;
+                        }
+                        return;
+                    }
+                    waiter = waiters.poll();
+                }
+                if (!waiter.complete(permit)) {
+                    // The caller gave up waiting.
+                    permit.release(null);
+                }
+            }
+            // Nothing would wake the waiters up again.
+            rejectAll(closed ? "Admission controller closed" : "Admission timer stopped");
+        }
+
+        /**
+         * Called with the lock held.
+         *
+         * @return {@code false} if the timer no longer accepts tasks
+         */
+        private boolean scheduleWakeUp() {
+            long delayNanos = (long) Math.ceil((1 - tokens) * 1e9 / rate);
+            try {
+                timer.schedule(this::wakeUp, delayNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+            wakeUpScheduled = true;
+            return true;
+        }
+
+        private void wakeUp() {
+            synchronized (this) {
+                wakeUpScheduled = false;
+            }
+            dispatch();
+        }
+
+        private synchronized void onThrottled() {
+            throttled++;
+            long now = System.nanoTime();
+            if (now - lastDecreaseNanos >= DECREASE_COOLDOWN_NANOS) {
+                lastDecreaseNanos = now;
+                refill();
+                rate = Math.max(minRate, rate / 2);
+                tokens = Math.min(tokens, 0);
+            }
+        }
+
+        private void onRelease(Throwable outcome) {
+            synchronized (this) {
+                inFlight--;
+                if (outcome != null && isThrottling(outcome)) {
+                    onThrottled();
+                } else if (outcome == null && rate < maxRate) {
+                    refill();
+                    rate = Math.min(maxRate, rate + increase / rate);
+                }
+            }
+            dispatch();
+        }
+
+        private synchronized double currentRate() {
+            return rate;
+        }
+
+        private synchronized int queued() {
+            return waiters.size();
+        }
+
+        private synchronized int inFlight() {
+            return inFlight;
+        }
+
+        private synchronized long throttled() {
+            return throttled;
+        }
+
+        private void rejectAll(String reason) {
+            CompletableFuture<?>[] rejected;
+            synchronized (this) {
+                rejected = waiters.toArray(new CompletableFuture<?>[0]);
+                waiters.clear();
+            }
+            for (CompletableFuture<?> waiter : rejected) {
+                waiter.completeExceptionally(new AdmissionRejectedException(operation, reason));
+            }
+        }
+
+        private final class LanePermit extends Permit {
+            private boolean released;
+
+            @Override
+            public void release(Throwable outcome) {
+                synchronized (this) {
+                    if (released) {
+                        return;
+                    }
+                    released = true;
+                }
+                onRelease(outcome);
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.example;
+
+/**
+ * Thrown when an {@link AdmissionController} turns a call away: on the fail-fast path when no
+ * permit is available, when too many callers are already waiting, or after the controller closed.
+ * The call was never sent.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String operation;
+
+    public AdmissionRejectedException(String operation, String message) {
+        super(operation + " rejected: " + message);
+        this.operation = operation;
+    }
+
+    /**
+     * @return the Data API operation that was rejected
+     */
+    public String operation() {
+        return operation;
+    }
+}
@@ -1,100 +1,96 @@
 package org.example;
 
 import org.openjdk.jmh.annotations.*;
-import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
-import software.amazon.awssdk.auth.credentials.ProfileCredentialsProvider;
-import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
-import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
-import software.amazon.awssdk.core.retry.RetryMode;
-import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
-import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import org.openjdk.jmh.infra.Blackhole;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.redshiftdata.RedshiftDataAsyncClient;
 import software.amazon.awssdk.services.redshiftdata.RedshiftDataClient;
 import software.amazon.awssdk.services.redshiftdata.model.*;
 
-import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
-import java.util.List;
 
+/**
+ * Compares the sync and async execute paths of {@link RedshiftDataClientWrapper} against the
+ * local {@link RedshiftDataApiSimulator}, which answers every call after 2 ms. One operation
+ * submits ten statements; see {@link DataApiBenchmark} for the full suite.
+ */
 @BenchmarkMode(Mode.AverageTime)
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
-@Warmup(iterations = 1, time = 1, timeUnit = TimeUnit.MILLISECONDS)
-@Measurement(iterations = 2, time = 2, timeUnit = TimeUnit.MILLISECONDS)
-@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
 public class App {
 
-    @Benchmark()
-    public static void syncClient() throws InterruptedException {
-
-        String databaseName = "dev";
-        String clusterId = "redshift-cluster-integration";
-        String userName = "awsuser";
-        String query = "SELECT * FROM Users";
+    private static final int STATEMENTS = 10;
+    private static final String QUERY = "SELECT * FROM Users";
+
+    private RedshiftDataApiSimulator simulator;
+    private RedshiftClientRegistry registry;
+    private RedshiftDataClientWrapper redshiftDataClient;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        simulator = RedshiftDataApiSimulator.builder()
+                .latency(LatencyDistribution.fixed(2))
+                .start();
+        registry = new RedshiftClientRegistry(100, 0);
+        // The simulator has no quota, so keep the admission controller from pacing the async calls.
+        registry.admissionController(simulator.clientKey())
+                .limit(AdmissionController.EXECUTE_STATEMENT, 1_000_000, 1_000);
+        redshiftDataClient = new RedshiftDataClientWrapper(registry, simulator.clientKey(),
+                "redshift-cluster-integration", "dev", "awsuser");
+    }
 
-        RedshiftDataClientWrapper redshiftDataClient = new RedshiftDataClientWrapper(clusterId, databaseName, userName);
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        registry.close();
+        simulator.close();
+    }
 
-        for (int i = 0; i < 10; i++) {
-            String id = redshiftDataClient.executeStatement(query);
-            System.out.println("The statement id is: " + id);
+    @Benchmark
+    public void syncClient(Blackhole blackhole) {
+        for (int i = 0; i < STATEMENTS; i++) {
+            blackhole.consume(redshiftDataClient.executeStatement(QUERY));
         }
     }
 
-    @Benchmark()
-    public static void asyncClient() throws InterruptedException {
-
-        String databaseName = "dev";
-        String clusterId = "redshift-cluster-integration";
-        String userName = "awsuser";
-        String query = "SELECT * FROM Users";
-
-        RedshiftDataClientWrapper redshiftDataClient = new RedshiftDataClientWrapper(clusterId, databaseName, userName);
-
-        for (int i = 0; i < 10; i++) {
-            String id = redshiftDataClient.asyncExecuteStatement(query).join();
-            System.out.println("The statement id is: " + id);
+    @Benchmark
+    public void asyncClient(Blackhole blackhole) {
+        CompletableFuture<?>[] ids = new CompletableFuture<?>[STATEMENTS];
+        for (int i = 0; i < STATEMENTS; i++) {
+            ids[i] = redshiftDataClient.asyncExecuteStatement(QUERY);
         }
-
+        CompletableFuture.allOf(ids).join();
+        blackhole.consume(ids);
     }
 
     static class RedshiftDataClientWrapper {
-        private static RedshiftDataClient redshiftDataClient;
-        private static RedshiftDataAsyncClient redshiftDataAsyncClient;
+        private static final EventLog.Source events = EventLog.shared().source(RedshiftDataClientWrapper.class);
+        private static final EventLog.Sampler titleSample = new EventLog.Sampler(1_000);
+        private final RedshiftClientRegistry registry;
+        private final ClientKey clientKey;
         private final String clusterId;
         private final String databaseName;
         private final String dbUser;
 
-        static String AWS_ACCESS_KEY_ID = System.getenv("AWS_ACCESS_KEY_ID");
-        static String AWS_SECRET_ACCESS_KEY = System.getenv("AWS_SECRET_ACCESS_KEY");
-
         public RedshiftDataClientWrapper(String clusterId, String databaseName, String dbUser) {
+            this(RedshiftClientRegistry.shared(), ClientKey.of(Region.US_EAST_2, null), clusterId, databaseName, dbUser);
+        }
+
+        public RedshiftDataClientWrapper(RedshiftClientRegistry registry, ClientKey clientKey,
+                                         String clusterId, String databaseName, String dbUser) {
+            this.registry = registry;
+            this.clientKey = clientKey;
             this.clusterId = clusterId;
             this.databaseName = databaseName;
             this.dbUser = dbUser;
         }
 
-        private static RedshiftDataClient getDataClient() {
-            if (redshiftDataClient == null) {
-                AwsBasicCredentials credentials = AwsBasicCredentials.builder()
-                        .accessKeyId(AWS_ACCESS_KEY_ID)
-                        .secretAccessKey(AWS_SECRET_ACCESS_KEY)
-                        .build();
-
-                ClientOverrideConfiguration overrideConfig = ClientOverrideConfiguration.builder()
-                        .apiCallTimeout(Duration.ofMinutes(2))
-                        .apiCallAttemptTimeout(Duration.ofSeconds(90))
-                        .retryStrategy(RetryMode.STANDARD)
-                        .build();
-
-                redshiftDataClient = RedshiftDataClient.builder()
-                        .region(Region.US_EAST_2)
-                        .credentialsProvider(StaticCredentialsProvider.create(credentials))
-                        .overrideConfiguration(overrideConfig)
-                        .build();
-            }
-            return redshiftDataClient;
+        private RedshiftDataClient getDataClient() {
+            return registry.dataClient(clientKey);
         }
 
 
@@ -120,9 +116,9 @@ public class App {
                 if ("FINISHED".equals(status)) {
                     break;
                 } else if ("FAILED".equals(status)) {
-                    throw new RuntimeException("Query failed: " + describeResponse.error());
+                    throw new StatementFailedException(statementId, status, describeResponse.error());
                 } else {
-                    System.out.println("Query status: " + status + ". Waiting for completion...");
+                    events.debug("Statement {} is {}, waiting for completion", statementId, status);
                 }
 
                 try {
@@ -136,137 +132,49 @@ public class App {
         }
 
 
-        private GetStatementResultResponse getStatementResult(String statementId) {
-            // Prepare the request to get the statement result
-            GetStatementResultRequest resultRequest = GetStatementResultRequest.builder().id(statementId).build();
-            GetStatementResultResponse resultResponse = getDataClient().getStatementResult(resultRequest);
-
-            // Get column metadata and rows
-            if (resultResponse.columnMetadata() == null || resultResponse.records() == null) {
-                throw new RuntimeException("No results found for query.");
-            }
-
-            System.out.println("The result is: " + resultResponse.records());
-            return resultResponse;
-
-        }
-
-
         //---------------------- Async Functions ---------------------------------------
 
-        private static RedshiftDataAsyncClient getAsyncDataClient() {
-            if (redshiftDataAsyncClient == null) {
-
-                AwsBasicCredentials credentials = AwsBasicCredentials.builder()
-                        .accessKeyId(AWS_ACCESS_KEY_ID)
-                        .secretAccessKey(AWS_SECRET_ACCESS_KEY)
-                        .build();
-
-                SdkAsyncHttpClient httpClient = NettyNioAsyncHttpClient.builder()
-                        .maxConcurrency(100)
-                        .connectionTimeout(Duration.ofSeconds(60))
-                        .readTimeout(Duration.ofSeconds(60))
-                        .writeTimeout(Duration.ofSeconds(60))
-                        .build();
+        private RedshiftDataAsyncClient getAsyncDataClient() {
+            return registry.dataAsyncClient(clientKey);
+        }
 
-                ClientOverrideConfiguration overrideConfig = ClientOverrideConfiguration.builder()
-                        .apiCallTimeout(Duration.ofMinutes(2))
-                        .apiCallAttemptTimeout(Duration.ofSeconds(90))
-                        .retryStrategy(RetryMode.STANDARD)
-                        .build();
+        private StatementCompletionTracker getCompletionTracker() {
+            return registry.completionTracker(clientKey);
+        }
 
-                redshiftDataAsyncClient = RedshiftDataAsyncClient.builder()
-                        .httpClient(httpClient)
-                        .overrideConfiguration(overrideConfig)
-                        .credentialsProvider(StaticCredentialsProvider.create(credentials))
-                        .build();
-            }
-            return redshiftDataAsyncClient;
+        private AdmissionController getAdmissionController() {
+            return registry.admissionController(clientKey);
         }
 
         public CompletableFuture<String> asyncExecuteStatement(String sqlStatement) {
-
-            ExecuteStatementRequest statementRequest = ExecuteStatementRequest.builder()
-                    .clusterIdentifier(clusterId)
-                    .database(databaseName)
-                    .dbUser(dbUser)
-                    .sql(sqlStatement)
-                    .build();
-
-            return CompletableFuture.supplyAsync(() -> {
-                try {
-                    ExecuteStatementResponse response = getAsyncDataClient().executeStatement(statementRequest).join(); // Use join() to wait for the result
-                    return response.id();
-                } catch (RedshiftDataException e) {
-                    throw new RuntimeException("Error executing statement: " + e.getMessage(), e);
-                }
-            }).exceptionally(exception -> {
-                return "";
-            });
+            return new AsyncStatementExecutor(getAsyncDataClient(), clusterId, databaseName, dbUser)
+                    .admissionController(getAdmissionController())
+                    .submit(sqlStatement);
         }
 
-        public CompletableFuture<Void> asyncDescribeStatement(String sqlId) {
-            DescribeStatementRequest statementRequest = DescribeStatementRequest.builder()
-                    .id(sqlId)
-                    .build();
-
-            return getAsyncDataClient().describeStatement(statementRequest)
-                    .thenCompose(response -> {
-                        String status = response.statusAsString();
-
-                        if ("FAILED".equals(status)) {
-                            throw new RuntimeException("The Query Failed. Ending program");
-                        } else if ("FINISHED".equals(status)) {
-                            return CompletableFuture.completedFuture(null);
-                        } else {
-                            // Sleep for 1 second and recheck status
-                            return CompletableFuture.runAsync(() -> {
-                                try {
-                                    TimeUnit.MILLISECONDS.sleep(100);
-                                } catch (InterruptedException e) {
-                                    throw new RuntimeException("Error during sleep: " + e.getMessage(), e);
-                                }
-                            }).thenCompose(ignore -> asyncDescribeStatement(sqlId)); // Recursively call until status is FINISHED or FAILED
-                        }
-                    }).whenComplete((result, exception) -> {
+        public CompletableFuture<Void> asyncDescribeStatement(String sqlId, String sqlStatement) {
+            return getCompletionTracker().track(sqlId, SqlFingerprint.of(sqlStatement))
+                    .<Void>thenApply(response -> null)
+                    .whenComplete((result, exception) -> {
                         if (exception != null) {
-                            // Handle exceptions
-                            System.out.println("Error checking statement: " + exception.getMessage());
+                            events.warn("Error checking statement {}: {}", sqlId, exception.getMessage());
                         } else {
-                            System.out.println("Statement is finished");
+                            events.debug("Statement {} is finished", sqlId);
                         }
                     });
         }
 
         public CompletableFuture<Void> asyncGetStatementResult(String statementId) {
-            GetStatementResultRequest resultRequest = GetStatementResultRequest.builder()
-                    .id(statementId)
-                    .build();
-
-            return getAsyncDataClient().getStatementResult(resultRequest)
-                    .handle((response, exception) -> {
-                        if (exception != null) {
-                            throw new RuntimeException("Error getting statement result: " + exception.getMessage(), exception);
-                        }
-
-                        // Extract and print the field values using streams if the response is valid.
-                        response.records().stream()
-                                .flatMap(List::stream)
-                                .map(Field::stringValue)
-                                .filter(value -> value != null)
-                                .forEach(value -> System.out.println("The Movie title field is " + value));
-
-                        return response;
-                    }).thenAccept(response -> {
+            return new StatementResultStream(getAsyncDataClient(), statementId, 2)
+                    .admissionController(getAdmissionController())
+                    .forEach(row -> row.stream()
+                            .map(Field::stringValue)
+                            .filter(value -> value != null)
+                            .forEach(value -> events.sampled(titleSample, EventLog.Level.DEBUG,
+                                    "The Movie title field is {} ({} fields so far)", value)))
+                    .thenAccept(rows -> {
                         // Optionally add more logic here if needed after handling the response
                     });
         }
-
-
-        public void close() {
-            if (redshiftDataAsyncClient != null) {
-                redshiftDataAsyncClient.close();
-            }
-        }
     }
 }
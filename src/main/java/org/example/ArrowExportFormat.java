@@ -0,0 +1,462 @@
+package org.example;
+
+import software.amazon.awssdk.services.redshiftdata.model.ColumnMetadata;
+import software.amazon.awssdk.services.redshiftdata.model.Field;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes results in the Apache Arrow IPC streaming format, the columnar counterpart of
+ * {@link CsvExportFormat}, which Arrow libraries read with their stream readers such as
+ * {@code pyarrow.ipc.open_stream} or {@code ArrowStreamReader}.
+ * <p>
+ * The stream is a schema message, one record batch per {@code batchRows} rows and the
+ * end-of-stream marker; an empty result has no record batch. Every column is nullable and typed
+ * by its {@link ColumnType}: 64-bit signed {@code Int}, double precision {@code FloatingPoint},
+ * {@code Bool}, {@code Binary} and {@code Utf8}. A column without nulls in a batch has an empty
+ * validity buffer, and every buffer is padded to 8 bytes.
+ * <p>
+ * The Arrow library is not among the project's dependencies, so the messages' flatbuffers are laid
+ * out here, with only the fields of {@code Message.fbs} and {@code Schema.fbs} these messages use.
+ */
+public class ArrowExportFormat implements ResultExportFormat {
+
+    private static final short METADATA_V5 = 4;
+    private static final byte SCHEMA = 1;
+    private static final byte RECORD_BATCH = 3;
+    private static final byte INT = 2;
+    private static final byte FLOATING_POINT = 3;
+    private static final byte BINARY = 4;
+    private static final byte UTF8 = 5;
+    private static final byte BOOL = 6;
+    private static final short DOUBLE_PRECISION = 2;
+    private static final byte[] PADDING = new byte[8];
+
+    private final int batchRows;
+
+    public ArrowExportFormat() {
+        this(16_384);
+    }
+
+    /**
+     * @param batchRows the rows gathered into each record batch
+     */
+    public ArrowExportFormat(int batchRows) {
+        if (batchRows < 1) {
+            throw new IllegalArgumentException("Record batches must hold at least one row: " + batchRows);
+        }
+        this.batchRows = batchRows;
+    }
+
+    @Override
+    public String extension() {
+        return "arrows";
+    }
+
+    @Override
+    public RowEncoder open(List<ColumnMetadata> columnMetadata, ExportOutput output) throws IOException {
+        FieldDecoder[] decoders = FieldDecoder.forColumns(columnMetadata);
+        output.write(schema(columnMetadata, decoders));
+        return new Encoder(decoders, output);
+    }
+
+    @Override
+    public String toString() {
+        return "Arrow IPC stream, record batches of " + batchRows + " rows";
+    }
+
+    private static ByteBuffer schema(List<ColumnMetadata> columnMetadata, FieldDecoder[] decoders) {
+        FlatBuffer metadata = new FlatBuffer(256 + 128 * decoders.length);
+        int message = message(metadata, SCHEMA, 0);
+        // endianness (little is 0), fields
+        int schema = metadata.table(2, 4);
+        metadata.link(message, 2, schema);
+        int fields = metadata.vector(decoders.length, 4);
+        metadata.link(schema, 1, fields);
+        for (int i = 0; i < decoders.length; i++) {
+            // name, nullable, type_type, type, dictionary, children
+            int field = metadata.table(4, 1, 1, 4, 0, 4);
+            metadata.linkElement(fields, i, field);
+            String name = columnMetadata.get(i).name();
+            metadata.link(field, 0, metadata.string(name == null ? "" : name));
+            metadata.putByte(field, 1, (byte) 1);
+            switch (decoders[i].type()) {
+                case LONG:
+                    metadata.putByte(field, 2, INT);
+                    // bitWidth, is_signed
+                    int intType = metadata.table(4, 1);
+                    metadata.putInt(intType, 0, 64);
+                    metadata.putByte(intType, 1, (byte) 1);
+                    metadata.link(field, 3, intType);
+                    break;
+                case DOUBLE:
+                    metadata.putByte(field, 2, FLOATING_POINT);
+                    // precision
+                    int floatType = metadata.table(2);
+                    metadata.putShort(floatType, 0, DOUBLE_PRECISION);
+                    metadata.link(field, 3, floatType);
+                    break;
+                case BOOLEAN:
+                    metadata.putByte(field, 2, BOOL);
+                    metadata.link(field, 3, metadata.table());
+                    break;
+                case BLOB:
+                    metadata.putByte(field, 2, BINARY);
+                    metadata.link(field, 3, metadata.table());
+                    break;
+                default:
+                    metadata.putByte(field, 2, UTF8);
+                    metadata.link(field, 3, metadata.table());
+                    break;
+            }
+            metadata.link(field, 5, metadata.vector(0, 4));
+        }
+        return metadata.finish(message);
+    }
+
+    /**
+     * Adds the {@code Message} table that every message's flatbuffer starts with; its header
+     * still has to be linked.
+     */
+    private static int message(FlatBuffer metadata, byte headerType, long bodyLength) {
+        // version, header_type, header, bodyLength
+        int message = metadata.table(2, 1, 4, 8);
+        metadata.putShort(message, 0, METADATA_V5);
+        metadata.putByte(message, 1, headerType);
+        metadata.putLong(message, 3, bodyLength);
+        return message;
+    }
+
+    private static long padded(long length) {
+        return (length + 7) & ~7L;
+    }
+
+    private final class Encoder implements RowEncoder {
+        private final Column[] columns;
+        private final ExportOutput output;
+        private int rows;
+
+        private Encoder(FieldDecoder[] decoders, ExportOutput output) {
+            this.columns = new Column[decoders.length];
+            for (int i = 0; i < decoders.length; i++) {
+                columns[i] = new Column(decoders[i], batchRows);
+            }
+            this.output = output;
+        }
+
+        @Override
+        public void add(List<Field> row) throws IOException {
+            for (int i = 0; i < columns.length; i++) {
+                columns[i].add(rows, i < row.size() ? row.get(i) : null);
+            }
+            if (++rows == batchRows) {
+                writeBatch();
+            }
+        }
+
+        private void writeBatch() throws IOException {
+            List<ByteBuffer> body = new ArrayList<>(3 * columns.length);
+            for (Column column : columns) {
+                column.body(rows, body);
+            }
+            long bodyLength = 0;
+            for (ByteBuffer buffer : body) {
+                bodyLength += padded(buffer.remaining());
+            }
+
+            FlatBuffer metadata = new FlatBuffer(256 + 16 * (columns.length + body.size()));
+            int message = message(metadata, RECORD_BATCH, bodyLength);
+            // length, nodes, buffers
+            int batch = metadata.table(8, 4, 4);
+            metadata.link(message, 2, batch);
+            metadata.putLong(batch, 0, rows);
+            int nodes = metadata.vector(columns.length, 16);
+            metadata.link(batch, 1, nodes);
+            int buffers = metadata.vector(body.size(), 16);
+            metadata.link(batch, 2, buffers);
+            for (int i = 0; i < columns.length; i++) {
+                metadata.putStruct(nodes, i, rows, columns[i].nullCount);
+            }
+            long offset = 0;
+            for (int i = 0; i < body.size(); i++) {
+                int length = body.get(i).remaining();
+                metadata.putStruct(buffers, i, offset, length);
+                offset += padded(length);
+            }
+
+            output.write(metadata.finish(message));
+            for (ByteBuffer buffer : body) {
+                int length = buffer.remaining();
+                output.write(buffer);
+                output.write(ByteBuffer.wrap(PADDING, 0, (int) padded(length) - length));
+            }
+            for (Column column : columns) {
+                column.reset();
+            }
+            rows = 0;
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (rows > 0) {
+                writeBatch();
+            }
+            // A continuation marker followed by an empty message.
+            output.write(ByteBuffer.wrap(new byte[] {-1, -1, -1, -1, 0, 0, 0, 0}));
+        }
+    }
+
+    /**
+     * The buffers of one column of the current batch: a validity bitmap and either fixed-width
+     * values, a bitmap of booleans, or 32-bit offsets into variable-length data.
+     */
+    private static final class Column {
+        private final FieldDecoder decoder;
+        private final ByteBuffer validity;
+        private final ByteBuffer values;
+        private ByteBuffer data;
+        private int nullCount;
+
+        private Column(FieldDecoder decoder, int capacity) {
+            this.decoder = decoder;
+            this.validity = allocate((capacity + 7) / 8);
+            switch (decoder.type()) {
+                case LONG:
+                case DOUBLE:
+                    values = allocate(8 * capacity);
+                    break;
+                case BOOLEAN:
+                    values = allocate((capacity + 7) / 8);
+                    break;
+                default:
+                    values = allocate(4 * (capacity + 1));
+                    data = allocate(Math.max(1_024, 16 * capacity));
+                    break;
+            }
+        }
+
+        private void add(int row, Field field) {
+            boolean isNull = FieldDecoder.isNull(field);
+            if (isNull) {
+                nullCount++;
+            } else {
+                setBit(validity, row);
+            }
+            switch (decoder.type()) {
+                case LONG:
+                    values.putLong(8 * row, isNull ? 0 : decoder.decodeLong(field));
+                    break;
+                case DOUBLE:
+                    values.putDouble(8 * row, isNull ? 0 : decoder.decodeDouble(field));
+                    break;
+                case BOOLEAN:
+                    if (!isNull && decoder.decodeBoolean(field)) {
+                        setBit(values, row);
+                    }
+                    break;
+                case BLOB:
+                    if (!isNull) {
+                        append(decoder.decodeBlob(field));
+                    }
+                    values.putInt(4 * (row + 1), data.position());
+                    break;
+                default:
+                    if (!isNull) {
+                        append(ByteBuffer.wrap(decoder.decodeString(field).getBytes(StandardCharsets.UTF_8)));
+                    }
+                    values.putInt(4 * (row + 1), data.position());
+                    break;
+            }
+        }
+
+        private void append(ByteBuffer value) {
+            if (data.remaining() < value.remaining()) {
+                long capacity = Math.max(2L * data.capacity(), (long) data.position() + value.remaining());
+                if (capacity > Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("A record batch column cannot hold more than 2 GB; use smaller batches");
+                }
+                data = allocate((int) capacity).put(data.flip());
+            }
+            data.put(value.duplicate());
+        }
+
+        private void body(int rows, List<ByteBuffer> body) {
+            body.add(validity.slice(0, nullCount == 0 ? 0 : (rows + 7) / 8));
+            switch (decoder.type()) {
+                case LONG:
+                case DOUBLE:
+                    body.add(values.slice(0, 8 * rows));
+                    break;
+                case BOOLEAN:
+                    body.add(values.slice(0, (rows + 7) / 8));
+                    break;
+                default:
+                    body.add(values.slice(0, 4 * (rows + 1)));
+                    body.add(data.slice(0, data.position()));
+                    break;
+            }
+        }
+
+        private void reset() {
+            Arrays.fill(validity.array(), (byte) 0);
+            if (decoder.type() == ColumnType.BOOLEAN) {
+                Arrays.fill(values.array(), (byte) 0);
+            }
+            if (data != null) {
+                data.clear();
+            }
+            nullCount = 0;
+        }
+
+        private static void setBit(ByteBuffer bitmap, int index) {
+            bitmap.put(index >>> 3, (byte) (bitmap.get(index >>> 3) | 1 << (index & 7)));
+        }
+
+        private static ByteBuffer allocate(int capacity) {
+            return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Lays out one message's flatbuffer front to back behind the 8-byte IPC prefix: every table
+     * comes right after its vtable and before whatever it refers to, so all offsets are positive.
+     * Positions are absolute in the message; the prefix keeps them aligned like the flatbuffer's.
+     */
+    private static final class FlatBuffer {
+        private static final int START = 8;
+
+        private ByteBuffer bytes;
+
+        private FlatBuffer(int capacity) {
+            bytes = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+            // The root table offset goes first.
+            bytes.position(START + 4);
+        }
+
+        /**
+         * Adds a table with zeroed fields, largest first, and the vtable in front of it.
+         *
+         * @param sizes the size in bytes of the field in each slot, 0 if it is absent
+         * @return the position of the table
+         */
+        private int table(int... sizes) {
+            int[] offsets = new int[sizes.length];
+            int size = 4;
+            boolean wide = false;
+            for (int width = 8; width > 0; width /= 2) {
+                for (int slot = 0; slot < sizes.length; slot++) {
+                    if (sizes[slot] == width) {
+                        offsets[slot] = size;
+                        size += width;
+                        wide |= width == 8;
+                    }
+                }
+            }
+            ensure(2 * sizes.length + size + 16);
+            int vtable = skipTo(2, 0);
+            bytes.putShort((short) (4 + 2 * sizes.length)).putShort((short) size);
+            for (int offset : offsets) {
+                bytes.putShort((short) offset);
+            }
+            // 8-byte fields start right after the 4-byte vtable offset.
+            int table = wide ? skipTo(8, 4) : skipTo(4, 0);
+            bytes.putInt(table - vtable);
+            bytes.position(table + size);
+            return table;
+        }
+
+        /**
+         * @return the position of a vector's length, which the elements follow
+         */
+        private int vector(int length, int elementSize) {
+            ensure(length * elementSize + 12);
+            int vector = elementSize == 16 ? skipTo(8, 4) : skipTo(4, 0);
+            bytes.putInt(length);
+            bytes.position(vector + 4 + length * elementSize);
+            return vector;
+        }
+
+        private int string(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            ensure(utf8.length + 8);
+            int string = skipTo(4, 0);
+            bytes.putInt(utf8.length).put(utf8).put((byte) 0);
+            return string;
+        }
+
+        private void putByte(int table, int slot, byte value) {
+            bytes.put(field(table, slot), value);
+        }
+
+        private void putShort(int table, int slot, short value) {
+            bytes.putShort(field(table, slot), value);
+        }
+
+        private void putInt(int table, int slot, int value) {
+            bytes.putInt(field(table, slot), value);
+        }
+
+        private void putLong(int table, int slot, long value) {
+            bytes.putLong(field(table, slot), value);
+        }
+
+        /**
+         * Points a table's field at a table, vector or string.
+         */
+        private void link(int table, int slot, int target) {
+            int field = field(table, slot);
+            bytes.putInt(field, target - field);
+        }
+
+        private void linkElement(int vector, int index, int target) {
+            int element = vector + 4 + 4 * index;
+            bytes.putInt(element, target - element);
+        }
+
+        /**
+         * Sets an element of a vector of two-long structs, {@code FieldNode} or {@code Buffer}.
+         */
+        private void putStruct(int vector, int index, long first, long second) {
+            int element = vector + 4 + 16 * index;
+            bytes.putLong(element, first).putLong(element + 8, second);
+        }
+
+        /**
+         * @return the message: continuation marker, metadata size, flatbuffer and padding
+         */
+        private ByteBuffer finish(int root) {
+            ensure(8);
+            int end = skipTo(8, 0);
+            bytes.putInt(0, -1).putInt(4, end - START).putInt(START, root - START);
+            return bytes.flip();
+        }
+
+        private int field(int table, int slot) {
+            int vtable = table - bytes.getInt(table);
+            return table + bytes.getShort(vtable + 4 + 2 * slot);
+        }
+
+        private int skipTo(int alignment, int remainder) {
+            while (bytes.position() % alignment != remainder) {
+                bytes.put((byte) 0);
+            }
+            return bytes.position();
+        }
+
+        private void ensure(int bytesNeeded) {
+            if (bytes.remaining() < bytesNeeded) {
+                int position = bytes.position();
+                bytes = ByteBuffer.allocate(Math.max(2 * bytes.capacity(), position + bytesNeeded))
+                        .order(ByteOrder.LITTLE_ENDIAN)
+                        .put(bytes.flip());
+                bytes.position(position);
+            }
+        }
+    }
+}
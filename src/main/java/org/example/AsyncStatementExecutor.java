@@ -0,0 +1,139 @@
+package org.example;
+
+import software.amazon.awssdk.services.redshiftdata.RedshiftDataAsyncClient;
+import software.amazon.awssdk.services.redshiftdata.model.ExecuteStatementRequest;
+import software.amazon.awssdk.services.redshiftdata.model.ExecuteStatementResponse;
+import software.amazon.awssdk.services.redshiftdata.model.SqlParameter;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Submits statements with {@code ExecuteStatement} without blocking any thread.
+ * <p>
+ * The returned futures are composed directly on the SDK's future, so a thousand submissions in
+ * flight cost a thousand pending requests on the shared event loop, not a thousand parked pool
+ * threads. Without an executor, callbacks run on the SDK's completion thread; pass one to move
+ * dependent stages off it. Failures complete the future with a
+ * {@link StatementSubmissionException}. With an {@link AdmissionController}, every call first
+ * waits for an {@code ExecuteStatement} permit.
+ */
+public class AsyncStatementExecutor {
+
+    private final RedshiftDataAsyncClient client;
+    private final String clusterId;
+    private final String databaseName;
+    private final String dbUser;
+    private final Executor executor;
+    private volatile AdmissionController admission;
+    private volatile QueryMetrics metrics;
+
+    public AsyncStatementExecutor(RedshiftDataAsyncClient client, String clusterId, String databaseName, String dbUser) {
+        this(client, clusterId, databaseName, dbUser, null);
+    }
+
+    /**
+     * @param executor runs the completion of every returned future, or {@code null} to complete
+     *                 on the SDK's completion thread
+     */
+    public AsyncStatementExecutor(RedshiftDataAsyncClient client, String clusterId, String databaseName,
+                                  String dbUser, Executor executor) {
+        this.client = client;
+        this.clusterId = clusterId;
+        this.databaseName = databaseName;
+        this.dbUser = dbUser;
+        this.executor = executor;
+    }
+
+    /**
+     * @param admission limits the {@code ExecuteStatement} calls, or {@code null} for no limit
+     * @return this executor
+     */
+    public AsyncStatementExecutor admissionController(AdmissionController admission) {
+        this.admission = admission;
+        return this;
+    }
+
+    /**
+     * @param metrics records the latency of every successful submission, including any wait for
+     *                admission, or {@code null} to record nothing
+     * @return this executor
+     */
+    public AsyncStatementExecutor metrics(QueryMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * @return a {@link CompletableFuture} with the statement ID
+     */
+    public CompletableFuture<String> submit(String sql) {
+        return submit(sql, List.of());
+    }
+
+    /**
+     * @param parameters values for the {@code :name} placeholders in {@code sql}
+     * @return a {@link CompletableFuture} with the statement ID
+     */
+    public CompletableFuture<String> submit(String sql, List<SqlParameter> parameters) {
+        ExecuteStatementRequest.Builder request = ExecuteStatementRequest.builder()
+                .clusterIdentifier(clusterId)
+                .database(databaseName)
+                .dbUser(dbUser)
+                .sql(sql);
+        if (!parameters.isEmpty()) {
+            request.parameters(parameters);
+        }
+        return execute(request.build()).thenApply(ExecuteStatementResponse::id);
+    }
+
+    /**
+     * Sends a fully built request.
+     *
+     * @return a {@link CompletableFuture} with the response, or failed with a
+     * {@link StatementSubmissionException}, whose cause is an {@link AdmissionRejectedException}
+     * if the admission controller turned the call away
+     */
+    public CompletableFuture<ExecuteStatementResponse> execute(ExecuteStatementRequest request) {
+        long startNanos = System.nanoTime();
+        AdmissionController admission = this.admission;
+        CompletableFuture<ExecuteStatementResponse> call = admission == null
+                ? send(request)
+                : admission.call(AdmissionController.EXECUTE_STATEMENT, () -> send(request));
+
+        CompletableFuture<ExecuteStatementResponse> result = new CompletableFuture<>();
+        if (executor == null) {
+            call.whenComplete((response, exception) -> complete(result, response, exception, startNanos));
+        } else {
+            call.whenCompleteAsync((response, exception) -> complete(result, response, exception, startNanos), executor);
+        }
+        return result;
+    }
+
+    private CompletableFuture<ExecuteStatementResponse> send(ExecuteStatementRequest request) {
+        try {
+            return client.executeStatement(request);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void complete(CompletableFuture<ExecuteStatementResponse> result,
+                          ExecuteStatementResponse response, Throwable exception, long startNanos) {
+        if (exception == null) {
+            QueryMetrics metrics = this.metrics;
+            if (metrics != null) {
+                metrics.recordSubmit(System.nanoTime() - startNanos);
+            }
+            result.complete(response);
+            return;
+        }
+        Throwable cause = exception instanceof CompletionException && exception.getCause() != null
+                ? exception.getCause()
+                : exception;
+        result.completeExceptionally(
+                new StatementSubmissionException("Error executing statement: " + cause.getMessage(), cause));
+    }
+}
@@ -0,0 +1,291 @@
+package org.example;
+
+import software.amazon.awssdk.services.redshiftdata.RedshiftDataAsyncClient;
+import software.amazon.awssdk.services.redshiftdata.model.SqlParameter;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Loads rows into a table with multi-row {@code INSERT ... VALUES (:v0, :v1),(:v2, :v3)}
+ * statements.
+ * <p>
+ * Rows are packed into one statement until either the byte or the row budget is reached; the
+ * byte budget counts the SQL text and the parameter values and can never exceed the Data API's
+ * 100 KB SQL limit. At most {@code maxInFlight} statements are executing at once, and the
+ * returned future only completes after every batch has been tracked to FINISHED. Values are
+ * passed as named {@link SqlParameter}s in their {@code toString()} form, which Redshift casts to
+ * the column types; {@code null} becomes NULL, since parameters cannot carry it.
+ */
+public class BulkInsertLoader {
+
+    /**
+     * Maximum size of the SQL text accepted by {@code ExecuteStatement}.
+     */
+    public static final int MAX_SQL_BYTES = 100 * 1024;
+
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "redshift-bulk-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AsyncStatementExecutor statements;
+    private final StatementCompletionTracker tracker;
+    private final String insertPrefix;
+    private final String fingerprint;
+    private final int columnCount;
+    private int maxBatchBytes = MAX_SQL_BYTES - 1024;
+    private int maxBatchRows = 1_000;
+    private int maxInFlight = 8;
+    private volatile Executor executor = DEFAULT_EXECUTOR;
+
+    public BulkInsertLoader(RedshiftDataAsyncClient client, StatementCompletionTracker tracker,
+                            String clusterId, String databaseName, String dbUser,
+                            String table, String... columns) {
+        this.statements = new AsyncStatementExecutor(client, clusterId, databaseName, dbUser);
+        this.tracker = tracker;
+        this.insertPrefix = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ";
+        this.fingerprint = SqlFingerprint.of(insertPrefix + "(batch)");
+        this.columnCount = columns.length;
+    }
+
+    /**
+     * @param maxBatchBytes maximum size in bytes of one INSERT statement, at most {@link #MAX_SQL_BYTES}
+     * @param maxBatchRows  maximum number of rows in one INSERT statement
+     * @return this loader
+     */
+    public BulkInsertLoader batchLimits(int maxBatchBytes, int maxBatchRows) {
+        if (maxBatchBytes > MAX_SQL_BYTES || maxBatchBytes <= insertPrefix.length()) {
+            throw new IllegalArgumentException("Batch size must be between " + insertPrefix.length()
+                    + " and " + MAX_SQL_BYTES + " bytes: " + maxBatchBytes);
+        }
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxBatchRows = maxBatchRows;
+        return this;
+    }
+
+    /**
+     * @param admission limits the {@code ExecuteStatement} calls of the batches, or {@code null}
+     *                  for no limit
+     * @return this loader
+     */
+    public BulkInsertLoader admissionController(AdmissionController admission) {
+        statements.admissionController(admission);
+        return this;
+    }
+
+    /**
+     * @param metrics records the submit latency of the batches, or {@code null} to record nothing
+     * @return this loader
+     */
+    public BulkInsertLoader metrics(QueryMetrics metrics) {
+        statements.metrics(metrics);
+        return this;
+    }
+
+    /**
+     * @param maxInFlight maximum number of INSERT statements executing at the same time
+     * @return this loader
+     */
+    public BulkInsertLoader maxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * @param executor runs the blocking loop of every load, one thread per load; by default a
+     *                 shared pool of daemon threads
+     * @return this loader
+     */
+    public BulkInsertLoader executor(Executor executor) {
+        this.executor = Objects.requireNonNull(executor, "executor");
+        return this;
+    }
+
+    /**
+     * Loads rows on a thread of the loader's executor. The array returned by {@code rows.next()}
+     * is rendered before the next row is requested, so iterators may reuse it.
+     *
+     * @param rows  the rows to insert, one value per column
+     * @param limit the maximum number of rows to load, or a negative value for all of them
+     * @return a {@link CompletableFuture} that completes once every batch FINISHED, or
+     * exceptionally with the first batch failure
+     */
+    public CompletableFuture<BulkLoadResult> load(Iterator<Object[]> rows, int limit) {
+        CompletableFuture<BulkLoadResult> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                result.complete(loadBlocking(rows, limit));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    private BulkLoadResult loadBlocking(Iterator<Object[]> rows, int limit) throws InterruptedException {
+        long start = System.nanoTime();
+        int permits = maxInFlight;
+        Semaphore inFlight = new Semaphore(permits);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        StringBuilder sql = new StringBuilder(maxBatchBytes);
+        StringBuilder tuple = new StringBuilder(256);
+        List<SqlParameter> parameters = new ArrayList<>();
+        List<SqlParameter> tupleParameters = new ArrayList<>(columnCount);
+        long loaded = 0;
+        long batches = 0;
+        int batchRows = 0;
+        int batchBytes = 0;
+
+        try {
+            while ((limit < 0 || loaded < limit) && failure.get() == null && rows.hasNext()) {
+                Object[] row = rows.next();
+                int tupleBytes = renderTuple(row, parameters.size(), tuple, tupleParameters) + 1;
+                if (batchRows > 0 && (batchBytes + tupleBytes > maxBatchBytes || batchRows == maxBatchRows)) {
+                    submit(sql.toString(), parameters, inFlight, failure);
+                    batches++;
+                    batchRows = 0;
+                    parameters = new ArrayList<>();
+                    // Placeholders are numbered per statement, so the row starts the next one at :v0.
+                    tupleBytes = renderTuple(row, 0, tuple, tupleParameters) + 1;
+                }
+                if (insertPrefix.length() + tupleBytes > maxBatchBytes) {
+                    throw new IllegalArgumentException("Row " + loaded + " does not fit into a "
+                            + maxBatchBytes + " byte statement");
+                }
+                if (batchRows == 0) {
+                    sql.setLength(0);
+                    sql.append(insertPrefix);
+                    batchBytes = insertPrefix.length();
+                } else {
+                    sql.append(',');
+                }
+                sql.append(tuple);
+                parameters.addAll(tupleParameters);
+                batchBytes += tupleBytes;
+                batchRows++;
+                loaded++;
+            }
+            if (batchRows > 0 && failure.get() == null) {
+                submit(sql.toString(), parameters, inFlight, failure);
+                batches++;
+            }
+        } finally {
+            // Wait for the batches still executing by taking back every permit, also when a row
+            // or the iterator failed, so the load never ends while its statements are running.
+            inFlight.acquireUninterruptibly(permits);
+        }
+        if (failure.get() != null) {
+            throw new RuntimeException("Error inserting data: " + failure.get().getMessage(), failure.get());
+        }
+        return new BulkLoadResult(loaded, batches, System.nanoTime() - start);
+    }
+
+    private void submit(String sql, List<SqlParameter> parameters, Semaphore inFlight,
+                        AtomicReference<Throwable> failure) throws InterruptedException {
+        inFlight.acquire();
+        statements.submit(sql, parameters)
+                .thenCompose(id -> tracker.track(id, fingerprint))
+                .whenComplete((response, exception) -> {
+                    if (exception != null) {
+                        failure.compareAndSet(null, exception);
+                    }
+                    inFlight.release();
+                });
+    }
+
+    /**
+     * Renders one row as a tuple of placeholders numbered from {@code firstParameter}, and its
+     * values as parameters.
+     *
+     * @return the bytes of the tuple and its parameter values
+     */
+    private int renderTuple(Object[] row, int firstParameter, StringBuilder tuple, List<SqlParameter> parameters) {
+        if (row.length != columnCount) {
+            throw new IllegalArgumentException("Expected " + columnCount + " values but got " + row.length);
+        }
+        tuple.setLength(0);
+        parameters.clear();
+        int valueBytes = 0;
+        tuple.append('(');
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                tuple.append(", ");
+            }
+            if (row[i] == null) {
+                tuple.append("NULL");
+            } else {
+                String name = "v" + (firstParameter + parameters.size());
+                String value = row[i].toString();
+                tuple.append(':').append(name);
+                parameters.add(SqlParameter.builder().name(name).value(value).build());
+                valueBytes += utf8Length(value);
+            }
+        }
+        tuple.append(')');
+        return utf8Length(tuple) + valueBytes;
+    }
+
+    private static int utf8Length(CharSequence text) {
+        int bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Outcome of a bulk load.
+     */
+    public static final class BulkLoadResult {
+        private final long rows;
+        private final long batches;
+        private final long elapsedNanos;
+
+        BulkLoadResult(long rows, long batches, long elapsedNanos) {
+            this.rows = rows;
+            this.batches = batches;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long rows() {
+            return rows;
+        }
+
+        public long batches() {
+            return batches;
+        }
+
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double rowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rows * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d rows in %d batches (%.1f rows/sec)", rows, batches, rowsPerSecond());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.example;
+
+import software.amazon.awssdk.auth.credentials.AnonymousCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.EnvironmentVariableCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.ProfileCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+
+import java.net.URI;
+import java.util.Objects;
+
+/**
+ * Identifies one set of SDK clients in the {@link RedshiftClientRegistry}: the region, the
+ * credentials profile and an optional endpoint override.
+ * <p>
+ * A {@code null} region falls back to the SDK's default region lookup and a {@code null}
+ * profile to credentials from the environment variables. Keys made by
+ * {@link #anonymous(Region, URI)} send unsigned requests, which is only useful against local
+ * endpoints.
+ */
+public final class ClientKey {
+
+    private final Region region;
+    private final String profile;
+    private final URI endpoint;
+    private final boolean anonymous;
+
+    private ClientKey(Region region, String profile, URI endpoint, boolean anonymous) {
+        this.region = region;
+        this.profile = profile;
+        this.endpoint = endpoint;
+        this.anonymous = anonymous;
+    }
+
+    public static ClientKey of(Region region, String profile) {
+        return new ClientKey(region, profile, null, false);
+    }
+
+    public static ClientKey anonymous(Region region, URI endpoint) {
+        return new ClientKey(region, null, endpoint, true);
+    }
+
+    /**
+     * @return a key with the same region and credentials that sends requests to {@code endpoint}
+     */
+    public ClientKey withEndpoint(URI endpoint) {
+        return new ClientKey(region, profile, endpoint, anonymous);
+    }
+
+    public Region region() {
+        return region;
+    }
+
+    public String profile() {
+        return profile;
+    }
+
+    public URI endpoint() {
+        return endpoint;
+    }
+
+    AwsCredentialsProvider credentialsProvider() {
+        if (anonymous) {
+            return AnonymousCredentialsProvider.create();
+        }
+        return profile == null
+                ? EnvironmentVariableCredentialsProvider.create()
+                : ProfileCredentialsProvider.create(profile);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ClientKey)) {
+            return false;
+        }
+        ClientKey other = (ClientKey) o;
+        return Objects.equals(region, other.region)
+                && Objects.equals(profile, other.profile)
+                && Objects.equals(endpoint, other.endpoint)
+                && anonymous == other.anonymous;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(region, profile, endpoint, anonymous);
+    }
+
+    @Override
+    public String toString() {
+        return "ClientKey(region=" + region + ", profile=" + profile + ", endpoint=" + endpoint
+                + (anonymous ? ", anonymous" : "") + ")";
+    }
+}
@@ -0,0 +1,139 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.auth.credentials.AnonymousCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryMode;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.redshiftdata.RedshiftDataAsyncClient;
+import software.amazon.awssdk.services.redshiftdata.model.DescribeStatementRequest;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building one client per caller, each with its own Netty HTTP client, against getting
+ * the clients from a {@link RedshiftClientRegistry} that shares one event loop group.
+ * <p>
+ * Every client sends a few requests to a closed local port so the event loops actually start.
+ * The score is the time to build the clients and get those calls back. After each iteration,
+ * outside the measured time, {@code threads} is set to the number of threads the clients added
+ * and {@code retainedKb} to the heap they hold after a full GC. Like all event counters, JMH
+ * reports their sum over the 5 measurement iterations; divide by 5 for one iteration's footprint.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ClientRegistryBenchmark {
+
+    private static final URI CLOSED_PORT = URI.create("http://127.0.0.1:9");
+    private static final int CALLS_PER_CLIENT = 4;
+
+    @Param({"3", "12"})
+    public int clients;
+
+    private final List<AutoCloseable> resources = new ArrayList<>();
+    private int threadsBefore;
+    private long heapBefore;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long threads;
+        public long retainedKb;
+    }
+
+    @Setup(Level.Iteration)
+    public void measureBaseline() {
+        threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        heapBefore = usedHeap();
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeClients(Footprint footprint) throws Exception {
+        // Read before closing, and outside the measured time because of the full GC.
+        footprint.threads = ManagementFactory.getThreadMXBean().getThreadCount() - threadsBefore;
+        footprint.retainedKb = Math.max(0, usedHeap() - heapBefore) / 1024;
+        for (AutoCloseable resource : resources) {
+            resource.close();
+        }
+        resources.clear();
+        // Netty shuts its event loops down in the background; let them go before the next baseline.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (ManagementFactory.getThreadMXBean().getThreadCount() > threadsBefore && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    @Benchmark
+    public void perCallerClients() {
+        List<RedshiftDataAsyncClient> built = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            // The way every wrapper used to build its own client.
+            SdkAsyncHttpClient httpClient = NettyNioAsyncHttpClient.builder()
+                    .maxConcurrency(100)
+                    .connectionTimeout(Duration.ofSeconds(60))
+                    .readTimeout(Duration.ofSeconds(60))
+                    .writeTimeout(Duration.ofSeconds(60))
+                    .build();
+
+            ClientOverrideConfiguration overrideConfig = ClientOverrideConfiguration.builder()
+                    .apiCallTimeout(Duration.ofMinutes(2))
+                    .apiCallAttemptTimeout(Duration.ofSeconds(90))
+                    .retryStrategy(RetryMode.STANDARD)
+                    .build();
+
+            RedshiftDataAsyncClient client = RedshiftDataAsyncClient.builder()
+                    .httpClient(httpClient)
+                    .overrideConfiguration(overrideConfig)
+                    .credentialsProvider(AnonymousCredentialsProvider.create())
+                    .region(Region.US_EAST_2)
+                    .endpointOverride(CLOSED_PORT)
+                    .build();
+            built.add(client);
+            resources.add(client);
+            resources.add(httpClient);
+        }
+        callAll(built);
+    }
+
+    @Benchmark
+    public void sharedRegistry() {
+        RedshiftClientRegistry registry = new RedshiftClientRegistry(200, 0);
+        resources.add(registry);
+        List<RedshiftDataAsyncClient> built = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            // Different endpoint paths give different keys, so every caller still gets its own client.
+            ClientKey key = ClientKey.anonymous(Region.US_EAST_2, CLOSED_PORT.resolve("/client-" + i));
+            built.add(registry.dataAsyncClient(key));
+        }
+        callAll(built);
+    }
+
+    private static void callAll(List<RedshiftDataAsyncClient> built) {
+        List<CompletableFuture<?>> calls = new ArrayList<>();
+        for (RedshiftDataAsyncClient client : built) {
+            for (int i = 0; i < CALLS_PER_CLIENT; i++) {
+                calls.add(client.describeStatement(DescribeStatementRequest.builder().id("warm-up").build()));
+            }
+        }
+        CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0]))
+                .exceptionally(e -> null)
+                .join();
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,348 @@
+package org.example;
+
+import software.amazon.awssdk.services.redshift.RedshiftAsyncClient;
+import software.amazon.awssdk.services.redshift.model.Cluster;
+import software.amazon.awssdk.services.redshift.model.DescribeClustersRequest;
+import software.amazon.awssdk.services.redshift.model.DescribeClustersResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Waits for Redshift clusters to reach a state, for any number of clusters at once.
+ * <p>
+ * Every {@link #interval(Duration) interval}, one sweep pages through {@code DescribeClusters}
+ * for all clusters, 100 per page, stopping early once every watched cluster has been seen, and
+ * checks every pending wait against the result. Nothing runs between sweeps and no thread waits
+ * for a cluster: sweeps are scheduled on a scheduler and the calls are asynchronous. There are no
+ * sweeps while nothing is watched.
+ * <p>
+ * A wait completes when its cluster reaches the wanted status, or for
+ * {@link #awaitDeleted(String, Duration, ProgressListener)} when the cluster is no longer listed.
+ * It fails when its deadline passes, when the cluster enters a {@link #FAILED_STATUSES failed
+ * status} or starts deleting, or when a cluster seen before disappears. A cluster that is not
+ * listed yet, as right after {@code CreateCluster}, is waited for. A failed sweep is logged and
+ * retried at the next tick.
+ */
+public class ClusterLifecycleWatcher implements AutoCloseable {
+
+    public static final String AVAILABLE = "available";
+    public static final String MODIFYING = "modifying";
+    public static final String DELETING = "deleting";
+
+    /**
+     * Statuses a cluster does not leave on its own; waits for any other status fail on them.
+     */
+    public static final Set<String> FAILED_STATUSES = Set.of("hardware-failure", "incompatible-hsm",
+            "incompatible-network", "incompatible-parameters", "incompatible-restore");
+
+    private static final EventLog.Source events = EventLog.shared().source(ClusterLifecycleWatcher.class);
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * Receives the status of a watched cluster after every sweep.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * @param status  the cluster status, or {@code null} if the cluster is not listed
+         * @param elapsed the time since the wait started
+         */
+        void onProgress(String clusterId, String status, Duration elapsed);
+    }
+
+    private final RedshiftAsyncClient client;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+    private final Queue<Watch> watches = new ConcurrentLinkedQueue<>();
+    private final AtomicLong sweeps = new AtomicLong();
+    private volatile Duration interval = Duration.ofSeconds(10);
+    private boolean sweepPending;
+    private boolean sweepRequested;
+    private volatile boolean closed;
+
+    /**
+     * Creates a watcher with its own daemon scheduler thread.
+     */
+    public ClusterLifecycleWatcher(RedshiftAsyncClient client) {
+        this(client, Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redshift-cluster-watcher");
+            thread.setDaemon(true);
+            return thread;
+        }), true);
+    }
+
+    /**
+     * @param scheduler schedules the sweeps and deadlines; it is not shut down by {@link #close()}
+     */
+    public ClusterLifecycleWatcher(RedshiftAsyncClient client, ScheduledExecutorService scheduler) {
+        this(client, scheduler, false);
+    }
+
+    private ClusterLifecycleWatcher(RedshiftAsyncClient client, ScheduledExecutorService scheduler, boolean ownsScheduler) {
+        this.client = client;
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+    }
+
+    /**
+     * @param interval the time between the end of one sweep and the start of the next, 10 seconds
+     *                 by default
+     * @return this watcher
+     */
+    public ClusterLifecycleWatcher interval(Duration interval) {
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("Sweep interval must be positive: " + interval);
+        }
+        this.interval = interval;
+        return this;
+    }
+
+    public CompletableFuture<Cluster> awaitAvailable(String clusterId, Duration timeout) {
+        return awaitStatus(clusterId, AVAILABLE, timeout, null);
+    }
+
+    public CompletableFuture<Cluster> awaitAvailable(String clusterId, Duration timeout, ProgressListener listener) {
+        return awaitStatus(clusterId, AVAILABLE, timeout, listener);
+    }
+
+    /**
+     * Waits until a cluster has a status, e.g. {@link #MODIFYING} right after
+     * {@code ModifyCluster}. If no sweep is in progress, one starts right away; otherwise the
+     * next one starts as soon as the current one ends.
+     *
+     * @param timeout  how long to wait before the future fails with a {@link TimeoutException}
+     * @param listener receives the cluster's status after every sweep, or {@code null}
+     * @return a {@link CompletableFuture} with the cluster as described by the sweep that saw the
+     * status; cancelling it stops the wait
+     */
+    public CompletableFuture<Cluster> awaitStatus(String clusterId, String status, Duration timeout,
+                                                  ProgressListener listener) {
+        return watch(clusterId, status, timeout, listener);
+    }
+
+    /**
+     * Waits until a cluster is no longer listed, typically after {@code DeleteCluster}.
+     *
+     * @return a {@link CompletableFuture} that completes with {@code null} once the cluster is gone
+     */
+    public CompletableFuture<Void> awaitDeleted(String clusterId, Duration timeout, ProgressListener listener) {
+        return watch(clusterId, null, timeout, listener).thenApply(cluster -> null);
+    }
+
+    /**
+     * @return the number of pending waits
+     */
+    public int watching() {
+        return watches.size();
+    }
+
+    /**
+     * @return the number of sweeps completed so far
+     */
+    public long sweeps() {
+        return sweeps.get();
+    }
+
+    private CompletableFuture<Cluster> watch(String clusterId, String status, Duration timeout, ProgressListener listener) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("The cluster watcher is closed"));
+        }
+        Watch watch = new Watch(clusterId, status, listener);
+        watch.future.whenComplete((cluster, exception) -> watches.remove(watch));
+        watches.add(watch);
+        if (closed) {
+            // close() may have cancelled the pending waits before this one was added.
+            watch.future.completeExceptionally(new CancellationException("Cluster watcher closed"));
+            return watch.future;
+        }
+        ScheduledFuture<?> deadline;
+        try {
+            deadline = scheduler.schedule(() -> watch.future.completeExceptionally(new TimeoutException(
+                            String.format("Cluster %s did not become %s within %s", clusterId, watch.describeTarget(), timeout))),
+                    timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            watch.future.completeExceptionally(stopped(e));
+            return watch.future;
+        }
+        watch.future.whenComplete((cluster, exception) -> deadline.cancel(false));
+        scheduleSweep(0);
+        return watch.future;
+    }
+
+    private void scheduleSweep(long delayNanos) {
+        synchronized (this) {
+            if (sweepPending) {
+                // Watches added now are not part of the running sweep; check them without delay.
+                sweepRequested |= delayNanos == 0;
+                return;
+            }
+            if (closed || watches.isEmpty()) {
+                return;
+            }
+            sweepPending = true;
+        }
+        try {
+            scheduler.schedule(this::sweep, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                sweepPending = false;
+            }
+            // No sweep would ever complete the waits.
+            RuntimeException stopped = stopped(e);
+            for (Watch watch : watches) {
+                watch.future.completeExceptionally(stopped);
+            }
+        }
+    }
+
+    private RuntimeException stopped(RejectedExecutionException e) {
+        return closed
+                ? new CancellationException("Cluster watcher closed")
+                : new IllegalStateException("The cluster watcher's scheduler is shut down", e);
+    }
+
+    private void sweep() {
+        // Only the watches taken here are checked: a cluster added later was not looked for, and
+        // its absence from the result says nothing about it.
+        List<Watch> swept = new ArrayList<>(watches);
+        Set<String> wanted = new HashSet<>();
+        for (Watch watch : swept) {
+            wanted.add(watch.clusterId);
+        }
+        CompletableFuture<Map<String, Cluster>> described = wanted.isEmpty()
+                ? CompletableFuture.completedFuture(Map.of())
+                : describe(null, wanted, new HashMap<>());
+        described.whenComplete((clusters, exception) -> {
+            if (exception != null) {
+                events.warn("Failed to describe clusters, retrying at the next sweep: {}", exception.getMessage());
+            } else {
+                sweeps.incrementAndGet();
+                for (Watch watch : swept) {
+                    if (!watch.future.isDone()) {
+                        watch.check(clusters.get(watch.clusterId));
+                    }
+                }
+            }
+            long delayNanos;
+            synchronized (this) {
+                sweepPending = false;
+                delayNanos = sweepRequested ? 0 : interval.toNanos();
+                sweepRequested = false;
+            }
+            scheduleSweep(delayNanos);
+        });
+    }
+
+    /**
+     * Pages through the clusters until every wanted one has been seen or the last page is read.
+     */
+    private CompletableFuture<Map<String, Cluster>> describe(String marker, Set<String> wanted, Map<String, Cluster> found) {
+        DescribeClustersRequest request = DescribeClustersRequest.builder()
+                .maxRecords(PAGE_SIZE)
+                .marker(marker)
+                .build();
+        return send(request).thenCompose(response -> {
+            List<Cluster> clusters = response.clusters();
+            for (Cluster cluster : clusters) {
+                if (wanted.contains(cluster.clusterIdentifier())) {
+                    found.put(cluster.clusterIdentifier(), cluster);
+                }
+            }
+            String next = response.marker();
+            return next == null || next.isEmpty() || found.size() == wanted.size()
+                    ? CompletableFuture.completedFuture(found)
+                    : describe(next, wanted, found);
+        });
+    }
+
+    private CompletableFuture<DescribeClustersResponse> send(DescribeClustersRequest request) {
+        try {
+            return client.describeClusters(request);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Stops sweeping and cancels every pending wait.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        CancellationException cancelled = new CancellationException("Cluster watcher closed");
+        for (Watch watch : watches) {
+            watch.future.completeExceptionally(cancelled);
+        }
+        if (ownsScheduler) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static final class Watch {
+        private final String clusterId;
+        private final String target;
+        private final ProgressListener listener;
+        private final long startNanos = System.nanoTime();
+        private final CompletableFuture<Cluster> future = new CompletableFuture<>();
+        private boolean seen;
+
+        private Watch(String clusterId, String target, ProgressListener listener) {
+            this.clusterId = clusterId;
+            this.target = target;
+            this.listener = listener;
+        }
+
+        /**
+         * Applies one sweep's view of the cluster, {@code null} if it was not listed.
+         */
+        private void check(Cluster cluster) {
+            String status = cluster == null ? null : cluster.clusterStatus();
+            if (listener != null) {
+                try {
+                    listener.onProgress(clusterId, status, Duration.ofNanos(System.nanoTime() - startNanos));
+                } catch (RuntimeException e) {
+                    events.warn("Progress listener of cluster {} failed: {}", clusterId, e.getMessage());
+                }
+            }
+            if (target == null) {
+                if (cluster == null) {
+                    future.complete(null);
+                }
+            } else if (cluster == null) {
+                if (seen) {
+                    future.completeExceptionally(new RuntimeException(String.format(
+                            "Cluster %s was deleted while waiting for it to become %s", clusterId, target)));
+                }
+            } else if (target.equals(status)) {
+                future.complete(cluster);
+            } else if (FAILED_STATUSES.contains(status) || (DELETING.equals(status) && !DELETING.equals(target))) {
+                future.completeExceptionally(new RuntimeException(String.format(
+                        "Cluster %s is %s while waiting for it to become %s", clusterId, status, target)));
+            }
+            seen |= cluster != null;
+        }
+
+        private String describeTarget() {
+            return target == null ? "deleted" : target;
+        }
+    }
+}
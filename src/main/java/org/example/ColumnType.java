@@ -0,0 +1,50 @@
+package org.example;
+
+import java.util.Locale;
+
+/**
+ * The in-memory representation chosen for a result column, derived from the Redshift type name
+ * reported in {@code ColumnMetadata.typeName}.
+ * <p>
+ * Types without an exact primitive counterpart, such as {@code numeric}, dates and timestamps,
+ * arrive from the Data API as strings and are kept as strings.
+ */
+public enum ColumnType {
+    LONG,
+    DOUBLE,
+    BOOLEAN,
+    BLOB,
+    STRING;
+
+    public static ColumnType fromTypeName(String typeName) {
+        if (typeName == null) {
+            return STRING;
+        }
+        switch (typeName.toLowerCase(Locale.ROOT)) {
+            case "int2":
+            case "int4":
+            case "int8":
+            case "smallint":
+            case "int":
+            case "integer":
+            case "bigint":
+                return LONG;
+            case "float4":
+            case "float8":
+            case "float":
+            case "real":
+            case "double precision":
+                return DOUBLE;
+            case "bool":
+            case "boolean":
+                return BOOLEAN;
+            case "varbyte":
+            case "varbinary":
+            case "binary varying":
+            case "bytea":
+                return BLOB;
+            default:
+                return STRING;
+        }
+    }
+}
@@ -0,0 +1,651 @@
+package org.example;
+
+import software.amazon.awssdk.services.redshiftdata.model.ColumnMetadata;
+import software.amazon.awssdk.services.redshiftdata.model.Field;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A query result stored column by column.
+ * <p>
+ * Every column keeps its values in one primitive array chosen from the column's
+ * {@link ColumnType}: {@code long[]}, {@code double[]}, a bit set for booleans, read-only
+ * {@link ByteBuffer} views for blobs, or dictionary codes for strings, so repeated values are
+ * stored once. Fields are decoded by the column's {@link FieldDecoder}. Nulls are tracked in a separate bitmap.
+ * Column names are held once in the schema instead of once per row.
+ * <p>
+ * Instances are immutable once built; use a {@link Builder} to add rows one at a time, for
+ * example while consuming a {@link StatementResultStream}.
+ */
+public class ColumnarQueryResult {
+
+    private final String[] names;
+    private final ColumnType[] types;
+    private final Column[] columns;
+    private final int rowCount;
+
+    public ColumnarQueryResult(List<ColumnMetadata> columnMetadata, List<List<Field>> rows) {
+        this(build(columnMetadata, rows));
+    }
+
+    private ColumnarQueryResult(Builder builder) {
+        this.names = builder.names;
+        this.types = builder.types;
+        this.columns = builder.columns;
+        this.rowCount = builder.rowCount;
+        for (Column column : columns) {
+            column.trim(rowCount);
+        }
+    }
+
+    /**
+     * Copies a {@link ResultPage} into column arrays.
+     */
+    static ColumnarQueryResult fromPage(ResultPage page) {
+        int rows = page.rowCount();
+        Builder builder = new Builder(page.columnMetadata(), 0);
+        for (int i = 0; i < builder.columns.length; i++) {
+            builder.columns[i].load(page, i, rows);
+        }
+        builder.rowCount = rows;
+        builder.built = true;
+        return new ColumnarQueryResult(builder);
+    }
+
+    private static Builder build(List<ColumnMetadata> columnMetadata, List<List<Field>> rows) {
+        Builder builder = new Builder(columnMetadata, rows.size());
+        for (List<Field> row : rows) {
+            builder.add(row);
+        }
+        return builder;
+    }
+
+    public int rowCount() {
+        return rowCount;
+    }
+
+    public int columnCount() {
+        return names.length;
+    }
+
+    public String columnName(int column) {
+        return names[column];
+    }
+
+    public ColumnType columnType(int column) {
+        return types[column];
+    }
+
+    /**
+     * @return the index of the named column, or -1 if there is no such column
+     */
+    public int columnIndex(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean isNull(int row, int column) {
+        return columns[column].isNull(row);
+    }
+
+    public long getLong(int row, int column) {
+        return columns[column].getLong(row);
+    }
+
+    public double getDouble(int row, int column) {
+        return columns[column].getDouble(row);
+    }
+
+    public boolean getBoolean(int row, int column) {
+        return columns[column].getBoolean(row);
+    }
+
+    /**
+     * @return a read-only view of a {@link ColumnType#BLOB} value, or {@code null} if it is null
+     */
+    public ByteBuffer getBlob(int row, int column) {
+        return columns[column].isNull(row) ? null : columns[column].getBlob(row).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return the value rendered as a string, or {@code null} if it is null
+     */
+    public String getString(int row, int column) {
+        return columns[column].isNull(row) ? null : columns[column].getString(row);
+    }
+
+    /**
+     * @return a copy of a {@link ColumnType#LONG} column; null entries are 0
+     */
+    public long[] longColumn(int column) {
+        return Arrays.copyOf(((LongColumn) columns[column]).values, rowCount);
+    }
+
+    /**
+     * @return a copy of a {@link ColumnType#DOUBLE} column; null entries are 0
+     */
+    public double[] doubleColumn(int column) {
+        return Arrays.copyOf(((DoubleColumn) columns[column]).values, rowCount);
+    }
+
+    // The raw column arrays, read by ResultPage when encoding; null entries are 0.
+
+    long[] nullWords(int column) {
+        return columns[column].nulls;
+    }
+
+    long[] longValues(int column) {
+        return ((LongColumn) columns[column]).values;
+    }
+
+    double[] doubleValues(int column) {
+        return ((DoubleColumn) columns[column]).values;
+    }
+
+    long[] booleanWords(int column) {
+        return ((BooleanColumn) columns[column]).bits;
+    }
+
+    ByteBuffer[] blobValues(int column) {
+        return ((BlobColumn) columns[column]).values;
+    }
+
+    int[] stringCodes(int column) {
+        return ((StringColumn) columns[column]).codes;
+    }
+
+    List<String> dictionary(int column) {
+        return ((StringColumn) columns[column]).dictionary;
+    }
+
+    /**
+     * @return a cursor positioned before the first row
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * @return an estimate of the heap held by the column data, in bytes
+     */
+    public long estimatedBytes() {
+        long bytes = 0;
+        for (Column column : columns) {
+            bytes += column.estimatedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Walks the rows in order without allocating per row.
+     */
+    public final class Cursor {
+        private int row = -1;
+
+        public boolean next() {
+            return ++row < rowCount;
+        }
+
+        public void reset() {
+            row = -1;
+        }
+
+        public int row() {
+            return row;
+        }
+
+        public boolean isNull(int column) {
+            return columns[column].isNull(row);
+        }
+
+        public long getLong(int column) {
+            return columns[column].getLong(row);
+        }
+
+        public double getDouble(int column) {
+            return columns[column].getDouble(row);
+        }
+
+        public boolean getBoolean(int column) {
+            return columns[column].getBoolean(row);
+        }
+
+        public ByteBuffer getBlob(int column) {
+            return ColumnarQueryResult.this.getBlob(row, column);
+        }
+
+        public String getString(int column) {
+            return ColumnarQueryResult.this.getString(row, column);
+        }
+    }
+
+    /**
+     * Accumulates rows into growable column arrays.
+     */
+    public static final class Builder {
+        private final String[] names;
+        private final ColumnType[] types;
+        private final Column[] columns;
+        private int rowCount;
+        private boolean built;
+
+        public Builder(List<ColumnMetadata> columnMetadata) {
+            this(columnMetadata, 1_024);
+        }
+
+        public Builder(List<ColumnMetadata> columnMetadata, int expectedRows) {
+            int count = columnMetadata.size();
+            this.names = new String[count];
+            this.types = new ColumnType[count];
+            this.columns = new Column[count];
+            int capacity = Math.max(16, expectedRows);
+            for (int i = 0; i < count; i++) {
+                ColumnMetadata metadata = columnMetadata.get(i);
+                FieldDecoder decoder = FieldDecoder.forColumn(metadata);
+                names[i] = metadata.name();
+                types[i] = decoder.type();
+                columns[i] = Column.of(decoder, capacity);
+            }
+        }
+
+        public Builder add(List<Field> row) {
+            if (built) {
+                throw new IllegalStateException("The result was already built");
+            }
+            for (int i = 0; i < columns.length; i++) {
+                Field field = i < row.size() ? row.get(i) : null;
+                if (FieldDecoder.isNull(field)) {
+                    columns[i].setNull(rowCount);
+                } else {
+                    columns[i].set(rowCount, field);
+                }
+            }
+            rowCount++;
+            return this;
+        }
+
+        public ColumnarQueryResult build() {
+            built = true;
+            return new ColumnarQueryResult(this);
+        }
+    }
+
+    private abstract static class Column {
+        final FieldDecoder decoder;
+        long[] nulls;
+
+        Column(FieldDecoder decoder, int capacity) {
+            this.decoder = decoder;
+            this.nulls = new long[(capacity + 63) >>> 6];
+        }
+
+        static Column of(FieldDecoder decoder, int capacity) {
+            switch (decoder.type()) {
+                case LONG:
+                    return new LongColumn(decoder, capacity);
+                case DOUBLE:
+                    return new DoubleColumn(decoder, capacity);
+                case BOOLEAN:
+                    return new BooleanColumn(decoder, capacity);
+                case BLOB:
+                    return new BlobColumn(decoder, capacity);
+                default:
+                    return new StringColumn(decoder, capacity);
+            }
+        }
+
+        final boolean isNull(int row) {
+            return (nulls[row >>> 6] & (1L << row)) != 0;
+        }
+
+        final void setNull(int row) {
+            ensureCapacity(row);
+            nulls[row >>> 6] |= 1L << row;
+        }
+
+        void ensureCapacity(int row) {
+            if ((row >>> 6) >= nulls.length) {
+                nulls = Arrays.copyOf(nulls, Math.max(nulls.length * 2, (row >>> 6) + 1));
+            }
+        }
+
+        void trim(int rows) {
+            nulls = Arrays.copyOf(nulls, (rows + 63) >>> 6);
+        }
+
+        long estimatedBytes() {
+            return 16L + nulls.length * 8L;
+        }
+
+        /**
+         * Replaces the column's data with the {@code rows} values of a page column.
+         */
+        void load(ResultPage page, int column, int rows) {
+            nulls = new long[(rows + 63) >>> 6];
+            LongBuffer words = page.nullWords(column);
+            if (words != null) {
+                words.get(nulls);
+            }
+        }
+
+        abstract void set(int row, Field field);
+
+        long getLong(int row) {
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " has no long values");
+        }
+
+        double getDouble(int row) {
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " has no double values");
+        }
+
+        boolean getBoolean(int row) {
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " has no boolean values");
+        }
+
+        ByteBuffer getBlob(int row) {
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " has no blob values");
+        }
+
+        abstract String getString(int row);
+    }
+
+    private static final class LongColumn extends Column {
+        long[] values;
+
+        LongColumn(FieldDecoder decoder, int capacity) {
+            super(decoder, capacity);
+            values = new long[capacity];
+        }
+
+        @Override
+        void ensureCapacity(int row) {
+            super.ensureCapacity(row);
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, row + 1));
+            }
+        }
+
+        @Override
+        void trim(int rows) {
+            super.trim(rows);
+            values = Arrays.copyOf(values, rows);
+        }
+
+        @Override
+        void load(ResultPage page, int column, int rows) {
+            super.load(page, column, rows);
+            values = new long[rows];
+            page.longColumn(column).get(values);
+        }
+
+        @Override
+        long estimatedBytes() {
+            return super.estimatedBytes() + values.length * 8L;
+        }
+
+        @Override
+        void set(int row, Field field) {
+            ensureCapacity(row);
+            values[row] = decoder.decodeLong(field);
+        }
+
+        @Override
+        long getLong(int row) {
+            return values[row];
+        }
+
+        @Override
+        double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        String getString(int row) {
+            return Long.toString(values[row]);
+        }
+    }
+
+    private static final class DoubleColumn extends Column {
+        double[] values;
+
+        DoubleColumn(FieldDecoder decoder, int capacity) {
+            super(decoder, capacity);
+            values = new double[capacity];
+        }
+
+        @Override
+        void ensureCapacity(int row) {
+            super.ensureCapacity(row);
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, row + 1));
+            }
+        }
+
+        @Override
+        void trim(int rows) {
+            super.trim(rows);
+            values = Arrays.copyOf(values, rows);
+        }
+
+        @Override
+        void load(ResultPage page, int column, int rows) {
+            super.load(page, column, rows);
+            values = new double[rows];
+            page.doubleColumn(column).get(values);
+        }
+
+        @Override
+        long estimatedBytes() {
+            return super.estimatedBytes() + values.length * 8L;
+        }
+
+        @Override
+        void set(int row, Field field) {
+            ensureCapacity(row);
+            values[row] = decoder.decodeDouble(field);
+        }
+
+        @Override
+        double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        String getString(int row) {
+            return Double.toString(values[row]);
+        }
+    }
+
+    private static final class BooleanColumn extends Column {
+        long[] bits;
+
+        BooleanColumn(FieldDecoder decoder, int capacity) {
+            super(decoder, capacity);
+            bits = new long[(capacity + 63) >>> 6];
+        }
+
+        @Override
+        void ensureCapacity(int row) {
+            super.ensureCapacity(row);
+            if ((row >>> 6) >= bits.length) {
+                bits = Arrays.copyOf(bits, Math.max(bits.length * 2, (row >>> 6) + 1));
+            }
+        }
+
+        @Override
+        void trim(int rows) {
+            super.trim(rows);
+            bits = Arrays.copyOf(bits, (rows + 63) >>> 6);
+        }
+
+        @Override
+        void load(ResultPage page, int column, int rows) {
+            super.load(page, column, rows);
+            bits = new long[(rows + 63) >>> 6];
+            page.booleanWords(column).get(bits);
+        }
+
+        @Override
+        long estimatedBytes() {
+            return super.estimatedBytes() + bits.length * 8L;
+        }
+
+        @Override
+        void set(int row, Field field) {
+            ensureCapacity(row);
+            if (decoder.decodeBoolean(field)) {
+                bits[row >>> 6] |= 1L << row;
+            }
+        }
+
+        @Override
+        boolean getBoolean(int row) {
+            return (bits[row >>> 6] & (1L << row)) != 0;
+        }
+
+        @Override
+        String getString(int row) {
+            return Boolean.toString(getBoolean(row));
+        }
+    }
+
+    private static final class BlobColumn extends Column {
+        ByteBuffer[] values;
+
+        BlobColumn(FieldDecoder decoder, int capacity) {
+            super(decoder, capacity);
+            values = new ByteBuffer[capacity];
+        }
+
+        @Override
+        void ensureCapacity(int row) {
+            super.ensureCapacity(row);
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, row + 1));
+            }
+        }
+
+        @Override
+        void trim(int rows) {
+            super.trim(rows);
+            values = Arrays.copyOf(values, rows);
+        }
+
+        @Override
+        void load(ResultPage page, int column, int rows) {
+            super.load(page, column, rows);
+            values = new ByteBuffer[rows];
+            for (int row = 0; row < rows; row++) {
+                values[row] = page.getBlob(row, column);
+            }
+        }
+
+        @Override
+        long estimatedBytes() {
+            long bytes = super.estimatedBytes() + values.length * 8L;
+            for (ByteBuffer value : values) {
+                bytes += value == null ? 0 : 48L + value.capacity();
+            }
+            return bytes;
+        }
+
+        @Override
+        void set(int row, Field field) {
+            ensureCapacity(row);
+            values[row] = decoder.decodeBlob(field);
+        }
+
+        @Override
+        ByteBuffer getBlob(int row) {
+            return values[row];
+        }
+
+        @Override
+        String getString(int row) {
+            ByteBuffer value = values[row].duplicate();
+            byte[] bytes = new byte[value.remaining()];
+            value.get(bytes);
+            return Base64.getEncoder().encodeToString(bytes);
+        }
+    }
+
+    private static final class StringColumn extends Column {
+        int[] codes;
+        List<String> dictionary = new ArrayList<>();
+        Map<String, Integer> lookup = new HashMap<>();
+
+        StringColumn(FieldDecoder decoder, int capacity) {
+            super(decoder, capacity);
+            codes = new int[capacity];
+        }
+
+        @Override
+        void ensureCapacity(int row) {
+            super.ensureCapacity(row);
+            if (row >= codes.length) {
+                codes = Arrays.copyOf(codes, Math.max(codes.length * 2, row + 1));
+            }
+        }
+
+        @Override
+        void trim(int rows) {
+            super.trim(rows);
+            codes = Arrays.copyOf(codes, rows);
+            dictionary = new ArrayList<>(dictionary);
+            // The lookup map is only needed while building.
+            lookup = null;
+        }
+
+        @Override
+        void load(ResultPage page, int column, int rows) {
+            super.load(page, column, rows);
+            int size = page.dictionarySize(column);
+            dictionary = new ArrayList<>(size);
+            for (int code = 0; code < size; code++) {
+                dictionary.add(page.dictionaryValue(column, code));
+            }
+            codes = new int[rows];
+            for (int row = 0; row < rows; row++) {
+                codes[row] = page.code(row, column);
+            }
+        }
+
+        @Override
+        long estimatedBytes() {
+            long bytes = super.estimatedBytes() + codes.length * 4L + dictionary.size() * 8L;
+            for (String value : dictionary) {
+                bytes += 40L + value.length();
+            }
+            return bytes;
+        }
+
+        @Override
+        void set(int row, Field field) {
+            ensureCapacity(row);
+            String value = decoder.decodeString(field);
+            Integer code = lookup.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(value);
+                lookup.put(value, code);
+            }
+            codes[row] = code;
+        }
+
+        @Override
+        String getString(int row) {
+            return dictionary.get(codes[row]);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import software.amazon.awssdk.services.redshiftdata.model.ColumnMetadata;
+import software.amazon.awssdk.services.redshiftdata.model.Field;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Compares the map-of-strings {@link QueryResult} with {@link ColumnarQueryResult} on a synthetic
+ * movies result: time to build from Data API fields, time to scan every row, and retained heap.
+ * <p>
+ * Run with {@code -prof gc} to see allocation rates; {@code retainedBytes} is the heap still
+ * held by one built result after a full GC.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class ColumnarQueryResultBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    private List<ColumnMetadata> columns;
+    private List<List<Field>> records;
+    private QueryResult mapResult;
+    private ColumnarQueryResult columnarResult;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long retainedBytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        columns = List.of(
+                ColumnMetadata.builder().name("id").typeName("int8").build(),
+                ColumnMetadata.builder().name("title").typeName("varchar").build(),
+                ColumnMetadata.builder().name("year").typeName("int4").build(),
+                ColumnMetadata.builder().name("rating").typeName("float8").build(),
+                ColumnMetadata.builder().name("released").typeName("bool").build());
+        Random random = new Random(11);
+        records = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            records.add(List.of(
+                    Field.fromLongValue((long) i),
+                    Field.fromStringValue("Movie " + random.nextInt(5_000)),
+                    Field.fromLongValue((long) (1920 + random.nextInt(100))),
+                    Field.fromDoubleValue(random.nextInt(100) / 10.0),
+                    Field.fromBooleanValue(random.nextBoolean())));
+        }
+        mapResult = new QueryResult(columns, records);
+        columnarResult = new ColumnarQueryResult(columns, records);
+    }
+
+    @Benchmark
+    public QueryResult buildMapOfStrings() {
+        return new QueryResult(columns, records);
+    }
+
+    @Benchmark
+    public ColumnarQueryResult buildColumnar() {
+        return new ColumnarQueryResult(columns, records);
+    }
+
+    @Benchmark
+    public void scanMapOfStrings(Blackhole blackhole) {
+        long yearSum = 0;
+        for (Map<String, String> row : mapResult.rows()) {
+            yearSum += Long.parseLong(row.get("year"));
+            blackhole.consume(row.get("title"));
+        }
+        blackhole.consume(yearSum);
+    }
+
+    @Benchmark
+    public void scanColumnar(Blackhole blackhole) {
+        long yearSum = 0;
+        ColumnarQueryResult.Cursor cursor = columnarResult.cursor();
+        while (cursor.next()) {
+            yearSum += cursor.getLong(2);
+            blackhole.consume(cursor.getString(1));
+        }
+        blackhole.consume(yearSum);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public Object retainedMapOfStrings(Footprint footprint) {
+        return retained(footprint, () -> new QueryResult(columns, records));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public Object retainedColumnar(Footprint footprint) {
+        return retained(footprint, () -> new ColumnarQueryResult(columns, records));
+    }
+
+    private static Object retained(Footprint footprint, Supplier<Object> factory) {
+        long before = usedHeapAfterGc();
+        Object result = factory.get();
+        footprint.retainedBytes = usedHeapAfterGc() - before;
+        return result;
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,145 @@
+package org.example;
+
+import software.amazon.awssdk.services.redshiftdata.model.ColumnMetadata;
+import software.amazon.awssdk.services.redshiftdata.model.Field;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes results as UTF-8 CSV in the style of RFC 4180, with a header row of column names and
+ * {@code \n} line endings.
+ * <p>
+ * Values are rendered like {@link FieldDecoder#appendTo(Field, StringBuilder)} renders them;
+ * nulls are empty, blobs are Base64, and text that contains the delimiter, a quote or a line
+ * break is quoted with its quotes doubled. Rows are gathered as text in batches of about
+ * {@value #BATCH_CHARS} characters and encoded straight into the output buffer.
+ */
+public class CsvExportFormat implements ResultExportFormat {
+
+    private static final int BATCH_CHARS = 8_192;
+
+    private final char delimiter;
+
+    public CsvExportFormat() {
+        this(',');
+    }
+
+    /**
+     * @param delimiter the field separator, e.g. a tab for TSV
+     */
+    public CsvExportFormat(char delimiter) {
+        if (delimiter == '"' || delimiter == '\n' || delimiter == '\r') {
+            throw new IllegalArgumentException("Invalid CSV delimiter: " + delimiter);
+        }
+        this.delimiter = delimiter;
+    }
+
+    @Override
+    public String extension() {
+        return delimiter == '\t' ? "tsv" : "csv";
+    }
+
+    @Override
+    public RowEncoder open(List<ColumnMetadata> columnMetadata, ExportOutput output) throws IOException {
+        Encoder encoder = new Encoder(FieldDecoder.forColumns(columnMetadata), output);
+        for (int i = 0; i < columnMetadata.size(); i++) {
+            if (i > 0) {
+                encoder.text.append(delimiter);
+            }
+            encoder.appendText(columnMetadata.get(i).name());
+        }
+        encoder.text.append('\n');
+        return encoder;
+    }
+
+    @Override
+    public String toString() {
+        return "CSV (delimiter '" + delimiter + "')";
+    }
+
+    private final class Encoder implements RowEncoder {
+        private final FieldDecoder[] decoders;
+        private final ExportOutput output;
+        private final StringBuilder text = new StringBuilder(BATCH_CHARS + 1_024);
+        private char[] chars = new char[BATCH_CHARS + 1_024];
+        private final CharsetEncoder utf8 = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        private Encoder(FieldDecoder[] decoders, ExportOutput output) {
+            this.decoders = decoders;
+            this.output = output;
+        }
+
+        @Override
+        public void add(List<Field> row) throws IOException {
+            for (int i = 0; i < decoders.length; i++) {
+                if (i > 0) {
+                    text.append(delimiter);
+                }
+                Field field = i < row.size() ? row.get(i) : null;
+                if (FieldDecoder.isNull(field)) {
+                    continue;
+                }
+                if (decoders[i].type() == ColumnType.STRING) {
+                    appendText(decoders[i].decodeString(field));
+                } else {
+                    decoders[i].appendTo(field, text);
+                }
+            }
+            text.append('\n');
+            if (text.length() >= BATCH_CHARS) {
+                drain();
+            }
+        }
+
+        private void appendText(String value) {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == delimiter || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                text.append(value);
+                return;
+            }
+            text.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    text.append('"');
+                }
+                text.append(c);
+            }
+            text.append('"');
+        }
+
+        /**
+         * Encodes the gathered text. It always ends at a row boundary, so surrogate pairs are
+         * never split between batches. The text is copied to an array first, which the encoder
+         * converts much faster than a {@link CharSequence}.
+         */
+        private void drain() throws IOException {
+            if (chars.length < text.length()) {
+                chars = new char[text.length()];
+            }
+            text.getChars(0, text.length(), chars, 0);
+            CharBuffer batch = CharBuffer.wrap(chars, 0, text.length());
+            // A buffer without room for 4 bytes may not fit the next character.
+            while (utf8.encode(batch, output.buffer(4), false).isOverflow()) {
+                // Keep going in the next buffer.
+            }
+            text.setLength(0);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            drain();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import software.amazon.awssdk.services.redshiftdata.RedshiftDataAsyncClient;
+import software.amazon.awssdk.services.redshiftdata.model.DescribeStatementResponse;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the execute, describe and fetch phases of a statement against the local
+ * {@link RedshiftDataApiSimulator}, so the numbers are reproducible without a cluster.
+ * <p>
+ * Every phase has its own state and parameters, and JMH only sweeps the parameters of the states
+ * a benchmark uses:
+ * <ul>
+ * <li>{@link #execute} submits {@code concurrency} statements at once and waits for their IDs;</li>
+ * <li>{@link #describe} tracks {@code statements} already-submitted statements to FINISHED with
+ * the given polling {@code strategy}; {@code describeCalls} counts the polls it took;</li>
+ * <li>{@link #fetch} streams a {@code resultRows} result into a {@link ColumnarQueryResult}.</li>
+ * </ul>
+ * Each is reported as throughput and as a latency distribution. {@link #main} runs the suite with
+ * the GC profiler and writes {@code jmh-result.json} for regression tracking; from the command
+ * line, add {@code -prof gc} to get the same allocation figures.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataApiBenchmark {
+
+    private static final String CLUSTER = "simulated-cluster";
+    private static final String DATABASE = "dev";
+    private static final String DB_USER = "awsuser";
+
+    /**
+     * A simulator and a registry whose clients talk to it.
+     */
+    abstract static class SimulatedApi {
+        RedshiftDataApiSimulator simulator;
+        RedshiftClientRegistry registry;
+        RedshiftDataAsyncClient client;
+        AsyncStatementExecutor executor;
+
+        abstract RedshiftDataApiSimulator.Builder configure(RedshiftDataApiSimulator.Builder builder);
+
+        void start() {
+            simulator = configure(RedshiftDataApiSimulator.builder()
+                    .latency(LatencyDistribution.uniform(1, 3)))
+                    .start();
+            registry = new RedshiftClientRegistry(200, 0);
+            client = registry.dataAsyncClient(simulator.clientKey());
+            executor = new AsyncStatementExecutor(client, CLUSTER, DATABASE, DB_USER);
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            registry.close();
+            simulator.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ExecuteState extends SimulatedApi {
+        @Param({"1", "64", "1024"})
+        public int concurrency;
+
+        @Override
+        RedshiftDataApiSimulator.Builder configure(RedshiftDataApiSimulator.Builder builder) {
+            return builder;
+        }
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            start();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class DescribeState extends SimulatedApi {
+        @Param({"64"})
+        public int statements;
+
+        @Param({"fixed", "exponential", "adaptive"})
+        public String strategy;
+
+        StatementCompletionTracker tracker;
+        String[] ids;
+        String[] fingerprints;
+
+        @Override
+        RedshiftDataApiSimulator.Builder configure(RedshiftDataApiSimulator.Builder builder) {
+            return builder.statementTimes(LatencyDistribution.fixed(5), LatencyDistribution.logNormal(100, 0.5));
+        }
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            start();
+            PollingStrategy pollingStrategy;
+            switch (strategy) {
+                case "fixed":
+                    pollingStrategy = new FixedPollingStrategy(100);
+                    break;
+                case "exponential":
+                    pollingStrategy = new ExponentialPollingStrategy(20, 1.5, 1_000);
+                    break;
+                case "adaptive":
+                    pollingStrategy = new AdaptivePollingStrategy();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown strategy: " + strategy);
+            }
+            tracker = new StatementCompletionTracker(client, pollingStrategy);
+        }
+
+        @Setup(Level.Invocation)
+        public void submit() {
+            CompletableFuture<?>[] submitted = new CompletableFuture<?>[statements];
+            fingerprints = new String[statements];
+            for (int i = 0; i < statements; i++) {
+                String sql = "SELECT * FROM movies WHERE year = " + (1920 + i % 100);
+                submitted[i] = executor.submit(sql);
+                fingerprints[i] = SqlFingerprint.of(sql);
+            }
+            CompletableFuture.allOf(submitted).join();
+            ids = new String[statements];
+            for (int i = 0; i < statements; i++) {
+                ids[i] = (String) submitted[i].join();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void closeTracker() {
+            tracker.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class FetchState extends SimulatedApi {
+        @Param({"1000", "100000"})
+        public int resultRows;
+
+        String statementId;
+
+        @Override
+        RedshiftDataApiSimulator.Builder configure(RedshiftDataApiSimulator.Builder builder) {
+            return builder.resultSet(resultRows, 1_000)
+                    .statementTimes(LatencyDistribution.fixed(0), LatencyDistribution.fixed(0))
+                    .retention(Duration.ofHours(1), true);
+        }
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            start();
+            // The simulator serves a FINISHED result as often as it is fetched.
+            statementId = executor.submit("SELECT * FROM movies").join();
+            registry.completionTracker(simulator.clientKey()).track(statementId, SqlFingerprint.of("SELECT * FROM movies")).join();
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class DescribeCounters {
+        public long describeCalls;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            describeCalls = 0;
+        }
+    }
+
+    @Benchmark
+    public void execute(ExecuteState state, Blackhole blackhole) {
+        CompletableFuture<?>[] ids = new CompletableFuture<?>[state.concurrency];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = state.executor.submit("SELECT 1");
+        }
+        CompletableFuture.allOf(ids).join();
+        blackhole.consume(ids);
+    }
+
+    @Benchmark
+    public void describe(DescribeState state, DescribeCounters counters, Blackhole blackhole) {
+        long before = state.simulator.requestCount(RedshiftDataApiSimulator.Operation.DESCRIBE_STATEMENT);
+        CompletableFuture<?>[] finished = new CompletableFuture<?>[state.ids.length];
+        for (int i = 0; i < finished.length; i++) {
+            finished[i] = state.tracker.track(state.ids[i], state.fingerprints[i]);
+        }
+        CompletableFuture.allOf(finished).join();
+        for (CompletableFuture<?> response : finished) {
+            blackhole.consume(((DescribeStatementResponse) response.join()).status());
+        }
+        counters.describeCalls += state.simulator.requestCount(RedshiftDataApiSimulator.Operation.DESCRIBE_STATEMENT) - before;
+    }
+
+    @Benchmark
+    public ColumnarQueryResult fetch(FetchState state) {
+        StatementResultStream stream = new StatementResultStream(state.client, state.statementId, 2);
+        ColumnarQueryResult.Builder[] builder = new ColumnarQueryResult.Builder[1];
+        stream.forEach(row -> {
+            if (builder[0] == null) {
+                builder[0] = new ColumnarQueryResult.Builder(stream.columnMetadata().join(), state.resultRows);
+            }
+            builder[0].add(row);
+        }).join();
+        return builder[0].build();
+    }
+
+    /**
+     * Runs the suite with the GC profiler and writes the results as JSON.
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(DataApiBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(args.length > 0 ? args[0] : "jmh-result.json")
+                .build();
+        new Runner(options).run();
+    }
+}
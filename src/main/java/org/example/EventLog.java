@@ -0,0 +1,480 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A level-gated, asynchronous event log for hot paths.
+ * <p>
+ * Callers pass a message template with {@code {}} placeholders and up to three arguments. When
+ * the level is disabled the call is a single volatile read and returns. When it is enabled the
+ * template, the arguments and a timestamp are copied into a pre-allocated slot of a bounded
+ * ring buffer and a background thread formats and writes them later, so the calling thread never
+ * formats a string and never waits for I/O. If the ring is full the event is dropped and counted
+ * instead of blocking the caller. Arguments are formatted after the call returns, so pass
+ * immutable values.
+ * <p>
+ * For per-row events, a {@link Sampler} lets only every n-th call through. Each event carries its
+ * level, time, thread, source and template separately, so an {@link Output} can write them as
+ * structured records; the default output hands them to SLF4J.
+ */
+public final class EventLog implements AutoCloseable {
+
+    public enum Level {
+        TRACE, DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    /**
+     * Receives every event on the log's background thread.
+     */
+    @FunctionalInterface
+    public interface Output {
+        void write(Event event);
+
+        /**
+         * @return an output that logs through the SLF4J logger named after each event's source
+         */
+        static Output slf4j() {
+            Map<String, Logger> loggers = new ConcurrentHashMap<>();
+            return event -> {
+                Logger logger = loggers.computeIfAbsent(event.source(), LoggerFactory::getLogger);
+                switch (event.level()) {
+                    case TRACE:
+                        logger.trace(event.template(), event.arguments());
+                        break;
+                    case DEBUG:
+                        logger.debug(event.template(), event.arguments());
+                        break;
+                    case INFO:
+                        logger.info(event.template(), event.arguments());
+                        break;
+                    case WARN:
+                        logger.warn(event.template(), event.arguments());
+                        break;
+                    default:
+                        logger.error(event.template(), event.arguments());
+                }
+            };
+        }
+
+        /**
+         * @return an output that writes one line per event to standard output, flushing once the
+         * ring is drained
+         */
+        static Output console() {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+            return new Output() {
+                @Override
+                public void write(Event event) {
+                    try {
+                        out.write(event.toString());
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new RuntimeException("Error writing event: " + e.getMessage(), e);
+                    }
+                }
+
+                @Override
+                public void flush() {
+                    try {
+                        out.flush();
+                    } catch (IOException e) {
+                        throw new RuntimeException("Error flushing events: " + e.getMessage(), e);
+                    }
+                }
+            };
+        }
+
+        /**
+         * Called whenever the background thread has drained the ring.
+         */
+        default void flush() {
+        }
+    }
+
+    private static final class Holder {
+        private static final EventLog INSTANCE = create();
+
+        private static EventLog create() {
+            String property = System.getProperty("redshift.events.level", Level.INFO.name());
+            Level level;
+            try {
+                level = Level.valueOf(property.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                level = null;
+            }
+            EventLog log = new EventLog(8_192, level == null ? Level.INFO : level, Output.slf4j());
+            if (level == null) {
+                log.source(EventLog.class).warn("Unknown redshift.events.level {}, logging at {}", property, Level.INFO);
+            }
+            return log;
+        }
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    private final Output output;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Thread writer;
+    private volatile long tail;
+    private volatile int threshold;
+    private volatile boolean closed;
+    private volatile boolean idle;
+
+    /**
+     * @param capacity the number of events the ring holds, rounded up to a power of two
+     * @param level    the lowest level that is recorded
+     * @param output   receives the events on the background thread
+     */
+    public EventLog(int capacity, Level level, Output output) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = size - 1;
+        this.output = output;
+        this.threshold = level.ordinal();
+        this.writer = new Thread(this::drainLoop, "redshift-event-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * @return the process-wide log, writing to SLF4J at the level of the
+     * {@code redshift.events.level} system property, INFO by default
+     */
+    public static EventLog shared() {
+        return Holder.INSTANCE;
+    }
+
+    public void level(Level level) {
+        this.threshold = level.ordinal();
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.ordinal() >= threshold && level != Level.OFF;
+    }
+
+    /**
+     * @return a handle that logs with the given source name
+     */
+    public Source source(Class<?> type) {
+        return new Source(this, type.getName());
+    }
+
+    /**
+     * @return the number of events dropped because the ring was full
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return the number of events the output failed to write
+     */
+    public long failed() {
+        return failed.get();
+    }
+
+    void log(Level level, String source, String template, Object a, Object b, Object c, int arguments) {
+        if (!isEnabled(level) || closed) {
+            return;
+        }
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail >= slots.length) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+
+        Slot slot = slots[(int) sequence & mask];
+        slot.level = level;
+        slot.timeMillis = System.currentTimeMillis();
+        slot.thread = Thread.currentThread().getName();
+        slot.source = source;
+        slot.template = template;
+        slot.a = a;
+        slot.b = b;
+        slot.c = c;
+        slot.arguments = arguments;
+        slot.published = sequence;
+        if (idle) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void drainLoop() {
+        while (true) {
+            boolean drained = drain();
+            if (drained) {
+                try {
+                    output.flush();
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                }
+                if (closed) {
+                    return;
+                }
+                // Producers unpark the writer after publishing while it is idle; checking the ring
+                // again after raising the flag closes the race with one that published just before.
+                idle = true;
+                if (isEmpty() && !closed) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+            }
+        }
+    }
+
+    private boolean isEmpty() {
+        long sequence = tail;
+        return slots[(int) sequence & mask].published != sequence;
+    }
+
+    /**
+     * Writes pending events until the ring is empty or a batch has been written.
+     *
+     * @return {@code true} if the ring is empty
+     */
+    private boolean drain() {
+        for (int batch = 0; batch < slots.length; batch++) {
+            long sequence = tail;
+            Slot slot = slots[(int) sequence & mask];
+            if (slot.published != sequence) {
+                return true;
+            }
+            Object[] arguments = Arrays.copyOf(new Object[]{slot.a, slot.b, slot.c}, slot.arguments);
+            Event event = new Event(slot.level, slot.timeMillis, slot.thread, slot.source, slot.template, arguments);
+            slot.thread = null;
+            slot.source = null;
+            slot.template = null;
+            slot.a = null;
+            slot.b = null;
+            slot.c = null;
+            tail = sequence + 1;
+            try {
+                output.write(event);
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Waits until every event recorded before this call has been written.
+     */
+    public void flush() {
+        long target = head.get();
+        while (tail < target && writer.isAlive()) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * Writes the pending events and stops the background thread.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Slot {
+        private volatile long published = -1;
+        private Level level;
+        private long timeMillis;
+        private String thread;
+        private String source;
+        private String template;
+        private Object a;
+        private Object b;
+        private Object c;
+        private int arguments;
+    }
+
+    /**
+     * Logs events of one source. Every method returns immediately when its level is disabled.
+     */
+    public static final class Source {
+        private final EventLog log;
+        private final String name;
+
+        private Source(EventLog log, String name) {
+            this.log = log;
+            this.name = name;
+        }
+
+        public boolean isEnabled(Level level) {
+            return log.isEnabled(level);
+        }
+
+        public void log(Level level, String template) {
+            log.log(level, name, template, null, null, null, 0);
+        }
+
+        public void log(Level level, String template, Object a) {
+            log.log(level, name, template, a, null, null, 1);
+        }
+
+        public void log(Level level, String template, Object a, Object b) {
+            log.log(level, name, template, a, b, null, 2);
+        }
+
+        public void log(Level level, String template, Object a, Object b, Object c) {
+            log.log(level, name, template, a, b, c, 3);
+        }
+
+        /**
+         * Logs only the calls the sampler lets through; the sampler is not consulted when the
+         * level is disabled.
+         */
+        public void sampled(Sampler sampler, Level level, String template, Object a) {
+            if (log.isEnabled(level) && sampler.sample()) {
+                log.log(level, name, template, a, sampler.seen(), null, 2);
+            }
+        }
+
+        public void debug(String template, Object a) {
+            log(Level.DEBUG, template, a);
+        }
+
+        public void debug(String template, Object a, Object b) {
+            log(Level.DEBUG, template, a, b);
+        }
+
+        public void info(String template) {
+            log(Level.INFO, template);
+        }
+
+        public void info(String template, Object a) {
+            log(Level.INFO, template, a);
+        }
+
+        public void info(String template, Object a, Object b) {
+            log(Level.INFO, template, a, b);
+        }
+
+        public void warn(String template, Object a) {
+            log(Level.WARN, template, a);
+        }
+
+        public void warn(String template, Object a, Object b) {
+            log(Level.WARN, template, a, b);
+        }
+    }
+
+    /**
+     * Lets every n-th call through. Sampled events get the number of calls seen so far as an
+     * extra argument, for a template such as {@code "Row {} ({} rows so far)"}.
+     */
+    public static final class Sampler {
+        private final long every;
+        private final AtomicLong calls = new AtomicLong();
+
+        public Sampler(long every) {
+            if (every < 1) {
+                throw new IllegalArgumentException("Sampling interval must be positive: " + every);
+            }
+            this.every = every;
+        }
+
+        public boolean sample() {
+            return calls.incrementAndGet() % every == 1 % every;
+        }
+
+        public long seen() {
+            return calls.get();
+        }
+    }
+
+    /**
+     * One event as written to an {@link Output}.
+     */
+    public static final class Event {
+        private final Level level;
+        private final long timeMillis;
+        private final String thread;
+        private final String source;
+        private final String template;
+        private final Object[] arguments;
+
+        Event(Level level, long timeMillis, String thread, String source, String template, Object[] arguments) {
+            this.level = level;
+            this.timeMillis = timeMillis;
+            this.thread = thread;
+            this.source = source;
+            this.template = template;
+            this.arguments = arguments;
+        }
+
+        public Level level() {
+            return level;
+        }
+
+        public long timeMillis() {
+            return timeMillis;
+        }
+
+        public String thread() {
+            return thread;
+        }
+
+        public String source() {
+            return source;
+        }
+
+        public String template() {
+            return template;
+        }
+
+        public Object[] arguments() {
+            return arguments.clone();
+        }
+
+        /**
+         * @return the template with every {@code {}} replaced by the next argument
+         */
+        public String message() {
+            StringBuilder out = new StringBuilder(template.length() + 16 * arguments.length);
+            int argument = 0;
+            int start = 0;
+            int placeholder;
+            while ((placeholder = template.indexOf("{}", start)) >= 0) {
+                out.append(template, start, placeholder);
+                out.append(argument < arguments.length ? String.valueOf(arguments[argument++]) : "{}");
+                start = placeholder + 2;
+            }
+            return out.append(template, start, template.length()).toString();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %-5s [%s] %s - %s", Instant.ofEpochMilli(timeMillis), level, thread, source, message());
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.services.redshiftdata.RedshiftDataAsyncClient;
+import software.amazon.awssdk.services.redshiftdata.model.ExecuteStatementRequest;
+import software.amazon.awssdk.services.redshiftdata.model.ExecuteStatementResponse;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Submits a burst of statements at once and waits for every ID, comparing the old
+ * {@code supplyAsync(() -> executeStatement(...).join())} pattern with
+ * {@link AsyncStatementExecutor}.
+ * <p>
+ * The client is a fake whose {@code ExecuteStatement} answers after {@code latencyMillis} from a
+ * single timer thread, like a Netty client would, so no thread is blocked on the network.
+ * {@code peakThreads} is the highest number of live threads above the baseline seen during the
+ * bursts of each iteration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecuteConcurrencyBenchmark {
+
+    @Param({"1000", "5000"})
+    public int concurrency;
+
+    @Param({"20"})
+    public long latencyMillis;
+
+    private ScheduledExecutorService network;
+    private RedshiftDataAsyncClient client;
+    private AsyncStatementExecutor executor;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Threads {
+        public long peakThreads;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            peakThreads = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        network = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "fake-network");
+            thread.setDaemon(true);
+            return thread;
+        });
+        client = new RedshiftDataAsyncClient() {
+            @Override
+            public CompletableFuture<ExecuteStatementResponse> executeStatement(ExecuteStatementRequest request) {
+                CompletableFuture<ExecuteStatementResponse> response = new CompletableFuture<>();
+                network.schedule(() -> response.complete(ExecuteStatementResponse.builder()
+                        .id(UUID.randomUUID().toString())
+                        .build()), latencyMillis, TimeUnit.MILLISECONDS);
+                return response;
+            }
+
+            @Override
+            public String serviceName() {
+                return "redshift-data";
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        executor = new AsyncStatementExecutor(client, "cluster", "dev", "awsuser");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        network.shutdownNow();
+    }
+
+    @Benchmark
+    public int supplyAsyncJoin(Threads threads) {
+        ExecuteStatementRequest request = ExecuteStatementRequest.builder()
+                .clusterIdentifier("cluster")
+                .database("dev")
+                .dbUser("awsuser")
+                .sql("SELECT 1")
+                .build();
+        return burst(threads, () -> CompletableFuture.supplyAsync(
+                () -> client.executeStatement(request).join().id()));
+    }
+
+    @Benchmark
+    public int composed(Threads threads) {
+        return burst(threads, () -> executor.submit("SELECT 1"));
+    }
+
+    private int burst(Threads threads, Supplier<CompletableFuture<String>> submit) {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        int baseline = threadBean.getThreadCount();
+        threadBean.resetPeakThreadCount();
+
+        CompletableFuture<?>[] ids = new CompletableFuture<?>[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            ids[i] = submit.get();
+        }
+        CompletableFuture.allOf(ids).join();
+
+        threads.peakThreads = Math.max(threads.peakThreads, threadBean.getPeakThreadCount() - baseline);
+        return ids.length;
+    }
+}
@@ -0,0 +1,27 @@
+package org.example;
+
+/**
+ * Starts at a fixed delay and multiplies it after every unfinished poll, up to a maximum.
+ */
+public class ExponentialPollingStrategy implements PollingStrategy {
+
+    private final long initialDelayMillis;
+    private final double multiplier;
+    private final long maxDelayMillis;
+
+    public ExponentialPollingStrategy(long initialDelayMillis, double multiplier, long maxDelayMillis) {
+        this.initialDelayMillis = initialDelayMillis;
+        this.multiplier = multiplier;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    @Override
+    public long firstDelayMillis(String fingerprint) {
+        return initialDelayMillis;
+    }
+
+    @Override
+    public long nextDelayMillis(String fingerprint, int polls, long previousDelayMillis) {
+        return Math.min(maxDelayMillis, Math.max(1, (long) (previousDelayMillis * multiplier)));
+    }
+}
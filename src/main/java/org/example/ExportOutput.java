@@ -0,0 +1,165 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The channel a {@link ResultExportFormat} writes to, double-buffered so that encoding never
+ * waits for the disk unless it is a whole buffer ahead.
+ * <p>
+ * Encoders fill one buffer while the other is written to the channel on the writer executor.
+ * When the fill buffer is full it is handed to the writer as soon as the previous write has
+ * finished, and filling continues in the buffer that write released. A write that no writer
+ * thread has started by the time the encoder needs its buffer runs on the encoder's thread, so an
+ * executor without a free thread, even the one the encoder runs on, only costs the overlap.
+ */
+public final class ExportOutput {
+
+    private final WritableByteChannel channel;
+    private final Executor writer;
+    private ByteBuffer filling;
+    private ByteBuffer spare;
+    private Write pending;
+    private long bytes;
+
+    ExportOutput(WritableByteChannel channel, int bufferSize, Executor writer) {
+        this.channel = channel;
+        this.writer = writer;
+        this.filling = ByteBuffer.allocate(bufferSize);
+        this.spare = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * @param bytes the number of bytes the caller is about to put, at most the buffer size
+     * @return the buffer to put them into, with at least that much room
+     */
+    public ByteBuffer buffer(int bytes) throws IOException {
+        if (filling.remaining() < bytes) {
+            if (bytes > filling.capacity()) {
+                throw new IllegalArgumentException("Cannot reserve " + bytes + " bytes in a buffer of " + filling.capacity());
+            }
+            swap();
+        }
+        return filling;
+    }
+
+    /**
+     * Copies bytes of any length into the output.
+     */
+    public void write(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            if (!filling.hasRemaining()) {
+                swap();
+            }
+            int length = Math.min(source.remaining(), filling.remaining());
+            filling.put(source.slice(source.position(), length));
+            source.position(source.position() + length);
+        }
+    }
+
+    /**
+     * @return the number of bytes put so far, written or not
+     */
+    public long bytes() {
+        return bytes + filling.position();
+    }
+
+    /**
+     * Hands the fill buffer to the writer, waiting for the previous write first.
+     */
+    private void swap() throws IOException {
+        await();
+        ByteBuffer full = filling.flip();
+        bytes += full.remaining();
+        filling = spare;
+        spare = full;
+        Write write = new Write(full);
+        pending = write;
+        try {
+            writer.execute(write);
+        } catch (RejectedExecutionException e) {
+            // Written by await() instead.
+        }
+    }
+
+    /**
+     * Waits for the pending write, running it here if no writer thread has taken it yet.
+     */
+    private void await() throws IOException {
+        if (pending == null) {
+            return;
+        }
+        pending.run();
+        try {
+            pending.done.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Writes what is left and waits until every write has finished. The channel stays open.
+     */
+    void flush() throws IOException {
+        swap();
+        await();
+    }
+
+    /**
+     * Waits for the write in flight, if any, without writing the rest or a buffer no writer has
+     * taken; used when an export fails.
+     */
+    void abandon() {
+        if (pending != null && pending.claim()) {
+            pending.done.complete(null);
+        }
+        try {
+            await();
+        } catch (IOException | RuntimeException e) {
+            // The export already failed; its own error is the one reported.
+        }
+    }
+
+    /**
+     * One buffer's write, run by whichever of the writer and the encoder takes it first.
+     */
+    private final class Write implements Runnable {
+        private final ByteBuffer full;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Write(ByteBuffer full) {
+            this.full = full;
+        }
+
+        private boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        @Override
+        public void run() {
+            if (!claim()) {
+                return;
+            }
+            try {
+                while (full.hasRemaining()) {
+                    channel.write(full);
+                }
+                full.clear();
+                done.complete(null);
+            } catch (IOException | RuntimeException e) {
+                done.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package org.example;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.redshiftdata.model.ColumnMetadata;
+import software.amazon.awssdk.services.redshiftdata.model.Field;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Decodes the {@link Field}s of one result column into their natural Java type.
+ * <p>
+ * A decoder is resolved once per column from {@code ColumnMetadata.typeName} and then reads
+ * the matching member of every field directly ({@code longValue}, {@code doubleValue},
+ * {@code booleanValue}, {@code blobValue} or {@code stringValue}) instead of probing each one
+ * and formatting the value as text. Only values that arrive in an unexpected member, such as a
+ * number sent as a string, take the slower conversion path.
+ */
+public abstract class FieldDecoder {
+
+    private final ColumnType type;
+
+    private FieldDecoder(ColumnType type) {
+        this.type = type;
+    }
+
+    /**
+     * @return the decoder for the column's type
+     */
+    public static FieldDecoder forColumn(ColumnMetadata metadata) {
+        switch (ColumnType.fromTypeName(metadata.typeName())) {
+            case LONG:
+                return LONG;
+            case DOUBLE:
+                return DOUBLE;
+            case BOOLEAN:
+                return BOOLEAN;
+            case BLOB:
+                return BLOB;
+            default:
+                return STRING;
+        }
+    }
+
+    /**
+     * @return one decoder per column, in column order
+     */
+    public static FieldDecoder[] forColumns(List<ColumnMetadata> columnMetadata) {
+        FieldDecoder[] decoders = new FieldDecoder[columnMetadata.size()];
+        for (int i = 0; i < decoders.length; i++) {
+            decoders[i] = forColumn(columnMetadata.get(i));
+        }
+        return decoders;
+    }
+
+    /**
+     * @return {@code true} if the field is absent or flagged with {@code isNull}
+     */
+    public static boolean isNull(Field field) {
+        return field == null || Boolean.TRUE.equals(field.isNull());
+    }
+
+    public ColumnType type() {
+        return type;
+    }
+
+    public long decodeLong(Field field) {
+        throw unsupported("long");
+    }
+
+    public double decodeDouble(Field field) {
+        throw unsupported("double");
+    }
+
+    public boolean decodeBoolean(Field field) {
+        throw unsupported("boolean");
+    }
+
+    public ByteBuffer decodeBlob(Field field) {
+        throw unsupported("blob");
+    }
+
+    /**
+     * Renders a non-null field as text, as it would appear in a string column.
+     */
+    public abstract String decodeString(Field field);
+
+    /**
+     * Appends a non-null field as text without building an intermediate string for primitives.
+     */
+    public void appendTo(Field field, StringBuilder out) {
+        out.append(decodeString(field));
+    }
+
+    private UnsupportedOperationException unsupported(String target) {
+        return new UnsupportedOperationException("Cannot decode a " + type + " column as " + target);
+    }
+
+    private static final FieldDecoder LONG = new FieldDecoder(ColumnType.LONG) {
+        @Override
+        public long decodeLong(Field field) {
+            Long value = field.longValue();
+            return value != null ? value : Long.parseLong(field.stringValue());
+        }
+
+        @Override
+        public double decodeDouble(Field field) {
+            return decodeLong(field);
+        }
+
+        @Override
+        public String decodeString(Field field) {
+            return Long.toString(decodeLong(field));
+        }
+
+        @Override
+        public void appendTo(Field field, StringBuilder out) {
+            out.append(decodeLong(field));
+        }
+    };
+
+    private static final FieldDecoder DOUBLE = new FieldDecoder(ColumnType.DOUBLE) {
+        @Override
+        public double decodeDouble(Field field) {
+            Double value = field.doubleValue();
+            if (value != null) {
+                return value;
+            }
+            Long longValue = field.longValue();
+            return longValue != null ? longValue : Double.parseDouble(field.stringValue());
+        }
+
+        @Override
+        public String decodeString(Field field) {
+            return Double.toString(decodeDouble(field));
+        }
+
+        @Override
+        public void appendTo(Field field, StringBuilder out) {
+            out.append(decodeDouble(field));
+        }
+    };
+
+    private static final FieldDecoder BOOLEAN = new FieldDecoder(ColumnType.BOOLEAN) {
+        @Override
+        public boolean decodeBoolean(Field field) {
+            Boolean value = field.booleanValue();
+            return value != null ? value : Boolean.parseBoolean(field.stringValue());
+        }
+
+        @Override
+        public String decodeString(Field field) {
+            return decodeBoolean(field) ? "true" : "false";
+        }
+
+        @Override
+        public void appendTo(Field field, StringBuilder out) {
+            out.append(decodeBoolean(field));
+        }
+    };
+
+    private static final FieldDecoder BLOB = new FieldDecoder(ColumnType.BLOB) {
+        @Override
+        public ByteBuffer decodeBlob(Field field) {
+            SdkBytes value = field.blobValue();
+            return value != null ? value.asByteBuffer() : ByteBuffer.wrap(Base64.getDecoder().decode(field.stringValue()));
+        }
+
+        @Override
+        public String decodeString(Field field) {
+            SdkBytes value = field.blobValue();
+            return value != null ? Base64.getEncoder().encodeToString(value.asByteArrayUnsafe()) : field.stringValue();
+        }
+    };
+
+    private static final FieldDecoder STRING = new FieldDecoder(ColumnType.STRING) {
+        @Override
+        public String decodeString(Field field) {
+            String value = field.stringValue();
+            if (value != null) {
+                return value;
+            } else if (field.longValue() != null) {
+                return field.longValue().toString();
+            } else if (field.doubleValue() != null) {
+                return field.doubleValue().toString();
+            } else if (field.booleanValue() != null) {
+                return field.booleanValue().toString();
+            } else if (field.blobValue() != null) {
+                return Base64.getEncoder().encodeToString(field.blobValue().asByteArrayUnsafe());
+            }
+            return "";
+        }
+    };
+}
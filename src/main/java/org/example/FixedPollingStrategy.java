@@ -0,0 +1,23 @@
+package org.example;
+
+/**
+ * Polls at a constant interval.
+ */
+public class FixedPollingStrategy implements PollingStrategy {
+
+    private final long intervalMillis;
+
+    public FixedPollingStrategy(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+    }
+
+    @Override
+    public long firstDelayMillis(String fingerprint) {
+        return intervalMillis;
+    }
+
+    @Override
+    public long nextDelayMillis(String fingerprint, int polls, long previousDelayMillis) {
+        return intervalMillis;
+    }
+}
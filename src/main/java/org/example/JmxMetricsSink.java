@@ -0,0 +1,155 @@
+package org.example;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Publishes the latest exported snapshot as a read-only MBean on the platform MBean server.
+ * <p>
+ * Every metric becomes a set of {@code long} attributes named {@code <metric>_count},
+ * {@code _mean}, {@code _p50}, {@code _p90}, {@code _p99} and {@code _max}, e.g.
+ * {@code finished_micros_p99}. The attributes are fixed when the sink is created, so JMX clients
+ * see all of them right away; they read 0 until the first export and then keep their last
+ * exported value until the next one. Exported metrics that were not declared are ignored.
+ */
+public class JmxMetricsSink implements MetricsSink, AutoCloseable {
+
+    private static final String[] STATISTICS = {"count", "mean", "p50", "p90", "p99", "max"};
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private static final ConcurrentHistogram.Snapshot EMPTY = new ConcurrentHistogram().snapshot();
+
+    private final ObjectName name;
+    private final MBeanInfo info;
+    private final Set<String> metrics;
+    private volatile Map<String, ConcurrentHistogram.Snapshot> latest = Map.of();
+
+    /**
+     * Registers the MBean with the attributes of every {@link QueryMetrics#NAMES query metric}.
+     *
+     * @param objectName e.g. {@code org.example:type=QueryMetrics,client=default}
+     */
+    public JmxMetricsSink(String objectName) {
+        this(objectName, QueryMetrics.NAMES);
+    }
+
+    /**
+     * Registers the MBean.
+     *
+     * @param objectName e.g. {@code org.example:type=QueryMetrics,client=default}
+     * @param metrics    the names of the metrics to publish
+     */
+    public JmxMetricsSink(String objectName, Collection<String> metrics) {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (String metric : metrics) {
+            for (String statistic : STATISTICS) {
+                attributes.add(new MBeanAttributeInfo(metric + "_" + statistic, "long",
+                        statistic + " of " + metric, true, false, false));
+            }
+        }
+        this.info = new MBeanInfo(JmxMetricsSink.class.getName(), "Redshift Data API query metrics",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        this.metrics = Set.copyOf(metrics);
+        try {
+            this.name = new ObjectName(objectName);
+            server.registerMBean(new MetricsBean(), name);
+        } catch (JMException e) {
+            throw new RuntimeException("Error registering MBean " + objectName + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void export(Map<String, ConcurrentHistogram.Snapshot> snapshots) {
+        latest = snapshots;
+    }
+
+    /**
+     * Unregisters the MBean.
+     */
+    @Override
+    public void close() {
+        try {
+            server.unregisterMBean(name);
+        } catch (InstanceNotFoundException e) {
+            // Already unregistered.
+        } catch (JMException e) {
+            throw new RuntimeException("Error unregistering MBean " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    private final class MetricsBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            int separator = attribute.lastIndexOf('_');
+            String metric = separator < 0 ? null : attribute.substring(0, separator);
+            if (metric == null || !metrics.contains(metric)) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            ConcurrentHistogram.Snapshot snapshot = latest.getOrDefault(metric, EMPTY);
+            switch (attribute.substring(separator + 1)) {
+                case "count":
+                    return snapshot.count();
+                case "mean":
+                    return Math.round(snapshot.mean());
+                case "p50":
+                    return snapshot.percentile(50);
+                case "p90":
+                    return snapshot.percentile(90);
+                case "p99":
+                    return snapshot.percentile(99);
+                case "max":
+                    return snapshot.max();
+                default:
+                    throw new AttributeNotFoundException(attribute);
+            }
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (AttributeNotFoundException e) {
+                    // Unknown attributes are left out, as the MBean contract allows.
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Query metrics are read-only: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException("Query metrics have no operations: " + actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            return info;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.example;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Streams the objects of a top-level JSON array as rows, without building a tree of the file.
+ * <p>
+ * A background thread tokenizes the file with a {@link JsonParser} and copies the requested
+ * fields of each object into a row buffer taken from a fixed pool. Filled rows are handed over
+ * through a bounded queue, so heap usage depends on the queue capacity and not on the file size.
+ * <p>
+ * The array returned by {@link #next()} is recycled on the following call; copy the values out
+ * before asking for the next row. Fields that are missing from an object, or that hold a nested
+ * object or array, are {@code null}.
+ */
+public class JsonRowReader implements Iterator<Object[]>, AutoCloseable {
+
+    private static final Object[] END_OF_FILE = new Object[0];
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final String[] fields;
+    private final BlockingQueue<Object[]> free;
+    private final BlockingQueue<Object[]> filled;
+    private final Thread readerThread;
+    private volatile Throwable failure;
+    private Object[] current;
+    private Object[] lookahead;
+
+    /**
+     * @param file          a JSON file whose root is an array of objects
+     * @param queueCapacity the number of decoded rows that may wait for the consumer
+     * @param fields        the object fields to extract, in row order
+     */
+    public JsonRowReader(File file, int queueCapacity, String... fields) {
+        this.fields = fields;
+        this.free = new ArrayBlockingQueue<>(queueCapacity + 2);
+        this.filled = new ArrayBlockingQueue<>(queueCapacity + 1);
+        for (int i = 0; i < queueCapacity + 2; i++) {
+            free.add(new Object[fields.length]);
+        }
+        this.readerThread = new Thread(() -> read(file), "json-row-reader");
+        this.readerThread.setDaemon(true);
+        this.readerThread.start();
+    }
+
+    private void read(File file) {
+        try (JsonParser parser = JSON_FACTORY.createParser(file)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array in " + file);
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                Object[] row = free.take();
+                decodeObject(parser, row);
+                filled.put(row);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Throwable e) {
+            failure = e;
+        }
+        try {
+            filled.put(END_OF_FILE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void decodeObject(JsonParser parser, Object[] row) throws IOException {
+        Arrays.fill(row, null);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            int index = indexOf(parser.currentName());
+            JsonToken token = parser.nextToken();
+            if (index < 0) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (token) {
+                case VALUE_STRING:
+                    row[index] = parser.getText();
+                    break;
+                case VALUE_NUMBER_INT:
+                    row[index] = parser.getNumberValue();
+                    break;
+                case VALUE_NUMBER_FLOAT:
+                    row[index] = parser.getDoubleValue();
+                    break;
+                case VALUE_TRUE:
+                case VALUE_FALSE:
+                    row[index] = parser.getBooleanValue();
+                    break;
+                case VALUE_NULL:
+                    row[index] = null;
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (lookahead == null) {
+            try {
+                lookahead = filled.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while reading JSON rows", e);
+            }
+        }
+        if (lookahead == END_OF_FILE) {
+            if (failure != null) {
+                throw new RuntimeException("Failed to read or parse JSON file: " + failure.getMessage(), failure);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Object[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (current != null) {
+            free.add(current);
+        }
+        current = lookahead;
+        lookahead = null;
+        return current;
+    }
+
+    @Override
+    public void close() {
+        readerThread.interrupt();
+    }
+}
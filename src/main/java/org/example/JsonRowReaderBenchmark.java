@@ -0,0 +1,108 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams a synthetic movies file through {@link JsonRowReader} and reports rows/sec and the
+ * peak heap used while doing so.
+ * <p>
+ * The file follows the layout of the sample {@code movies.json} (title, year and a nested info
+ * object) and is generated once per size in the temp directory. Rows/sec is
+ * {@code rows / score}; {@code peakHeapMb} is the highest heap occupancy seen during the run.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = {"-Xmx512m"})
+@State(Scope.Benchmark)
+public class JsonRowReaderBenchmark {
+
+    @Param({"2048"})
+    public int fileSizeMb;
+
+    private File file;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long rows;
+        public long peakHeapMb;
+
+        /**
+         * JMH reports the fields as they are at the end of each iteration, so each one starts over.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            rows = 0;
+            peakHeapMb = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        file = new File(System.getProperty("java.io.tmpdir"), "movies-" + fileSizeMb + "mb.json");
+        if (file.length() >= fileSizeMb * 1024L * 1024L) {
+            return;
+        }
+        Random random = new Random(7);
+        long target = fileSizeMb * 1024L * 1024L;
+        long written = 0;
+        try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            out.write('[');
+            for (long i = 0; written < target; i++) {
+                String movie = (i == 0 ? "" : ",")
+                        + "{\"year\":" + (1920 + random.nextInt(100))
+                        + ",\"title\":\"Synthetic movie " + i + "\""
+                        + ",\"info\":{\"rating\":" + random.nextInt(10) + "." + random.nextInt(10)
+                        + ",\"genres\":[\"Drama\",\"Comedy\"],\"plot\":\"A plot that takes some room in the file.\"}}";
+                out.write(movie);
+                written += movie.length();
+            }
+            out.write(']');
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPeakHeap() {
+        System.gc();
+        ManagementFactory.getMemoryPoolMXBeans().forEach(MemoryPoolMXBean::resetPeakUsage);
+    }
+
+    @Benchmark
+    public long streamRows(Counters counters) {
+        long checksum = 0;
+        long rows = 0;
+        try (JsonRowReader reader = new JsonRowReader(file, 1_024, "title", "year")) {
+            while (reader.hasNext()) {
+                Object[] row = reader.next();
+                checksum += ((Number) row[1]).intValue() + ((String) row[0]).length();
+                rows++;
+            }
+        }
+        counters.rows += rows;
+        counters.peakHeapMb = Math.max(counters.peakHeapMb, peakHeapBytes() / (1024 * 1024));
+        return checksum;
+    }
+
+    private static long peakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,40 @@
+package org.example;
+
+import java.util.Random;
+
+/**
+ * A distribution of delays in milliseconds, sampled by the {@link RedshiftDataApiSimulator} for
+ * request latencies and statement run times.
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    /**
+     * @param random the simulator's seeded random source
+     * @return a delay in milliseconds, never negative
+     */
+    long sampleMillis(Random random);
+
+    static LatencyDistribution fixed(long millis) {
+        return random -> millis;
+    }
+
+    static LatencyDistribution uniform(long minMillis, long maxMillis) {
+        if (maxMillis < minMillis) {
+            throw new IllegalArgumentException("Maximum " + maxMillis + " is below minimum " + minMillis);
+        }
+        return random -> minMillis + (long) (random.nextDouble() * (maxMillis - minMillis));
+    }
+
+    /**
+     * A long-tailed distribution, which is what query run times usually look like.
+     *
+     * @param medianMillis the median delay
+     * @param sigma        the standard deviation of the underlying normal distribution; 0.5 gives a
+     *                     p99 of about three times the median
+     */
+    static LatencyDistribution logNormal(double medianMillis, double sigma) {
+        double mu = Math.log(medianMillis);
+        return random -> Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+    }
+}
@@ -0,0 +1,16 @@
+package org.example;
+
+import java.util.Map;
+
+/**
+ * Receives snapshots of {@link QueryMetrics}, for example to publish them through JMX or write
+ * them for a scraper.
+ */
+@FunctionalInterface
+public interface MetricsSink {
+
+    /**
+     * @param snapshots one snapshot per metric, keyed by metric name
+     */
+    void export(Map<String, ConcurrentHistogram.Snapshot> snapshots);
+}
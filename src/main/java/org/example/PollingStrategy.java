@@ -0,0 +1,36 @@
+package org.example;
+
+import software.amazon.awssdk.services.redshiftdata.model.DescribeStatementResponse;
+
+/**
+ * Decides when a pending statement is polled with {@code DescribeStatement}.
+ * <p>
+ * Delays are measured from the previous poll, or from submission for the first one. The
+ * fingerprint identifies the statement's SQL shape (see {@link SqlFingerprint}) and may be
+ * {@code null} when the caller only knows the statement ID.
+ */
+public interface PollingStrategy {
+
+    /**
+     * @param fingerprint the SQL fingerprint of the statement, or {@code null} if unknown
+     * @return the delay between submission and the first poll
+     */
+    long firstDelayMillis(String fingerprint);
+
+    /**
+     * @param fingerprint         the SQL fingerprint of the statement, or {@code null} if unknown
+     * @param polls               the number of polls already made for the statement
+     * @param previousDelayMillis the delay that preceded the last poll
+     * @return the delay before the next poll
+     */
+    long nextDelayMillis(String fingerprint, int polls, long previousDelayMillis);
+
+    /**
+     * Called once a statement has FINISHED so that strategies can learn from it.
+     *
+     * @param fingerprint the SQL fingerprint of the statement, or {@code null} if unknown
+     * @param response    the final describe response
+     */
+    default void onFinished(String fingerprint, DescribeStatementResponse response) {
+    }
+}
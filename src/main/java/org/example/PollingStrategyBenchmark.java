@@ -0,0 +1,104 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.services.redshiftdata.model.DescribeStatementResponse;
+
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares polling strategies on a simulated workload of short, medium and long statements.
+ * <p>
+ * Each invocation replays one batch of statements against the strategy's poll schedule. The
+ * interesting numbers are the auxiliary counters: {@code describeCalls} is the number of
+ * {@code DescribeStatement} calls the batch would cost and {@code endToEndMillis} the summed time
+ * from submission until completion was observed. Divide both by {@code statements}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PollingStrategyBenchmark {
+
+    private static final String[] FINGERPRINTS = {
+            "select * from users where id = ?",
+            "select year, count(*) from movies group by year",
+            "insert into movies_archive select * from movies"
+    };
+    private static final long[] MEDIAN_MILLIS = {150, 2_000, 30_000};
+    private static final int BATCH_SIZE = 1_000;
+
+    @Param({"fixed", "exponential", "adaptive"})
+    public String strategy;
+
+    private PollingStrategy pollingStrategy;
+    private Random random;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long statements;
+        public long describeCalls;
+        public long endToEndMillis;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        random = new Random(42);
+        switch (strategy) {
+            case "fixed":
+                pollingStrategy = new FixedPollingStrategy(1_000);
+                break;
+            case "exponential":
+                pollingStrategy = new ExponentialPollingStrategy(100, 1.5, 5_000);
+                break;
+            case "adaptive":
+                pollingStrategy = new AdaptivePollingStrategy();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown strategy: " + strategy);
+        }
+    }
+
+    @Benchmark
+    public long pollBatch(Counters counters) {
+        long observedTotal = 0;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            int shape = random.nextInt(FINGERPRINTS.length);
+            long latency = sampleLatency(MEDIAN_MILLIS[shape]);
+            long observed = replay(FINGERPRINTS[shape], latency, counters);
+            observedTotal += observed;
+        }
+        counters.statements += BATCH_SIZE;
+        counters.endToEndMillis += observedTotal;
+        return observedTotal;
+    }
+
+    private long replay(String fingerprint, long latencyMillis, Counters counters) {
+        long delay = pollingStrategy.firstDelayMillis(fingerprint);
+        long elapsed = delay;
+        int polls = 1;
+        while (elapsed < latencyMillis) {
+            delay = pollingStrategy.nextDelayMillis(fingerprint, polls, delay);
+            elapsed += delay;
+            polls++;
+        }
+        counters.describeCalls += polls;
+
+        Instant createdAt = Instant.EPOCH;
+        pollingStrategy.onFinished(fingerprint, DescribeStatementResponse.builder()
+                .status("FINISHED")
+                .createdAt(createdAt)
+                .updatedAt(createdAt.plusMillis(latencyMillis))
+                .build());
+        return elapsed;
+    }
+
+    // Log-normal around the median, which is roughly how warehouse query latencies are spread.
+    private long sampleLatency(long medianMillis) {
+        return Math.max(1, (long) (medianMillis * Math.exp(0.5 * random.nextGaussian())));
+    }
+}
@@ -0,0 +1,61 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes snapshots in the Prometheus text exposition format, one summary per metric with its
+ * 0.5, 0.9, 0.99 and 0.999 quantiles, sum and count, plus a {@code _max} gauge.
+ * <p>
+ * Each export writes a temporary file next to the target and moves it into place atomically, so
+ * a scraper such as the node exporter's textfile collector never reads a partial file.
+ */
+public class PrometheusFileSink implements MetricsSink {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Path file;
+    private final String prefix;
+
+    /**
+     * @param file   the file to write, usually ending in {@code .prom}
+     * @param prefix prepended to every metric name, e.g. {@code redshift_data_}
+     */
+    public PrometheusFileSink(Path file, String prefix) {
+        this.file = file;
+        this.prefix = prefix;
+    }
+
+    @Override
+    public void export(Map<String, ConcurrentHistogram.Snapshot> snapshots) {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, ConcurrentHistogram.Snapshot> metric : snapshots.entrySet()) {
+                    write(out, prefix + metric.getKey(), metric.getValue());
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing metrics to " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static void write(Writer out, String name, ConcurrentHistogram.Snapshot snapshot) throws IOException {
+        out.write("# TYPE " + name + " summary\n");
+        for (double quantile : QUANTILES) {
+            out.write(String.format(Locale.ROOT, "%s{quantile=\"%s\"} %d\n",
+                    name, quantile, snapshot.percentile(quantile * 100)));
+        }
+        out.write(name + "_sum " + snapshot.sum() + "\n");
+        out.write(name + "_count " + snapshot.count() + "\n");
+        out.write("# TYPE " + name + "_max gauge\n");
+        out.write(name + "_max " + snapshot.max() + "\n");
+    }
+}
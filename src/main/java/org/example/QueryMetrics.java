@@ -0,0 +1,121 @@
+package org.example;
+
+import software.amazon.awssdk.services.redshiftdata.model.DescribeStatementResponse;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-phase timings of the statements run through one client.
+ * <p>
+ * Each phase has its own {@link ConcurrentHistogram}, so recording is lock-free and
+ * allocation-free:
+ * <ul>
+ * <li>{@code submit_micros}: the {@code ExecuteStatement} call as seen by the client;</li>
+ * <li>{@code finished_micros}: client wall time from the start of tracking, right after
+ * submission, until the statement was seen FINISHED, including queueing in Redshift and polling
+ * delays;</li>
+ * <li>{@code server_duration_micros}: the {@code Duration} Redshift reports for the statement,
+ * recorded separately so the gap to {@code finished_micros} shows queue time and poll
+ * overhead;</li>
+ * <li>{@code polls}: {@code DescribeStatement} calls per statement;</li>
+ * <li>{@code fetch_micros}, {@code rows} and {@code bytes}: downloading the result, its row count
+ * and its {@link ColumnarQueryResult#estimatedBytes() estimated size}.</li>
+ * </ul>
+ * {@link #exportTo(MetricsSink)} hands a snapshot of every histogram to a {@link MetricsSink}.
+ */
+public class QueryMetrics {
+
+    public static final String SUBMIT = "submit_micros";
+    public static final String FINISHED = "finished_micros";
+    public static final String SERVER_DURATION = "server_duration_micros";
+    public static final String POLLS = "polls";
+    public static final String FETCH = "fetch_micros";
+    public static final String ROWS = "rows";
+    public static final String BYTES = "bytes";
+
+    /**
+     * The names of every metric, in the order of {@link #snapshot()}.
+     */
+    public static final List<String> NAMES = List.of(SUBMIT, FINISHED, SERVER_DURATION, POLLS, FETCH, ROWS, BYTES);
+
+    private final ConcurrentHistogram submit = new ConcurrentHistogram();
+    private final ConcurrentHistogram finished = new ConcurrentHistogram();
+    private final ConcurrentHistogram serverDuration = new ConcurrentHistogram();
+    private final ConcurrentHistogram polls = new ConcurrentHistogram();
+    private final ConcurrentHistogram fetch = new ConcurrentHistogram();
+    private final ConcurrentHistogram rows = new ConcurrentHistogram();
+    private final ConcurrentHistogram bytes = new ConcurrentHistogram();
+
+    /**
+     * @param elapsedNanos how long the {@code ExecuteStatement} call took
+     */
+    public void recordSubmit(long elapsedNanos) {
+        submit.record(elapsedNanos / 1_000);
+    }
+
+    /**
+     * @param elapsedNanos client wall time from the start of tracking until the statement FINISHED
+     * @param pollCount    the number of {@code DescribeStatement} calls it took
+     * @param response     the final describe response, whose {@code Duration} is in nanoseconds
+     */
+    public void recordFinished(long elapsedNanos, int pollCount, DescribeStatementResponse response) {
+        finished.record(elapsedNanos / 1_000);
+        polls.record(pollCount);
+        if (response.duration() != null && response.duration() >= 0) {
+            serverDuration.record(response.duration() / 1_000);
+        }
+    }
+
+    /**
+     * @param elapsedNanos how long downloading the result took
+     * @param rowCount     the number of rows
+     * @param byteCount    the size of the result, or a negative value if unknown
+     */
+    public void recordFetch(long elapsedNanos, long rowCount, long byteCount) {
+        fetch.record(elapsedNanos / 1_000);
+        rows.record(rowCount);
+        if (byteCount >= 0) {
+            bytes.record(byteCount);
+        }
+    }
+
+    /**
+     * @return a snapshot of every histogram, keyed by metric name
+     */
+    public Map<String, ConcurrentHistogram.Snapshot> snapshot() {
+        Map<String, ConcurrentHistogram.Snapshot> snapshots = new LinkedHashMap<>();
+        snapshots.put(SUBMIT, submit.snapshot());
+        snapshots.put(FINISHED, finished.snapshot());
+        snapshots.put(SERVER_DURATION, serverDuration.snapshot());
+        snapshots.put(POLLS, polls.snapshot());
+        snapshots.put(FETCH, fetch.snapshot());
+        snapshots.put(ROWS, rows.snapshot());
+        snapshots.put(BYTES, bytes.snapshot());
+        return snapshots;
+    }
+
+    public void exportTo(MetricsSink sink) {
+        sink.export(snapshot());
+    }
+
+    /**
+     * Exports a snapshot to a sink at a fixed rate until the returned future is cancelled.
+     */
+    public ScheduledFuture<?> exportEvery(Duration period, MetricsSink sink, ScheduledExecutorService scheduler) {
+        return scheduler.scheduleAtFixedRate(() -> exportTo(sink), period.toMillis(), period.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        snapshot().forEach((name, snapshot) -> out.append(name).append(": ").append(snapshot).append('\n'));
+        return out.toString();
+    }
+}
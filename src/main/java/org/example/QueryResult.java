@@ -1,11 +1,10 @@
 package org.example;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import software.amazon.awssdk.services.redshiftdata.model.ColumnMetadata;
 import software.amazon.awssdk.services.redshiftdata.model.Field;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,32 +13,35 @@ public class QueryResult {
     private final List<Map<String, String>> table;
 
     public QueryResult(List<ColumnMetadata> columnMetadata, List<List<Field>> rows) {
-        List<Map<String, String>> result = new ArrayList<>();
+        List<Map<String, String>> result = new ArrayList<>(rows.size());
+
+        // Resolve column names and decoders once instead of per field
+        FieldDecoder[] decoders = FieldDecoder.forColumns(columnMetadata);
+        String[] columnNames = new String[decoders.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            columnNames[i] = columnMetadata.get(i).name();
+        }
 
         // Process rows
         for (List<Field> row : rows) {
             Map<String, String> rowMap = new HashMap<>();
             for (int i = 0; i < row.size(); i++) {
-                String columnName = columnMetadata.get(i).name();
-                String fieldValue = getFieldValue(row.get(i));
-                rowMap.put(columnName, fieldValue);
+                rowMap.put(columnNames[i], getFieldValue(decoders[i], row.get(i)));
             }
             result.add(rowMap);
         }
         this.table = result;
     }
 
-    private static String getFieldValue(Field field) {
-        if (field == null) {
+    private static String getFieldValue(FieldDecoder decoder, Field field) {
+        if (FieldDecoder.isNull(field)) {
             return "NULL";
-        } else if (field.stringValue() != null) {
-            return field.stringValue();
-        } else if (field.booleanValue() != null) {
-            return field.booleanValue().toString();
-        } else if (field.longValue() != null) {
-            return field.longValue().toString();
         }
-        return "";
+        return decoder.decodeString(field);
+    }
+
+    public List<Map<String, String>> rows() {
+        return Collections.unmodifiableList(table);
     }
 
     @Override
@@ -48,8 +50,7 @@ public class QueryResult {
     }
 
     public String toJson() {
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        return gson.toJson(table);
+        return new QueryResultJsonWriter(QueryResultJsonWriter.Format.PRETTY).toString(this);
     }
 
 
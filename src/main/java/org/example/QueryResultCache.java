@@ -0,0 +1,516 @@
+package org.example;
+
+import software.amazon.awssdk.services.redshiftdata.model.SqlParameter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory cache of read-only query results.
+ * <p>
+ * Entries are keyed by {@link Key}: the cluster, the database, the user, the
+ * {@link SqlStatements#normalize normalized} SQL and the bound parameter values. Every entry expires after its own time-to-live.
+ * The cache is bounded by the {@link ColumnarQueryResult#estimatedBytes() estimated size} of the
+ * results it holds rather than by their number; when a new result does not fit, the least
+ * recently used entries are evicted, and a result larger than the whole budget is not cached.
+ * <p>
+ * {@link #onWrite(String, String, String)} is the invalidation hook for write statements: it drops
+ * every entry of that cluster and database which reads the written table, or every entry of the database when the
+ * table cannot be told. Entries whose tables could not be told are dropped by any write.
+ * <p>
+ * A read that overlaps a write can still return the rows from before it, and putting them after
+ * {@code onWrite} ran would cache them until they expire. So every write also advances a
+ * {@link #generation() generation}, and {@link #putIfUnchanged} drops a result when a write that
+ * may change it ran since the generation was taken, before the read started.
+ * <p>
+ * {@link #save(Path)} and {@link #load(Path)} keep the cache across restarts in a snapshot file
+ * that holds every result as a {@link ResultPage}, so a reload copies column arrays instead of
+ * parsing text.
+ */
+public class QueryResultCache {
+
+    private final long maxBytes;
+    private final Duration defaultTtl;
+    // Access-ordered, so iteration starts at the least recently used entry.
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+    private long generation;
+    // The generation of the last write per cluster and database, under "cluster/database/", and
+    // per written table, under "cluster/database/table" or ".../*" when the table is unknown.
+    private final Map<String, Long> lastWrites = new HashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private static final int SNAPSHOT_MAGIC = 0x53435152;
+    private static final int SNAPSHOT_VERSION = 2;
+
+    /**
+     * @param maxBytes   the budget for the estimated size of all cached results
+     * @param defaultTtl the time-to-live of entries put without one
+     */
+    public QueryResultCache(long maxBytes, Duration defaultTtl) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.defaultTtl = defaultTtl;
+    }
+
+    /**
+     * @return the cached result, or {@code null} if there is none or it has expired
+     */
+    public ColumnarQueryResult get(Key key) {
+        long now = System.nanoTime();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAtNanos - now > 0) {
+                hits.incrementAndGet();
+                return entry.result;
+            }
+            if (entry != null) {
+                remove(key, entry);
+                expirations.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(Key key, ColumnarQueryResult result) {
+        put(key, result, defaultTtl);
+    }
+
+    /**
+     * Caches a result, evicting least recently used entries until it fits.
+     *
+     * @param ttl how long the entry stays valid
+     */
+    public void put(Key key, ColumnarQueryResult result, Duration ttl) {
+        put(key, result, ttl, -1);
+    }
+
+    /**
+     * @return the current write generation; take it before running a read whose result is then
+     * put with {@link #putIfUnchanged}
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Caches a result with the default time-to-live unless a write that may have changed it ran
+     * since {@code generation} was taken.
+     *
+     * @param generation the {@link #generation()} taken before the read started
+     * @return {@code true} if the result was cached
+     */
+    public boolean putIfUnchanged(Key key, ColumnarQueryResult result, long generation) {
+        return put(key, result, defaultTtl, generation);
+    }
+
+    private boolean put(Key key, ColumnarQueryResult result, Duration ttl, long readGeneration) {
+        long bytes = result.estimatedBytes() + key.estimatedBytes();
+        if (bytes > maxBytes || ttl.isZero() || ttl.isNegative()) {
+            return false;
+        }
+        Entry entry = new Entry(result, bytes, System.nanoTime() + ttl.toNanos(), SqlStatements.readTables(key.sql));
+        synchronized (this) {
+            if (readGeneration >= 0 && writtenSince(key, entry.tables, readGeneration)) {
+                return false;
+            }
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                currentBytes -= previous.bytes;
+            }
+            currentBytes += bytes;
+            Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+            while (currentBytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<Key, Entry> candidate = eldest.next();
+                if (candidate.getValue() == entry) {
+                    continue;
+                }
+                currentBytes -= candidate.getValue().bytes;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+        return true;
+    }
+
+    private boolean writtenSince(Key key, Set<String> tables, long readGeneration) {
+        String scope = key.clusterId + "/" + key.database + "/";
+        if (tables.isEmpty()) {
+            return lastWrites.getOrDefault(scope, 0L) > readGeneration;
+        }
+        if (lastWrites.getOrDefault(scope + "*", 0L) > readGeneration) {
+            return true;
+        }
+        for (String table : tables) {
+            if (lastWrites.getOrDefault(scope + table, 0L) > readGeneration) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The invalidation hook for write statements; read-only statements are ignored.
+     *
+     * @param clusterId the cluster the statement ran on
+     * @param database  the database the statement ran in
+     * @param sql       the statement
+     * @return the number of entries dropped
+     */
+    public int onWrite(String clusterId, String database, String sql) {
+        if (SqlStatements.isReadOnly(sql)) {
+            return 0;
+        }
+        String table = SqlStatements.writtenTable(sql);
+        List<Key> dropped = new ArrayList<>();
+        synchronized (this) {
+            generation++;
+            String scope = clusterId + "/" + database + "/";
+            lastWrites.put(scope, generation);
+            lastWrites.put(scope + (table == null ? "*" : table), generation);
+            for (Map.Entry<Key, Entry> candidate : entries.entrySet()) {
+                Set<String> tables = candidate.getValue().tables;
+                Key key = candidate.getKey();
+                if (Objects.equals(key.clusterId, clusterId) && Objects.equals(key.database, database)
+                        && (table == null || tables.isEmpty() || tables.contains(table))) {
+                    dropped.add(candidate.getKey());
+                }
+            }
+            for (Key key : dropped) {
+                remove(key, entries.get(key));
+            }
+        }
+        invalidations.addAndGet(dropped.size());
+        return dropped.size();
+    }
+
+    /**
+     * Drops every entry.
+     */
+    public synchronized void invalidateAll() {
+        invalidations.addAndGet(entries.size());
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    /**
+     * Writes every valid entry to a snapshot file, replacing it atomically. Entries keep the rest
+     * of their time-to-live, counted from now.
+     *
+     * @return the number of entries written
+     */
+    public int save(Path file) throws IOException {
+        long now = System.nanoTime();
+        List<Map.Entry<Key, Entry>> snapshot = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<Key, Entry> candidate : entries.entrySet()) {
+                if (candidate.getValue().expiresAtNanos - now > 0) {
+                    snapshot.add(Map.entry(candidate.getKey(), candidate.getValue()));
+                }
+            }
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(header);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(System.currentTimeMillis());
+            write(channel, header);
+            for (Map.Entry<Key, Entry> saved : snapshot) {
+                header.reset();
+                Key key = saved.getKey();
+                out.writeLong(saved.getValue().expiresAtNanos - now);
+                writeString(out, key.clusterId);
+                writeString(out, key.database);
+                writeString(out, key.dbUser);
+                writeString(out, key.sql);
+                out.writeInt(key.parameters.size());
+                for (Map.Entry<String, String> parameter : key.parameters.entrySet()) {
+                    writeString(out, parameter.getKey());
+                    writeString(out, parameter.getValue());
+                }
+                ByteBuffer length = ByteBuffer.allocate(4).putInt(header.size()).flip();
+                channel.write(length);
+                write(channel, header);
+                ResultPage.of(saved.getValue().result).writeTo(channel);
+            }
+            channel.force(false);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return snapshot.size();
+    }
+
+    /**
+     * Puts the entries of a snapshot file that are still valid, as if they were put now with the
+     * rest of their time-to-live. A missing file loads nothing.
+     *
+     * @return the number of entries put
+     */
+    public int load(Path file) throws IOException {
+        int loaded = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            DataInputStream header = new DataInputStream(new ByteArrayInputStream(readFully(channel, 16).array()));
+            if (header.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a result cache snapshot: " + file);
+            }
+            int version = header.readInt();
+            if (version != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported result cache snapshot version " + version + ": " + file);
+            }
+            long elapsedNanos = Math.max(0, System.currentTimeMillis() - header.readLong()) * 1_000_000;
+            ByteBuffer length = ByteBuffer.allocate(4);
+            while (channel.read(length.clear()) > 0) {
+                if (length.hasRemaining() && channel.read(length) < 0) {
+                    throw new EOFException("Truncated result cache snapshot: " + file);
+                }
+                byte[] record = readFully(channel, length.flip().getInt()).array();
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+                long remainingNanos = in.readLong() - elapsedNanos;
+                String clusterId = readString(in);
+                String database = readString(in);
+                String dbUser = readString(in);
+                String sql = readString(in);
+                Map<String, String> parameters = new TreeMap<>();
+                for (int count = in.readInt(); count > 0; count--) {
+                    parameters.put(readString(in), readString(in));
+                }
+                ResultPage page = ResultPage.read(channel);
+                if (page == null) {
+                    throw new EOFException("Truncated result cache snapshot: " + file);
+                }
+                if (remainingNanos > 0) {
+                    put(new Key(clusterId, database, dbUser, sql, parameters), page.toColumnar(), Duration.ofNanos(remainingNanos));
+                    loaded++;
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+        return loaded;
+    }
+
+    private static void write(FileChannel channel, ByteArrayOutputStream bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Truncated result cache snapshot");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void remove(Key key, Entry entry) {
+        entries.remove(key);
+        currentBytes -= entry.bytes;
+    }
+
+    public Stats stats() {
+        int size;
+        long bytes;
+        synchronized (this) {
+            size = entries.size();
+            bytes = currentBytes;
+        }
+        return new Stats(hits.get(), misses.get(), evictions.get(), expirations.get(), invalidations.get(), size, bytes);
+    }
+
+    /**
+     * Identifies a cached result. Parameters are bound by name, so their order does not matter.
+     */
+    public static final class Key {
+        private final String clusterId;
+        private final String database;
+        private final String dbUser;
+        private final String sql;
+        private final Map<String, String> parameters;
+        private final int hash;
+
+        private Key(String clusterId, String database, String dbUser, String sql, Map<String, String> parameters) {
+            this.clusterId = clusterId;
+            this.database = database;
+            this.dbUser = dbUser;
+            this.sql = sql;
+            this.parameters = parameters;
+            this.hash = Objects.hash(clusterId, database, dbUser, sql, parameters);
+        }
+
+        public static Key of(String clusterId, String database, String dbUser, String sql, List<SqlParameter> parameters) {
+            Map<String, String> bound = new TreeMap<>();
+            for (SqlParameter parameter : parameters) {
+                bound.put(parameter.name(), parameter.value());
+            }
+            return new Key(clusterId, database, dbUser, SqlStatements.normalize(sql), bound);
+        }
+
+        private long estimatedBytes() {
+            long bytes = 64 + 2L * sql.length();
+            for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+                bytes += 48 + 2L * (parameter.getKey().length() + String.valueOf(parameter.getValue()).length());
+            }
+            return bytes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash
+                    && sql.equals(other.sql)
+                    && Objects.equals(clusterId, other.clusterId)
+                    && Objects.equals(database, other.database)
+                    && Objects.equals(dbUser, other.dbUser)
+                    && parameters.equals(other.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return clusterId + "/" + database + "/" + dbUser + ": " + sql + (parameters.isEmpty() ? "" : " " + parameters);
+        }
+    }
+
+    private static final class Entry {
+        private final ColumnarQueryResult result;
+        private final long bytes;
+        private final long expiresAtNanos;
+        private final Set<String> tables;
+
+        private Entry(ColumnarQueryResult result, long bytes, long expiresAtNanos, Set<String> tables) {
+            this.result = result;
+            this.bytes = bytes;
+            this.expiresAtNanos = expiresAtNanos;
+            this.tables = tables;
+        }
+    }
+
+    /**
+     * A snapshot of the cache counters.
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+        private final long invalidations;
+        private final int entries;
+        private final long bytes;
+
+        Stats(long hits, long misses, long evictions, long expirations, long invalidations, int entries, long bytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.invalidations = invalidations;
+            this.entries = entries;
+            this.bytes = bytes;
+        }
+
+        public long hits() {
+            return hits;
+        }
+
+        public long misses() {
+            return misses;
+        }
+
+        public long evictions() {
+            return evictions;
+        }
+
+        public long expirations() {
+            return expirations;
+        }
+
+        public long invalidations() {
+            return invalidations;
+        }
+
+        public int entries() {
+            return entries;
+        }
+
+        public long bytes() {
+            return bytes;
+        }
+
+        public double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d entries, %d bytes, hit rate %.1f%% (%d hits, %d misses), "
+                            + "%d evictions, %d expirations, %d invalidations",
+                    entries, bytes, hitRate() * 100, hits, misses, evictions, expirations, invalidations);
+        }
+    }
+}
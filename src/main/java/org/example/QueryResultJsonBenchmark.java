@@ -0,0 +1,101 @@
+package org.example;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.services.redshiftdata.model.ColumnMetadata;
+import software.amazon.awssdk.services.redshiftdata.model.Field;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the previous {@code toJson} path (a new pretty-printing {@link Gson} per call and
+ * one big string) with {@link QueryResultJsonWriter} writing to a stream.
+ * <p>
+ * Bytes/sec is {@code bytes} divided by the measured time; run with {@code -prof gc} for the
+ * allocation rate of each path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+@State(Scope.Benchmark)
+public class QueryResultJsonBenchmark {
+
+    @Param({"100000"})
+    public int rows;
+
+    private List<ColumnMetadata> columns;
+    private List<List<Field>> records;
+    private QueryResult mapResult;
+    private ColumnarQueryResult columnarResult;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Output extends OutputStream {
+        public long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        columns = List.of(
+                ColumnMetadata.builder().name("id").typeName("int8").build(),
+                ColumnMetadata.builder().name("title").typeName("varchar").build(),
+                ColumnMetadata.builder().name("year").typeName("int4").build(),
+                ColumnMetadata.builder().name("rating").typeName("float8").build());
+        Random random = new Random(3);
+        records = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            records.add(List.of(
+                    Field.fromLongValue((long) i),
+                    Field.fromStringValue("Movie " + random.nextInt(5_000)),
+                    Field.fromLongValue((long) (1920 + random.nextInt(100))),
+                    Field.fromDoubleValue(random.nextInt(100) / 10.0)));
+        }
+        mapResult = new QueryResult(columns, records);
+        columnarResult = new ColumnarQueryResult(columns, records);
+    }
+
+    @Benchmark
+    public void gsonToJsonString(Output out) throws IOException {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        out.write(gson.toJson(mapResult.rows()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public void streamQueryResultPretty(Output out) throws IOException {
+        new QueryResultJsonWriter(QueryResultJsonWriter.Format.PRETTY).write(mapResult, out);
+    }
+
+    @Benchmark
+    public void streamColumnarCompact(Output out) throws IOException {
+        new QueryResultJsonWriter(QueryResultJsonWriter.Format.COMPACT).write(columnarResult, out);
+    }
+
+    @Benchmark
+    public void streamRecordsNdjson(Output out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        new QueryResultJsonWriter(QueryResultJsonWriter.Format.NDJSON).write(columns, records.iterator(), writer);
+        writer.flush();
+    }
+}
@@ -0,0 +1,242 @@
+package org.example;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+import software.amazon.awssdk.services.redshiftdata.model.ColumnMetadata;
+import software.amazon.awssdk.services.redshiftdata.model.Field;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes query results as JSON straight to a {@link Writer} or {@link OutputStream}, one row at
+ * a time, instead of building the whole document as a string.
+ * <p>
+ * {@link Format#COMPACT} and {@link Format#PRETTY} produce a JSON array of row objects;
+ * {@link Format#NDJSON} writes one compact row object per line. Rows from a
+ * {@link QueryResult} keep their string values; rows from a {@link ColumnarQueryResult} or a
+ * result stream are written with their JSON types (numbers, booleans and {@code null}), and
+ * blobs as base64 strings. The underlying {@link Gson} configurations are shared by all writers.
+ */
+public class QueryResultJsonWriter {
+
+    public enum Format {
+        COMPACT,
+        PRETTY,
+        NDJSON
+    }
+
+    private static final Gson COMPACT_GSON = new GsonBuilder().serializeNulls().create();
+    private static final Gson PRETTY_GSON = new GsonBuilder().serializeNulls().setPrettyPrinting().create();
+
+    private final Format format;
+
+    public QueryResultJsonWriter(Format format) {
+        this.format = format;
+    }
+
+    public void write(QueryResult result, Writer out) throws IOException {
+        RowWriter rows = new RowWriter(out);
+        for (Map<String, String> row : result.rows()) {
+            rows.beginRow();
+            for (Map.Entry<String, String> entry : row.entrySet()) {
+                rows.json.name(entry.getKey()).value(entry.getValue());
+            }
+            rows.endRow();
+        }
+        rows.finish();
+    }
+
+    public void write(ColumnarQueryResult result, Writer out) throws IOException {
+        RowWriter rows = new RowWriter(out);
+        ColumnarQueryResult.Cursor cursor = result.cursor();
+        while (cursor.next()) {
+            rows.beginRow();
+            for (int column = 0; column < result.columnCount(); column++) {
+                rows.json.name(result.columnName(column));
+                if (cursor.isNull(column)) {
+                    rows.json.nullValue();
+                    continue;
+                }
+                switch (result.columnType(column)) {
+                    case LONG:
+                        rows.json.value(cursor.getLong(column));
+                        break;
+                    case DOUBLE:
+                        writeDouble(rows.json, cursor.getDouble(column));
+                        break;
+                    case BOOLEAN:
+                        rows.json.value(cursor.getBoolean(column));
+                        break;
+                    default:
+                        rows.json.value(cursor.getString(column));
+                        break;
+                }
+            }
+            rows.endRow();
+        }
+        rows.finish();
+    }
+
+    /**
+     * Writes rows as they are produced, for example by {@link StatementResultStream#iterator()}.
+     *
+     * @return the number of rows written
+     */
+    public long write(List<ColumnMetadata> columnMetadata, Iterator<List<Field>> records, Writer out) throws IOException {
+        FieldDecoder[] decoders = FieldDecoder.forColumns(columnMetadata);
+        String[] names = new String[decoders.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = columnMetadata.get(i).name();
+        }
+
+        RowWriter rows = new RowWriter(out);
+        long count = 0;
+        while (records.hasNext()) {
+            List<Field> record = records.next();
+            rows.beginRow();
+            for (int column = 0; column < names.length; column++) {
+                Field field = column < record.size() ? record.get(column) : null;
+                rows.json.name(names[column]);
+                if (FieldDecoder.isNull(field)) {
+                    rows.json.nullValue();
+                    continue;
+                }
+                FieldDecoder decoder = decoders[column];
+                switch (decoder.type()) {
+                    case LONG:
+                        rows.json.value(decoder.decodeLong(field));
+                        break;
+                    case DOUBLE:
+                        writeDouble(rows.json, decoder.decodeDouble(field));
+                        break;
+                    case BOOLEAN:
+                        rows.json.value(decoder.decodeBoolean(field));
+                        break;
+                    default:
+                        rows.json.value(decoder.decodeString(field));
+                        break;
+                }
+            }
+            rows.endRow();
+            count++;
+        }
+        rows.finish();
+        return count;
+    }
+
+    /**
+     * Writes every row of a statement result, following all pages.
+     *
+     * @return the number of rows written
+     */
+    public long write(StatementResultStream stream, Writer out) throws IOException {
+        try (StatementResultStream.RowIterator records = stream.iterator()) {
+            return write(stream.columnMetadata().join(), records, out);
+        }
+    }
+
+    /**
+     * Writes UTF-8 encoded JSON to a stream. The stream is flushed but not closed.
+     */
+    public void write(QueryResult result, OutputStream out) throws IOException {
+        Writer writer = utf8(out);
+        write(result, writer);
+        writer.flush();
+    }
+
+    /**
+     * Writes UTF-8 encoded JSON to a stream. The stream is flushed but not closed.
+     */
+    public void write(ColumnarQueryResult result, OutputStream out) throws IOException {
+        Writer writer = utf8(out);
+        write(result, writer);
+        writer.flush();
+    }
+
+    /**
+     * Writes UTF-8 encoded JSON to a stream. The stream is flushed but not closed.
+     */
+    public long write(StatementResultStream stream, OutputStream out) throws IOException {
+        Writer writer = utf8(out);
+        long rows = write(stream, writer);
+        writer.flush();
+        return rows;
+    }
+
+    /**
+     * @return the result as a JSON string; only meant for small results
+     */
+    public String toString(QueryResult result) {
+        StringWriter out = new StringWriter();
+        try {
+            write(result, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    private static Writer utf8(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    private static void writeDouble(JsonWriter json, double value) throws IOException {
+        if (Double.isFinite(value)) {
+            json.value(value);
+        } else {
+            json.value(Double.toString(value));
+        }
+    }
+
+    private final class RowWriter {
+        private final Writer out;
+        private final JsonWriter json;
+        private boolean first = true;
+
+        private RowWriter(Writer out) throws IOException {
+            this.out = out;
+            this.json = (format == Format.PRETTY ? PRETTY_GSON : COMPACT_GSON).newJsonWriter(out);
+            if (format == Format.NDJSON) {
+                // Every line is its own top-level value.
+                json.setLenient(true);
+            } else {
+                json.beginArray();
+            }
+        }
+
+        private void beginRow() throws IOException {
+            if (format == Format.NDJSON && !first) {
+                // JsonWriter does not buffer, so the separator lands after the previous row.
+                out.write('\n');
+            }
+            first = false;
+            json.beginObject();
+        }
+
+        private void endRow() throws IOException {
+            json.endObject();
+        }
+
+        private void finish() throws IOException {
+            if (format == Format.NDJSON) {
+                if (!first) {
+                    out.write('\n');
+                }
+            } else {
+                json.endArray();
+            }
+            json.flush();
+        }
+    }
+}
@@ -3,39 +3,22 @@
 
 package org.example;
 
-import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import software.amazon.awssdk.auth.credentials.EnvironmentVariableCredentialsProvider;
-import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
-import software.amazon.awssdk.core.retry.RetryMode;
-import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
-import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.services.redshift.RedshiftAsyncClient;
-import software.amazon.awssdk.services.redshift.model.Cluster;
 import software.amazon.awssdk.services.redshift.model.CreateClusterRequest;
 import software.amazon.awssdk.services.redshift.model.CreateClusterResponse;
 import software.amazon.awssdk.services.redshift.model.DeleteClusterRequest;
 import software.amazon.awssdk.services.redshift.model.DeleteClusterResponse;
-import software.amazon.awssdk.services.redshift.model.DescribeClustersRequest;
 import software.amazon.awssdk.services.redshift.model.ModifyClusterRequest;
 import software.amazon.awssdk.services.redshift.model.ModifyClusterResponse;
 import software.amazon.awssdk.services.redshift.model.RedshiftException;
 import software.amazon.awssdk.services.redshiftdata.RedshiftDataAsyncClient;
-import software.amazon.awssdk.services.redshiftdata.model.DescribeStatementRequest;
 import software.amazon.awssdk.services.redshiftdata.model.ExecuteStatementRequest;
 import software.amazon.awssdk.services.redshiftdata.model.ExecuteStatementResponse;
 import software.amazon.awssdk.services.redshiftdata.model.Field;
-import software.amazon.awssdk.services.redshiftdata.model.GetStatementResultRequest;
 import software.amazon.awssdk.services.redshiftdata.model.ListDatabasesRequest;
-import software.amazon.awssdk.services.redshiftdata.model.RedshiftDataException;
 import software.amazon.awssdk.services.redshiftdata.model.SqlParameter;
 import software.amazon.awssdk.services.redshiftdata.paginators.ListDatabasesPublisher;
 import java.io.File;
-import java.io.IOException;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -46,57 +29,43 @@ import java.util.concurrent.TimeUnit;
 // snippet-start:[redshift.java2.actions.main]
 public class RedshiftActions {
 
-    private static final Logger logger = LoggerFactory.getLogger(RedshiftActions.class);
-    private static RedshiftDataAsyncClient redshiftDataAsyncClient;
-
-    private static RedshiftAsyncClient redshiftAsyncClient;
-
-    private static RedshiftAsyncClient getAsyncClient() {
-        if (redshiftAsyncClient == null) {
-            SdkAsyncHttpClient httpClient = NettyNioAsyncHttpClient.builder()
-                    .maxConcurrency(100)
-                    .connectionTimeout(Duration.ofSeconds(60))
-                    .readTimeout(Duration.ofSeconds(60))
-                    .writeTimeout(Duration.ofSeconds(60))
-                    .build();
-
-            ClientOverrideConfiguration overrideConfig = ClientOverrideConfiguration.builder()
-                    .apiCallTimeout(Duration.ofMinutes(2))
-                    .apiCallAttemptTimeout(Duration.ofSeconds(90))
-                    .retryStrategy(RetryMode.STANDARD)
-                    .build();
-
-            redshiftAsyncClient = RedshiftAsyncClient.builder()
-                    .httpClient(httpClient)
-                    .overrideConfiguration(overrideConfig)
-                    .credentialsProvider(EnvironmentVariableCredentialsProvider.create())
-                    .build();
-        }
-        return redshiftAsyncClient;
+    private static final EventLog.Source events = EventLog.shared().source(RedshiftActions.class);
+    private static final EventLog.Sampler titleSample = new EventLog.Sampler(1_000);
+    private final ClientKey clientKey;
+
+    public RedshiftActions() {
+        this(ClientKey.of(null, null));
     }
 
-    private static RedshiftDataAsyncClient getAsyncDataClient() {
-        if (redshiftDataAsyncClient == null) {
-            SdkAsyncHttpClient httpClient = NettyNioAsyncHttpClient.builder()
-                    .maxConcurrency(100)
-                    .connectionTimeout(Duration.ofSeconds(60))
-                    .readTimeout(Duration.ofSeconds(60))
-                    .writeTimeout(Duration.ofSeconds(60))
-                    .build();
-
-            ClientOverrideConfiguration overrideConfig = ClientOverrideConfiguration.builder()
-                    .apiCallTimeout(Duration.ofMinutes(2))
-                    .apiCallAttemptTimeout(Duration.ofSeconds(90))
-                    .retryStrategy(RetryMode.STANDARD)
-                    .build();
-
-            redshiftDataAsyncClient = RedshiftDataAsyncClient.builder()
-                    .httpClient(httpClient)
-                    .overrideConfiguration(overrideConfig)
-                    .credentialsProvider(EnvironmentVariableCredentialsProvider.create())
-                    .build();
-        }
-        return redshiftDataAsyncClient;
+    public RedshiftActions(ClientKey clientKey) {
+        this.clientKey = clientKey;
+    }
+
+    private RedshiftAsyncClient getAsyncClient() {
+        return RedshiftClientRegistry.shared().redshiftAsyncClient(clientKey);
+    }
+
+    private RedshiftDataAsyncClient getAsyncDataClient() {
+        return RedshiftClientRegistry.shared().dataAsyncClient(clientKey);
+    }
+
+    private StatementCompletionTracker getCompletionTracker() {
+        return RedshiftClientRegistry.shared().completionTracker(clientKey);
+    }
+
+    private ClusterLifecycleWatcher getClusterWatcher() {
+        return RedshiftClientRegistry.shared().clusterWatcher(clientKey);
+    }
+
+    private AdmissionController getAdmissionController() {
+        return RedshiftClientRegistry.shared().admissionController(clientKey);
+    }
+
+    /**
+     * @return the per-phase metrics of the statements run through this client
+     */
+    public QueryMetrics getMetrics() {
+        return RedshiftClientRegistry.shared().queryMetrics(clientKey);
     }
 
     // snippet-start:[redshift.java2.create_cluster.main]
@@ -121,7 +90,7 @@ public class RedshiftActions {
         return getAsyncClient().createCluster(clusterRequest)
                 .whenComplete((response, exception) -> {
                     if (response != null) {
-                        logger.info("Created cluster ");
+                        events.info("Created cluster ");
                     } else {
                         throw new RuntimeException("Failed to create cluster: " + exception.getMessage(), exception);
                     }
@@ -131,56 +100,22 @@ public class RedshiftActions {
 
     // snippet-start:[redshift.java2.describe_cluster.main]
     /**
-     * Waits asynchronously for the specified cluster to become available.
+     * Waits asynchronously for the specified cluster to become available. The cluster is checked
+     * by the shared {@link ClusterLifecycleWatcher}, together with every other cluster being waited
+     * for, and the wait fails after 30 minutes.
      * @param clusterId the identifier of the cluster to wait for
      * @return a {@link CompletableFuture} that completes when the cluster is ready
      */
     public CompletableFuture<Void> waitForClusterReadyAsync(String clusterId) {
-        DescribeClustersRequest clustersRequest = DescribeClustersRequest.builder()
-                .clusterIdentifier(clusterId)
-                .build();
-
-        logger.info("Waiting for cluster to become available. This may take a few minutes.");
-        long startTime = System.currentTimeMillis();
-
-        // Recursive method to poll the cluster status.
-        return checkClusterStatusAsync(clustersRequest, startTime);
-    }
-
-    private CompletableFuture<Void> checkClusterStatusAsync(DescribeClustersRequest clustersRequest, long startTime) {
-        return getAsyncClient().describeClusters(clustersRequest)
-                .thenCompose(clusterResponse -> {
-                    List<Cluster> clusterList = clusterResponse.clusters();
-                    boolean clusterReady = false;
-                    for (Cluster cluster : clusterList) {
-                        if ("available".equals(cluster.clusterStatus())) {
-                            clusterReady = true;
-                            break;
-                        }
-                    }
-
-                    if (clusterReady) {
-                        logger.info(String.format("Cluster is available!"));
-                        return CompletableFuture.completedFuture(null);
-                    } else {
-                        long elapsedTimeMillis = System.currentTimeMillis() - startTime;
-                        long elapsedSeconds = elapsedTimeMillis / 1000;
-                        long minutes = elapsedSeconds / 60;
-                        long seconds = elapsedSeconds % 60;
-                        System.out.printf("\rElapsed Time: %02d:%02d - Waiting for cluster...", minutes, seconds);
-                        System.out.flush();
-
-                        // Wait 1 second before the next status check
-                        return CompletableFuture.runAsync(() -> {
-                            try {
-                                TimeUnit.SECONDS.sleep(1);
-                            } catch (InterruptedException e) {
-                                throw new RuntimeException("Error during sleep: " + e.getMessage(), e);
-                            }
-                        }).thenCompose(ignored -> checkClusterStatusAsync(clustersRequest, startTime));
+        events.info("Waiting for cluster to become available. This may take a few minutes.");
+        return getClusterWatcher().awaitAvailable(clusterId, Duration.ofMinutes(30), (id, status, elapsed) ->
+                        events.debug("Cluster {} is {}", id, status == null ? "not listed yet" : status))
+                .handle((cluster, exception) -> {
+                    if (exception != null) {
+                        throw new RuntimeException("Failed to get cluster status: " + exception.getMessage(), exception);
                     }
-                }).exceptionally(exception -> {
-                    throw new RuntimeException("Failed to get cluster status: " + exception.getMessage(), exception);
+                    events.info("Cluster is available!");
+                    return null;
                 });
     }
     // snippet-end:[redshift.java2.describe_cluster.main]
@@ -204,7 +139,7 @@ public class RedshiftActions {
         ListDatabasesPublisher databasesPaginator = getAsyncDataClient().listDatabasesPaginator(databasesRequest);
         CompletableFuture<Void> future = databasesPaginator.subscribe(response -> {
             response.databases().forEach(db -> {
-                logger.info("The database name is {} ", db);
+                events.info("The database name is {} ", db);
             });
         });
 
@@ -236,12 +171,13 @@ public class RedshiftActions {
                         "year INT)")
                 .build();
 
-        return getAsyncDataClient().executeStatement(createTableRequest)
+        return getAdmissionController()
+                .call(AdmissionController.EXECUTE_STATEMENT, () -> getAsyncDataClient().executeStatement(createTableRequest))
                 .whenComplete((response, exception) -> {
                     if (exception != null) {
                         throw new RuntimeException("Error creating table: " + exception.getMessage(), exception);
                     } else {
-                        logger.info("Table created: Movies");
+                        events.info("Table created: Movies");
                     }
                 });
     }
@@ -250,6 +186,9 @@ public class RedshiftActions {
     // snippet-start:[redshiftdata.java2.add.record.main]
     /**
      * Asynchronously pops a table from a JSON file.
+     * <p>
+     * Movies are inserted in multi-row batches through a {@link BulkInsertLoader}; the returned
+     * future completes once every batch has FINISHED.
      *
      * @param clusterId   the ID of the cluster
      * @param databaseName the name of the database
@@ -259,74 +198,48 @@ public class RedshiftActions {
      * @return a CompletableFuture that completes with the number of records added to the Movies table
      */
     public CompletableFuture<Integer> popTableAsync(String clusterId, String databaseName, String userName, String fileName, int number) {
-        return CompletableFuture.supplyAsync(() -> {
-                    try {
-                        JsonParser parser = new JsonFactory().createParser(new File(fileName));
-                        JsonNode rootNode = new ObjectMapper().readTree(parser);
-                        Iterator<JsonNode> iter = rootNode.iterator();
-                        return iter;
-                    } catch (IOException e) {
-                        throw new RuntimeException("Failed to read or parse JSON file: " + e.getMessage(), e);
-                    }
-                }).thenCompose(iter -> processNodesAsync(clusterId, databaseName, userName, iter, number))
+        JsonRowReader reader = new JsonRowReader(new File(fileName), 1_024, "title", "year");
+        return processRowsAsync(clusterId, databaseName, userName, reader, number)
                 .whenComplete((result, exception) -> {
+                    reader.close();
                     if (exception != null) {
-                        logger.info("Error {} ", exception.getMessage());
+                        events.warn("Error {} ", exception.getMessage());
                     } else {
-                        logger.info("{} records were added to the Movies table." , result);
+                        events.info("{} records were added to the Movies table." , result);
                     }
                 });
     }
 
-    private CompletableFuture<Integer> processNodesAsync(String clusterId, String databaseName, String userName, Iterator<JsonNode> iter, int number) {
-        return CompletableFuture.supplyAsync(() -> {
-            int t = 0;
-            try {
-                while (iter.hasNext()) {
-                    if (t == number)
-                        break;
-                    JsonNode currentNode = iter.next();
-                    int year = currentNode.get("year").asInt();
-                    String title = currentNode.get("title").asText();
-
-                    // Use SqlParameter to avoid SQL injection.
-                    List<SqlParameter> parameterList = new ArrayList<>();
-                    String sqlStatement = "INSERT INTO Movies VALUES( :id , :title, :year);";
-                    SqlParameter idParam = SqlParameter.builder()
-                            .name("id")
-                            .value(String.valueOf(t))
-                            .build();
-
-                    SqlParameter titleParam = SqlParameter.builder()
-                            .name("title")
-                            .value(title)
-                            .build();
-
-                    SqlParameter yearParam = SqlParameter.builder()
-                            .name("year")
-                            .value(String.valueOf(year))
-                            .build();
-                    parameterList.add(idParam);
-                    parameterList.add(titleParam);
-                    parameterList.add(yearParam);
-
-                    ExecuteStatementRequest insertStatementRequest = ExecuteStatementRequest.builder()
-                            .clusterIdentifier(clusterId)
-                            .sql(sqlStatement)
-                            .database(databaseName)
-                            .dbUser(userName)
-                            .parameters(parameterList)
-                            .build();
-
-                    getAsyncDataClient().executeStatement(insertStatementRequest);
-                    logger.info("Inserted: " + title + " (" + year + ")");
-                    t++;
-                }
-            } catch (RedshiftDataException e) {
-                throw new RuntimeException("Error inserting data: " + e.getMessage(), e);
+    private CompletableFuture<Integer> processRowsAsync(String clusterId, String databaseName, String userName, Iterator<Object[]> movies, int number) {
+        // Prepend a generated id to every (title, year) row, reusing one buffer for all of them.
+        Iterator<Object[]> rows = new Iterator<>() {
+            private final Object[] row = new Object[3];
+            private int id;
+
+            @Override
+            public boolean hasNext() {
+                return movies.hasNext();
             }
-            return t;
-        });
+
+            @Override
+            public Object[] next() {
+                Object[] movie = movies.next();
+                row[0] = id++;
+                row[1] = movie[0];
+                row[2] = movie[1];
+                return row;
+            }
+        };
+
+        BulkInsertLoader loader = new BulkInsertLoader(getAsyncDataClient(), getCompletionTracker(),
+                clusterId, databaseName, userName, "Movies", "id", "title", "year")
+                .admissionController(getAdmissionController())
+                .metrics(getMetrics());
+        return loader.load(rows, number)
+                .thenApply(result -> {
+                    events.info("Inserted {}", result);
+                    return (int) result.rows();
+                });
     }
     // snippet-end:[redshiftdata.java2.add.record.main]
 
@@ -338,35 +251,28 @@ public class RedshiftActions {
      * @return a {@link CompletableFuture} that completes when the SQL statement's status is either "FINISHED" or "FAILED"
      */
     public CompletableFuture<Void> checkStatementAsync(String sqlId) {
-        DescribeStatementRequest statementRequest = DescribeStatementRequest.builder()
-                .id(sqlId)
-                .build();
-
-        return getAsyncDataClient().describeStatement(statementRequest)
-                .thenCompose(response -> {
-                    String status = response.statusAsString();
-                    logger.info("... Status: {} ", status);
+        return checkStatementAsync(sqlId, null);
+    }
 
-                    if ("FAILED".equals(status)) {
-                        throw new RuntimeException("The Query Failed. Ending program");
-                    } else if ("FINISHED".equals(status)) {
-                        return CompletableFuture.completedFuture(null);
-                    } else {
-                        // Sleep for 1 second and recheck status
-                        return CompletableFuture.runAsync(() -> {
-                            try {
-                                TimeUnit.SECONDS.sleep(1);
-                            } catch (InterruptedException e) {
-                                throw new RuntimeException("Error during sleep: " + e.getMessage(), e);
-                            }
-                        }).thenCompose(ignore -> checkStatementAsync(sqlId)); // Recursively call until status is FINISHED or FAILED
-                    }
+    /**
+     * Checks the status of an SQL statement whose SQL is known, so the first poll is timed from
+     * earlier runs of the same query.
+     *
+     * @param sqlId        the ID of the SQL statement to check
+     * @param sqlStatement the SQL of the statement, or {@code null} if it is unknown
+     * @return a {@link CompletableFuture} that completes when the SQL statement's status is either "FINISHED" or "FAILED"
+     */
+    public CompletableFuture<Void> checkStatementAsync(String sqlId, String sqlStatement) {
+        return getCompletionTracker().track(sqlId, sqlStatement == null ? null : SqlFingerprint.of(sqlStatement))
+                .<Void>thenApply(response -> {
+                    events.info("... Status: {} ", response.statusAsString());
+                    return null;
                 }).whenComplete((result, exception) -> {
                     if (exception != null) {
                         // Handle exceptions
-                        logger.info("Error: {} ", exception.getMessage());
+                        events.warn("Error: {} ", exception.getMessage());
                     } else {
-                        logger.info("The statement is finished!");
+                        events.info("The statement is finished!");
                     }
                 });
     }
@@ -374,35 +280,41 @@ public class RedshiftActions {
 
     // snippet-start:[redshiftdata.java2.getresults.main]
     /**
-     * Asynchronously retrieves the results of a statement execution.
+     * Asynchronously retrieves the results of a statement execution, following every result page.
      *
      * @param statementId the ID of the statement for which to retrieve the results
      * @return a {@link CompletableFuture} that completes when the statement result has been processed
      */
     public CompletableFuture<Void> getResultsAsync(String statementId) {
-        GetStatementResultRequest resultRequest = GetStatementResultRequest.builder()
-                .id(statementId)
-                .build();
-
-        return getAsyncDataClient().getStatementResult(resultRequest)
-                .handle((response, exception) -> {
+        long startNanos = System.nanoTime();
+        return streamResults(statementId)
+                .forEach(row -> row.stream()
+                        .map(Field::stringValue)
+                        .filter(value -> value != null)
+                        .forEach(value -> events.sampled(titleSample, EventLog.Level.DEBUG,
+                                "The Movie title field is {} ({} fields so far)", value)))
+                .handle((rows, exception) -> {
                     if (exception != null) {
-                        logger.info("Error getting statement result {} ", exception.getMessage());
+                        events.warn("Error getting statement result {} ", exception.getMessage());
                         throw new RuntimeException("Error getting statement result: " + exception.getMessage(), exception);
                     }
-
-                    // Extract and print the field values using streams if the response is valid.
-                    response.records().stream()
-                            .flatMap(List::stream)
-                            .map(Field::stringValue)
-                            .filter(value -> value != null)
-                            .forEach(value -> System.out.println("The Movie title field is " + value));
-
-                    return response;
-                }).thenAccept(response -> {
+                    getMetrics().recordFetch(System.nanoTime() - startNanos, rows, -1);
+                    return rows;
+                }).thenAccept(rows -> {
                     // Optionally add more logic here if needed after handling the response
                 });
     }
+
+    /**
+     * Streams every row of a statement result with back-pressure.
+     *
+     * @param statementId the ID of a FINISHED statement
+     * @return a single-use stream that prefetches at most two pages ahead of the consumer
+     */
+    public StatementResultStream streamResults(String statementId) {
+        return new StatementResultStream(getAsyncDataClient(), statementId, 2)
+                .admissionController(getAdmissionController());
+    }
     // snippet-end:[redshiftdata.java2.getresults.main]
 
 
@@ -414,7 +326,8 @@ public class RedshiftActions {
      * @param dbUser      the user to connect to the database with
      * @param year        the year to filter the movies by
      * @param clusterId   the identifier of the Redshift cluster to connect to
-     * @return a {@link CompletableFuture} containing the response ID of the executed SQL statement
+     * @return a {@link CompletableFuture} containing the response ID of the executed SQL statement,
+     * or failed with a {@link StatementSubmissionException}
      */
     public CompletableFuture<String> queryMoviesByYearAsync(String database,
                                                             String dbUser,
@@ -427,28 +340,51 @@ public class RedshiftActions {
                 .value(String.valueOf(year))
                 .build();
 
-        ExecuteStatementRequest statementRequest = ExecuteStatementRequest.builder()
-                .clusterIdentifier(clusterId)
-                .database(database)
-                .dbUser(dbUser)
-                .parameters(yearParam)
-                .sql(sqlStatement)
-                .build();
-
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                ExecuteStatementResponse response = getAsyncDataClient().executeStatement(statementRequest).join(); // Use join() to wait for the result
-                return response.id();
-            } catch (RedshiftDataException e) {
-                throw new RuntimeException("Error executing statement: " + e.getMessage(), e);
-            }
-        }).exceptionally(exception -> {
-            logger.info("Error: {}", exception.getMessage());
-            return "";
-        });
+        return new AsyncStatementExecutor(getAsyncDataClient(), clusterId, database, dbUser)
+                .admissionController(getAdmissionController())
+                .metrics(getMetrics())
+                .submit(sqlStatement, List.of(yearParam))
+                .whenComplete((id, exception) -> {
+                    if (exception != null) {
+                        events.warn("Error: {}", exception.getMessage());
+                    }
+                });
     }
     // snippet-end:[redshiftdata.java2.query.main]
 
+    /**
+     * Queries the movies of several years at once, one statement per year, and merges the rows
+     * in the order of {@code years}.
+     *
+     * @param years the years to query; at most eight of them run at once
+     * @return a {@link CompletableFuture} with the rows of every year, or failed with the first
+     * statement failure
+     */
+    public CompletableFuture<ColumnarQueryResult> queryMoviesByYearsAsync(String database,
+                                                                          String dbUser,
+                                                                          List<Integer> years,
+                                                                          String clusterId) {
+        List<StatementFanOut.Statement> statements = new ArrayList<>(years.size());
+        for (int year : years) {
+            statements.add(StatementFanOut.Statement.of("SELECT * FROM Movies WHERE year = :year",
+                    List.of(SqlParameter.builder().name("year").value(String.valueOf(year)).build())));
+        }
+        return fanOut(clusterId, database, dbUser).collect(statements);
+    }
+
+    /**
+     * Creates a fan-out that runs statements through a new pipeline on this client. Tune it with
+     * {@link StatementFanOut#parallelism(int)}, {@link StatementFanOut#merge(StatementFanOut.Merge)}
+     * and {@link StatementFanOut#failurePolicy(StatementFanOut.FailurePolicy)}.
+     */
+    public StatementFanOut fanOut(String clusterId, String database, String dbUser) {
+        AsyncStatementExecutor executor = new AsyncStatementExecutor(getAsyncDataClient(), clusterId, database, dbUser)
+                .admissionController(getAdmissionController())
+                .metrics(getMetrics());
+        return new StatementFanOut(new StatementPipeline(executor, getCompletionTracker(), this::streamResults)
+                .metrics(getMetrics()));
+    }
+
     // snippet-start:[redshift.java2.mod_cluster.main]
     /**
      * Modifies an Amazon Redshift cluster asynchronously.
@@ -466,13 +402,13 @@ public class RedshiftActions {
                 .whenComplete((clusterResponse, exception) -> {
                     if (exception != null) {
                         if (exception.getCause() instanceof RedshiftException) {
-                            logger.info("Error: {} ", exception.getMessage());
+                            events.warn("Error: {} ", exception.getMessage());
                         } else {
-                            logger.info("Unexpected error: {} ", exception.getMessage());
+                            events.warn("Unexpected error: {} ", exception.getMessage());
                         }
                     } else {
-                        logger.info("The modified cluster was successfully modified and has "
-                                + clusterResponse.cluster().preferredMaintenanceWindow() + " as the maintenance window");
+                        events.info("The modified cluster was successfully modified and has {} as the maintenance window",
+                                clusterResponse.cluster().preferredMaintenanceWindow());
                     }
                 });
     }
@@ -496,13 +432,13 @@ public class RedshiftActions {
                     if (exception != null) {
                         // Handle exceptions
                         if (exception.getCause() instanceof RedshiftException) {
-                            logger.info("Error: {}", exception.getMessage());
+                            events.warn("Error: {}", exception.getMessage());
                         } else {
-                            logger.info("Unexpected error: {}", exception.getMessage());
+                            events.warn("Unexpected error: {}", exception.getMessage());
                         }
                     } else {
                         // Handle successful response
-                        logger.info("The status is {}", response.cluster().clusterStatus());
+                        events.info("The status is {}", response.cluster().clusterStatus());
                     }
                 });
     }
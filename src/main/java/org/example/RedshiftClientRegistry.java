@@ -0,0 +1,303 @@
+package org.example;
+
+import software.amazon.awssdk.awscore.client.builder.AwsAsyncClientBuilder;
+import software.amazon.awssdk.awscore.client.builder.AwsClientBuilder;
+import software.amazon.awssdk.core.client.config.ClientAsyncConfiguration;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.client.config.SdkAdvancedAsyncClientOption;
+import software.amazon.awssdk.core.retry.RetryMode;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.SdkEventLoopGroup;
+import software.amazon.awssdk.services.redshift.RedshiftAsyncClient;
+import software.amazon.awssdk.services.redshiftdata.RedshiftDataAsyncClient;
+import software.amazon.awssdk.services.redshiftdata.RedshiftDataClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Builds SDK clients once per {@link ClientKey} and shares them across the process.
+ * <p>
+ * All async clients send their requests through one {@link NettyNioAsyncHttpClient} backed by a
+ * single {@link SdkEventLoopGroup} and complete their futures on one shared executor, and all
+ * sync clients go through one Apache HTTP client. Every client also shares the scheduler used for
+ * timeouts and retries, and the trackers, cluster watchers and admission controllers schedule on
+ * it too, so adding a client does not add threads or connection pools. Each key also gets one
+ * {@link StatementCompletionTracker}, and every tracker learns from the same
+ * {@link AdaptivePollingStrategy}. Each key has one {@link AdmissionController} with the Data API
+ * quotas, which its tracker uses and which callers should pass to the executors and result
+ * streams they create for that key, so all of them draw on one budget; the key's clients report
+ * every throttled attempt to it. The tracker also records into the key's {@link QueryMetrics},
+ * which callers should pass on in the same way. Each key's {@link ClusterLifecycleWatcher} sweeps
+ * the clusters of all waits on that key together.
+ * <p>
+ * {@link #shared()} returns the process-wide registry. {@link #close()} closes trackers, cluster
+ * watchers and admission controllers, then clients, then the HTTP clients and finally the event loop group and the shared executors.
+ */
+public final class RedshiftClientRegistry implements AutoCloseable {
+
+    private static final class Holder {
+        private static final RedshiftClientRegistry INSTANCE = new RedshiftClientRegistry(200, 0);
+    }
+
+    private final int maxConcurrency;
+    private final int eventLoopThreads;
+    private final PollingStrategy pollingStrategy = new AdaptivePollingStrategy();
+    private final Map<ClientKey, RedshiftDataAsyncClient> dataAsyncClients = new ConcurrentHashMap<>();
+    private final Map<ClientKey, RedshiftDataClient> dataClients = new ConcurrentHashMap<>();
+    private final Map<ClientKey, RedshiftAsyncClient> redshiftAsyncClients = new ConcurrentHashMap<>();
+    private final Map<ClientKey, StatementCompletionTracker> trackers = new ConcurrentHashMap<>();
+    private final Map<ClientKey, AdmissionController> admissionControllers = new ConcurrentHashMap<>();
+    private final Map<ClientKey, QueryMetrics> queryMetrics = new ConcurrentHashMap<>();
+    private final Map<ClientKey, ClusterLifecycleWatcher> clusterWatchers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final ThreadPoolExecutor completionExecutor;
+    private volatile SdkEventLoopGroup eventLoopGroup;
+    private volatile SdkAsyncHttpClient asyncHttpClient;
+    private volatile SdkHttpClient syncHttpClient;
+    private volatile boolean closed;
+
+    /**
+     * @param maxConcurrency   maximum number of connections shared by all async clients
+     * @param eventLoopThreads number of Netty event loop threads, or 0 for Netty's default
+     */
+    public RedshiftClientRegistry(int maxConcurrency, int eventLoopThreads) {
+        this.maxConcurrency = maxConcurrency;
+        this.eventLoopThreads = eventLoopThreads;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, daemonThreads("redshift-sdk-scheduler"));
+        int completionThreads = Math.max(8, Runtime.getRuntime().availableProcessors());
+        this.completionExecutor = new ThreadPoolExecutor(completionThreads, completionThreads,
+                10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(10_000), daemonThreads("redshift-sdk-completion"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.completionExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return the process-wide registry, created on first use
+     */
+    public static RedshiftClientRegistry shared() {
+        return Holder.INSTANCE;
+    }
+
+    public RedshiftDataAsyncClient dataAsyncClient(ClientKey key) {
+        return open(dataAsyncClients, key, k -> configureAsync(RedshiftDataAsyncClient.builder(), k)
+                .build());
+    }
+
+    public RedshiftDataClient dataClient(ClientKey key) {
+        return open(dataClients, key, k -> configure(RedshiftDataClient.builder(), k)
+                .httpClient(syncHttpClient())
+                .build());
+    }
+
+    public RedshiftAsyncClient redshiftAsyncClient(ClientKey key) {
+        return open(redshiftAsyncClients, key, k -> configureAsync(RedshiftAsyncClient.builder(), k)
+                .build());
+    }
+
+    /**
+     * @return the completion tracker polling through {@link #dataAsyncClient(ClientKey)}
+     */
+    public StatementCompletionTracker completionTracker(ClientKey key) {
+        return open(trackers, key, k -> new StatementCompletionTracker(dataAsyncClient(k), pollingStrategy, scheduler)
+                .admissionController(admissionController(k))
+                .metrics(queryMetrics(k)));
+    }
+
+    /**
+     * @return the per-phase metrics of the statements run with a key's clients
+     */
+    public QueryMetrics queryMetrics(ClientKey key) {
+        return queryMetrics.computeIfAbsent(key, k -> new QueryMetrics());
+    }
+
+    /**
+     * @return the admission controller limiting the Data API calls made with a key's clients
+     */
+    public AdmissionController admissionController(ClientKey key) {
+        return open(admissionControllers, key, k -> new AdmissionController(scheduler).withDataApiQuotas());
+    }
+
+    /**
+     * @return the watcher sweeping the clusters of {@link #redshiftAsyncClient(ClientKey)}
+     */
+    public ClusterLifecycleWatcher clusterWatcher(ClientKey key) {
+        return open(clusterWatchers, key, k -> new ClusterLifecycleWatcher(redshiftAsyncClient(k), scheduler));
+    }
+
+    /**
+     * @return the polling strategy shared by every tracker of this registry
+     */
+    public PollingStrategy pollingStrategy() {
+        return pollingStrategy;
+    }
+
+    private <B extends AwsClientBuilder<B, ?> & AwsAsyncClientBuilder<B, ?>> B configureAsync(B builder, ClientKey key) {
+        ClientAsyncConfiguration asyncConfig = ClientAsyncConfiguration.builder()
+                .advancedOption(SdkAdvancedAsyncClientOption.FUTURE_COMPLETION_EXECUTOR, completionExecutor)
+                .build();
+
+        return configure(builder, key)
+                .httpClient(asyncHttpClient())
+                .asyncConfiguration(asyncConfig);
+    }
+
+    private <B extends AwsClientBuilder<B, ?>> B configure(B builder, ClientKey key) {
+        ClientOverrideConfiguration overrideConfig = ClientOverrideConfiguration.builder()
+                .apiCallTimeout(Duration.ofMinutes(2))
+                .apiCallAttemptTimeout(Duration.ofSeconds(90))
+                .retryStrategy(RetryMode.STANDARD)
+                .scheduledExecutorService(scheduler)
+                .addExecutionInterceptor(admissionController(key).throttlingInterceptor())
+                .build();
+
+        builder.overrideConfiguration(overrideConfig)
+                .credentialsProvider(key.credentialsProvider());
+        if (key.region() != null) {
+            builder.region(key.region());
+        }
+        if (key.endpoint() != null) {
+            builder.endpointOverride(key.endpoint());
+        }
+        return builder;
+    }
+
+    private SdkAsyncHttpClient asyncHttpClient() {
+        SdkAsyncHttpClient client = asyncHttpClient;
+        if (client == null) {
+            synchronized (this) {
+                // close() holds the same lock, so nothing is created after it ran.
+                checkOpen();
+                client = asyncHttpClient;
+                if (client == null) {
+                    eventLoopGroup = SdkEventLoopGroup.builder()
+                            .numberOfThreads(eventLoopThreads > 0 ? eventLoopThreads : null)
+                            .build();
+                    client = NettyNioAsyncHttpClient.builder()
+                            .eventLoopGroup(eventLoopGroup)
+                            .maxConcurrency(maxConcurrency)
+                            .connectionTimeout(Duration.ofSeconds(60))
+                            .readTimeout(Duration.ofSeconds(60))
+                            .writeTimeout(Duration.ofSeconds(60))
+                            .build();
+                    asyncHttpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    private SdkHttpClient syncHttpClient() {
+        SdkHttpClient client = syncHttpClient;
+        if (client == null) {
+            synchronized (this) {
+                checkOpen();
+                client = syncHttpClient;
+                if (client == null) {
+                    client = ApacheHttpClient.builder()
+                            .maxConnections(maxConcurrency)
+                            .connectionTimeout(Duration.ofSeconds(60))
+                            .socketTimeout(Duration.ofSeconds(60))
+                            .build();
+                    syncHttpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Returns a key's instance, creating it if needed. An instance created while {@link #close()}
+     * runs may miss it, so it is closed here instead of being handed out.
+     */
+    private <T extends AutoCloseable> T open(Map<ClientKey, T> instances, ClientKey key, Function<ClientKey, T> factory) {
+        checkOpen();
+        T instance = instances.computeIfAbsent(key, factory);
+        if (closed) {
+            instances.remove(key, instance);
+            try {
+                instance.close();
+            } catch (Exception e) {
+                throw new IllegalStateException("The client registry is closed", e);
+            }
+            throw new IllegalStateException("The client registry is closed");
+        }
+        return instance;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The client registry is closed");
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        List<AutoCloseable> resources = new ArrayList<>(trackers.values());
+        resources.addAll(clusterWatchers.values());
+        resources.addAll(admissionControllers.values());
+        resources.addAll(dataAsyncClients.values());
+        resources.addAll(dataClients.values());
+        resources.addAll(redshiftAsyncClients.values());
+        resources.add(asyncHttpClient);
+        resources.add(syncHttpClient);
+        RuntimeException failure = null;
+        for (AutoCloseable resource : resources) {
+            if (resource == null) {
+                continue;
+            }
+            try {
+                resource.close();
+            } catch (Exception e) {
+                if (failure == null) {
+                    failure = new RuntimeException("Failed to close client registry: " + e.getMessage(), e);
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (eventLoopGroup != null) {
+            // The HTTP client is closed, so there is nothing left to wait for in a quiet period.
+            eventLoopGroup.eventLoopGroup().shutdownGracefully(0, 5, TimeUnit.SECONDS).awaitUninterruptibly();
+        }
+        scheduler.shutdownNow();
+        completionExecutor.shutdown();
+        trackers.clear();
+        clusterWatchers.clear();
+        admissionControllers.clear();
+        dataAsyncClients.clear();
+        dataClients.clear();
+        redshiftAsyncClients.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
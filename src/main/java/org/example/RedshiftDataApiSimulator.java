@@ -0,0 +1,711 @@
+package org.example;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import software.amazon.awssdk.regions.Region;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * An in-process stand-in for the Redshift Data API, for offline load tests and benchmarks.
+ * <p>
+ * The simulator speaks the API's JSON protocol on a local port, so SDK clients reach it through
+ * {@link #clientKey()} (an endpoint override with unsigned requests). It supports
+ * {@code ExecuteStatement}, {@code DescribeStatement}, {@code GetStatementResult},
+ * {@code CancelStatement} and {@code ListDatabases}.
+ * <p>
+ * Statements go from SUBMITTED to STARTED to FINISHED, or FAILED for a configurable fraction of
+ * them, on a schedule sampled when they are submitted. SELECT statements return a synthetic
+ * movies result (id, title, year, rating) split into pages linked by {@code NextToken}. Responses
+ * are delayed by a per-operation {@link LatencyDistribution} on a timer instead of a sleeping
+ * thread, and requests beyond the configured rate, or a random fraction of them, are answered
+ * with a {@code ThrottlingException}.
+ * <p>
+ * Sampling is reproducible: the n-th statement and the n-th request each draw from their own
+ * {@link Random} derived from the seed and n, so the handler threads never share one, and a
+ * statement's ID, status schedule and outcome are fixed when it is submitted. Statuses are read
+ * from an injectable clock. A statement is dropped once the last page of its result is fetched,
+ * or once it has been over for the retention period, after which it is reported as not existing.
+ */
+public class RedshiftDataApiSimulator implements AutoCloseable {
+
+    /**
+     * The operations the simulator understands.
+     */
+    public enum Operation {
+        EXECUTE_STATEMENT("ExecuteStatement"),
+        DESCRIBE_STATEMENT("DescribeStatement"),
+        GET_STATEMENT_RESULT("GetStatementResult"),
+        CANCEL_STATEMENT("CancelStatement"),
+        LIST_DATABASES("ListDatabases");
+
+        private final String target;
+
+        Operation(String target) {
+            this.target = target;
+        }
+
+        private static Operation fromTarget(String header) {
+            if (header != null) {
+                String name = header.substring(header.indexOf('.') + 1);
+                for (Operation operation : values()) {
+                    if (operation.target.equals(name)) {
+                        return operation;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    static {
+        // Without TCP_NODELAY, Nagle's algorithm and delayed ACKs add ~40 ms to every response.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String CONTENT_TYPE = "application/x-amz-json-1.1";
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final ScheduledThreadPoolExecutor timer;
+    private final long seed;
+    private final LongSupplier clock;
+    private final long retentionMillis;
+    private final boolean keepFetchedResults;
+    private final AtomicLong statementSequence = new AtomicLong();
+    private final AtomicLong requestSequence = new AtomicLong();
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final Map<Operation, LatencyDistribution> latencies;
+    private final LatencyDistribution queueTime;
+    private final LatencyDistribution runTime;
+    private final double failureRate;
+    private final double throttleRate;
+    private final int requestsPerSecond;
+    private final int resultRows;
+    private final int pageSize;
+    private final Map<String, Statement> statements = new ConcurrentHashMap<>();
+    private final Map<Operation, AtomicLong> requestCounts = new EnumMap<>(Operation.class);
+    private final AtomicLong throttledCount = new AtomicLong();
+    private final AtomicLong windowStart = new AtomicLong();
+    private final AtomicInteger windowRequests = new AtomicInteger();
+
+    private RedshiftDataApiSimulator(Builder builder) throws IOException {
+        this.seed = builder.seed;
+        this.clock = builder.clock;
+        this.retentionMillis = builder.retention.toMillis();
+        this.keepFetchedResults = builder.keepFetchedResults;
+        this.latencies = new EnumMap<>(builder.latencies);
+        this.queueTime = builder.queueTime;
+        this.runTime = builder.runTime;
+        this.failureRate = builder.failureRate;
+        this.throttleRate = builder.throttleRate;
+        this.requestsPerSecond = builder.requestsPerSecond;
+        this.resultRows = builder.resultRows;
+        this.pageSize = builder.pageSize;
+        for (Operation operation : Operation.values()) {
+            requestCounts.put(operation, new AtomicLong());
+        }
+
+        this.handlers = Executors.newFixedThreadPool(builder.handlerThreads, daemon("redshift-data-simulator"));
+        this.timer = new ScheduledThreadPoolExecutor(1, daemon("redshift-data-simulator-timer"));
+        long sweepMillis = Math.max(100, Math.min(retentionMillis, 1_000));
+        this.timer.scheduleWithFixedDelay(this::expire, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), builder.port), 0);
+        this.server.setExecutor(handlers);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the base URI of the simulator
+     */
+    public URI endpoint() {
+        return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+    }
+
+    /**
+     * @return a key for {@link RedshiftClientRegistry} whose clients send unsigned requests here
+     */
+    public ClientKey clientKey() {
+        return ClientKey.anonymous(Region.US_EAST_1, endpoint());
+    }
+
+    /**
+     * @return the number of requests received for an operation, throttled ones included
+     */
+    public long requestCount(Operation operation) {
+        return requestCounts.get(operation).get();
+    }
+
+    /**
+     * @return the number of requests answered with a {@code ThrottlingException}
+     */
+    public long throttledCount() {
+        return throttledCount.get();
+    }
+
+    /**
+     * @return the number of statements submitted so far
+     */
+    public long submittedCount() {
+        return submittedCount.get();
+    }
+
+    /**
+     * @return the number of statements held, that is submitted and not yet fetched or expired
+     */
+    public int statementCount() {
+        return statements.size();
+    }
+
+    /**
+     * A {@link Random} of its own for the n-th draw of a stream, so concurrent handlers never
+     * share one and every draw depends only on the seed and n.
+     */
+    private Random random(long stream, long sequence) {
+        // The finalizer of SplittableRandom's mix, so neighbouring sequence numbers get unrelated seeds.
+        long z = seed + stream * 0x632BE59BD9B4E019L + sequence * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return new Random(z ^ (z >>> 31));
+    }
+
+    private void expire() {
+        long now = clock.getAsLong();
+        statements.values().removeIf(statement -> statement.isTerminal(now)
+                && statement.endedAt(now) + retentionMillis <= now);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        Operation operation = Operation.fromTarget(exchange.getRequestHeaders().getFirst("X-Amz-Target"));
+        JsonNode request;
+        try (InputStream body = exchange.getRequestBody()) {
+            request = MAPPER.readTree(body);
+        }
+        if (operation == null) {
+            respond(exchange, 0, error("UnknownOperationException", "Unknown operation"));
+            return;
+        }
+        requestCounts.get(operation).incrementAndGet();
+        Random random = random(1, requestSequence.getAndIncrement());
+        long delay = latencies.getOrDefault(operation, LatencyDistribution.fixed(0)).sampleMillis(random);
+
+        Response response;
+        if (throttled(random)) {
+            throttledCount.incrementAndGet();
+            response = error("ThrottlingException", "Rate exceeded");
+        } else {
+            try {
+                response = dispatch(operation, request);
+            } catch (RuntimeException e) {
+                response = error("InternalServerException", e.toString());
+            }
+        }
+        respond(exchange, delay, response);
+    }
+
+    private boolean throttled(Random random) {
+        if (throttleRate > 0 && random.nextDouble() < throttleRate) {
+            return true;
+        }
+        if (requestsPerSecond <= 0) {
+            return false;
+        }
+        long second = clock.getAsLong() / 1_000;
+        long start = windowStart.get();
+        if (start != second && windowStart.compareAndSet(start, second)) {
+            windowRequests.set(0);
+        }
+        return windowRequests.incrementAndGet() > requestsPerSecond;
+    }
+
+    private Response dispatch(Operation operation, JsonNode request) throws IOException {
+        switch (operation) {
+            case EXECUTE_STATEMENT:
+                return executeStatement(request);
+            case DESCRIBE_STATEMENT:
+                return describeStatement(request);
+            case GET_STATEMENT_RESULT:
+                return getStatementResult(request);
+            case CANCEL_STATEMENT:
+                return cancelStatement(request);
+            default:
+                return listDatabases(request);
+        }
+    }
+
+    private Response executeStatement(JsonNode request) throws IOException {
+        String sql = request.path("Sql").asText(null);
+        if (sql == null || sql.isEmpty()) {
+            return error("ValidationException", "Sql is required");
+        }
+        // Everything about the statement is drawn here, once, from its own random.
+        Random random = random(0, statementSequence.getAndIncrement());
+        String id = new UUID(random.nextLong(), random.nextLong()).toString();
+        long queued = queueTime.sampleMillis(random);
+        long ran = runTime.sampleMillis(random);
+        boolean fails = failureRate > 0 && random.nextDouble() < failureRate;
+        long now = clock.getAsLong();
+        boolean select = sql.trim().toUpperCase(Locale.ROOT).startsWith("SELECT");
+        Statement statement = new Statement(id, sql, request.path("Database").asText(null),
+                now, now + queued, now + queued + ran, fails, select ? resultRows : -1);
+        statements.put(statement.id, statement);
+        submittedCount.incrementAndGet();
+
+        return ok(json -> {
+            json.writeStringField("Id", statement.id);
+            writeStringIfPresent(json, "ClusterIdentifier", request.path("ClusterIdentifier").asText(null));
+            writeStringIfPresent(json, "Database", statement.database);
+            writeStringIfPresent(json, "DbUser", request.path("DbUser").asText(null));
+            json.writeNumberField("CreatedAt", statement.createdAt / 1_000.0);
+        });
+    }
+
+    private Response describeStatement(JsonNode request) throws IOException {
+        Statement statement = statements.get(request.path("Id").asText());
+        if (statement == null) {
+            return error("ResourceNotFoundException", "Query does not exist");
+        }
+        long now = clock.getAsLong();
+        String status = statement.status(now);
+        return ok(json -> {
+            json.writeStringField("Id", statement.id);
+            json.writeStringField("Status", status);
+            json.writeStringField("QueryString", statement.sql);
+            writeStringIfPresent(json, "Database", statement.database);
+            json.writeNumberField("CreatedAt", statement.createdAt / 1_000.0);
+            json.writeNumberField("UpdatedAt", statement.updatedAt(now) / 1_000.0);
+            if (statement.isTerminal(now)) {
+                json.writeNumberField("Duration", (statement.endedAt(now) - statement.startedAt) * 1_000_000L);
+            }
+            if ("FAILED".equals(status)) {
+                json.writeStringField("Error", "ERROR: simulated failure");
+            }
+            json.writeBooleanField("HasResultSet", statement.rows >= 0);
+            if ("FINISHED".equals(status)) {
+                json.writeNumberField("ResultRows", Math.max(statement.rows, 0));
+            }
+        });
+    }
+
+    private Response getStatementResult(JsonNode request) throws IOException {
+        Statement statement = statements.get(request.path("Id").asText());
+        if (statement == null) {
+            return error("ResourceNotFoundException", "Query does not exist");
+        }
+        if (!"FINISHED".equals(statement.status(clock.getAsLong()))) {
+            return error("ValidationException", "Query has not finished");
+        }
+        if (statement.rows < 0) {
+            return error("ValidationException", "Query does not have result");
+        }
+        int first = 0;
+        String token = request.path("NextToken").asText(null);
+        if (token != null && !token.isEmpty()) {
+            try {
+                first = Integer.parseInt(token);
+            } catch (NumberFormatException e) {
+                return error("ValidationException", "Invalid NextToken");
+            }
+        }
+        int from = first;
+        int to = Math.min(statement.rows, first + pageSize);
+        if (to == statement.rows && !keepFetchedResults) {
+            statements.remove(statement.id, statement);
+        }
+        return ok(json -> {
+            if (from == 0) {
+                json.writeArrayFieldStart("ColumnMetadata");
+                writeColumn(json, "id", "int8");
+                writeColumn(json, "title", "varchar");
+                writeColumn(json, "year", "int4");
+                writeColumn(json, "rating", "float8");
+                json.writeEndArray();
+            }
+            json.writeArrayFieldStart("Records");
+            for (int row = from; row < to; row++) {
+                json.writeStartArray();
+                json.writeStartObject();
+                json.writeNumberField("longValue", row);
+                json.writeEndObject();
+                json.writeStartObject();
+                json.writeStringField("stringValue", "Synthetic movie " + row);
+                json.writeEndObject();
+                json.writeStartObject();
+                json.writeNumberField("longValue", 1920 + (row * 7) % 100);
+                json.writeEndObject();
+                json.writeStartObject();
+                if (row % 50 == 49) {
+                    json.writeBooleanField("isNull", true);
+                } else {
+                    json.writeNumberField("doubleValue", (row % 100) / 10.0);
+                }
+                json.writeEndObject();
+                json.writeEndArray();
+            }
+            json.writeEndArray();
+            json.writeNumberField("TotalNumRows", statement.rows);
+            if (to < statement.rows) {
+                json.writeStringField("NextToken", Integer.toString(to));
+            }
+        });
+    }
+
+    private Response cancelStatement(JsonNode request) throws IOException {
+        Statement statement = statements.get(request.path("Id").asText());
+        if (statement == null) {
+            return error("ResourceNotFoundException", "Query does not exist");
+        }
+        boolean cancelled = statement.abort(clock.getAsLong());
+        return ok(json -> json.writeBooleanField("Status", cancelled));
+    }
+
+    private Response listDatabases(JsonNode request) throws IOException {
+        return ok(json -> {
+            json.writeArrayFieldStart("Databases");
+            json.writeString("dev");
+            json.writeEndArray();
+        });
+    }
+
+    private static void writeColumn(JsonGenerator json, String name, String typeName) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("name", name);
+        json.writeStringField("label", name);
+        json.writeStringField("typeName", typeName);
+        json.writeNumberField("nullable", 1);
+        json.writeEndObject();
+    }
+
+    private static void writeStringIfPresent(JsonGenerator json, String field, String value) throws IOException {
+        if (value != null) {
+            json.writeStringField(field, value);
+        }
+    }
+
+    private void respond(HttpExchange exchange, long delayMillis, Response response) {
+        Runnable send = () -> {
+            try {
+                exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                exchange.getResponseHeaders().set("x-amzn-RequestId", UUID.randomUUID().toString());
+                if (response.errorType != null) {
+                    exchange.getResponseHeaders().set("x-amzn-ErrorType", response.errorType);
+                }
+                exchange.sendResponseHeaders(response.status, response.body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response.body);
+                }
+            } catch (IOException e) {
+                // The client went away; nothing left to answer.
+            } finally {
+                exchange.close();
+            }
+        };
+        if (delayMillis <= 0) {
+            send.run();
+        } else {
+            // Delay on the timer so that slow responses do not hold a handler thread.
+            timer.schedule(() -> handlers.execute(send), delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static Response ok(JsonBody body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            body.write(json);
+            json.writeEndObject();
+        }
+        return new Response(200, null, out.toByteArray());
+    }
+
+    private static Response error(String type, String message) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeStringField("__type", type);
+            json.writeStringField("message", message);
+            json.writeEndObject();
+        }
+        int status = "InternalServerException".equals(type) ? 500 : 400;
+        return new Response(status, type, out.toByteArray());
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Stops the server without waiting for delayed responses.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        timer.shutdownNow();
+        handlers.shutdownNow();
+    }
+
+    @FunctionalInterface
+    private interface JsonBody {
+        void write(JsonGenerator json) throws IOException;
+    }
+
+    private static final class Response {
+        private final int status;
+        private final String errorType;
+        private final byte[] body;
+
+        private Response(int status, String errorType, byte[] body) {
+            this.status = status;
+            this.errorType = errorType;
+            this.body = body;
+        }
+    }
+
+    private static final class Statement {
+        private final String id;
+        private final String sql;
+        private final String database;
+        private final long createdAt;
+        private final long startedAt;
+        private final long endedAt;
+        private final boolean fails;
+        private final int rows;
+        private volatile long abortedAt = -1;
+
+        private Statement(String id, String sql, String database, long createdAt, long startedAt,
+                          long endedAt, boolean fails, int rows) {
+            this.id = id;
+            this.sql = sql;
+            this.database = database;
+            this.createdAt = createdAt;
+            this.startedAt = startedAt;
+            this.endedAt = endedAt;
+            this.fails = fails;
+            this.rows = rows;
+        }
+
+        private String status(long now) {
+            if (abortedAt >= 0) {
+                return "ABORTED";
+            }
+            if (now < startedAt) {
+                return "SUBMITTED";
+            }
+            if (now < endedAt) {
+                return "STARTED";
+            }
+            return fails ? "FAILED" : "FINISHED";
+        }
+
+        private boolean isTerminal(long now) {
+            return abortedAt >= 0 || now >= endedAt;
+        }
+
+        private long endedAt(long now) {
+            return abortedAt >= 0 ? abortedAt : Math.min(now, endedAt);
+        }
+
+        private long updatedAt(long now) {
+            if (abortedAt >= 0) {
+                return abortedAt;
+            }
+            if (now >= endedAt) {
+                return endedAt;
+            }
+            return now >= startedAt ? startedAt : createdAt;
+        }
+
+        private synchronized boolean abort(long now) {
+            if (isTerminal(now)) {
+                return false;
+            }
+            abortedAt = now;
+            return true;
+        }
+    }
+
+    /**
+     * Configures a {@link RedshiftDataApiSimulator}. By default every operation answers
+     * immediately, statements queue for 5 ms and run for a log-normal 50 ms median, nothing fails
+     * or is throttled, SELECTs return 1,000 rows in pages of 500, statements are kept for a
+     * minute after they end unless their result is fetched before, and time is the system clock.
+     */
+    public static final class Builder {
+        private final Map<Operation, LatencyDistribution> latencies = new EnumMap<>(Operation.class);
+        private LatencyDistribution queueTime = LatencyDistribution.fixed(5);
+        private LatencyDistribution runTime = LatencyDistribution.logNormal(50, 0.5);
+        private double failureRate;
+        private double throttleRate;
+        private int requestsPerSecond;
+        private int resultRows = 1_000;
+        private int pageSize = 500;
+        private int handlerThreads = 4;
+        private int port;
+        private long seed = 42;
+        private LongSupplier clock = System::currentTimeMillis;
+        private Duration retention = Duration.ofMinutes(1);
+        private boolean keepFetchedResults;
+
+        private Builder() {
+        }
+
+        /**
+         * @param latency the delay before the simulator answers a request for {@code operation}
+         */
+        public Builder latency(Operation operation, LatencyDistribution latency) {
+            latencies.put(operation, latency);
+            return this;
+        }
+
+        /**
+         * @param latency the delay before the simulator answers any request
+         */
+        public Builder latency(LatencyDistribution latency) {
+            for (Operation operation : Operation.values()) {
+                latencies.put(operation, latency);
+            }
+            return this;
+        }
+
+        /**
+         * @param queueTime how long statements stay SUBMITTED
+         * @param runTime   how long statements stay STARTED
+         */
+        public Builder statementTimes(LatencyDistribution queueTime, LatencyDistribution runTime) {
+            this.queueTime = queueTime;
+            this.runTime = runTime;
+            return this;
+        }
+
+        /**
+         * @param failureRate fraction (0..1) of statements that end FAILED
+         */
+        public Builder failureRate(double failureRate) {
+            this.failureRate = failureRate;
+            return this;
+        }
+
+        /**
+         * @param throttleRate fraction (0..1) of requests randomly answered with a throttling error
+         */
+        public Builder throttleRate(double throttleRate) {
+            this.throttleRate = throttleRate;
+            return this;
+        }
+
+        /**
+         * @param requestsPerSecond requests accepted per wall-clock second before throttling, or 0
+         *                          for no limit
+         */
+        public Builder rateLimit(int requestsPerSecond) {
+            this.requestsPerSecond = requestsPerSecond;
+            return this;
+        }
+
+        /**
+         * @param resultRows number of rows every SELECT returns
+         * @param pageSize   number of rows per {@code GetStatementResult} page
+         */
+        public Builder resultSet(int resultRows, int pageSize) {
+            if (pageSize < 1) {
+                throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+            }
+            this.resultRows = resultRows;
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        public Builder handlerThreads(int handlerThreads) {
+            this.handlerThreads = handlerThreads;
+            return this;
+        }
+
+        /**
+         * @param port the local port to listen on, or 0 for any free port
+         */
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * @param clock the current time in epoch milliseconds, which statement statuses and the
+         *              rate limit are computed from
+         */
+        public Builder clock(LongSupplier clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * @param retention          how long a statement is kept after it ends
+         * @param keepFetchedResults {@code true} to keep statements whose last result page was
+         *                           fetched, so the same result can be fetched again, until their
+         *                           retention ends
+         */
+        public Builder retention(Duration retention, boolean keepFetchedResults) {
+            if (retention.isNegative() || retention.isZero()) {
+                throw new IllegalArgumentException("Retention must be positive: " + retention);
+            }
+            this.retention = retention;
+            this.keepFetchedResults = keepFetchedResults;
+            return this;
+        }
+
+        /**
+         * Starts the simulator.
+         */
+        public RedshiftDataApiSimulator start() {
+            try {
+                return new RedshiftDataApiSimulator(this);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to start the Data API simulator: " + e.getMessage(), e);
+            }
+        }
+    }
+}
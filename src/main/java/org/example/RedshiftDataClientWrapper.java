@@ -1,220 +1,629 @@
 package org.example;
 
-import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
-import software.amazon.awssdk.core.retry.RetryMode;
-import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
-import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.services.redshiftdata.RedshiftDataAsyncClient;
 import software.amazon.awssdk.services.redshiftdata.RedshiftDataClient;
 import software.amazon.awssdk.services.redshiftdata.model.*;
-import software.amazon.awssdk.auth.credentials.ProfileCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
 
-import java.time.Duration;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 public class RedshiftDataClientWrapper {
-    private static RedshiftDataClient redshiftDataClient;
-    private static RedshiftDataAsyncClient redshiftDataAsyncClient;
+    private static final int RESULT_PREFETCH_PAGES = 2;
+    private static final EventLog.Source events = EventLog.shared().source(RedshiftDataClientWrapper.class);
+    private final RedshiftClientRegistry registry;
+    private final ClientKey clientKey;
     private final String clusterId;
     private final String databaseName;
     private final String dbUser;
+    private volatile QueryResultCache resultCache;
+    private volatile SingleFlight<QueryResultCache.Key, ColumnarQueryResult> singleFlight = new SingleFlight<>();
+    private volatile StatementPipeline pipeline;
+    private volatile StatementJournal journal;
+    private volatile Path spillDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+    private volatile long spillThresholdBytes = 64L << 20;
 
     public RedshiftDataClientWrapper(String clusterId, String databaseName, String dbUser) {
+        this(ClientKey.of(Region.US_EAST_2, "redshift"), clusterId, databaseName, dbUser);
+    }
+
+    public RedshiftDataClientWrapper(ClientKey clientKey, String clusterId, String databaseName, String dbUser) {
+        this(RedshiftClientRegistry.shared(), clientKey, clusterId, databaseName, dbUser);
+    }
+
+    /**
+     * @param registry where the clients, the completion tracker, the admission controller and
+     *                 the metrics of {@code clientKey} come from
+     */
+    public RedshiftDataClientWrapper(RedshiftClientRegistry registry, ClientKey clientKey,
+                                     String clusterId, String databaseName, String dbUser) {
+        this.registry = registry;
+        this.clientKey = clientKey;
         this.clusterId = clusterId;
         this.databaseName = databaseName;
         this.dbUser = dbUser;
     }
 
-    private static RedshiftDataClient getDataClient() {
-        if (redshiftDataClient == null) {
-            ClientOverrideConfiguration overrideConfig = ClientOverrideConfiguration.builder()
-                    .apiCallTimeout(Duration.ofMinutes(2))
-                    .apiCallAttemptTimeout(Duration.ofSeconds(90))
-                    .retryStrategy(RetryMode.STANDARD)
-                    .build();
+    private RedshiftDataClient getDataClient() {
+        return registry.dataClient(clientKey);
+    }
+
+
+    /**
+     * Turns on the result cache for {@link #query(String, List)} and
+     * {@link #queryAsync(String, List)}. Read-only statements are served from it while their entry
+     * is valid. Write statements sent through any method of this wrapper or its {@link #pipeline()}
+     * invalidate the entries they affect when they are sent and again when they end, and a read
+     * that overlapped a write is not cached.
+     *
+     * @param resultCache the cache, possibly shared with other wrappers, or {@code null} to turn it off
+     * @return this wrapper
+     */
+    public RedshiftDataClientWrapper resultCache(QueryResultCache resultCache) {
+        this.resultCache = resultCache;
+        return this;
+    }
+
+    /**
+     * Replaces the {@link SingleFlight} that coalesces identical read-only queries. Every wrapper
+     * starts with its own; share one between wrappers of the same cluster to coalesce across them.
+     *
+     * @param singleFlight the coalescing layer, or {@code null} to run every call on its own
+     * @return this wrapper
+     */
+    public RedshiftDataClientWrapper singleFlight(SingleFlight<QueryResultCache.Key, ColumnarQueryResult> singleFlight) {
+        this.singleFlight = singleFlight;
+        return this;
+    }
 
-            redshiftDataClient = RedshiftDataClient.builder()
-                    .region(Region.US_EAST_2)
-                    .credentialsProvider(ProfileCredentialsProvider.create("redshift"))
-                    .overrideConfiguration(overrideConfig)
-                    .build();
+    /**
+     * Sets where {@link #queryToStoreAsync(String, List)} and
+     * {@link #getResultsToStoreAsync(String)} keep large results: the first {@code memoryBytes}
+     * stay on the heap, the rest goes to a temporary file in {@code directory}. The defaults are
+     * 64 MB in {@code java.io.tmpdir}.
+     *
+     * @return this wrapper
+     */
+    public RedshiftDataClientWrapper spillTo(Path directory, long memoryBytes) {
+        if (memoryBytes < 0) {
+            throw new IllegalArgumentException("Memory threshold must not be negative: " + memoryBytes);
         }
-        return redshiftDataClient;
+        this.spillDirectory = Objects.requireNonNull(directory, "directory");
+        this.spillThresholdBytes = memoryBytes;
+        return this;
     }
 
+    /**
+     * Turns on the statement journal. Every submission and its outcome are recorded, and a
+     * read-only query whose identical request a previous process left live in the journal is
+     * picked up by its statement ID instead of being executed again; its result can then be up to
+     * {@link StatementJournal#RETENTION} old. Statements this process submitted are never picked
+     * up, and write statements sent through this wrapper drop the journaled reads of the tables
+     * they write. Call {@link #recoverJournal()} once on startup.
+     *
+     * @param journal the journal, possibly shared with other wrappers, or {@code null} to turn it off
+     * @return this wrapper
+     */
+    public RedshiftDataClientWrapper journal(StatementJournal journal) {
+        this.journal = journal;
+        return this;
+    }
 
-    public void query(String statement) {
-        String id = queryRequest(statement);
-//        checkStatement(id);
-//        getResults(id);
+    /**
+     * Tracks the statements of this wrapper's cluster and database that the journal holds as
+     * unfinished, typically those a previous process left running, and records how each ended.
+     * The FINISHED ones are then picked up by identical queries.
+     *
+     * @return a {@link CompletableFuture} with the number of statements that FINISHED
+     */
+    public CompletableFuture<Integer> recoverJournal() {
+        StatementJournal journal = this.journal;
+        if (journal == null) {
+            throw new IllegalStateException("No statement journal is set");
+        }
+        AtomicInteger finished = new AtomicInteger();
+        List<CompletableFuture<?>> tracked = new ArrayList<>();
+        for (StatementJournal.Entry entry : journal.unfinished()) {
+            if (!Objects.equals(entry.clusterId(), clusterId) || !Objects.equals(entry.database(), databaseName)) {
+                continue;
+            }
+            tracked.add(getCompletionTracker().track(entry.statementId(), entry.fingerprint()).handle((response, exception) -> {
+                if (exception == null) {
+                    finished.incrementAndGet();
+                }
+                journal.recordState(entry.statementId(),
+                        exception == null ? StatementJournal.State.FINISHED : StatementJournal.State.FAILED);
+                return null;
+            }));
+        }
+        events.info("Recovering {} unfinished statements from the journal", tracked.size());
+        return CompletableFuture.allOf(tracked.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> finished.get());
+    }
+
+    /**
+     * @return the ID of a live journaled statement for the same read-only request, or {@code null}
+     */
+    private String reattachable(String statement, List<SqlParameter> parameters) {
+        StatementJournal journal = this.journal;
+        if (journal == null || !SqlStatements.isReadOnly(statement)) {
+            return null;
+        }
+        // find() only returns statements of a previous process: this one may already have fetched
+        // the result of its own, e.g. one sent with queryRequest and read with getResults.
+        StatementJournal.Entry entry = journal.find(clusterId, databaseName, dbUser, statement, parameters);
+        return entry == null ? null : entry.statementId();
+    }
+
+    private void recordState(String statementId, StatementJournal.State state) {
+        StatementJournal journal = this.journal;
+        if (journal != null) {
+            journal.recordState(statementId, state);
+        }
+    }
+
+    public ColumnarQueryResult query(String statement) {
+        return query(statement, List.of());
+    }
+
+    /**
+     * Runs a statement and waits for its rows. Concurrent calls with the same read-only statement
+     * and parameters share one execution.
+     *
+     * @param parameters values for the {@code :name} placeholders in {@code statement}
+     * @return the rows, or an empty result for statements without a result set
+     */
+    public ColumnarQueryResult query(String statement, List<SqlParameter> parameters) {
+        try {
+            return query(statement, parameters,
+                    () -> CompletableFuture.completedFuture(runQuery(statement, parameters))).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    private CompletableFuture<ColumnarQueryResult> query(String statement, List<SqlParameter> parameters,
+                                                         Supplier<CompletableFuture<ColumnarQueryResult>> run) {
+        QueryResultCache cache = resultCache;
+        if (!SqlStatements.isReadOnly(statement)) {
+            // The submit paths invalidate the cache for writes.
+            return run.get();
+        }
+
+        QueryResultCache.Key key = QueryResultCache.Key.of(clusterId, databaseName, dbUser, statement, parameters);
+        Supplier<CompletableFuture<ColumnarQueryResult>> execution = run;
+        if (cache != null) {
+            ColumnarQueryResult cached = cache.get(key);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+            execution = () -> {
+                // Taken before the read starts, so its rows are dropped if a write overlapped it.
+                long generation = cache.generation();
+                return run.get().whenComplete((rows, exception) -> {
+                    if (exception == null) {
+                        cache.putIfUnchanged(key, rows, generation);
+                    }
+                });
+            };
+        }
+        SingleFlight<QueryResultCache.Key, ColumnarQueryResult> flight = singleFlight;
+        return flight == null ? execution.get() : flight.execute(key, execution);
+    }
+
+    private ColumnarQueryResult runQuery(String statement, List<SqlParameter> parameters) {
+        String fingerprint = SqlFingerprint.of(statement);
+        String attached = reattachable(statement, parameters);
+        if (attached != null) {
+            try {
+                return awaitResult(attached, fingerprint);
+            } catch (RuntimeException e) {
+                // The statement may have failed or its result expired; run the query again.
+                events.warn("Could not pick up journaled statement {}, executing again: {}", attached, e.getMessage());
+                recordState(attached, StatementJournal.State.FAILED);
+            }
+        }
+        String id = submit(statement, parameters);
+        try {
+            return awaitResult(id, fingerprint);
+        } finally {
+            // Once more now that a write has ended, for the reads that overlapped it.
+            invalidate(statement);
+        }
+    }
+
+    private ColumnarQueryResult awaitResult(String id, String fingerprint) {
+        DescribeStatementResponse finished = checkStatement(id, fingerprint);
+        ColumnarQueryResult result = Boolean.TRUE.equals(finished.hasResultSet())
+                ? getResults(id)
+                : new ColumnarQueryResult.Builder(List.of()).build();
+        recordState(id, StatementJournal.State.FETCHED);
+        return result;
     }
 
 
     public String queryRequest(String sqlStatement) {
+        return queryRequest(sqlStatement, List.of());
+    }
 
-        ExecuteStatementRequest statementRequest = ExecuteStatementRequest.builder()
+    public String queryRequest(String sqlStatement, List<SqlParameter> parameters) {
+        String id = submit(sqlStatement, parameters);
+        if ((resultCache != null || journal != null) && !SqlStatements.isReadOnly(sqlStatement)) {
+            invalidateWhenDone(sqlStatement, getCompletionTracker().track(id, SqlFingerprint.of(sqlStatement)));
+        }
+        return id;
+    }
+
+    private String submit(String sqlStatement, List<SqlParameter> parameters) {
+        invalidate(sqlStatement);
+        ExecuteStatementRequest.Builder statementRequest = ExecuteStatementRequest.builder()
                 .clusterIdentifier(clusterId)
                 .database(databaseName)
                 .dbUser(dbUser)
-                .sql(sqlStatement)
-                .build();
+                .sql(sqlStatement);
+        if (!parameters.isEmpty()) {
+            statementRequest.parameters(parameters);
+        }
 
-        ExecuteStatementResponse response = getDataClient().executeStatement(statementRequest); // Use join() to wait for the result
+        ExecuteStatementResponse response = admitted(AdmissionController.EXECUTE_STATEMENT, () -> {
+            // Timed once the permit is held, so waiting for admission is not counted as submit latency.
+            long startNanos = System.nanoTime();
+            ExecuteStatementResponse submitted = getDataClient().executeStatement(statementRequest.build());
+            getMetrics().recordSubmit(System.nanoTime() - startNanos);
+            return submitted;
+        });
+        StatementJournal journal = this.journal;
+        if (journal != null) {
+            journal.recordSubmitted(response.id(), clusterId, databaseName, dbUser, sqlStatement, parameters);
+        }
         return response.id();
     }
 
-    private void checkStatement(String statementId) {
+    /**
+     * Runs one sync call under a permit of the shared admission controller, blocking while none is
+     * available.
+     */
+    private <T> T admitted(String operation, Supplier<T> call) {
+        AdmissionController.Permit permit;
+        try {
+            permit = getAdmissionController().acquire(operation).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        try {
+            T result = call.get();
+            permit.release(null);
+            return result;
+        } catch (RuntimeException e) {
+            permit.release(e);
+            throw e;
+        }
+    }
+
+    private DescribeStatementResponse checkStatement(String statementId, String fingerprint) {
+        DescribeStatementRequest describeRequest = DescribeStatementRequest.builder().id(statementId).build();
+        PollingStrategy pollingStrategy = registry.pollingStrategy();
+        long delay = pollingStrategy.firstDelayMillis(fingerprint);
+        int polls = 0;
+        long startNanos = System.nanoTime();
         while (true) {
-            DescribeStatementRequest describeRequest = DescribeStatementRequest.builder().id(statementId).build();
-            DescribeStatementResponse describeResponse = redshiftDataClient.describeStatement(describeRequest);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Thread interrupted while waiting for query completion.", e);
+            }
+
+            DescribeStatementResponse describeResponse = admitted(AdmissionController.DESCRIBE_STATEMENT,
+                    () -> getDataClient().describeStatement(describeRequest));
+            polls++;
 
             String status = describeResponse.statusAsString();
             if ("FINISHED".equals(status)) {
-                break;
-            } else if ("FAILED".equals(status)) {
-                throw new RuntimeException("Query failed: " + describeResponse.error());
+                // Learn under the caller's fingerprint, as the completion tracker does.
+                pollingStrategy.onFinished(fingerprint != null ? fingerprint : SqlFingerprint.of(describeResponse.queryString()),
+                        describeResponse);
+                getMetrics().recordFinished(System.nanoTime() - startNanos, polls, describeResponse);
+                recordState(statementId, StatementJournal.State.FINISHED);
+                return describeResponse;
+            } else if ("FAILED".equals(status) || "ABORTED".equals(status)) {
+                recordState(statementId, StatementJournal.State.FAILED);
+                throw new StatementFailedException(statementId, status, describeResponse.error());
             } else {
-                System.out.println("Query status: " + status + ". Waiting for completion...");
+                events.debug("Statement {} is {}, waiting for completion", statementId, status);
             }
+            delay = pollingStrategy.nextDelayMillis(fingerprint, polls, delay);
+        }
+    }
 
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new RuntimeException("Thread interrupted while waiting for query completion.", e);
+
+    private ColumnarQueryResult getResults(String statementId) {
+        // The paginator follows NextToken lazily, one page per GetStatementResult call.
+        GetStatementResultRequest resultRequest = GetStatementResultRequest.builder().id(statementId).build();
+        long startNanos = System.nanoTime();
+        ColumnarQueryResult.Builder rows = null;
+        for (GetStatementResultResponse resultResponse : getDataClient().getStatementResultPaginator(resultRequest)) {
+            // Column metadata is only returned with the first page
+            if (rows == null) {
+                if (!resultResponse.hasColumnMetadata()) {
+                    throw new RuntimeException("No results found for query.");
+                }
+                Long totalRows = resultResponse.totalNumRows();
+                int expectedRows = totalRows == null ? 16 : (int) Math.min(Integer.MAX_VALUE, totalRows);
+                rows = new ColumnarQueryResult.Builder(resultResponse.columnMetadata(), expectedRows);
+            }
+            for (List<Field> record : resultResponse.records()) {
+                rows.add(record);
             }
         }
+        ColumnarQueryResult result = rows.build();
+        getMetrics().recordFetch(System.nanoTime() - startNanos, result.rowCount(), result.estimatedBytes());
+        return result;
     }
 
 
-    private void getResults(String statementId) {
-        // Prepare the request to get the statement result
-        GetStatementResultRequest resultRequest = GetStatementResultRequest.builder().id(statementId).build();
-        GetStatementResultResponse resultResponse = getDataClient().getStatementResult(resultRequest);
+    //---------------------- Async Functions ---------------------------------------
+    public CompletableFuture<ColumnarQueryResult> queryAsync(String statement) {
+        return queryAsync(statement, List.of());
+    }
+
+    /**
+     * Runs a statement without blocking. Concurrent calls with the same read-only statement and
+     * parameters share one ExecuteStatement, one poll loop and one fetch.
+     *
+     * @param parameters values for the {@code :name} placeholders in {@code statement}
+     * @return a {@link CompletableFuture} with the rows, or an empty result for statements without
+     * a result set
+     */
+    public CompletableFuture<ColumnarQueryResult> queryAsync(String statement, List<SqlParameter> parameters) {
+        return query(statement, parameters, () -> runQueryAsync(statement, parameters));
+    }
 
-        // Get column metadata and rows
-        if (resultResponse.columnMetadata() == null || resultResponse.records() == null) {
-            throw new RuntimeException("No results found for query.");
+    private CompletableFuture<ColumnarQueryResult> runQueryAsync(String statement, List<SqlParameter> parameters) {
+        StatementJournal journal = this.journal;
+        if (journal == null) {
+            return pipeline().submit(statement, parameters).thenResult();
+        }
+        String attached = reattachable(statement, parameters);
+        if (attached == null) {
+            return journaled(journal, pipeline().submit(statement, parameters), statement, parameters);
         }
+        return journaled(journal, pipeline().attach(attached, statement), null, null).exceptionallyCompose(exception -> {
+            events.warn("Could not pick up journaled statement {}, executing again: {}", attached, exception.getMessage());
+            journal.recordState(attached, StatementJournal.State.FAILED);
+            return journaled(journal, pipeline().submit(statement, parameters), statement, parameters);
+        });
+    }
 
+    /**
+     * Records a pipeline statement's submission, unless {@code statement} is {@code null} for one
+     * that was picked up, then its outcome and finally the fetch of its result.
+     */
+    private CompletableFuture<ColumnarQueryResult> journaled(StatementJournal journal, StatementPipeline.Submission submission,
+                                                           String statement, List<SqlParameter> parameters) {
+        CompletableFuture<String> outcome = submission.statementId().thenCompose(id -> {
+            if (statement != null) {
+                journal.recordSubmitted(id, clusterId, databaseName, dbUser, statement, parameters);
+            }
+            return submission.finished().handle((response, exception) -> {
+                journal.recordState(id, exception == null ? StatementJournal.State.FINISHED : StatementJournal.State.FAILED);
+                return id;
+            });
+        });
+        return submission.thenResult().thenCombine(outcome, (rows, id) -> {
+            journal.recordState(id, StatementJournal.State.FETCHED);
+            return rows;
+        });
     }
 
+    /**
+     * Runs a statement without blocking, like {@link #queryAsync(String, List)}, but keeps the
+     * result in a {@link SpillingResultStore} so that results larger than the heap can be read.
+     * Results are neither cached nor shared between calls. The caller closes the store.
+     *
+     * @param parameters values for the {@code :name} placeholders in {@code statement}
+     * @return a {@link CompletableFuture} with the finished store
+     * @see #spillTo(Path, long)
+     */
+    public CompletableFuture<SpillingResultStore> queryToStoreAsync(String statement, List<SqlParameter> parameters) {
+        StatementPipeline.Submission submission = pipeline().submit(statement, parameters);
+        StatementJournal journal = this.journal;
+        if (journal != null) {
+            submission.statementId().thenAccept(id ->
+                    journal.recordSubmitted(id, clusterId, databaseName, dbUser, statement, parameters));
+        }
+        return submission.thenStore(spillThresholdBytes, spillDirectory).thenCombine(submission.statementId(), (store, id) -> {
+            recordState(id, StatementJournal.State.FETCHED);
+            return store;
+        });
+    }
 
-    //---------------------- Async Functions ---------------------------------------
-    public void queryAsync(String statement) {
-        queryRequestAsync(statement);
-//        String id = queryRequestAsync(statement).join();
-//        checkStatementAsync(id).join();
-//        getResultsAsync(id).join();
+    /**
+     * The pipeline behind {@link #queryAsync(String, List)}, created on first use. Use it to tune
+     * the depth of its stages, read their latencies or submit statements directly.
+     */
+    public StatementPipeline pipeline() {
+        StatementPipeline current = pipeline;
+        if (current == null) {
+            synchronized (this) {
+                current = pipeline;
+                if (current == null) {
+                    current = new StatementPipeline(getStatementExecutor(), getCompletionTracker(), this::streamResults)
+                            .metrics(getMetrics())
+                            .submitListener((sql, finished) -> {
+                                invalidate(sql);
+                                invalidateWhenDone(sql, finished);
+                            });
+                    pipeline = current;
+                }
+            }
+        }
+        return current;
     }
 
-    private static RedshiftDataAsyncClient getAsyncDataClient() {
-        if (redshiftDataAsyncClient == null) {
-            SdkAsyncHttpClient httpClient = NettyNioAsyncHttpClient.builder()
-                    .maxConcurrency(100)
-                    .connectionTimeout(Duration.ofSeconds(60))
-                    .readTimeout(Duration.ofSeconds(60))
-                    .writeTimeout(Duration.ofSeconds(60))
-                    .build();
+    private RedshiftDataAsyncClient getAsyncDataClient() {
+        return registry.dataAsyncClient(clientKey);
+    }
 
-            ClientOverrideConfiguration overrideConfig = ClientOverrideConfiguration.builder()
-                    .apiCallTimeout(Duration.ofMinutes(2))
-                    .apiCallAttemptTimeout(Duration.ofSeconds(90))
-                    .retryStrategy(RetryMode.STANDARD)
-                    .build();
+    private StatementCompletionTracker getCompletionTracker() {
+        return registry.completionTracker(clientKey);
+    }
 
-            redshiftDataAsyncClient = RedshiftDataAsyncClient.builder()
-                    .httpClient(httpClient)
-                    .overrideConfiguration(overrideConfig)
-                    .credentialsProvider(ProfileCredentialsProvider.create("redshift"))
-                    .build();
-        }
-        return redshiftDataAsyncClient;
+    private AdmissionController getAdmissionController() {
+        return registry.admissionController(clientKey);
     }
 
-    public CompletableFuture<String> queryRequestAsync(String sqlStatement) {
+    private AsyncStatementExecutor getStatementExecutor() {
+        return new AsyncStatementExecutor(getAsyncDataClient(), clusterId, databaseName, dbUser)
+                .admissionController(getAdmissionController())
+                .metrics(getMetrics());
+    }
 
-        ExecuteStatementRequest statementRequest = ExecuteStatementRequest.builder()
-                .clusterIdentifier(clusterId)
-                .database(databaseName)
-                .dbUser(dbUser)
-                .sql(sqlStatement)
-                .build();
+    /**
+     * @return the per-phase metrics of every statement this wrapper runs, shared with other users
+     * of the same client
+     */
+    public QueryMetrics getMetrics() {
+        return registry.queryMetrics(clientKey);
+    }
 
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                ExecuteStatementResponse response = getAsyncDataClient().executeStatement(statementRequest).join(); // Use join() to wait for the result
-                return response.id();
-            } catch (RedshiftDataException e) {
-                throw new RuntimeException("Error executing statement: " + e.getMessage(), e);
+    /**
+     * Submits a statement without blocking.
+     *
+     * @return a {@link CompletableFuture} with the statement ID, or failed with a
+     * {@link StatementSubmissionException}
+     */
+    public CompletableFuture<String> queryRequestAsync(String sqlStatement) {
+        invalidate(sqlStatement);
+        return getStatementExecutor().submit(sqlStatement).whenComplete((id, exception) -> {
+            if (exception != null) {
+                return;
+            }
+            StatementJournal journal = this.journal;
+            if (journal != null) {
+                journal.recordSubmitted(id, clusterId, databaseName, dbUser, sqlStatement, List.of());
+            }
+            if ((resultCache != null || journal != null) && !SqlStatements.isReadOnly(sqlStatement)) {
+                invalidateWhenDone(sqlStatement, getCompletionTracker().track(id, SqlFingerprint.of(sqlStatement)));
             }
-        }).exceptionally(exception -> {
-            return "";
         });
     }
 
+    /**
+     * Drops the cached results and journaled reads a write statement may change; read-only
+     * statements are ignored.
+     */
+    private void invalidate(String statement) {
+        QueryResultCache cache = resultCache;
+        if (cache != null) {
+            cache.onWrite(clusterId, databaseName, statement);
+        }
+        StatementJournal journal = this.journal;
+        if (journal != null) {
+            journal.onWrite(clusterId, databaseName, statement);
+        }
+    }
+
+    /**
+     * Invalidates once more when a write ends, whether or not it succeeded, so that the results of
+     * reads that overlapped it are neither cached nor picked up from the journal either.
+     */
+    private void invalidateWhenDone(String statement, CompletableFuture<?> finished) {
+        if (!SqlStatements.isReadOnly(statement)) {
+            finished.whenComplete((response, exception) -> invalidate(statement));
+        }
+    }
+
     public CompletableFuture<Void> checkStatementAsync(String sqlId) {
-        DescribeStatementRequest statementRequest = DescribeStatementRequest.builder()
-                .id(sqlId)
-                .build();
-
-        return getAsyncDataClient().describeStatement(statementRequest)
-                .thenCompose(response -> {
-                    String status = response.statusAsString();
-
-                    if ("FAILED".equals(status)) {
-                        throw new RuntimeException("The Query Failed. Ending program");
-                    } else if ("FINISHED".equals(status)) {
-                        return CompletableFuture.completedFuture(null);
-                    } else {
-                        // Sleep for 1 second and recheck status
-                        return CompletableFuture.runAsync(() -> {
-                            try {
-                                TimeUnit.MILLISECONDS.sleep(100);
-                            } catch (InterruptedException e) {
-                                throw new RuntimeException("Error during sleep: " + e.getMessage(), e);
-                            }
-                        }).thenCompose(ignore -> checkStatementAsync(sqlId)); // Recursively call until status is FINISHED or FAILED
-                    }
-                }).whenComplete((result, exception) -> {
+        return checkStatementAsync(sqlId, null);
+    }
+
+    /**
+     * @param sqlStatement the statement's SQL, which lets the tracker time the first poll from
+     *                     earlier runs of the same query, or {@code null} if it is unknown
+     */
+    public CompletableFuture<Void> checkStatementAsync(String sqlId, String sqlStatement) {
+        return getCompletionTracker().track(sqlId, sqlStatement == null ? null : SqlFingerprint.of(sqlStatement))
+                .<Void>thenApply(response -> null)
+                .whenComplete((result, exception) -> {
+                    recordState(sqlId, exception == null ? StatementJournal.State.FINISHED : StatementJournal.State.FAILED);
                     if (exception != null) {
-                        // Handle exceptions
-                        System.out.println("Error checking statement: " + exception.getMessage());
+                        events.warn("Error checking statement {}: {}", sqlId, exception.getMessage());
                     } else {
-                        System.out.println("Statement is finished");
+                        events.debug("Statement {} is finished", sqlId);
                     }
                 });
     }
 
-    public CompletableFuture<Void> getResultsAsync(String statementId) {
-        GetStatementResultRequest resultRequest = GetStatementResultRequest.builder()
-                .id(statementId)
-                .build();
-
-        return getAsyncDataClient().getStatementResult(resultRequest)
-                .handle((response, exception) -> {
-                    if (exception != null) {
-                        throw new RuntimeException("Error getting statement result: " + exception.getMessage(), exception);
+    /**
+     * @param statementId the ID of a FINISHED statement with a result set
+     * @return a {@link CompletableFuture} with every row of the result
+     */
+    public CompletableFuture<ColumnarQueryResult> getResultsAsync(String statementId) {
+        long startNanos = System.nanoTime();
+        return StatementPipeline.collect(streamResults(statementId))
+                .whenComplete((rows, exception) -> {
+                    if (exception == null) {
+                        getMetrics().recordFetch(System.nanoTime() - startNanos, rows.rowCount(), rows.estimatedBytes());
+                        recordState(statementId, StatementJournal.State.FETCHED);
                     }
-
-                    // Extract and print the field values using streams if the response is valid.
-//                    response.records().stream()
-//                            .flatMap(List::stream)
-//                            .map(Field::stringValue)
-//                            .filter(value -> value != null)
-//                            .forEach(value -> System.out.println("The Movie title field is " + value));
-
-                    return response;
-                }).thenAccept(response -> {
-                    // Optionally add more logic here if needed after handling the response
                 });
     }
 
+    /**
+     * Like {@link #getResultsAsync(String)}, but keeps the rows in a {@link SpillingResultStore}.
+     * The caller closes the store.
+     *
+     * @param statementId the ID of a FINISHED statement with a result set
+     * @return a {@link CompletableFuture} with the finished store
+     * @see #spillTo(Path, long)
+     */
+    public CompletableFuture<SpillingResultStore> getResultsToStoreAsync(String statementId) {
+        long startNanos = System.nanoTime();
+        return StatementPipeline.store(streamResults(statementId), spillThresholdBytes, spillDirectory)
+                .whenComplete((store, exception) -> {
+                    if (exception == null) {
+                        getMetrics().recordFetch(System.nanoTime() - startNanos, store.rowCount(),
+                                store.memoryBytes() + store.spilledBytes());
+                        recordState(statementId, StatementJournal.State.FETCHED);
+                    }
+                });
+    }
 
-}
+    /**
+     * Streams a statement result into a file without holding it in memory.
+     *
+     * @param statementId the ID of a FINISHED statement with a result set
+     * @param exporter    the format and buffering of the export, e.g.
+     *                    {@code new ResultExporter(new CsvExportFormat())}
+     * @return a {@link CompletableFuture} with the figures of the export
+     */
+    public CompletableFuture<ResultExporter.Stats> exportResultsAsync(String statementId, ResultExporter exporter, Path file) {
+        return exporter.export(streamResults(statementId), file).whenComplete((stats, exception) -> {
+            if (exception == null) {
+                getMetrics().recordFetch(stats.elapsedNanos(), stats.rows(), stats.bytes());
+                recordState(statementId, StatementJournal.State.FETCHED);
+            }
+        });
+    }
 
+    /**
+     * Streams every row of a statement result, fetching at most {@value #RESULT_PREFETCH_PAGES}
+     * pages ahead of the consumer.
+     *
+     * @param statementId the ID of a FINISHED statement
+     * @return a single-use stream over all result pages
+     */
+    public StatementResultStream streamResults(String statementId) {
+        return new StatementResultStream(getAsyncDataClient(), statementId, RESULT_PREFETCH_PAGES)
+                .admissionController(getAdmissionController());
+    }
 
 
+}
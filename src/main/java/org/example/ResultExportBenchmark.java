@@ -0,0 +1,188 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.services.redshiftdata.RedshiftDataAsyncClient;
+import software.amazon.awssdk.services.redshiftdata.model.ColumnMetadata;
+import software.amazon.awssdk.services.redshiftdata.model.Field;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures export throughput in MB/s, reported as the {@code megabytes} counter, and in rows/s as
+ * {@code rows}; compare formats by rows, since they spend very different bytes per row.
+ * <ul>
+ * <li>{@link #exportFile} exports a FINISHED result from the local
+ * {@link RedshiftDataApiSimulator} into a temporary file with {@link ResultExporter}: download,
+ * encoding and writing overlapped. The {@code json} format is the previous handoff for
+ * comparison: the whole result collected into a {@link QueryResult} and written as
+ * {@link QueryResult#toJson()}.</li>
+ * <li>{@link #encode} feeds rows that are already in memory through a format into a channel that
+ * discards them, which is the ceiling the encoders put on an export.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class ResultExportBenchmark {
+
+    private static ResultExportFormat format(String name) {
+        switch (name) {
+            case "csv":
+                return new CsvExportFormat();
+            case "arrow":
+                return new ArrowExportFormat();
+            default:
+                throw new IllegalArgumentException("Unknown format: " + name);
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Throughput {
+        public double megabytes;
+        public long rows;
+    }
+
+    @State(Scope.Benchmark)
+    public static class SimulatedResult {
+        @Param({"100000"})
+        public int resultRows;
+
+        @Param({"csv", "arrow", "json"})
+        public String format;
+
+        RedshiftDataApiSimulator simulator;
+        RedshiftClientRegistry registry;
+        RedshiftDataAsyncClient client;
+        String statementId;
+        Path file;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            simulator = RedshiftDataApiSimulator.builder()
+                    .latency(LatencyDistribution.uniform(1, 3))
+                    .resultSet(resultRows, 1_000)
+                    .statementTimes(LatencyDistribution.fixed(0), LatencyDistribution.fixed(0))
+                    .retention(Duration.ofHours(1), true)
+                    .start();
+            registry = new RedshiftClientRegistry(200, 0);
+            client = registry.dataAsyncClient(simulator.clientKey());
+            // The simulator serves a FINISHED result as often as it is fetched.
+            statementId = new AsyncStatementExecutor(client, "simulated-cluster", "dev", "awsuser")
+                    .submit("SELECT * FROM movies").join();
+            registry.completionTracker(simulator.clientKey()).track(statementId, SqlFingerprint.of("SELECT * FROM movies")).join();
+            file = Files.createTempFile("result-export", "." + format);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            registry.close();
+            simulator.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class InMemoryRows {
+        @Param({"100000"})
+        public int rows;
+
+        @Param({"csv", "arrow"})
+        public String format;
+
+        List<ColumnMetadata> columns;
+        List<List<Field>> records;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            columns = List.of(
+                    ColumnMetadata.builder().name("id").typeName("int8").build(),
+                    ColumnMetadata.builder().name("title").typeName("varchar").build(),
+                    ColumnMetadata.builder().name("year").typeName("int4").build(),
+                    ColumnMetadata.builder().name("rating").typeName("float8").build());
+            Random random = new Random(3);
+            records = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                records.add(List.of(
+                        Field.fromLongValue((long) i),
+                        Field.fromStringValue("Movie " + random.nextInt(5_000)),
+                        Field.fromLongValue((long) (1920 + random.nextInt(100))),
+                        Field.fromDoubleValue(random.nextInt(100) / 10.0)));
+            }
+        }
+    }
+
+    /**
+     * Counts and drops everything written to it.
+     */
+    private static final class NullChannel implements WritableByteChannel {
+        @Override
+        public int write(ByteBuffer source) {
+            int length = source.remaining();
+            source.position(source.limit());
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Benchmark
+    public long exportFile(SimulatedResult state, Throughput throughput) throws IOException {
+        StatementResultStream stream = new StatementResultStream(state.client, state.statementId, 4);
+        long bytes;
+        long rowCount;
+        if (state.format.equals("json")) {
+            List<List<Field>> rows = new ArrayList<>(state.resultRows);
+            stream.forEach(rows::add).join();
+            byte[] json = new QueryResult(stream.columnMetadata().join(), rows).toJson().getBytes(StandardCharsets.UTF_8);
+            try (FileChannel channel = FileChannel.open(state.file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                Channels.newOutputStream(channel).write(json);
+            }
+            bytes = json.length;
+            rowCount = rows.size();
+        } else {
+            ResultExporter.Stats stats = new ResultExporter(format(state.format)).export(stream, state.file).join();
+            bytes = stats.bytes();
+            rowCount = stats.rows();
+        }
+        throughput.megabytes += bytes / 1e6;
+        throughput.rows += rowCount;
+        return bytes;
+    }
+
+    @Benchmark
+    public long encode(InMemoryRows state, Throughput throughput) throws IOException {
+        ExportOutput output = new ExportOutput(new NullChannel(), 1 << 20, Runnable::run);
+        ResultExportFormat.RowEncoder encoder = format(state.format).open(state.columns, output);
+        for (List<Field> row : state.records) {
+            encoder.add(row);
+        }
+        encoder.finish();
+        output.flush();
+        throughput.megabytes += output.bytes() / 1e6;
+        throughput.rows += state.records.size();
+        return output.bytes();
+    }
+}
@@ -0,0 +1,41 @@
+package org.example;
+
+import software.amazon.awssdk.services.redshiftdata.model.ColumnMetadata;
+import software.amazon.awssdk.services.redshiftdata.model.Field;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A file format that {@link ResultExporter} writes query results in, one row at a time.
+ * <p>
+ * Implementations encode straight from the Data API {@link Field}s into an
+ * {@link ExportOutput}; they never hold more than their own batch of rows.
+ *
+ * @see CsvExportFormat
+ * @see ArrowExportFormat
+ */
+public interface ResultExportFormat {
+
+    /**
+     * @return the usual file name extension, without the dot
+     */
+    String extension();
+
+    /**
+     * Starts one result, for example by writing a header.
+     */
+    RowEncoder open(List<ColumnMetadata> columnMetadata, ExportOutput output) throws IOException;
+
+    /**
+     * Encodes the rows of one result.
+     */
+    interface RowEncoder {
+        void add(List<Field> row) throws IOException;
+
+        /**
+         * Writes whatever the encoder still holds, for example a partial batch or a footer.
+         */
+        void finish() throws IOException;
+    }
+}
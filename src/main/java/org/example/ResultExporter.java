@@ -0,0 +1,169 @@
+package org.example;
+
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Streams a statement result into a file or channel in a {@link ResultExportFormat}, without
+ * building the result in memory.
+ * <p>
+ * An export runs as three overlapping stages: the {@link StatementResultStream} fetches the next
+ * {@code GetStatementResult} pages while the rows of the current one are encoded on an export
+ * thread, and the encoded bytes are written by an {@link ExportOutput} while the next buffer is
+ * filled. Memory use is bounded by the stream's prefetched pages, the format's own batch and two
+ * output buffers.
+ */
+public class ResultExporter {
+
+    private static final EventLog.Source events = EventLog.shared().source(ResultExporter.class);
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "redshift-result-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ResultExportFormat format;
+    private volatile int bufferSize = 1 << 20;
+    private volatile Executor executor = DEFAULT_EXECUTOR;
+
+    public ResultExporter(ResultExportFormat format) {
+        this.format = Objects.requireNonNull(format, "format");
+    }
+
+    /**
+     * @param bufferSize the size of each of the two output buffers, 1 MB by default
+     * @return this exporter
+     */
+    public ResultExporter bufferSize(int bufferSize) {
+        if (bufferSize < 4_096) {
+            throw new IllegalArgumentException("Export buffers must hold at least 4096 bytes: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    /**
+     * @param executor runs the encoding and the writes of every export, which block. Writes overlap
+     *                 with encoding when a second thread is free; otherwise they run on the
+     *                 encoding thread. By default a shared pool of daemon threads.
+     * @return this exporter
+     */
+    public ResultExporter executor(Executor executor) {
+        this.executor = Objects.requireNonNull(executor, "executor");
+        return this;
+    }
+
+    public ResultExportFormat format() {
+        return format;
+    }
+
+    /**
+     * Exports into a file, replacing it. The file is deleted if the export fails.
+     *
+     * @return a {@link CompletableFuture} with the export's figures
+     */
+    public CompletableFuture<Stats> export(StatementResultStream stream, Path file) {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new RuntimeException("Error opening export file " + file + ": " + e.getMessage(), e));
+        }
+        return export(stream, channel).whenComplete((stats, exception) -> {
+            try {
+                channel.close();
+                if (exception != null) {
+                    Files.deleteIfExists(file);
+                }
+            } catch (IOException e) {
+                events.warn("Failed to close export file {}: {}", file, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Exports into a channel, for example a socket or a pipe, which is left open.
+     *
+     * @return a {@link CompletableFuture} with the export's figures
+     */
+    public CompletableFuture<Stats> export(StatementResultStream stream, WritableByteChannel channel) {
+        Executor executor = this.executor;
+        ExportOutput output = new ExportOutput(channel, bufferSize, executor);
+        return CompletableFuture.supplyAsync(() -> {
+            long startNanos = System.nanoTime();
+            long rows = 0;
+            // The blocking iterator keeps this thread off the SDK's response threads. Closing it
+            // stops the prefetching when the export fails half way.
+            try (StatementResultStream.RowIterator iterator = stream.iterator()) {
+                ResultExportFormat.RowEncoder encoder = format.open(stream.columnMetadata().join(), output);
+                while (iterator.hasNext()) {
+                    encoder.add(iterator.next());
+                    rows++;
+                }
+                encoder.finish();
+                output.flush();
+            } catch (IOException e) {
+                output.abandon();
+                throw new CompletionException(new RuntimeException("Error exporting query result: " + e.getMessage(), e));
+            } catch (RuntimeException e) {
+                output.abandon();
+                throw e;
+            }
+            Stats stats = new Stats(rows, output.bytes(), System.nanoTime() - startNanos);
+            events.debug("Exported {} as {}", stats, format);
+            return stats;
+        }, executor);
+    }
+
+    /**
+     * The figures of one finished export.
+     */
+    public static final class Stats {
+        private final long rows;
+        private final long bytes;
+        private final long elapsedNanos;
+
+        Stats(long rows, long bytes, long elapsedNanos) {
+            this.rows = rows;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long rows() {
+            return rows;
+        }
+
+        public long bytes() {
+            return bytes;
+        }
+
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return the bytes written per second of the export, in MB (10<sup>6</sup> bytes)
+         */
+        public double megabytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : bytes * 1_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d rows, %d bytes in %.1f ms (%.1f MB/s)",
+                    rows, bytes, elapsedNanos / 1e6, megabytesPerSecond());
+        }
+    }
+}
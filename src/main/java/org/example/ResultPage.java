@@ -0,0 +1,659 @@
+package org.example;
+
+import software.amazon.awssdk.services.redshiftdata.model.ColumnMetadata;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * A query result in a compact binary form that is read in place.
+ * <p>
+ * A page is one contiguous little-endian buffer: a schema header with the column names and
+ * {@link ColumnType}s, followed by one section per column. Each section holds the column's
+ * values in a typed layout, so {@link #longColumn(int)} and {@link #doubleColumn(int)} are plain
+ * {@link LongBuffer} and {@link DoubleBuffer} views, and every accessor reads straight from the
+ * buffer without first turning the page back into objects. A buffer read from a file, a memory
+ * mapping or a socket can therefore be used as soon as it is {@link #wrap(ByteBuffer) wrapped}.
+ * <p>
+ * The layout, with every section aligned to 8 bytes:
+ * <pre>
+ * header   int magic "RSPG", int page length, byte version,
+ *          varint column count, per column: byte type, varint name length, UTF-8 name,
+ *          varint row count,
+ *          per column: int offset of its null bitmap (or -1 without nulls), int offset of its values
+ * nulls    one bit per row, in longs
+ * LONG     8 bytes per row            DOUBLE   8 bytes per row
+ * BOOLEAN  one bit per row, in longs
+ * BLOB     int end offset per row, then the bytes
+ * STRING   int dictionary size, int code width, int offset of the codes, then per distinct
+ *          value a varint length and its UTF-8 bytes, then one code of 1, 2 or 4 bytes per row
+ * </pre>
+ * Null rows hold zero values. Pages are immutable and safe to read from several threads.
+ */
+public final class ResultPage {
+
+    static final int MAGIC = 0x47505352;
+    static final byte VERSION = 1;
+    /**
+     * The bytes at the start of a page that give its length: the magic number and the length.
+     */
+    static final int PREFIX_BYTES = 8;
+
+    private static final int NO_NULLS = -1;
+
+    private final ByteBuffer buffer;
+    private final String[] names;
+    private final ColumnType[] types;
+    private final int rowCount;
+    private final int[] nullOffsets;
+    private final int[] valueOffsets;
+    private final int[][] dictionaryOffsets;
+    private final String[][] dictionaries;
+
+    private ResultPage(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.remaining() < PREFIX_BYTES + 1 || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a result page");
+        }
+        if (buffer.get(8) != VERSION) {
+            throw new IllegalArgumentException("Unsupported result page version " + buffer.get(8));
+        }
+        int[] position = {9};
+        int columns = readVarint(buffer, position);
+        names = new String[columns];
+        types = new ColumnType[columns];
+        for (int i = 0; i < columns; i++) {
+            types[i] = ColumnType.values()[buffer.get(position[0]++)];
+            int length = readVarint(buffer, position);
+            names[i] = utf8(buffer, position[0], length);
+            position[0] += length;
+        }
+        rowCount = readVarint(buffer, position);
+        int offset = align(position[0], 4);
+        nullOffsets = new int[columns];
+        valueOffsets = new int[columns];
+        for (int i = 0; i < columns; i++) {
+            nullOffsets[i] = buffer.getInt(offset);
+            valueOffsets[i] = buffer.getInt(offset + 4);
+            offset += 8;
+        }
+        // Built here so that the final fields publish them to every reading thread.
+        dictionaryOffsets = new int[columns][];
+        dictionaries = new String[columns][];
+        for (int i = 0; i < columns; i++) {
+            if (types[i] == ColumnType.STRING) {
+                dictionaryOffsets[i] = indexDictionary(i);
+                dictionaries[i] = new String[dictionaryOffsets[i].length];
+            }
+        }
+    }
+
+    /**
+     * Reads the page that starts at the buffer's position, without copying it. The buffer's
+     * position and limit are not changed.
+     *
+     * @throws IllegalArgumentException if the buffer does not start with a page
+     */
+    public static ResultPage wrap(ByteBuffer buffer) {
+        ByteBuffer page = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if (page.remaining() >= PREFIX_BYTES) {
+            int length = page.getInt(4);
+            if (length < PREFIX_BYTES || length > page.remaining()) {
+                throw new IllegalArgumentException("Truncated result page: " + page.remaining() + " of " + length + " bytes");
+            }
+            page.limit(length);
+        }
+        return new ResultPage(page);
+    }
+
+    /**
+     * @return a page with the rows of {@code result}
+     */
+    public static ResultPage of(ColumnarQueryResult result) {
+        return new ResultPage(encode(result));
+    }
+
+    /**
+     * Encodes a result into a new heap buffer, positioned at 0 with the page length as its limit.
+     */
+    public static ByteBuffer encode(ColumnarQueryResult result) {
+        int columns = result.columnCount();
+        int rows = result.rowCount();
+        byte[][] names = new byte[columns][];
+        byte[][][] dictionaries = new byte[columns][][];
+        int header = 9 + varintSize(columns) + varintSize(rows);
+        for (int i = 0; i < columns; i++) {
+            names[i] = result.columnName(i).getBytes(StandardCharsets.UTF_8);
+            header += 1 + varintSize(names[i].length) + names[i].length;
+        }
+        int size = align(align(header, 4) + 8 * columns, 8);
+        int[] nullOffsets = new int[columns];
+        int[] valueOffsets = new int[columns];
+        for (int i = 0; i < columns; i++) {
+            nullOffsets[i] = hasNulls(result.nullWords(i)) ? size : NO_NULLS;
+            if (nullOffsets[i] != NO_NULLS) {
+                size += align(bitmapBytes(rows), 8);
+            }
+            valueOffsets[i] = size;
+            switch (result.columnType(i)) {
+                case LONG:
+                case DOUBLE:
+                    size += 8 * rows;
+                    break;
+                case BOOLEAN:
+                    size += bitmapBytes(rows);
+                    break;
+                case BLOB:
+                    size += 4 * rows;
+                    for (ByteBuffer value : result.blobValues(i)) {
+                        size += value == null ? 0 : value.remaining();
+                    }
+                    break;
+                default:
+                    List<String> dictionary = result.dictionary(i);
+                    dictionaries[i] = new byte[dictionary.size()][];
+                    int bytes = 12;
+                    for (int code = 0; code < dictionary.size(); code++) {
+                        byte[] value = dictionary.get(code).getBytes(StandardCharsets.UTF_8);
+                        dictionaries[i][code] = value;
+                        bytes += varintSize(value.length) + value.length;
+                    }
+                    size += align(bytes, 4) + codeWidth(dictionary.size()) * rows;
+            }
+            size = align(size, 8);
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(size).put(VERSION);
+        putVarint(out, columns);
+        for (int i = 0; i < columns; i++) {
+            out.put((byte) result.columnType(i).ordinal());
+            putVarint(out, names[i].length);
+            out.put(names[i]);
+        }
+        putVarint(out, rows);
+        out.position(align(out.position(), 4));
+        for (int i = 0; i < columns; i++) {
+            out.putInt(nullOffsets[i]).putInt(valueOffsets[i]);
+        }
+        for (int i = 0; i < columns; i++) {
+            if (nullOffsets[i] != NO_NULLS) {
+                putWords(out, nullOffsets[i], result.nullWords(i), rows);
+            }
+            int offset = valueOffsets[i];
+            switch (result.columnType(i)) {
+                case LONG:
+                    out.position(offset);
+                    out.asLongBuffer().put(result.longValues(i), 0, rows);
+                    break;
+                case DOUBLE:
+                    out.position(offset);
+                    out.asDoubleBuffer().put(result.doubleValues(i), 0, rows);
+                    break;
+                case BOOLEAN:
+                    putWords(out, offset, result.booleanWords(i), rows);
+                    break;
+                case BLOB:
+                    ByteBuffer[] values = result.blobValues(i);
+                    int data = offset + 4 * rows;
+                    out.position(data);
+                    for (int row = 0; row < rows; row++) {
+                        if (values[row] != null) {
+                            out.put(values[row].duplicate());
+                        }
+                        out.putInt(offset + 4 * row, out.position() - data);
+                    }
+                    break;
+                default:
+                    byte[][] dictionary = dictionaries[i];
+                    int width = codeWidth(dictionary.length);
+                    out.position(offset + 12);
+                    for (byte[] value : dictionary) {
+                        putVarint(out, value.length);
+                        out.put(value);
+                    }
+                    int codes = align(out.position(), 4);
+                    out.putInt(offset, dictionary.length).putInt(offset + 4, width).putInt(offset + 8, codes);
+                    int[] values32 = result.stringCodes(i);
+                    for (int row = 0; row < rows; row++) {
+                        putCode(out, codes + width * row, width, values32[row]);
+                    }
+            }
+        }
+        return out.position(0).limit(size);
+    }
+
+    /**
+     * Reads the next page from a channel into a new heap buffer.
+     *
+     * @return the page, or {@code null} if the channel is at its end
+     * @throws IOException if the channel ends inside a page or does not hold pages
+     */
+    public static ResultPage read(ReadableByteChannel channel) throws IOException {
+        ByteBuffer prefix = ByteBuffer.allocate(PREFIX_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        if (!readFully(channel, prefix)) {
+            return null;
+        }
+        if (prefix.getInt(0) != MAGIC) {
+            throw new IOException("Not a result page");
+        }
+        int length = prefix.getInt(4);
+        if (length < PREFIX_BYTES + 1) {
+            throw new IOException("Invalid result page length " + length);
+        }
+        ByteBuffer page = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        page.put(prefix.flip());
+        readFully(channel, page);
+        return wrap(page.flip());
+    }
+
+    /**
+     * @return {@code false} if the channel ended before the first byte
+     */
+    private static boolean readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (buffer.position() > 0) {
+                    throw new EOFException("Truncated result page");
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the whole page to a channel, for example a file or a socket.
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer bytes = buffer.duplicate().position(0);
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    /**
+     * @return a read-only view of the encoded page
+     */
+    public ByteBuffer buffer() {
+        return buffer.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @return the length of the encoded page in bytes
+     */
+    public int byteSize() {
+        return buffer.limit();
+    }
+
+    public int rowCount() {
+        return rowCount;
+    }
+
+    public int columnCount() {
+        return names.length;
+    }
+
+    public String columnName(int column) {
+        return names[column];
+    }
+
+    public ColumnType columnType(int column) {
+        return types[column];
+    }
+
+    /**
+     * @return the index of the named column, or -1 if there is no such column
+     */
+    public int columnIndex(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return metadata for the columns, with a type name that maps back to each column's type
+     */
+    public List<ColumnMetadata> columnMetadata() {
+        List<ColumnMetadata> metadata = new ArrayList<>(names.length);
+        for (int i = 0; i < names.length; i++) {
+            metadata.add(ColumnMetadata.builder().name(names[i]).typeName(typeName(types[i])).build());
+        }
+        return metadata;
+    }
+
+    private static String typeName(ColumnType type) {
+        switch (type) {
+            case LONG:
+                return "int8";
+            case DOUBLE:
+                return "float8";
+            case BOOLEAN:
+                return "bool";
+            case BLOB:
+                return "varbyte";
+            default:
+                return "varchar";
+        }
+    }
+
+    public boolean isNull(int row, int column) {
+        int offset = nullOffsets[column];
+        return offset != NO_NULLS && bit(offset, row);
+    }
+
+    public long getLong(int row, int column) {
+        check(column, ColumnType.LONG);
+        return buffer.getLong(valueOffsets[column] + 8 * row);
+    }
+
+    public double getDouble(int row, int column) {
+        if (types[column] == ColumnType.LONG) {
+            return buffer.getLong(valueOffsets[column] + 8 * row);
+        }
+        check(column, ColumnType.DOUBLE);
+        return buffer.getDouble(valueOffsets[column] + 8 * row);
+    }
+
+    public boolean getBoolean(int row, int column) {
+        check(column, ColumnType.BOOLEAN);
+        return bit(valueOffsets[column], row);
+    }
+
+    /**
+     * @return a read-only view of a {@link ColumnType#BLOB} value within the page, or
+     * {@code null} if it is null
+     */
+    public ByteBuffer getBlob(int row, int column) {
+        check(column, ColumnType.BLOB);
+        if (isNull(row, column)) {
+            return null;
+        }
+        int offset = valueOffsets[column];
+        int data = offset + 4 * rowCount;
+        int start = row == 0 ? 0 : buffer.getInt(offset + 4 * (row - 1));
+        int end = buffer.getInt(offset + 4 * row);
+        return buffer.slice(data + start, end - start).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return a read-only view of the UTF-8 bytes of a {@link ColumnType#STRING} value within
+     * the page, or {@code null} if it is null
+     */
+    public ByteBuffer getUtf8(int row, int column) {
+        check(column, ColumnType.STRING);
+        if (isNull(row, column)) {
+            return null;
+        }
+        int entry = dictionaryOffsets[column][code(row, column)];
+        int[] position = {entry};
+        int length = readVarint(buffer, position);
+        return buffer.slice(position[0], length).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return the value rendered as a string, or {@code null} if it is null
+     */
+    public String getString(int row, int column) {
+        if (isNull(row, column)) {
+            return null;
+        }
+        switch (types[column]) {
+            case LONG:
+                return Long.toString(getLong(row, column));
+            case DOUBLE:
+                return Double.toString(getDouble(row, column));
+            case BOOLEAN:
+                return Boolean.toString(getBoolean(row, column));
+            case BLOB:
+                ByteBuffer blob = getBlob(row, column);
+                byte[] bytes = new byte[blob.remaining()];
+                blob.get(bytes);
+                return Base64.getEncoder().encodeToString(bytes);
+            default:
+                return dictionaryValue(column, code(row, column));
+        }
+    }
+
+    /**
+     * @return a read-only view of a {@link ColumnType#LONG} column; null entries are 0
+     */
+    public LongBuffer longColumn(int column) {
+        check(column, ColumnType.LONG);
+        return buffer.slice(valueOffsets[column], 8 * rowCount).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().asReadOnlyBuffer();
+    }
+
+    /**
+     * @return a read-only view of a {@link ColumnType#DOUBLE} column; null entries are 0
+     */
+    public DoubleBuffer doubleColumn(int column) {
+        check(column, ColumnType.DOUBLE);
+        return buffer.slice(valueOffsets[column], 8 * rowCount).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().asReadOnlyBuffer();
+    }
+
+    /**
+     * Copies the page into a {@link ColumnarQueryResult}. Blob values remain views of the page.
+     */
+    public ColumnarQueryResult toColumnar() {
+        return ColumnarQueryResult.fromPage(this);
+    }
+
+    /**
+     * @return a cursor positioned before the first row
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * @return the null bitmap of a column, or {@code null} if the column has no nulls
+     */
+    LongBuffer nullWords(int column) {
+        int offset = nullOffsets[column];
+        return offset == NO_NULLS ? null : words(offset);
+    }
+
+    LongBuffer booleanWords(int column) {
+        check(column, ColumnType.BOOLEAN);
+        return words(valueOffsets[column]);
+    }
+
+    int dictionarySize(int column) {
+        check(column, ColumnType.STRING);
+        return buffer.getInt(valueOffsets[column]);
+    }
+
+    /**
+     * Decodes a dictionary entry once; racing readers decode equal strings, and a string is safe
+     * to share through the array.
+     */
+    String dictionaryValue(int column, int code) {
+        check(column, ColumnType.STRING);
+        String[] values = dictionaries[column];
+        String value = values[code];
+        if (value == null) {
+            int[] position = {dictionaryOffsets[column][code]};
+            int length = readVarint(buffer, position);
+            value = utf8(buffer, position[0], length);
+            values[code] = value;
+        }
+        return value;
+    }
+
+    int code(int row, int column) {
+        int offset = valueOffsets[column];
+        int width = buffer.getInt(offset + 4);
+        int position = buffer.getInt(offset + 8) + width * row;
+        switch (width) {
+            case 1:
+                return buffer.get(position) & 0xFF;
+            case 2:
+                return buffer.getShort(position) & 0xFFFF;
+            default:
+                return buffer.getInt(position);
+        }
+    }
+
+    /**
+     * @return where each dictionary entry of a string column starts
+     */
+    private int[] indexDictionary(int column) {
+        int[] offsets = new int[dictionarySize(column)];
+        int[] position = {valueOffsets[column] + 12};
+        for (int code = 0; code < offsets.length; code++) {
+            offsets[code] = position[0];
+            int length = readVarint(buffer, position);
+            position[0] += length;
+        }
+        return offsets;
+    }
+
+    private LongBuffer words(int offset) {
+        return buffer.slice(offset, bitmapBytes(rowCount)).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+    }
+
+    private boolean bit(int offset, int row) {
+        return (buffer.getLong(offset + 8 * (row >>> 6)) & (1L << row)) != 0;
+    }
+
+    private void check(int column, ColumnType type) {
+        if (types[column] != type) {
+            throw new UnsupportedOperationException("Column " + names[column] + " is " + types[column] + ", not " + type);
+        }
+    }
+
+    private static boolean hasNulls(long[] words) {
+        for (long word : words) {
+            if (word != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int bitmapBytes(int rows) {
+        return 8 * ((rows + 63) >>> 6);
+    }
+
+    private static int codeWidth(int dictionarySize) {
+        return dictionarySize <= 1 << 8 ? 1 : dictionarySize <= 1 << 16 ? 2 : 4;
+    }
+
+    private static int align(int offset, int alignment) {
+        return (offset + alignment - 1) & -alignment;
+    }
+
+    private static void putWords(ByteBuffer out, int offset, long[] words, int rows) {
+        out.position(offset);
+        out.asLongBuffer().put(words, 0, (rows + 63) >>> 6);
+    }
+
+    private static void putCode(ByteBuffer out, int position, int width, int code) {
+        switch (width) {
+            case 1:
+                out.put(position, (byte) code);
+                break;
+            case 2:
+                out.putShort(position, (short) code);
+                break;
+            default:
+                out.putInt(position, code);
+        }
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * Reads an unsigned varint at {@code position[0]} and advances it past the varint.
+     */
+    private static int readVarint(ByteBuffer in, int[] position) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get(position[0]++);
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static String utf8(ByteBuffer in, int offset, int length) {
+        if (in.hasArray()) {
+            return new String(in.array(), in.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        in.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Walks the rows in order without allocating per row.
+     */
+    public final class Cursor {
+        private int row = -1;
+
+        public boolean next() {
+            return ++row < rowCount;
+        }
+
+        public void reset() {
+            row = -1;
+        }
+
+        public int row() {
+            return row;
+        }
+
+        public boolean isNull(int column) {
+            return ResultPage.this.isNull(row, column);
+        }
+
+        public long getLong(int column) {
+            return ResultPage.this.getLong(row, column);
+        }
+
+        public double getDouble(int column) {
+            return ResultPage.this.getDouble(row, column);
+        }
+
+        public boolean getBoolean(int column) {
+            return ResultPage.this.getBoolean(row, column);
+        }
+
+        public ByteBuffer getBlob(int column) {
+            return ResultPage.this.getBlob(row, column);
+        }
+
+        public String getString(int column) {
+            return ResultPage.this.getString(row, column);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.example;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import software.amazon.awssdk.services.redshiftdata.model.ColumnMetadata;
+import software.amazon.awssdk.services.redshiftdata.model.Field;
+
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link ResultPage} with the JSON path ({@link QueryResult#toJson()} and parsing it
+ * back with {@link Gson}) for keeping a result around: time to encode, time to decode back into
+ * a result, and time to read one column of an encoded result.
+ * <p>
+ * {@code bytes} is the encoded size of one result; run with {@code -prof gc} for the allocation
+ * rate of each path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+@State(Scope.Benchmark)
+public class ResultPageBenchmark {
+
+    private static final Type ROWS = new TypeToken<List<Map<String, String>>>() { }.getType();
+
+    @Param({"100000"})
+    public int rows;
+
+    private QueryResult mapResult;
+    private ColumnarQueryResult columnarResult;
+    private String json;
+    private ByteBuffer page;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Size {
+        public long bytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<ColumnMetadata> columns = List.of(
+                ColumnMetadata.builder().name("id").typeName("int8").build(),
+                ColumnMetadata.builder().name("title").typeName("varchar").build(),
+                ColumnMetadata.builder().name("year").typeName("int4").build(),
+                ColumnMetadata.builder().name("rating").typeName("float8").build());
+        Random random = new Random(3);
+        List<List<Field>> records = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            records.add(List.of(
+                    Field.fromLongValue((long) i),
+                    Field.fromStringValue("Movie " + random.nextInt(5_000)),
+                    Field.fromLongValue((long) (1920 + random.nextInt(100))),
+                    Field.fromDoubleValue(random.nextInt(100) / 10.0)));
+        }
+        mapResult = new QueryResult(columns, records);
+        columnarResult = new ColumnarQueryResult(columns, records);
+        json = mapResult.toJson();
+        page = ResultPage.encode(columnarResult);
+    }
+
+    @Benchmark
+    public String encodeJson(Size size) {
+        String encoded = mapResult.toJson();
+        size.bytes += encoded.length();
+        return encoded;
+    }
+
+    @Benchmark
+    public ByteBuffer encodePage(Size size) {
+        ByteBuffer encoded = ResultPage.encode(columnarResult);
+        size.bytes += encoded.remaining();
+        return encoded;
+    }
+
+    @Benchmark
+    public List<Map<String, String>> decodeJson() {
+        return new Gson().fromJson(json, ROWS);
+    }
+
+    @Benchmark
+    public ColumnarQueryResult decodePage() {
+        return ResultPage.wrap(page).toColumnar();
+    }
+
+    /**
+     * Sums the {@code year} column: parsed out of the JSON rows, or read in place from the page.
+     */
+    @Benchmark
+    public void scanJson(Blackhole blackhole) {
+        List<Map<String, String>> decoded = new Gson().fromJson(json, ROWS);
+        long sum = 0;
+        for (Map<String, String> row : decoded) {
+            sum += Long.parseLong(row.get("year"));
+        }
+        blackhole.consume(sum);
+    }
+
+    @Benchmark
+    public void scanPage(Blackhole blackhole) {
+        LongBuffer years = ResultPage.wrap(page).longColumn(2);
+        long sum = 0;
+        for (int i = 0; i < years.limit(); i++) {
+            sum += years.get(i);
+        }
+        blackhole.consume(sum);
+    }
+}
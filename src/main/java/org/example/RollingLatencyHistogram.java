@@ -0,0 +1,55 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent latency samples of one statement shape and answers percentile queries
+ * over them. Older samples fall out of the window as new ones arrive.
+ * <p>
+ * Percentiles are served from a sorted snapshot that is only rebuilt after a sixteenth of the
+ * window has been replaced, so lookups stay cheap when every statement asks for a prediction.
+ */
+public class RollingLatencyHistogram {
+
+    private final long[] samples;
+    private final int refreshEvery;
+    private int next;
+    private int size;
+    private long[] sorted = new long[0];
+    private int recordedSinceSnapshot;
+
+    public RollingLatencyHistogram(int windowSize) {
+        this.samples = new long[windowSize];
+        this.refreshEvery = Math.max(1, windowSize / 16);
+    }
+
+    public synchronized void record(long latencyMillis) {
+        samples[next] = latencyMillis;
+        next = (next + 1) % samples.length;
+        if (size < samples.length) {
+            size++;
+        }
+        recordedSinceSnapshot++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @param percentile a value between 0 and 100
+     * @return the latency at the given percentile, or -1 if no samples were recorded yet
+     */
+    public synchronized long percentile(double percentile) {
+        if (size == 0) {
+            return -1;
+        }
+        if (sorted.length == 0 || recordedSinceSnapshot >= refreshEvery) {
+            sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            recordedSinceSnapshot = 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
@@ -0,0 +1,93 @@
+package org.example;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key into one execution.
+ * <p>
+ * The first caller for a key runs the work; every caller that arrives while it is in flight gets
+ * a future of the same outcome instead of starting its own. The key is released when the work
+ * completes, so later calls run it again; caching finished results is left to
+ * {@link QueryResultCache}. Callers get their own dependent future, so one caller cancelling
+ * does not cancel the others.
+ *
+ * @param <K> the key type
+ * @param <V> the result type
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong executions = new AtomicLong();
+
+    /**
+     * @param key  identifies the work; equal keys must produce equal results
+     * @param work starts the work, called on the calling thread only if no call for {@code key}
+     *             is in flight
+     * @return a {@link CompletableFuture} of the shared outcome
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> work) {
+        calls.incrementAndGet();
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> shared = inFlight.putIfAbsent(key, created);
+        if (shared != null) {
+            return shared.thenApply(value -> value);
+        }
+
+        executions.incrementAndGet();
+        CompletableFuture<V> result;
+        try {
+            result = work.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((value, exception) -> {
+            // Release the key before completing, so that callbacks starting the same work run it anew.
+            inFlight.remove(key, created);
+            if (exception != null) {
+                created.completeExceptionally(exception);
+            } else {
+                created.complete(value);
+            }
+        });
+        return created.thenApply(value -> value);
+    }
+
+    /**
+     * @return the number of calls to {@link #execute}
+     */
+    public long calls() {
+        return calls.get();
+    }
+
+    /**
+     * @return the number of calls that ran the work
+     */
+    public long executions() {
+        return executions.get();
+    }
+
+    /**
+     * @return the number of calls that joined a call already in flight
+     */
+    public long deduplicated() {
+        return calls.get() - executions.get();
+    }
+
+    /**
+     * @return the number of keys currently in flight
+     */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d calls, %d executions, %d deduplicated, %d in flight",
+                calls(), executions(), deduplicated(), inFlight());
+    }
+}
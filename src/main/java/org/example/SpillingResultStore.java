@@ -0,0 +1,317 @@
+package org.example;
+
+import software.amazon.awssdk.services.redshiftdata.model.ColumnMetadata;
+import software.amazon.awssdk.services.redshiftdata.model.Field;
+
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Holds a query result of any size, in memory while it is small and on local disk beyond that.
+ * <p>
+ * Rows are added one at a time, for example from a {@link StatementResultStream}, and gathered
+ * into pages of {@value #PAGE_ROWS} rows. Full pages are kept as {@link ColumnarQueryResult}s
+ * until their {@link ColumnarQueryResult#estimatedBytes() estimated size} passes the memory
+ * threshold; every later page is encoded as a {@link ResultPage} and appended to a temporary file
+ * through a {@link FileChannel}. {@link #cursor()} walks all rows in order with the same typed
+ * accessors either way, reading spilled pages in place through a memory mapping one page at a
+ * time, so at most the threshold plus one page is on the heap.
+ * <p>
+ * The file is opened with {@link StandardOpenOption#DELETE_ON_CLOSE}, which on Unix removes its
+ * name right away, so its space is freed by {@link #close()}, when the store becomes unreachable,
+ * or when the process exits, however it exits.
+ */
+public class SpillingResultStore implements Consumer<List<Field>>, AutoCloseable {
+
+    public static final int PAGE_ROWS = 4_096;
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final List<ColumnMetadata> columnMetadata;
+    private final ColumnType[] types;
+    private final String[] names;
+    private final long memoryThreshold;
+    private final Path directory;
+    private final List<ColumnarQueryResult> memoryPages = new ArrayList<>();
+    private final List<SpilledPage> spilledPages = new ArrayList<>();
+    private ColumnarQueryResult.Builder page;
+    private int pageRows;
+    private long memoryBytes;
+    private long rowCount;
+    private boolean finished;
+    private SpillFile spillFile;
+    private Cleaner.Cleanable cleanable;
+
+    /**
+     * @param columnMetadata  the columns of the result
+     * @param memoryThreshold the estimated heap size of the pages kept in memory before the rest
+     *                        is spilled
+     * @param directory       where the spill file is created
+     */
+    public SpillingResultStore(List<ColumnMetadata> columnMetadata, long memoryThreshold, Path directory) {
+        this.columnMetadata = List.copyOf(columnMetadata);
+        this.memoryThreshold = memoryThreshold;
+        this.directory = directory;
+        this.types = new ColumnType[columnMetadata.size()];
+        this.names = new String[columnMetadata.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = FieldDecoder.forColumn(columnMetadata.get(i)).type();
+            names[i] = columnMetadata.get(i).name();
+        }
+    }
+
+    /**
+     * Adds a row; equivalent to {@link #add(List)}.
+     */
+    @Override
+    public void accept(List<Field> row) {
+        add(row);
+    }
+
+    public SpillingResultStore add(List<Field> row) {
+        if (finished) {
+            throw new IllegalStateException("The result store is already finished");
+        }
+        if (page == null) {
+            page = new ColumnarQueryResult.Builder(columnMetadata, PAGE_ROWS);
+        }
+        page.add(row);
+        rowCount++;
+        if (++pageRows == PAGE_ROWS) {
+            flushPage();
+        }
+        return this;
+    }
+
+    /**
+     * Stores the last, partial page. Rows can no longer be added, and the store can be read.
+     *
+     * @return this store
+     */
+    public SpillingResultStore finish() {
+        if (!finished) {
+            if (pageRows > 0) {
+                flushPage();
+            }
+            finished = true;
+        }
+        return this;
+    }
+
+    private void flushPage() {
+        ColumnarQueryResult built = page.build();
+        page = null;
+        pageRows = 0;
+        if (spillFile == null && memoryBytes + built.estimatedBytes() <= memoryThreshold) {
+            memoryPages.add(built);
+            memoryBytes += built.estimatedBytes();
+        } else {
+            spill(built);
+        }
+    }
+
+    private void spill(ColumnarQueryResult built) {
+        try {
+            if (spillFile == null) {
+                Files.createDirectories(directory);
+                Path file = Files.createTempFile(directory, "redshift-result-", ".spill");
+                spillFile = new SpillFile(FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.DELETE_ON_CLOSE), file);
+                cleanable = CLEANER.register(this, spillFile);
+            }
+            ByteBuffer encoded = ResultPage.encode(built);
+            long offset = spillFile.channel.size();
+            int length = encoded.remaining();
+            while (encoded.hasRemaining()) {
+                spillFile.channel.write(encoded, offset + (length - encoded.remaining()));
+            }
+            spilledPages.add(new SpilledPage(offset, length));
+        } catch (IOException e) {
+            throw new RuntimeException("Error spilling query result to " + directory + ": " + e.getMessage(), e);
+        }
+    }
+
+    public long rowCount() {
+        return rowCount;
+    }
+
+    public int columnCount() {
+        return types.length;
+    }
+
+    public String columnName(int column) {
+        return names[column];
+    }
+
+    public ColumnType columnType(int column) {
+        return types[column];
+    }
+
+    /**
+     * @return {@code true} if some pages were written to disk
+     */
+    public boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * @return the estimated heap size of the pages kept in memory
+     */
+    public long memoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * @return the size of the spill file
+     */
+    public long spilledBytes() {
+        long bytes = 0;
+        for (SpilledPage spilled : spilledPages) {
+            bytes += spilled.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return a cursor positioned before the first row; the store must be {@link #finish() finished}
+     */
+    public Cursor cursor() {
+        if (!finished) {
+            throw new IllegalStateException("The result store must be finished before it is read");
+        }
+        if (spillFile != null && !spillFile.channel.isOpen()) {
+            throw new IllegalStateException("The result store is closed");
+        }
+        return new Cursor();
+    }
+
+    /**
+     * Deletes the spill file. Cursors must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        memoryPages.clear();
+        if (cleanable != null) {
+            cleanable.clean();
+        }
+    }
+
+    private static final class SpilledPage {
+        private final long offset;
+        private final int length;
+
+        private SpilledPage(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Closes the spill file's channel, which deletes the file; run by {@link #close()} or by the
+     * cleaner once the store is unreachable.
+     */
+    private static final class SpillFile implements Runnable {
+        private final FileChannel channel;
+        private final Path file;
+
+        private SpillFile(FileChannel channel, Path file) {
+            this.channel = channel;
+            this.file = file;
+        }
+
+        @Override
+        public void run() {
+            try {
+                channel.close();
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                throw new RuntimeException("Error deleting spill file " + file + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Walks every row in order, first through the pages in memory and then through the spilled
+     * ones, with the accessors of {@link ColumnarQueryResult.Cursor}.
+     */
+    public final class Cursor {
+        private int pageIndex = -1;
+        private ColumnarQueryResult.Cursor memoryRows;
+        private ResultPage.Cursor spilledRows;
+
+        private Cursor() {
+        }
+
+        public boolean next() {
+            while (true) {
+                if (memoryRows != null ? memoryRows.next() : spilledRows != null && spilledRows.next()) {
+                    return true;
+                }
+                if (!nextPage()) {
+                    return false;
+                }
+            }
+        }
+
+        private boolean nextPage() {
+            memoryRows = null;
+            spilledRows = null;
+            pageIndex++;
+            if (pageIndex < memoryPages.size()) {
+                memoryRows = memoryPages.get(pageIndex).cursor();
+                return true;
+            }
+            int spilled = pageIndex - memoryPages.size();
+            if (spilled >= spilledPages.size()) {
+                return false;
+            }
+            SpilledPage spilledPage = spilledPages.get(spilled);
+            try {
+                spilledRows = ResultPage.wrap(spillFile.channel.map(FileChannel.MapMode.READ_ONLY,
+                        spilledPage.offset, spilledPage.length)).cursor();
+            } catch (IOException e) {
+                throw new RuntimeException("Error reading spilled query result: " + e.getMessage(), e);
+            }
+            return true;
+        }
+
+        public boolean isNull(int column) {
+            return memoryRows != null ? memoryRows.isNull(column) : spilledRows.isNull(column);
+        }
+
+        public long getLong(int column) {
+            return memoryRows != null ? memoryRows.getLong(column) : spilledRows.getLong(column);
+        }
+
+        public double getDouble(int column) {
+            return memoryRows != null ? memoryRows.getDouble(column) : spilledRows.getDouble(column);
+        }
+
+        public boolean getBoolean(int column) {
+            return memoryRows != null ? memoryRows.getBoolean(column) : spilledRows.getBoolean(column);
+        }
+
+        /**
+         * @return a read-only view of a {@link ColumnType#BLOB} value, or {@code null} if it is
+         * null; a view of a spilled value is only valid while the store is open
+         */
+        public ByteBuffer getBlob(int column) {
+            return memoryRows != null ? memoryRows.getBlob(column) : spilledRows.getBlob(column);
+        }
+
+        /**
+         * @return the value rendered as a string, or {@code null} if it is null
+         */
+        public String getString(int column) {
+            return memoryRows != null ? memoryRows.getString(column) : spilledRows.getString(column);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Light-weight inspection of SQL text: a normalized form for cache keys, whether a statement only
+ * reads, and which tables it reads or writes.
+ * <p>
+ * This is a tokenizer, not a parser. Table names are taken from the words following
+ * {@code FROM}, {@code JOIN} and the target clause of a write, which covers the statements this
+ * project sends; when nothing can be found the result is empty and callers should assume the
+ * statement may touch any table.
+ */
+public final class SqlStatements {
+
+    private static final Set<String> READ_KEYWORDS = Set.of("select", "with", "show", "explain", "values");
+    // Words that end a FROM list; any other word after a table is its alias.
+    private static final Set<String> CLAUSE_KEYWORDS = Set.of("where", "join", "inner", "left", "right", "full",
+            "outer", "cross", "natural", "on", "using", "group", "order", "having", "limit", "offset", "union",
+            "intersect", "except", "minus", "qualify", "window", "returning", "set", "values", "select");
+
+    private SqlStatements() {}
+
+    /**
+     * Collapses whitespace, lower-cases everything outside string literals and strips trailing
+     * semicolons. Unlike {@link SqlFingerprint#of(String)}, literal values are kept, so two
+     * statements only normalize to the same text if they return the same rows.
+     */
+    public static String normalize(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        boolean pendingSpace = false;
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = out.length() > 0;
+                i++;
+                continue;
+            }
+            if (pendingSpace) {
+                out.append(' ');
+                pendingSpace = false;
+            }
+            if (c == '\'') {
+                int end = skipStringLiteral(sql, i);
+                out.append(sql, i, end);
+                i = end;
+            } else {
+                out.append(Character.toLowerCase(c));
+                i++;
+            }
+        }
+        int end = out.length();
+        while (end > 0 && (out.charAt(end - 1) == ';' || out.charAt(end - 1) == ' ')) {
+            end--;
+        }
+        out.setLength(end);
+        return out.toString();
+    }
+
+    /**
+     * @return {@code true} if the statement only reads data; {@code SELECT ... INTO} counts as a
+     * write
+     */
+    public static boolean isReadOnly(String sql) {
+        String[] words = words(sql);
+        if (words.length == 0 || !READ_KEYWORDS.contains(words[0])) {
+            return false;
+        }
+        for (String word : words) {
+            if (word.equals("into") || word.equals("insert") || word.equals("update")
+                    || word.equals("delete") || word.equals("merge")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the tables following {@code FROM} and {@code JOIN}, lower-cased, unquoted and without
+     * schema; empty if none could be found
+     */
+    public static Set<String> readTables(String sql) {
+        List<String> words = listTokens(sql);
+        Set<String> tables = new LinkedHashSet<>();
+        for (int i = 0; i < words.size() - 1; i++) {
+            if (!words.get(i).equals("from") && !words.get(i).equals("join")) {
+                continue;
+            }
+            // FROM a x, b AS y, c: a table, an optional alias, then a comma for one more table
+            int j = i + 1;
+            while (j < words.size()) {
+                addTable(tables, words.get(j++));
+                if (j < words.size() && words.get(j).equals("as")) {
+                    j += 2;
+                } else if (j < words.size() && !words.get(j).equals(",") && !CLAUSE_KEYWORDS.contains(words.get(j))) {
+                    j++;
+                }
+                if (j >= words.size() || !words.get(j).equals(",")) {
+                    break;
+                }
+                j++;
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * The {@link #words(String) words} of a statement with every comma as a word of its own.
+     */
+    private static List<String> listTokens(String sql) {
+        List<String> tokens = new ArrayList<>();
+        for (String word : words(sql)) {
+            int start = 0;
+            for (int comma = word.indexOf(','); comma >= 0; comma = word.indexOf(',', start)) {
+                if (comma > start) {
+                    tokens.add(word.substring(start, comma));
+                }
+                tokens.add(",");
+                start = comma + 1;
+            }
+            if (start < word.length()) {
+                tokens.add(word.substring(start));
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * @return the table an INSERT, UPDATE, DELETE, MERGE, COPY, TRUNCATE, CREATE, DROP or ALTER
+     * statement writes, or {@code null} if it cannot be told
+     */
+    public static String writtenTable(String sql) {
+        String[] words = words(sql);
+        if (words.length < 2) {
+            return null;
+        }
+        int target;
+        switch (words[0]) {
+            case "insert":
+            case "merge":
+                target = indexAfter(words, "into");
+                break;
+            case "delete":
+                target = indexAfter(words, "from");
+                break;
+            case "update":
+            case "copy":
+                target = 1;
+                break;
+            case "truncate":
+                target = words[1].equals("table") ? 2 : 1;
+                break;
+            case "create":
+            case "drop":
+            case "alter":
+                target = indexAfter(words, "table");
+                if (target > 0 && target + 2 < words.length && words[target].equals("if")) {
+                    target += words[target + 1].equals("not") ? 3 : 2;
+                }
+                break;
+            default:
+                return null;
+        }
+        if (target <= 0 || target >= words.length) {
+            return null;
+        }
+        Set<String> table = new LinkedHashSet<>();
+        addTable(table, words[target]);
+        return table.isEmpty() ? null : table.iterator().next();
+    }
+
+    private static int indexAfter(String[] words, String keyword) {
+        for (int i = 0; i < words.length - 1; i++) {
+            if (words[i].equals(keyword)) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static void addTable(Set<String> tables, String word) {
+        int paren = word.indexOf('(');
+        String name = paren >= 0 ? word.substring(0, paren) : word;
+        name = name.replace("\"", "");
+        int end = name.length();
+        while (end > 0 && (name.charAt(end - 1) == ')' || name.charAt(end - 1) == ',')) {
+            end--;
+        }
+        name = name.substring(0, end);
+        if (name.isEmpty() || !Character.isLetter(name.charAt(0)) && name.charAt(0) != '_') {
+            return;
+        }
+        // Schema-qualified names are matched on the table part alone.
+        int dot = name.lastIndexOf('.');
+        tables.add(dot >= 0 ? name.substring(dot + 1) : name);
+    }
+
+    private static String[] words(String sql) {
+        String normalized = normalize(stripLiterals(sql));
+        return normalized.isEmpty() ? new String[0] : normalized.split(" ");
+    }
+
+    private static String stripLiterals(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                i = skipStringLiteral(sql, i);
+                out.append("''");
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        return out.toString();
+    }
+
+    private static int skipStringLiteral(String sql, int start) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == '\'') {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,275 @@
+package org.example;
+
+import software.amazon.awssdk.services.redshiftdata.RedshiftDataAsyncClient;
+import software.amazon.awssdk.services.redshiftdata.model.DescribeStatementRequest;
+import software.amazon.awssdk.services.redshiftdata.model.DescribeStatementResponse;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tracks submitted statements until they reach a terminal state.
+ * <p>
+ * Every pending statement lives on one shared scheduler thread instead of parking a pool
+ * thread in {@code sleep}. When a statement's timer fires it is queued for a
+ * {@code DescribeStatement} call, and at most {@code maxConcurrentDescribes} of those calls are
+ * in flight at any time. The delay before every poll comes from a {@link PollingStrategy}, with
+ * random jitter added so that statements submitted together do not poll in lockstep. With an
+ * {@link AdmissionController}, describe calls also wait for a {@code DescribeStatement} permit.
+ * <p>
+ * A tracker starts its own scheduler thread unless it is given one, which lets many trackers,
+ * such as those of a {@link RedshiftClientRegistry}, share a single thread.
+ */
+public class StatementCompletionTracker implements AutoCloseable {
+
+    private final RedshiftDataAsyncClient client;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+    private final Semaphore describePermits;
+    private final Map<String, PendingStatement> pending = new ConcurrentHashMap<>();
+    private final Queue<PendingStatement> duePolls = new ConcurrentLinkedQueue<>();
+    private final PollingStrategy pollingStrategy;
+    private final double jitter;
+    private volatile AdmissionController admission;
+    private volatile QueryMetrics metrics;
+    private volatile boolean closed;
+
+    public StatementCompletionTracker(RedshiftDataAsyncClient client, PollingStrategy pollingStrategy) {
+        this(client, pollingStrategy, 0.2, 50);
+    }
+
+    /**
+     * @param client                 the async client used for {@code DescribeStatement} calls
+     * @param pollingStrategy        decides the delay before every poll of a statement
+     * @param jitter                 fraction (0..1) of random spread applied to every delay
+     * @param maxConcurrentDescribes maximum number of describe calls in flight
+     */
+    public StatementCompletionTracker(RedshiftDataAsyncClient client,
+                                      PollingStrategy pollingStrategy,
+                                      double jitter,
+                                      int maxConcurrentDescribes) {
+        this(client, pollingStrategy, jitter, maxConcurrentDescribes, ownScheduler(), true);
+    }
+
+    /**
+     * @param scheduler schedules the polls; it is not shut down by {@link #close()}
+     */
+    public StatementCompletionTracker(RedshiftDataAsyncClient client, PollingStrategy pollingStrategy,
+                                      ScheduledExecutorService scheduler) {
+        this(client, pollingStrategy, 0.2, 50, scheduler, false);
+    }
+
+    private StatementCompletionTracker(RedshiftDataAsyncClient client, PollingStrategy pollingStrategy, double jitter,
+                                       int maxConcurrentDescribes, ScheduledExecutorService scheduler, boolean ownsScheduler) {
+        this.client = client;
+        this.pollingStrategy = pollingStrategy;
+        this.jitter = jitter;
+        this.describePermits = new Semaphore(maxConcurrentDescribes);
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+    }
+
+    private static ScheduledExecutorService ownScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "redshift-statement-tracker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    /**
+     * @param admission limits the {@code DescribeStatement} calls, or {@code null} for no limit
+     * @return this tracker
+     */
+    public StatementCompletionTracker admissionController(AdmissionController admission) {
+        this.admission = admission;
+        return this;
+    }
+
+    /**
+     * @param metrics records the time to FINISHED, the server-side duration and the number of
+     *                polls of every statement that finishes, or {@code null} to record nothing
+     * @return this tracker
+     */
+    public StatementCompletionTracker metrics(QueryMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Starts tracking a statement whose SQL is unknown to the caller.
+     *
+     * @see #track(String, String)
+     */
+    public CompletableFuture<DescribeStatementResponse> track(String statementId) {
+        return track(statementId, null);
+    }
+
+    /**
+     * Starts tracking a statement. Tracking the same ID twice returns the same future.
+     *
+     * @param statementId the ID returned by {@code ExecuteStatement}
+     * @param fingerprint the {@link SqlFingerprint} of the statement's SQL, or {@code null}
+     * @return a {@link CompletableFuture} that completes with the final describe response once the
+     * statement is FINISHED, or exceptionally with a {@link StatementFailedException} if it FAILED
+     * or was ABORTED and a {@link StatementException} if it could not be described
+     */
+    public CompletableFuture<DescribeStatementResponse> track(String statementId, String fingerprint) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new CancellationException("Statement tracker closed"));
+        }
+        PendingStatement statement = pending.computeIfAbsent(statementId, id -> {
+            PendingStatement created = new PendingStatement(id, fingerprint);
+            created.future.whenComplete((response, exception) -> pending.remove(id));
+            return created;
+        });
+        if (closed) {
+            // close() may have cancelled the pending statements before this one was added.
+            statement.future.completeExceptionally(new CancellationException("Statement tracker closed"));
+            return statement.future;
+        }
+        if (statement.armed.compareAndSet(false, true)) {
+            scheduleNextPoll(statement);
+        }
+        return statement.future;
+    }
+
+    /**
+     * @return the number of statements that have not reached a terminal state yet
+     */
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    private void scheduleNextPoll(PendingStatement statement) {
+        long delay = statement.polls == 0
+                ? pollingStrategy.firstDelayMillis(statement.fingerprint)
+                : pollingStrategy.nextDelayMillis(statement.fingerprint, statement.polls, statement.lastDelayMillis);
+        statement.lastDelayMillis = delay;
+        try {
+            scheduler.schedule(() -> {
+                // A shared scheduler outlives the tracker, so polls due after close() are dropped here.
+                if (!closed && !statement.future.isDone()) {
+                    duePolls.add(statement);
+                    drain();
+                }
+            }, withJitter(delay), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            statement.future.completeExceptionally(closed
+                    ? new CancellationException("Statement tracker closed")
+                    : new StatementException(statement.id, "Error scheduling the next poll: " + e.getMessage(), e));
+        }
+    }
+
+    private void drain() {
+        while (!duePolls.isEmpty() && describePermits.tryAcquire()) {
+            PendingStatement statement = duePolls.poll();
+            if (statement == null) {
+                describePermits.release();
+                continue;
+            }
+            describe(statement);
+        }
+    }
+
+    private void describe(PendingStatement statement) {
+        DescribeStatementRequest request = DescribeStatementRequest.builder()
+                .id(statement.id)
+                .build();
+
+        AdmissionController admission = this.admission;
+        CompletableFuture<DescribeStatementResponse> call = admission == null
+                ? send(request)
+                : admission.call(AdmissionController.DESCRIBE_STATEMENT, () -> send(request));
+
+        call.whenComplete((response, exception) -> {
+            describePermits.release();
+            statement.polls++;
+            if (exception != null) {
+                statement.future.completeExceptionally(new StatementException(statement.id,
+                        "Error checking statement: " + exception.getMessage(), exception));
+            } else {
+                onDescribed(statement, response);
+            }
+            drain();
+        });
+    }
+
+    private CompletableFuture<DescribeStatementResponse> send(DescribeStatementRequest request) {
+        try {
+            return client.describeStatement(request);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void onDescribed(PendingStatement statement, DescribeStatementResponse response) {
+        String status = response.statusAsString();
+        if ("FINISHED".equals(status)) {
+            String fingerprint = statement.fingerprint != null
+                    ? statement.fingerprint
+                    : SqlFingerprint.of(response.queryString());
+            pollingStrategy.onFinished(fingerprint, response);
+            QueryMetrics metrics = this.metrics;
+            if (metrics != null) {
+                metrics.recordFinished(System.nanoTime() - statement.startNanos, statement.polls, response);
+            }
+            statement.future.complete(response);
+        } else if ("FAILED".equals(status) || "ABORTED".equals(status)) {
+            statement.future.completeExceptionally(new StatementFailedException(statement.id, status, response.error()));
+        } else if (!statement.future.isDone()) {
+            scheduleNextPoll(statement);
+        }
+    }
+
+    private long withJitter(long delayMillis) {
+        double spread = delayMillis * jitter;
+        if (spread <= 0) {
+            return delayMillis;
+        }
+        return Math.max(0, Math.round(delayMillis + ThreadLocalRandom.current().nextDouble(-spread, spread)));
+    }
+
+    /**
+     * Cancels every statement that is still being tracked and stops the scheduler if the tracker
+     * started it.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (ownsScheduler) {
+            scheduler.shutdownNow();
+        }
+        CancellationException cancelled = new CancellationException("Statement tracker closed");
+        pending.values().forEach(statement -> statement.future.completeExceptionally(cancelled));
+    }
+
+    private static final class PendingStatement {
+        private final String id;
+        private final String fingerprint;
+        private final CompletableFuture<DescribeStatementResponse> future = new CompletableFuture<>();
+        private final AtomicBoolean armed = new AtomicBoolean();
+        private final long startNanos = System.nanoTime();
+        // Only touched by the single poll that is outstanding for this statement.
+        private volatile int polls;
+        private volatile long lastDelayMillis;
+
+        private PendingStatement(String id, String fingerprint) {
+            this.id = id;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.example;
+
+/**
+ * Base class of the errors raised while running a statement through the Data API.
+ */
+public class StatementException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String statementId;
+
+    public StatementException(String statementId, String message, Throwable cause) {
+        super(message, cause);
+        this.statementId = statementId;
+    }
+
+    /**
+     * @return the ID of the statement, or {@code null} if it was never accepted
+     */
+    public String statementId() {
+        return statementId;
+    }
+}
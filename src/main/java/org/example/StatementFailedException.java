@@ -0,0 +1,34 @@
+package org.example;
+
+/**
+ * Thrown when a submitted statement ends in the FAILED or ABORTED state.
+ */
+public class StatementFailedException extends StatementException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String status;
+    private final String error;
+
+    public StatementFailedException(String statementId, String status, String error) {
+        super(statementId, "FAILED".equals(status)
+                ? "Query failed: " + error
+                : "Query was aborted: " + statementId, null);
+        this.status = status;
+        this.error = error;
+    }
+
+    /**
+     * @return the terminal status, FAILED or ABORTED
+     */
+    public String status() {
+        return status;
+    }
+
+    /**
+     * @return the error reported by the Data API, or {@code null} for an aborted statement
+     */
+    public String error() {
+        return error;
+    }
+}
@@ -0,0 +1,641 @@
+package org.example;
+
+import software.amazon.awssdk.services.redshiftdata.model.ColumnMetadata;
+import software.amazon.awssdk.services.redshiftdata.model.Field;
+import software.amazon.awssdk.services.redshiftdata.model.SqlParameter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Runs a list of statements, typically one query split by partition, through a
+ * {@link StatementPipeline} and merges their rows into one stream.
+ * <p>
+ * At most {@link #parallelism(int) parallelism} statements are running at once, counted from
+ * submission until FINISHED; the next one is submitted as soon as one finishes. Rows are merged
+ * according to {@link Merge}:
+ * <ul>
+ * <li>{@link Merge#ORDERED}: every row of the first statement, then of the second, and so on.
+ * Only the statement being read has an open result stream;</li>
+ * <li>{@link Merge#UNORDERED}: rows as they arrive, from up to {@code parallelism} open streams
+ * at once;</li>
+ * <li>{@link Merge#SORTED}: a k-way merge by a {@link #sortedBy(Comparator) sort key}. Every
+ * statement must return its rows sorted by that key, e.g. with an {@code ORDER BY}, and every
+ * statement's stream is open until the merge ends.</li>
+ * </ul>
+ * Each open stream buffers at most two pages, so the merged result is never held in memory
+ * unless it is {@link #collect(List) collected}. The row action is never called concurrently.
+ * <p>
+ * With {@link FailurePolicy#FAIL_FAST}, the first failed statement stops the run: no further
+ * statements are submitted, open streams are cancelled and the returned future fails. With
+ * {@link FailurePolicy#SKIP_FAILED} the remaining statements still run and the failures are
+ * reported in the {@link Outcome}; rows a statement delivered before it failed are kept. An
+ * exception thrown by the row action always stops the run.
+ */
+public class StatementFanOut {
+
+    private static final EventLog.Source events = EventLog.shared().source(StatementFanOut.class);
+    private static final int MERGE_BATCH = 256;
+
+    public enum Merge {
+        ORDERED, UNORDERED, SORTED
+    }
+
+    public enum FailurePolicy {
+        FAIL_FAST, SKIP_FAILED
+    }
+
+    private final StatementPipeline pipeline;
+    private volatile int parallelism = 8;
+    private volatile Merge merge = Merge.ORDERED;
+    private volatile Comparator<List<Field>> sortKey;
+    private volatile FailurePolicy failurePolicy = FailurePolicy.FAIL_FAST;
+
+    public StatementFanOut(StatementPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * @param parallelism the maximum number of statements running at once, 8 by default
+     * @return this fan-out
+     */
+    public StatementFanOut parallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @param merge how rows of different statements are interleaved, {@link Merge#ORDERED} by
+     *              default; {@link Merge#SORTED} needs a {@link #sortedBy(Comparator) sort key}
+     * @return this fan-out
+     */
+    public StatementFanOut merge(Merge merge) {
+        this.merge = merge;
+        return this;
+    }
+
+    /**
+     * Merges rows in the order of {@code sortKey}, see {@link Merge#SORTED}.
+     *
+     * @return this fan-out
+     */
+    public StatementFanOut sortedBy(Comparator<List<Field>> sortKey) {
+        this.sortKey = sortKey;
+        this.merge = Merge.SORTED;
+        return this;
+    }
+
+    /**
+     * @param failurePolicy what a failed statement does to the run, {@link FailurePolicy#FAIL_FAST}
+     *                      by default
+     * @return this fan-out
+     */
+    public StatementFanOut failurePolicy(FailurePolicy failurePolicy) {
+        this.failurePolicy = failurePolicy;
+        return this;
+    }
+
+    /**
+     * Runs the statements and passes every merged row to {@code action}.
+     *
+     * @param action called for every row, one at a time, on the thread that delivered its page
+     * @return a {@link CompletableFuture} with the outcome once every statement has been read,
+     * or failed with the first statement failure under {@link FailurePolicy#FAIL_FAST}
+     */
+    public CompletableFuture<Outcome> forEach(List<Statement> statements, Consumer<List<Field>> action) {
+        return new Run(statements, action).start();
+    }
+
+    /**
+     * Runs the statements and collects the merged rows. All statements must return the same
+     * columns. Under {@link FailurePolicy#SKIP_FAILED} the rows of failed statements are left out
+     * and each failure is logged.
+     *
+     * @return a {@link CompletableFuture} with the merged rows
+     */
+    public CompletableFuture<ColumnarQueryResult> collect(List<Statement> statements) {
+        AtomicReference<ColumnarQueryResult.Builder> rows = new AtomicReference<>();
+        Run run = new Run(statements, row -> rows.get().add(row));
+        run.onFirstColumns = columns -> rows.set(new ColumnarQueryResult.Builder(columns));
+        return run.start().thenApply(outcome -> {
+            outcome.failures().forEach((index, failure) ->
+                    events.warn("Statement {} of the fan-out failed: {}", index, failure.getMessage()));
+            return rows.get() != null
+                    ? rows.get().build()
+                    : new ColumnarQueryResult.Builder(List.of()).build();
+        });
+    }
+
+    /**
+     * Compares rows by a {@code long} column, nulls last.
+     */
+    public static Comparator<List<Field>> byLongColumn(int column) {
+        return (left, right) -> {
+            Field a = left.get(column);
+            Field b = right.get(column);
+            boolean aNull = FieldDecoder.isNull(a);
+            boolean bNull = FieldDecoder.isNull(b);
+            return aNull || bNull ? Boolean.compare(aNull, bNull) : Long.compare(a.longValue(), b.longValue());
+        };
+    }
+
+    /**
+     * Compares rows by a string column, nulls last.
+     */
+    public static Comparator<List<Field>> byStringColumn(int column) {
+        return (left, right) -> {
+            Field a = left.get(column);
+            Field b = right.get(column);
+            boolean aNull = FieldDecoder.isNull(a);
+            boolean bNull = FieldDecoder.isNull(b);
+            return aNull || bNull ? Boolean.compare(aNull, bNull) : a.stringValue().compareTo(b.stringValue());
+        };
+    }
+
+    /**
+     * One statement of a fan-out.
+     */
+    public static final class Statement {
+        private final String sql;
+        private final List<SqlParameter> parameters;
+
+        private Statement(String sql, List<SqlParameter> parameters) {
+            this.sql = sql;
+            this.parameters = List.copyOf(parameters);
+        }
+
+        public static Statement of(String sql) {
+            return new Statement(sql, List.of());
+        }
+
+        /**
+         * @param parameters values for the {@code :name} placeholders in {@code sql}
+         */
+        public static Statement of(String sql, List<SqlParameter> parameters) {
+            return new Statement(sql, parameters);
+        }
+
+        public String sql() {
+            return sql;
+        }
+
+        public List<SqlParameter> parameters() {
+            return parameters;
+        }
+
+        @Override
+        public String toString() {
+            return parameters.isEmpty() ? sql : sql + " " + parameters;
+        }
+    }
+
+    /**
+     * The result of a completed fan-out.
+     */
+    public static final class Outcome {
+        private final int statements;
+        private final long rows;
+        private final Map<Integer, Throwable> failures;
+
+        Outcome(int statements, long rows, Map<Integer, Throwable> failures) {
+            this.statements = statements;
+            this.rows = rows;
+            this.failures = failures;
+        }
+
+        public int statements() {
+            return statements;
+        }
+
+        public int succeeded() {
+            return statements - failures.size();
+        }
+
+        /**
+         * @return the number of rows passed to the action
+         */
+        public long rows() {
+            return rows;
+        }
+
+        /**
+         * @return the exception of every failed statement, keyed by its index in the statement
+         * list; empty unless the policy is {@link FailurePolicy#SKIP_FAILED}
+         */
+        public Map<Integer, Throwable> failures() {
+            return failures;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d statements, %d succeeded, %d rows", statements, succeeded(), rows);
+        }
+    }
+
+    /**
+     * The state of one call to {@link #forEach(List, Consumer)}.
+     */
+    private final class Run {
+        private final List<Statement> statements;
+        private final Consumer<List<Field>> action;
+        private final Merge merge = StatementFanOut.this.merge;
+        private final FailurePolicy failurePolicy = StatementFanOut.this.failurePolicy;
+        private final int parallelism = StatementFanOut.this.parallelism;
+        private final List<CompletableFuture<StatementResultStream>> streams;
+        private final Map<Integer, Throwable> failures = new TreeMap<>();
+        private final CompletableFuture<Outcome> outcome = new CompletableFuture<>();
+        private final Queue<Integer> readable = new ConcurrentLinkedQueue<>();
+        private Consumer<List<ColumnMetadata>> onFirstColumns;
+        private boolean columnsSeen;
+        private int submitted;
+        private int running;
+        private int reading;
+        private int read;
+        private long rows;
+        private volatile boolean stopped;
+
+        private Run(List<Statement> statements, Consumer<List<Field>> action) {
+            this.statements = List.copyOf(statements);
+            this.action = action;
+            this.streams = new ArrayList<>(statements.size());
+            for (int i = 0; i < statements.size(); i++) {
+                streams.add(new CompletableFuture<>());
+            }
+        }
+
+        private CompletableFuture<Outcome> start() {
+            if (merge == Merge.SORTED && sortKey == null) {
+                return CompletableFuture.failedFuture(new IllegalStateException("A sorted merge needs a sort key"));
+            }
+            Comparator<List<Field>> order = sortKey;
+            if (statements.isEmpty()) {
+                finish();
+                return outcome;
+            }
+            submitNext();
+            switch (merge) {
+                case ORDERED:
+                    readInOrder(0);
+                    break;
+                case SORTED:
+                    CompletableFuture.allOf(streams.toArray(new CompletableFuture<?>[0]))
+                            .handle((ignored, exception) -> {
+                                new SortedMerge(order).start();
+                                return null;
+                            });
+                    break;
+                default:
+                    // Streams are read as their statements finish, see readUnordered().
+            }
+            return outcome;
+        }
+
+        /**
+         * Submits statements while fewer than {@code parallelism} are running.
+         */
+        private void submitNext() {
+            while (true) {
+                int index;
+                synchronized (this) {
+                    if (stopped || running >= parallelism || submitted >= statements.size()) {
+                        return;
+                    }
+                    index = submitted++;
+                    running++;
+                }
+                Statement statement = statements.get(index);
+                StatementPipeline.Submission submission = pipeline.submit(statement.sql(), statement.parameters());
+                submission.thenStream().whenComplete((stream, exception) -> {
+                    synchronized (this) {
+                        running--;
+                    }
+                    if (exception != null) {
+                        if (failurePolicy == FailurePolicy.FAIL_FAST) {
+                            // Stops further submissions without waiting for the reader to get here.
+                            stop(unwrap(exception));
+                        }
+                        streams.get(index).completeExceptionally(exception);
+                    } else {
+                        streams.get(index).complete(stream);
+                    }
+                    if (merge == Merge.UNORDERED) {
+                        readable.add(index);
+                        readUnordered();
+                    }
+                    submitNext();
+                });
+            }
+        }
+
+        /**
+         * Reads the statements one after another, starting at {@code index}.
+         */
+        private void readInOrder(int index) {
+            for (int next = index; next < statements.size(); next++) {
+                if (stopped) {
+                    return;
+                }
+                CompletableFuture<Long> done = read(next);
+                if (!done.isDone()) {
+                    int current = next;
+                    done.whenComplete((count, exception) -> {
+                        if (statementDone(current, exception)) {
+                            readInOrder(current + 1);
+                        }
+                    });
+                    return;
+                }
+                Throwable exception = done.isCompletedExceptionally() ? failureOf(done) : null;
+                if (!statementDone(next, exception)) {
+                    return;
+                }
+            }
+            finish();
+        }
+
+        /**
+         * Reads finished statements while fewer than {@code parallelism} streams are open.
+         */
+        private void readUnordered() {
+            while (true) {
+                Integer index;
+                synchronized (this) {
+                    if (stopped || reading >= parallelism || (index = readable.poll()) == null) {
+                        return;
+                    }
+                    reading++;
+                }
+                int current = index;
+                read(current).whenComplete((count, exception) -> {
+                    synchronized (this) {
+                        reading--;
+                    }
+                    if (statementDone(current, exception)) {
+                        boolean last;
+                        synchronized (this) {
+                            last = ++read == statements.size();
+                        }
+                        if (last) {
+                            finish();
+                        } else {
+                            readUnordered();
+                        }
+                    }
+                });
+            }
+        }
+
+        private CompletableFuture<Long> read(int index) {
+            return streams.get(index).thenCompose(stream -> {
+                if (stream == null) {
+                    return CompletableFuture.completedFuture(0L);
+                }
+                return stream.forEach(row -> {
+                    if (stopped) {
+                        // Makes the stream cancel itself.
+                        throw new CancellationException("The fan-out was stopped");
+                    }
+                    emit(stream, row);
+                });
+            });
+        }
+
+        private void emit(StatementResultStream stream, List<Field> row) {
+            synchronized (this) {
+                if (!columnsSeen) {
+                    columnsSeen = true;
+                    if (onFirstColumns != null) {
+                        // The metadata arrives with the first page, before its rows are published.
+                        onFirstColumns.accept(stream.columnMetadata().join());
+                    }
+                }
+                rows++;
+                try {
+                    action.accept(row);
+                } catch (RuntimeException e) {
+                    stop(new RuntimeException("Error processing fan-out row: " + e.getMessage(), e));
+                    throw e;
+                }
+            }
+        }
+
+        /**
+         * Records the end of reading one statement.
+         *
+         * @return {@code false} if the run was stopped
+         */
+        private boolean statementDone(int index, Throwable exception) {
+            if (stopped) {
+                return false;
+            }
+            if (exception != null) {
+                Throwable failure = unwrap(exception);
+                if (failurePolicy == FailurePolicy.FAIL_FAST) {
+                    stop(failure);
+                    return false;
+                }
+                synchronized (this) {
+                    failures.put(index, failure);
+                }
+            }
+            return true;
+        }
+
+        private void stop(Throwable failure) {
+            stopped = true;
+            outcome.completeExceptionally(failure);
+        }
+
+        private void finish() {
+            synchronized (this) {
+                outcome.complete(new Outcome(statements.size(), rows, new TreeMap<>(failures)));
+            }
+        }
+
+        private Throwable failureOf(CompletableFuture<?> future) {
+            try {
+                future.join();
+                return null;
+            } catch (CompletionException | CancellationException e) {
+                return e;
+            }
+        }
+
+        private Throwable unwrap(Throwable exception) {
+            return exception instanceof CompletionException && exception.getCause() != null
+                    ? exception.getCause()
+                    : exception;
+        }
+
+        /**
+         * Merges the rows of every open stream by the sort key. Each stream buffers at most
+         * {@link #MERGE_BATCH} rows; the smallest head row is emitted only once every stream that
+         * is not exhausted has a row buffered.
+         */
+        private final class SortedMerge {
+            private final Comparator<List<Field>> order;
+            private final PriorityQueue<Source> heads;
+            private final List<Source> empty = new ArrayList<>();
+            private final List<Source> sources = new ArrayList<>();
+            private final AtomicInteger wip = new AtomicInteger();
+            private boolean done;
+
+            private SortedMerge(Comparator<List<Field>> order) {
+                this.order = order;
+                this.heads = new PriorityQueue<>((left, right) -> order.compare(left.rows.peek(), right.rows.peek()));
+            }
+
+            private void start() {
+                for (int i = 0; i < statements.size(); i++) {
+                    CompletableFuture<StatementResultStream> stream = streams.get(i);
+                    Throwable exception = stream.isCompletedExceptionally() ? failureOf(stream) : null;
+                    if (!statementDone(i, exception)) {
+                        return;
+                    }
+                    if (exception == null && stream.join() != null) {
+                        sources.add(new Source(i, stream.join()));
+                    }
+                }
+                empty.addAll(sources);
+                for (Source source : sources) {
+                    source.stream.subscribe(source);
+                }
+                drain();
+            }
+
+            private void drain() {
+                if (wip.getAndIncrement() != 0) {
+                    return;
+                }
+                int missed = 1;
+                do {
+                    if (!done) {
+                        emitSorted();
+                    }
+                    missed = wip.addAndGet(-missed);
+                } while (missed != 0);
+            }
+
+            private void emitSorted() {
+                while (true) {
+                    if (stopped) {
+                        done = true;
+                        sources.forEach(Source::cancel);
+                        return;
+                    }
+                    for (int i = empty.size() - 1; i >= 0; i--) {
+                        Source source = empty.get(i);
+                        // Read before the buffer: a source buffers its last rows before it finishes.
+                        boolean finished = source.finished;
+                        if (!source.rows.isEmpty()) {
+                            empty.remove(i);
+                            heads.add(source);
+                        } else if (finished) {
+                            empty.remove(i);
+                            if (!statementDone(source.index, source.error)) {
+                                done = true;
+                                sources.forEach(Source::cancel);
+                                return;
+                            }
+                        }
+                    }
+                    if (!empty.isEmpty()) {
+                        return;
+                    }
+                    Source smallest = heads.poll();
+                    if (smallest == null) {
+                        done = true;
+                        finish();
+                        return;
+                    }
+                    List<Field> row = smallest.rows.poll();
+                    smallest.consumed();
+                    try {
+                        emit(smallest.stream, row);
+                    } catch (RuntimeException e) {
+                        done = true;
+                        sources.forEach(Source::cancel);
+                        return;
+                    }
+                    if (smallest.rows.isEmpty()) {
+                        empty.add(smallest);
+                    } else {
+                        heads.add(smallest);
+                    }
+                }
+            }
+
+            private final class Source implements Flow.Subscriber<List<Field>> {
+                private final int index;
+                private final StatementResultStream stream;
+                private final Queue<List<Field>> rows = new ConcurrentLinkedQueue<>();
+                private Flow.Subscription subscription;
+                private int consumed;
+                private volatile boolean finished;
+                private volatile Throwable error;
+
+                private Source(int index, StatementResultStream stream) {
+                    this.index = index;
+                    this.stream = stream;
+                }
+
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    this.subscription = subscription;
+                    subscription.request(MERGE_BATCH);
+                }
+
+                @Override
+                public void onNext(List<Field> row) {
+                    rows.add(row);
+                    drain();
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    error = throwable;
+                    finished = true;
+                    drain();
+                }
+
+                @Override
+                public void onComplete() {
+                    finished = true;
+                    drain();
+                }
+
+                /**
+                 * Asks for more rows once half of the last batch has been merged.
+                 */
+                private void consumed() {
+                    if (++consumed == MERGE_BATCH / 2) {
+                        consumed = 0;
+                        subscription.request(MERGE_BATCH / 2);
+                    }
+                }
+
+                private void cancel() {
+                    if (subscription != null) {
+                        subscription.cancel();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,575 @@
+package org.example;
+
+import software.amazon.awssdk.services.redshiftdata.model.SqlParameter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * A local, append-only journal of submitted statements, so that a restarted process can pick up
+ * the statements its predecessor left running instead of executing them again.
+ * <p>
+ * Every submission is recorded with its statement ID, cluster, database, user,
+ * {@link SqlFingerprint SQL fingerprint} and a digest of the exact request (cluster, database,
+ * user, normalized SQL and parameter values) and the tables it reads; the SQL text itself is not
+ * stored. State changes are appended as they happen. Records are written into a memory-mapped
+ * file, so an append is a memory copy and survives a crash of the process; {@link #sync()} also
+ * forces them to the device. Each record carries a CRC and its length is written last, so a
+ * record torn by a crash is ignored on the next start.
+ * <p>
+ * Records are applied and written in call order on the journal's own thread, so callers such as
+ * SDK completion threads never wait for a lock, a compaction or the device; lookups see a change
+ * once that thread has applied it.
+ * <p>
+ * When the file is opened its records are replayed and only the live entries are rewritten to a
+ * fresh file; the same happens whenever the file is full. An entry is live until its result has
+ * been fetched, it failed, a write changed a table it reads (see
+ * {@link #onWrite(String, String, String)}), or it is older than {@link #RETENTION}, just under the
+ * 24 hours the Data API keeps results. Only entries replayed at open are
+ * {@link #find found}: this process's own statements are never picked up again.
+ */
+public class StatementJournal implements AutoCloseable {
+
+    public enum State {
+        SUBMITTED, FINISHED, FAILED, FETCHED,
+        /**
+         * A write changed a table the statement reads, so its result is out of date.
+         */
+        STALE
+    }
+
+    public static final Duration RETENTION = Duration.ofHours(23);
+
+    private static final EventLog.Source events = EventLog.shared().source(StatementJournal.class);
+    private static final byte SUBMITTED_RECORD = 1;
+    private static final byte STATE_RECORD = 2;
+    private static final int HEADER_BYTES = 8;
+
+    private final Path file;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Map<String, Entry> byDigest = new HashMap<>();
+    private final CRC32 crc = new CRC32();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "redshift-statement-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int position;
+    private boolean closing;
+    private boolean closed;
+
+    /**
+     * Opens or creates a journal with room for about 8,000 entries before it is compacted or
+     * grown.
+     */
+    public StatementJournal(Path file) {
+        this(file, 1 << 20);
+    }
+
+    /**
+     * @param initialBytes the size of the mapped file when there is little to carry over
+     */
+    public StatementJournal(Path file, int initialBytes) {
+        this.file = file;
+        try {
+            if (Files.exists(file)) {
+                replay(Files.readAllBytes(file));
+                for (Entry entry : entries.values()) {
+                    entry.recovered = true;
+                }
+            }
+            rewrite(initialBytes);
+        } catch (IOException e) {
+            writer.shutdown();
+            throw new RuntimeException("Error opening statement journal " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Records a submitted statement.
+     *
+     * @param parameters the values bound to the statement's {@code :name} placeholders
+     */
+    public void recordSubmitted(String statementId, String clusterId, String database, String dbUser,
+                                String sql, List<SqlParameter> parameters) {
+        long submittedAtMillis = System.currentTimeMillis();
+        List<SqlParameter> bound = List.copyOf(parameters);
+        write(() -> {
+            Entry entry = new Entry(statementId, clusterId, database, dbUser, SqlFingerprint.of(sql),
+                    digest(clusterId, database, dbUser, sql, bound), submittedAtMillis, State.SUBMITTED,
+                    SqlStatements.readTables(sql));
+            append(submittedRecord(entry));
+            apply(entry);
+        });
+    }
+
+    /**
+     * Records a state change of a statement; statements the journal does not know are ignored.
+     */
+    public void recordState(String statementId, State state) {
+        write(() -> {
+            if (entries.containsKey(statementId)) {
+                append(stateRecord(statementId, state));
+                applyState(statementId, state);
+            }
+        });
+    }
+
+    /**
+     * Marks {@link State#STALE} the live entries of a cluster and database whose result a write
+     * statement may change: those that read the written table, those whose tables could not be
+     * told, or all of them when the written table cannot be told. Read-only statements are
+     * ignored.
+     */
+    public void onWrite(String clusterId, String database, String sql) {
+        if (SqlStatements.isReadOnly(sql)) {
+            return;
+        }
+        String table = SqlStatements.writtenTable(sql);
+        write(() -> {
+            long now = System.currentTimeMillis();
+            List<String> stale = new ArrayList<>();
+            for (Entry entry : entries.values()) {
+                if (Objects.equals(entry.clusterId, clusterId) && Objects.equals(entry.database, database)
+                        && isLive(entry, now) && (table == null || entry.tables.isEmpty() || entry.tables.contains(table))) {
+                    stale.add(entry.statementId);
+                }
+            }
+            for (String statementId : stale) {
+                append(stateRecord(statementId, State.STALE));
+                applyState(statementId, State.STALE);
+            }
+        });
+    }
+
+    /**
+     * Finds the most recent statement for the same request that can be picked up: a previous
+     * process submitted it within the {@link #RETENTION retention}, it did not fail, its result
+     * has not been fetched yet and no write has changed a table it reads since.
+     *
+     * @return the entry, or {@code null} if there is none
+     */
+    public synchronized Entry find(String clusterId, String database, String dbUser, String sql,
+                                   List<SqlParameter> parameters) {
+        Entry entry = byDigest.get(digest(clusterId, database, dbUser, sql, parameters));
+        return entry != null && entry.recovered && isLive(entry, System.currentTimeMillis()) ? entry : null;
+    }
+
+    /**
+     * @return the live entries that were submitted but never seen to finish, oldest first
+     */
+    public synchronized List<Entry> unfinished() {
+        long now = System.currentTimeMillis();
+        List<Entry> unfinished = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.state == State.SUBMITTED && isLive(entry, now)) {
+                unfinished.add(entry);
+            }
+        }
+        return unfinished;
+    }
+
+    /**
+     * @return the number of entries, including those no longer live until the next compaction
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Waits until every change recorded before this call has been written, and forces the records
+     * to the storage device.
+     */
+    public void sync() {
+        CompletableFuture<Void> synced;
+        try {
+            synced = CompletableFuture.runAsync(() -> {
+                synchronized (this) {
+                    checkOpen();
+                    buffer.force();
+                }
+            }, writer);
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("The statement journal is closed");
+        }
+        try {
+            synced.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Writes the pending changes and closes the file.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closing) {
+                return;
+            }
+            closing = true;
+        }
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                events.warn("Statement journal {} closed with changes still pending", file);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            closed = true;
+            buffer.force();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Error closing statement journal " + file + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Applies and writes one change on the journal's thread.
+     */
+    private void write(Runnable change) {
+        try {
+            writer.execute(() -> {
+                synchronized (this) {
+                    if (closed) {
+                        return;
+                    }
+                    try {
+                        change.run();
+                    } catch (RuntimeException e) {
+                        events.warn("Failed to write statement journal {}: {}", file, e.getMessage());
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("The statement journal is closed");
+        }
+    }
+
+    private void append(ByteBuffer payload) {
+        checkOpen();
+        int length = payload.remaining();
+        if (position + HEADER_BYTES + length + 4 > buffer.capacity()) {
+            try {
+                rewrite(HEADER_BYTES + length);
+            } catch (IOException e) {
+                throw new RuntimeException("Error compacting statement journal " + file + ": " + e.getMessage(), e);
+            }
+        }
+        writeRecord(buffer, position, payload);
+        position += HEADER_BYTES + length;
+    }
+
+    /**
+     * Writes a record at {@code offset}: the length, the CRC of the payload and the payload. The
+     * length goes in last, so the record only becomes visible to a replay once it is complete.
+     */
+    private void writeRecord(ByteBuffer target, int offset, ByteBuffer payload) {
+        int length = payload.remaining();
+        crc.reset();
+        crc.update(payload.duplicate());
+        target.putInt(offset + 4, (int) crc.getValue());
+        target.put(offset + HEADER_BYTES, payload, payload.position(), length);
+        target.putInt(offset, length);
+    }
+
+    /**
+     * Writes the live entries to a new file with room for as much again plus {@code minimumFree}
+     * bytes, never smaller than the current one, and maps it in place of the current one.
+     */
+    private void rewrite(int minimumFree) throws IOException {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> !isLive(entry, now));
+        byDigest.values().removeIf(entry -> !isLive(entry, now));
+
+        List<ByteBuffer> records = new ArrayList<>();
+        int used = 0;
+        for (Entry entry : entries.values()) {
+            ByteBuffer record = submittedRecord(entry);
+            used += HEADER_BYTES + record.remaining();
+            records.add(record);
+        }
+        int size = Math.max(2 * used + minimumFree + 4, buffer == null ? 0 : buffer.capacity());
+
+        Path next = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.deleteIfExists(next);
+        FileChannel nextChannel = FileChannel.open(next, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        MappedByteBuffer nextBuffer = nextChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        int offset = 0;
+        for (ByteBuffer record : records) {
+            int length = record.remaining();
+            writeRecord(nextBuffer, offset, record);
+            offset += HEADER_BYTES + length;
+        }
+        nextBuffer.force();
+        Files.move(next, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        if (channel != null) {
+            channel.close();
+        }
+        channel = nextChannel;
+        buffer = nextBuffer;
+        position = offset;
+    }
+
+    private void replay(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        int offset = 0;
+        while (offset + HEADER_BYTES <= bytes.length) {
+            int length = in.getInt(offset);
+            if (length <= 0 || offset + HEADER_BYTES + length > bytes.length) {
+                break;
+            }
+            crc.reset();
+            crc.update(bytes, offset + HEADER_BYTES, length);
+            if ((int) crc.getValue() != in.getInt(offset + 4)) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.wrap(bytes, offset + HEADER_BYTES, length).slice();
+            byte type = record.get();
+            if (type == SUBMITTED_RECORD) {
+                String statementId = readString(record);
+                String clusterId = readString(record);
+                String database = readString(record);
+                String dbUser = readString(record);
+                String fingerprint = readString(record);
+                String digest = readString(record);
+                long submittedAtMillis = record.getLong();
+                State state = State.values()[record.get()];
+                Set<String> tables = new LinkedHashSet<>();
+                for (int count = record.getShort(); count > 0; count--) {
+                    tables.add(readString(record));
+                }
+                apply(new Entry(statementId, clusterId, database, dbUser, fingerprint, digest, submittedAtMillis,
+                        state, tables));
+            } else if (type == STATE_RECORD) {
+                applyState(readString(record), State.values()[record.get()]);
+            }
+            offset += HEADER_BYTES + length;
+        }
+    }
+
+    private void apply(Entry entry) {
+        entries.put(entry.statementId, entry);
+        Entry previous = byDigest.get(entry.digest);
+        if (previous == null || previous.submittedAtMillis <= entry.submittedAtMillis) {
+            byDigest.put(entry.digest, entry);
+        }
+    }
+
+    private void applyState(String statementId, State state) {
+        Entry entry = entries.get(statementId);
+        // A statement that read a table before a write stays out of date, however it ends.
+        if (entry != null && entry.state != State.STALE) {
+            entry.state = state;
+        }
+    }
+
+    private static boolean isLive(Entry entry, long now) {
+        return (entry.state == State.SUBMITTED || entry.state == State.FINISHED)
+                && now - entry.submittedAtMillis < RETENTION.toMillis();
+    }
+
+    private static ByteBuffer submittedRecord(Entry entry) {
+        int tableChars = 0;
+        for (String table : entry.tables) {
+            tableChars += table.length();
+        }
+        ByteBuffer record = ByteBuffer.allocate(1 + 8 + 1 + 6 * 2 + 2 + 2 * entry.tables.size() + 4 * (entry.statementId.length()
+                + length(entry.clusterId) + length(entry.database) + length(entry.dbUser) + length(entry.fingerprint)
+                + entry.digest.length() + tableChars));
+        record.put(SUBMITTED_RECORD);
+        writeString(record, entry.statementId);
+        writeString(record, entry.clusterId);
+        writeString(record, entry.database);
+        writeString(record, entry.dbUser);
+        writeString(record, entry.fingerprint);
+        writeString(record, entry.digest);
+        record.putLong(entry.submittedAtMillis);
+        record.put((byte) entry.state.ordinal());
+        record.putShort((short) entry.tables.size());
+        for (String table : entry.tables) {
+            writeString(record, table);
+        }
+        return record.flip();
+    }
+
+    private static ByteBuffer stateRecord(String statementId, State state) {
+        ByteBuffer record = ByteBuffer.allocate(1 + 2 + 4 * statementId.length() + 1);
+        record.put(STATE_RECORD);
+        writeString(record, statementId);
+        record.put((byte) state.ordinal());
+        return record.flip();
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    /**
+     * Writes a string as its UTF-8 length and bytes, with a length of -1 for {@code null}. Values
+     * are cut to 16 KB.
+     */
+    private static void writeString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, Short.MAX_VALUE / 2);
+        out.putShort((short) length);
+        out.put(bytes, 0, length);
+    }
+
+    private static String readString(ByteBuffer in) {
+        short length = in.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return a digest of the request that only matches the same cluster, database, user,
+     * normalized SQL and parameter values
+     */
+    static String digest(String clusterId, String database, String dbUser, String sql, List<SqlParameter> parameters) {
+        Map<String, String> bound = new TreeMap<>();
+        for (SqlParameter parameter : parameters) {
+            bound.put(parameter.name(), parameter.value());
+        }
+        StringBuilder request = new StringBuilder()
+                .append(clusterId).append('\0')
+                .append(database).append('\0')
+                .append(dbUser).append('\0')
+                .append(SqlStatements.normalize(sql));
+        bound.forEach((name, value) -> request.append('\0').append(name).append('=').append(value));
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(sha.digest(request.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Error computing request digest: " + e.getMessage(), e);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The statement journal is closed");
+        }
+    }
+
+    /**
+     * One journaled statement.
+     */
+    public static final class Entry {
+        private final String statementId;
+        private final String clusterId;
+        private final String database;
+        private final String dbUser;
+        private final String fingerprint;
+        private final String digest;
+        private final long submittedAtMillis;
+        private final Set<String> tables;
+        private volatile State state;
+        private boolean recovered;
+
+        private Entry(String statementId, String clusterId, String database, String dbUser, String fingerprint,
+                      String digest, long submittedAtMillis, State state, Set<String> tables) {
+            this.statementId = statementId;
+            this.clusterId = clusterId;
+            this.database = database;
+            this.dbUser = dbUser;
+            this.fingerprint = fingerprint;
+            this.digest = digest;
+            this.submittedAtMillis = submittedAtMillis;
+            this.state = state;
+            this.tables = Set.copyOf(tables);
+        }
+
+        public String statementId() {
+            return statementId;
+        }
+
+        public String clusterId() {
+            return clusterId;
+        }
+
+        public String database() {
+            return database;
+        }
+
+        public String dbUser() {
+            return dbUser;
+        }
+
+        public String fingerprint() {
+            return fingerprint;
+        }
+
+        public long submittedAtMillis() {
+            return submittedAtMillis;
+        }
+
+        public State state() {
+            return state;
+        }
+
+        /**
+         * @return the tables the statement reads, empty if they could not be told
+         */
+        public Set<String> tables() {
+            return tables;
+        }
+
+        /**
+         * @return {@code true} if the entry was replayed when the journal was opened, i.e. a
+         * previous process submitted the statement
+         */
+        public boolean recovered() {
+            return recovered;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s %s/%s/%s: %s", statementId, state, clusterId, database, dbUser, fingerprint);
+        }
+    }
+}
@@ -0,0 +1,491 @@
+package org.example;
+
+import software.amazon.awssdk.services.redshiftdata.model.DescribeStatementResponse;
+import software.amazon.awssdk.services.redshiftdata.model.Field;
+import software.amazon.awssdk.services.redshiftdata.model.SqlParameter;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs statements through three asynchronous stages: {@link Stage#SUBMIT submit}
+ * ({@code ExecuteStatement}), {@link Stage#AWAIT await} (polling until FINISHED) and
+ * {@link Stage#FETCH fetch} ({@code GetStatementResult}).
+ * <p>
+ * Each stage admits at most its {@link #depth(Stage, int) depth} of statements at once and queues
+ * the rest in submission order, without blocking any thread. The stages are independent, so many
+ * statements overlap: while one is being fetched, the next is polled and the one after it is
+ * submitted. {@link #submit(String)} starts the first two stages right away; the fetch starts when
+ * the caller asks for the rows with {@link Submission#thenResult()} or
+ * {@link Submission#thenForEach(Consumer)}.
+ * <p>
+ * Every stage records how long statements waited for it and how long it took them, see
+ * {@link #stats(Stage)}.
+ */
+public class StatementPipeline {
+
+    public enum Stage {
+        SUBMIT, AWAIT, FETCH
+    }
+
+    /**
+     * Told about every statement the pipeline submits, for example to drop cached results that a
+     * write may change.
+     */
+    @FunctionalInterface
+    public interface SubmitListener {
+        /**
+         * @param finished completes like {@link Submission#finished()}
+         */
+        void submitted(String sql, CompletableFuture<DescribeStatementResponse> finished);
+    }
+
+    private final AsyncStatementExecutor executor;
+    private final StatementCompletionTracker tracker;
+    private final Function<String, StatementResultStream> results;
+    private final Map<Stage, Gate> gates = new EnumMap<>(Stage.class);
+    private volatile QueryMetrics metrics;
+    private volatile SubmitListener submitListener;
+
+    /**
+     * @param executor submits the statements
+     * @param tracker  tracks them to a terminal state
+     * @param results  opens the result stream of a FINISHED statement
+     */
+    public StatementPipeline(AsyncStatementExecutor executor, StatementCompletionTracker tracker,
+                             Function<String, StatementResultStream> results) {
+        this.executor = executor;
+        this.tracker = tracker;
+        this.results = results;
+        gates.put(Stage.SUBMIT, new Gate(32));
+        gates.put(Stage.AWAIT, new Gate(256));
+        gates.put(Stage.FETCH, new Gate(4));
+    }
+
+    /**
+     * @param depth the maximum number of statements in the stage at once; 32 for
+     *              {@link Stage#SUBMIT}, 256 for {@link Stage#AWAIT} and 4 for {@link Stage#FETCH}
+     *              by default
+     * @return this pipeline
+     */
+    public StatementPipeline depth(Stage stage, int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Stage depth must be positive: " + depth);
+        }
+        gates.get(stage).depth(depth);
+        return this;
+    }
+
+    /**
+     * @param metrics records the time, rows and size of every fetch, or {@code null} to record
+     *                nothing; submit and await latencies are recorded by the executor and tracker
+     * @return this pipeline
+     */
+    public StatementPipeline metrics(QueryMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * @param listener called for every submitted statement, or {@code null} for none
+     * @return this pipeline
+     */
+    public StatementPipeline submitListener(SubmitListener listener) {
+        this.submitListener = listener;
+        return this;
+    }
+
+    public Submission submit(String sql) {
+        return submit(sql, List.of());
+    }
+
+    /**
+     * Submits a statement and tracks it to FINISHED.
+     *
+     * @param parameters values for the {@code :name} placeholders in {@code sql}
+     * @return the handle to the statement's later stages
+     */
+    public Submission submit(String sql, List<SqlParameter> parameters) {
+        CompletableFuture<String> id = gates.get(Stage.SUBMIT).run(() -> executor.submit(sql, parameters));
+        CompletableFuture<DescribeStatementResponse> finished = id.thenCompose(statementId ->
+                gates.get(Stage.AWAIT).run(() -> tracker.track(statementId, SqlFingerprint.of(sql))));
+        SubmitListener listener = submitListener;
+        if (listener != null) {
+            listener.submitted(sql, finished);
+        }
+        return new Submission(id, finished);
+    }
+
+    /**
+     * Takes a statement submitted earlier, e.g. by a previous process and found in a
+     * {@link StatementJournal}, through the await and fetch stages.
+     *
+     * @param sql the statement's SQL, or {@code null} if it is unknown
+     * @return the handle to the statement's later stages
+     */
+    public Submission attach(String statementId, String sql) {
+        String fingerprint = sql == null ? null : SqlFingerprint.of(sql);
+        CompletableFuture<String> id = CompletableFuture.completedFuture(statementId);
+        return new Submission(id, gates.get(Stage.AWAIT).run(() -> tracker.track(statementId, fingerprint)));
+    }
+
+    /**
+     * @return the counters and latencies of one stage
+     */
+    public StageStats stats(Stage stage) {
+        return gates.get(stage).stats(stage);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            out.append(stats(stage)).append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * One statement in the pipeline.
+     */
+    public final class Submission {
+        private final CompletableFuture<String> statementId;
+        private final CompletableFuture<DescribeStatementResponse> finished;
+        private final AtomicReference<CompletableFuture<ColumnarQueryResult>> result = new AtomicReference<>();
+
+        private Submission(CompletableFuture<String> statementId, CompletableFuture<DescribeStatementResponse> finished) {
+            this.statementId = statementId;
+            this.finished = finished;
+        }
+
+        /**
+         * @return a {@link CompletableFuture} with the statement ID, or failed with a
+         * {@link StatementSubmissionException}
+         */
+        public CompletableFuture<String> statementId() {
+            return statementId;
+        }
+
+        /**
+         * @return a {@link CompletableFuture} with the final describe response, or failed like
+         * {@link StatementCompletionTracker#track(String)}
+         */
+        public CompletableFuture<DescribeStatementResponse> finished() {
+            return finished;
+        }
+
+        /**
+         * Fetches every row once the statement FINISHED. Calling this more than once returns the
+         * same future.
+         *
+         * @return a {@link CompletableFuture} with the rows, or an empty result for statements
+         * without a result set
+         */
+        public CompletableFuture<ColumnarQueryResult> thenResult() {
+            CompletableFuture<ColumnarQueryResult> rows = result.get();
+            if (rows == null) {
+                CompletableFuture<ColumnarQueryResult> created = finished.thenCompose(response ->
+                        Boolean.TRUE.equals(response.hasResultSet())
+                                ? gates.get(Stage.FETCH).run(() -> fetch(response.id()))
+                                : CompletableFuture.completedFuture(new ColumnarQueryResult.Builder(List.of()).build()));
+                rows = result.compareAndSet(null, created) ? created : result.get();
+            }
+            return rows;
+        }
+
+        /**
+         * Streams every row once the statement FINISHED, holding a fetch slot until the last
+         * row has been consumed. Use either this or {@link #thenResult()}, once.
+         *
+         * @param action called for every row, on the thread that delivered its page
+         * @return a {@link CompletableFuture} with the number of rows
+         */
+        public CompletableFuture<Long> thenForEach(Consumer<List<Field>> action) {
+            return finished.thenCompose(response -> Boolean.TRUE.equals(response.hasResultSet())
+                    ? gates.get(Stage.FETCH).run(() -> forEach(response.id(), action))
+                    : CompletableFuture.completedFuture(0L));
+        }
+
+        /**
+         * Fetches every row once the statement FINISHED into a {@link SpillingResultStore},
+         * holding a fetch slot until the last row is stored. Use instead of {@link #thenResult()}
+         * for results that may not fit on the heap. The caller closes the store.
+         *
+         * @param memoryThreshold the estimated heap size kept in memory before rows are spilled
+         * @param directory       where the spill file is created
+         * @return a {@link CompletableFuture} with the finished store, empty for statements
+         * without a result set
+         */
+        public CompletableFuture<SpillingResultStore> thenStore(long memoryThreshold, Path directory) {
+            return finished.thenCompose(response -> Boolean.TRUE.equals(response.hasResultSet())
+                    ? gates.get(Stage.FETCH).run(() -> fetchToStore(response.id(), memoryThreshold, directory))
+                    : CompletableFuture.completedFuture(new SpillingResultStore(List.of(), memoryThreshold, directory).finish()));
+        }
+
+        /**
+         * Opens the result stream once the statement FINISHED, without taking a fetch slot. For
+         * callers that keep several streams open at once, such as a k-way merge, and bound the
+         * number of open streams themselves.
+         *
+         * @return a {@link CompletableFuture} with the unconsumed stream, or with {@code null} for
+         * a statement without a result set
+         */
+        public CompletableFuture<StatementResultStream> thenStream() {
+            return finished.thenApply(response -> Boolean.TRUE.equals(response.hasResultSet())
+                    ? results.apply(response.id())
+                    : null);
+        }
+    }
+
+    private CompletableFuture<ColumnarQueryResult> fetch(String statementId) {
+        long startNanos = System.nanoTime();
+        return collect(results.apply(statementId)).whenComplete((rows, exception) -> {
+            QueryMetrics metrics = this.metrics;
+            if (exception == null && metrics != null) {
+                metrics.recordFetch(System.nanoTime() - startNanos, rows.rowCount(), rows.estimatedBytes());
+            }
+        });
+    }
+
+    private CompletableFuture<Long> forEach(String statementId, Consumer<List<Field>> action) {
+        long startNanos = System.nanoTime();
+        return results.apply(statementId).forEach(action).whenComplete((rows, exception) -> {
+            QueryMetrics metrics = this.metrics;
+            if (exception == null && metrics != null) {
+                metrics.recordFetch(System.nanoTime() - startNanos, rows, -1);
+            }
+        });
+    }
+
+    private CompletableFuture<SpillingResultStore> fetchToStore(String statementId, long memoryThreshold, Path directory) {
+        long startNanos = System.nanoTime();
+        return store(results.apply(statementId), memoryThreshold, directory).whenComplete((store, exception) -> {
+            QueryMetrics metrics = this.metrics;
+            if (exception == null && metrics != null) {
+                metrics.recordFetch(System.nanoTime() - startNanos, store.rowCount(),
+                        store.memoryBytes() + store.spilledBytes());
+            }
+        });
+    }
+
+    /**
+     * Consumes a result stream into a {@link ColumnarQueryResult}.
+     */
+    static CompletableFuture<ColumnarQueryResult> collect(StatementResultStream stream) {
+        AtomicReference<ColumnarQueryResult.Builder> rows = new AtomicReference<>();
+        return stream.forEach(row -> {
+            if (rows.get() == null) {
+                // The metadata arrives with the first page, before its rows are published.
+                rows.set(new ColumnarQueryResult.Builder(stream.columnMetadata().join()));
+            }
+            rows.get().add(row);
+        }).thenApply(count -> rows.get() != null
+                ? rows.get().build()
+                : new ColumnarQueryResult.Builder(stream.columnMetadata().join()).build());
+    }
+
+    /**
+     * Consumes a result stream into a {@link SpillingResultStore}; the store is closed if the
+     * stream fails.
+     */
+    static CompletableFuture<SpillingResultStore> store(StatementResultStream stream, long memoryThreshold, Path directory) {
+        AtomicReference<SpillingResultStore> rows = new AtomicReference<>();
+        return stream.forEach(row -> {
+            if (rows.get() == null) {
+                rows.set(new SpillingResultStore(stream.columnMetadata().join(), memoryThreshold, directory));
+            }
+            rows.get().add(row);
+        }).handle((count, exception) -> {
+            SpillingResultStore store = rows.get();
+            if (exception != null) {
+                if (store != null) {
+                    store.close();
+                }
+                throw exception instanceof RuntimeException ? (RuntimeException) exception : new RuntimeException(exception);
+            }
+            return store != null
+                    ? store.finish()
+                    : new SpillingResultStore(stream.columnMetadata().join(), memoryThreshold, directory).finish();
+        });
+    }
+
+    /**
+     * Admits at most {@code depth} tasks at once and queues the others.
+     */
+    private static final class Gate {
+        private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+        private final RollingLatencyHistogram waitMillis = new RollingLatencyHistogram(1_024);
+        private final RollingLatencyHistogram serviceMillis = new RollingLatencyHistogram(1_024);
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private int depth;
+        private int active;
+
+        private Gate(int depth) {
+            this.depth = depth;
+        }
+
+        private void depth(int depth) {
+            synchronized (this) {
+                this.depth = depth;
+            }
+            startWaiting();
+        }
+
+        private <T> CompletableFuture<T> run(Supplier<CompletableFuture<T>> task) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            long queuedAt = System.nanoTime();
+            Runnable start = () -> {
+                long startedAt = System.nanoTime();
+                waitMillis.record((startedAt - queuedAt) / 1_000_000);
+                CompletableFuture<T> work;
+                try {
+                    work = task.get();
+                } catch (RuntimeException e) {
+                    work = CompletableFuture.failedFuture(e);
+                }
+                work.whenComplete((value, exception) -> {
+                    serviceMillis.record((System.nanoTime() - startedAt) / 1_000_000);
+                    (exception == null ? completed : failed).incrementAndGet();
+                    synchronized (this) {
+                        active--;
+                    }
+                    startWaiting();
+                    if (exception == null) {
+                        result.complete(value);
+                    } else {
+                        result.completeExceptionally(exception);
+                    }
+                });
+            };
+            synchronized (this) {
+                waiting.add(start);
+            }
+            startWaiting();
+            return result;
+        }
+
+        private void startWaiting() {
+            // Tasks that complete inline call back into this method; let the outer call start
+            // their successors instead of recursing once per queued task.
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (true) {
+                    Runnable next;
+                    synchronized (this) {
+                        if (active >= depth || waiting.isEmpty()) {
+                            break;
+                        }
+                        active++;
+                        next = waiting.poll();
+                    }
+                    next.run();
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+
+        private StageStats stats(Stage stage) {
+            int activeNow;
+            int queuedNow;
+            synchronized (this) {
+                activeNow = active;
+                queuedNow = waiting.size();
+            }
+            return new StageStats(stage, completed.get(), failed.get(), activeNow, queuedNow,
+                    waitMillis.percentile(50), waitMillis.percentile(99),
+                    serviceMillis.percentile(50), serviceMillis.percentile(99));
+        }
+    }
+
+    /**
+     * A snapshot of one stage. Latency percentiles cover the most recent 1,024 statements and
+     * are -1 before the first one.
+     */
+    public static final class StageStats {
+        private final Stage stage;
+        private final long completed;
+        private final long failed;
+        private final int active;
+        private final int queued;
+        private final long waitP50Millis;
+        private final long waitP99Millis;
+        private final long serviceP50Millis;
+        private final long serviceP99Millis;
+
+        StageStats(Stage stage, long completed, long failed, int active, int queued,
+                   long waitP50Millis, long waitP99Millis, long serviceP50Millis, long serviceP99Millis) {
+            this.stage = stage;
+            this.completed = completed;
+            this.failed = failed;
+            this.active = active;
+            this.queued = queued;
+            this.waitP50Millis = waitP50Millis;
+            this.waitP99Millis = waitP99Millis;
+            this.serviceP50Millis = serviceP50Millis;
+            this.serviceP99Millis = serviceP99Millis;
+        }
+
+        public Stage stage() {
+            return stage;
+        }
+
+        public long completed() {
+            return completed;
+        }
+
+        public long failed() {
+            return failed;
+        }
+
+        public int active() {
+            return active;
+        }
+
+        public int queued() {
+            return queued;
+        }
+
+        /**
+         * @return the median time statements waited for a slot in the stage
+         */
+        public long waitP50Millis() {
+            return waitP50Millis;
+        }
+
+        public long waitP99Millis() {
+            return waitP99Millis;
+        }
+
+        /**
+         * @return the median time statements spent in the stage once admitted
+         */
+        public long serviceP50Millis() {
+            return serviceP50Millis;
+        }
+
+        public long serviceP99Millis() {
+            return serviceP99Millis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d completed, %d failed, %d active, %d queued, "
+                            + "wait p50 %d ms p99 %d ms, service p50 %d ms p99 %d ms",
+                    stage, completed, failed, active, queued,
+                    waitP50Millis, waitP99Millis, serviceP50Millis, serviceP99Millis);
+        }
+    }
+}
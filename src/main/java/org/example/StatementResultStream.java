@@ -0,0 +1,342 @@
+package org.example;
+
+import software.amazon.awssdk.services.redshiftdata.RedshiftDataAsyncClient;
+import software.amazon.awssdk.services.redshiftdata.model.ColumnMetadata;
+import software.amazon.awssdk.services.redshiftdata.model.Field;
+import software.amazon.awssdk.services.redshiftdata.model.GetStatementResultRequest;
+import software.amazon.awssdk.services.redshiftdata.model.GetStatementResultResponse;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Streams every row of a statement result, following {@code NextToken} across pages.
+ * <p>
+ * Rows are published with back-pressure: pages are only fetched while fewer than
+ * {@code prefetchPages} pages are buffered, so a slow consumer holds at most that many pages in
+ * memory while the next fetches overlap with row processing. The stream can be consumed once,
+ * either as a {@link Flow.Publisher}, through {@link #forEach(Consumer)} or as a blocking
+ * {@link #iterator()}.
+ */
+public class StatementResultStream implements Flow.Publisher<List<Field>> {
+
+    private static final long FOREACH_BATCH = 1_024;
+
+    private final RedshiftDataAsyncClient client;
+    private final String statementId;
+    private final int prefetchPages;
+    private final CompletableFuture<List<ColumnMetadata>> columnMetadata = new CompletableFuture<>();
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private volatile AdmissionController admission;
+
+    public StatementResultStream(RedshiftDataAsyncClient client, String statementId, int prefetchPages) {
+        if (prefetchPages < 1) {
+            throw new IllegalArgumentException("At least one page must be prefetched: " + prefetchPages);
+        }
+        this.client = client;
+        this.statementId = statementId;
+        this.prefetchPages = prefetchPages;
+    }
+
+    /**
+     * Must be set before the stream is consumed.
+     *
+     * @param admission limits the {@code GetStatementResult} calls, or {@code null} for no limit
+     * @return this stream
+     */
+    public StatementResultStream admissionController(AdmissionController admission) {
+        this.admission = admission;
+        return this;
+    }
+
+    /**
+     * @return a {@link CompletableFuture} that completes with the column metadata once the first
+     * page has been fetched
+     */
+    public CompletableFuture<List<ColumnMetadata>> columnMetadata() {
+        return columnMetadata;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super List<Field>> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("The result of " + statementId + " was already consumed"));
+            return;
+        }
+        RowSubscription subscription = new RowSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.drain();
+    }
+
+    /**
+     * Consumes every row asynchronously.
+     *
+     * @param action called for every row, on the thread that delivered the page
+     * @return a {@link CompletableFuture} that completes with the number of rows once the last
+     * page has been processed
+     */
+    public CompletableFuture<Long> forEach(Consumer<List<Field>> action) {
+        CompletableFuture<Long> done = new CompletableFuture<>();
+        subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+            private long rows;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(FOREACH_BATCH);
+            }
+
+            @Override
+            public void onNext(List<Field> row) {
+                try {
+                    action.accept(row);
+                } catch (Throwable e) {
+                    subscription.cancel();
+                    done.completeExceptionally(e);
+                    return;
+                }
+                if (++rows % FOREACH_BATCH == 0) {
+                    subscription.request(FOREACH_BATCH);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(rows);
+            }
+        });
+        return done;
+    }
+
+    /**
+     * @return a blocking iterator over the rows; {@code hasNext()} waits for the next page when the
+     * buffered rows are used up. Close it to stop fetching when the rows are not read to the end.
+     */
+    public RowIterator iterator() {
+        BlockingRowIterator iterator = new BlockingRowIterator();
+        subscribe(iterator);
+        return iterator;
+    }
+
+    /**
+     * A blocking iterator over the rows of a stream. {@link #close()} cancels the subscription, so
+     * no further pages are fetched; it must not be used after that.
+     */
+    public interface RowIterator extends Iterator<List<Field>>, AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private CompletableFuture<GetStatementResultResponse> send(GetStatementResultRequest request) {
+        try {
+            return client.getStatementResult(request);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private final class RowSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super List<Field>> subscriber;
+        private final Queue<GetStatementResultResponse> pages = new ConcurrentLinkedQueue<>();
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean fetching;
+        private volatile boolean lastPageFetched;
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+        private String nextToken;
+        private int rowIndex;
+        private boolean done;
+
+        private RowSubscription(Flow.Subscriber<? super List<Field>> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Non-positive request: " + n);
+            } else {
+                requested.getAndAccumulate(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void fetchIfNeeded() {
+            if (fetching || lastPageFetched || cancelled || pages.size() >= prefetchPages) {
+                return;
+            }
+            fetching = true;
+            GetStatementResultRequest request = GetStatementResultRequest.builder()
+                    .id(statementId)
+                    .nextToken(nextToken)
+                    .build();
+
+            AdmissionController admission = StatementResultStream.this.admission;
+            CompletableFuture<GetStatementResultResponse> call = admission == null
+                    ? send(request)
+                    : admission.call(AdmissionController.GET_STATEMENT_RESULT, () -> send(request));
+            call.whenComplete((response, exception) -> {
+                if (exception != null) {
+                    error = new RuntimeException("Error getting statement result: " + exception.getMessage(), exception);
+                    columnMetadata.completeExceptionally(error);
+                } else {
+                    if (response.hasColumnMetadata()) {
+                        columnMetadata.complete(response.columnMetadata());
+                    }
+                    nextToken = response.nextToken();
+                    if (nextToken == null || nextToken.isEmpty()) {
+                        lastPageFetched = true;
+                        columnMetadata.complete(List.of());
+                    }
+                    pages.add(response);
+                }
+                fetching = false;
+                drain();
+            });
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (!done) {
+                    emit();
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            while (!cancelled) {
+                if (error != null) {
+                    done = true;
+                    subscriber.onError(error);
+                    return;
+                }
+                GetStatementResultResponse page = pages.peek();
+                if (page != null && rowIndex >= page.records().size()) {
+                    pages.poll();
+                    rowIndex = 0;
+                    continue;
+                }
+                fetchIfNeeded();
+                if (page == null) {
+                    if (lastPageFetched && !fetching && pages.isEmpty()) {
+                        done = true;
+                        subscriber.onComplete();
+                    }
+                    return;
+                }
+                if (requested.get() == 0) {
+                    return;
+                }
+                requested.decrementAndGet();
+                subscriber.onNext(page.records().get(rowIndex++));
+            }
+        }
+    }
+
+    private static final class BlockingRowIterator implements RowIterator, Flow.Subscriber<List<Field>> {
+        private static final int BATCH = 1_024;
+        private static final Object COMPLETE = new Object();
+
+        private final BlockingQueue<Object> rows = new ArrayBlockingQueue<>(BATCH + 1);
+        private Flow.Subscription subscription;
+        private Object next;
+        private int consumed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(BATCH);
+        }
+
+        @Override
+        public void onNext(List<Field> row) {
+            rows.add(row);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            rows.add(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            rows.add(COMPLETE);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = rows.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    subscription.cancel();
+                    throw new RuntimeException("Interrupted while waiting for statement results", e);
+                }
+            }
+            if (next instanceof Throwable) {
+                Throwable failure = (Throwable) next;
+                throw failure instanceof RuntimeException ? (RuntimeException) failure : new RuntimeException(failure);
+            }
+            return next != COMPLETE;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public List<Field> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            List<Field> row = (List<Field>) next;
+            next = null;
+            // Ask for the next batch once half of the current one has been used up.
+            if (++consumed == BATCH / 2) {
+                consumed = 0;
+                subscription.request(BATCH / 2);
+            }
+            return row;
+        }
+
+        @Override
+        public void close() {
+            subscription.cancel();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package org.example;
+
+/**
+ * Thrown when {@code ExecuteStatement} rejects a statement or the call itself fails, so no
+ * statement ID exists.
+ */
+public class StatementSubmissionException extends StatementException {
+
+    private static final long serialVersionUID = 1L;
+
+    public StatementSubmissionException(String message, Throwable cause) {
+        super(null, message, cause);
+    }
+}
@@ -0,0 +1,152 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.services.redshiftdata.model.SqlParameter;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@code statements} complete query flows (submit, poll to FINISHED, fetch) at once against
+ * the {@link RedshiftDataApiSimulator} and compares three ways to drive them:
+ * <ul>
+ * <li>{@code virtual}: the synchronous wrapper API on one virtual thread per flow, see
+ * {@link SyncStatementRunner#virtualThreads()}; on JVMs older than 21 it falls back to the
+ * {@code platform} pool, logs a warning and reports {@code virtualThreads} as 0;</li>
+ * <li>{@code platform}: the synchronous API on a pool of {@code platformThreads} threads;</li>
+ * <li>{@code async}: {@link RedshiftDataClientWrapper#queryAsync(String, List)}.</li>
+ * </ul>
+ * Every invocation is timed once; the throughput is {@code statements} divided by that time.
+ * {@code peakThreads} is the highest number of live threads above those that existed before the
+ * trial, and
+ * {@code peakHeapMb} the peak heap usage during the invocation.
+ * <p>
+ * The flows use a registry of their own, so lifting its admission limits for the simulator leaves
+ * the {@link RedshiftClientRegistry#shared() shared} one alone.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SyncExecutionBenchmark {
+
+    private static final EventLog.Source events = EventLog.shared().source(SyncExecutionBenchmark.class);
+
+    @Param({"virtual", "platform", "async"})
+    public String mode;
+
+    @Param({"10000"})
+    public int statements;
+
+    @Param({"200"})
+    public int platformThreads;
+
+    private RedshiftDataApiSimulator simulator;
+    private RedshiftClientRegistry registry;
+    private RedshiftDataClientWrapper client;
+    private SyncStatementRunner runner;
+    private int baselineThreads;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long peakThreads;
+        public long peakHeapMb;
+        public long virtualThreads;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            peakThreads = 0;
+            peakHeapMb = 0;
+            virtualThreads = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Before any thread of the runner or the clients exists.
+        baselineThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+        simulator = RedshiftDataApiSimulator.builder()
+                .latency(LatencyDistribution.uniform(1, 3))
+                .statementTimes(LatencyDistribution.fixed(5), LatencyDistribution.fixed(100))
+                .resultSet(10, 10)
+                .start();
+        // The simulator has no quota, so keep the admission controller from pacing the flows.
+        registry = new RedshiftClientRegistry(200, 0);
+        AdmissionController admission = registry.admissionController(simulator.clientKey());
+        for (String operation : List.of(AdmissionController.EXECUTE_STATEMENT, AdmissionController.DESCRIBE_STATEMENT,
+                AdmissionController.GET_STATEMENT_RESULT)) {
+            admission.limit(operation, 1_000_000, 100_000);
+        }
+        client = new RedshiftDataClientWrapper(registry, simulator.clientKey(), "simulated-cluster", "dev", "awsuser");
+        client.pipeline()
+                .depth(StatementPipeline.Stage.SUBMIT, platformThreads)
+                .depth(StatementPipeline.Stage.AWAIT, statements)
+                .depth(StatementPipeline.Stage.FETCH, platformThreads);
+        switch (mode) {
+            case "virtual":
+                if (!SyncStatementRunner.isVirtualThreadsSupported()) {
+                    events.warn("No virtual threads on Java {}, running the virtual mode on {} platform threads",
+                            System.getProperty("java.version"), platformThreads);
+                }
+                runner = SyncStatementRunner.virtualThreadsOr(platformThreads);
+                break;
+            case "platform":
+                runner = SyncStatementRunner.platformThreads(platformThreads);
+                break;
+            case "async":
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (runner != null) {
+            runner.close();
+        }
+        registry.close();
+        simulator.close();
+    }
+
+    @Setup(Level.Invocation)
+    public void resetPeaks() {
+        ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    @Benchmark
+    public long run(Footprint footprint) {
+        CompletableFuture<?>[] flows = new CompletableFuture<?>[statements];
+        for (int i = 0; i < statements; i++) {
+            String sql = "SELECT * FROM movies WHERE id = :id";
+            List<SqlParameter> parameters = List.of(SqlParameter.builder().name("id").value(String.valueOf(i)).build());
+            flows[i] = runner == null
+                    ? client.queryAsync(sql, parameters)
+                    : runner.query(client, sql, parameters);
+        }
+        CompletableFuture.allOf(flows).join();
+
+        footprint.peakThreads = ManagementFactory.getThreadMXBean().getPeakThreadCount() - baselineThreads;
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        footprint.peakHeapMb = peakHeap / (1024 * 1024);
+        footprint.virtualThreads = runner != null && runner.isVirtual() ? 1 : 0;
+        return flows.length;
+    }
+}
@@ -0,0 +1,137 @@
+package org.example;
+
+import software.amazon.awssdk.services.redshiftdata.model.SqlParameter;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs blocking-style work, such as the synchronous API of {@link RedshiftDataClientWrapper}, off
+ * the caller's thread and hands back a {@link CompletableFuture}.
+ * <p>
+ * {@link #virtualThreads()} starts one virtual thread per task. A flow that blocks in
+ * {@code ExecuteStatement}, sleeps between polls in {@code checkStatement} and then reads the
+ * result pages only holds a carrier thread while it is actually running, so tens of thousands of
+ * concurrent flows cost a few hundred bytes of stack each instead of a platform thread each.
+ * Virtual threads need JDK 21 or later; the project compiles for an older release, so they are
+ * looked up reflectively and {@link #isVirtualThreadsSupported()} tells whether the running JVM
+ * has them. {@link #platformThreads(int)} is the classic bounded pool, where the pool size caps
+ * the number of flows in progress.
+ */
+public class SyncStatementRunner implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final boolean virtual;
+
+    private SyncStatementRunner(ExecutorService executor, boolean virtual) {
+        this.executor = executor;
+        this.virtual = virtual;
+    }
+
+    /**
+     * @return {@code true} if the running JVM has virtual threads
+     */
+    public static boolean isVirtualThreadsSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return a runner that starts a virtual thread per task
+     * @throws UnsupportedOperationException if the running JVM has no virtual threads
+     */
+    public static SyncStatementRunner virtualThreads() {
+        if (!isVirtualThreadsSupported()) {
+            throw new UnsupportedOperationException("Virtual threads need JDK 21 or later, running on "
+                    + System.getProperty("java.version"));
+        }
+        try {
+            // Thread.ofVirtual().name("redshift-virtual-", 0).factory()
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "redshift-virtual-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            Method perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return new SyncStatementRunner((ExecutorService) perTask.invoke(null, factory), true);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException("Error creating virtual thread executor: " + e.getCause().getMessage(), e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Error creating virtual thread executor: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param threads the number of platform threads, and so of flows in progress at once
+     * @return a runner backed by a fixed pool of daemon threads
+     */
+    public static SyncStatementRunner platformThreads(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return new SyncStatementRunner(Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "redshift-sync-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }), false);
+    }
+
+    /**
+     * @return virtual threads where supported, otherwise a pool of {@code fallbackThreads}
+     * platform threads
+     */
+    public static SyncStatementRunner virtualThreadsOr(int fallbackThreads) {
+        return isVirtualThreadsSupported() ? virtualThreads() : platformThreads(fallbackThreads);
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Runs a task on the runner's threads.
+     *
+     * @return a {@link CompletableFuture} with the task's result or exception
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, executor);
+    }
+
+    /**
+     * Runs {@link RedshiftDataClientWrapper#query(String)}, which submits, polls and fetches with
+     * the blocking client, on the runner's threads.
+     */
+    public CompletableFuture<ColumnarQueryResult> query(RedshiftDataClientWrapper client, String sql) {
+        return submit(() -> client.query(sql));
+    }
+
+    public CompletableFuture<ColumnarQueryResult> query(RedshiftDataClientWrapper client, String sql,
+                                                        List<SqlParameter> parameters) {
+        return submit(() -> client.query(sql, parameters));
+    }
+
+    /**
+     * Stops accepting tasks and waits up to a minute for running ones to finish.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdmissionControllerTest {
+
+    private static final String OPERATION = AdmissionController.EXECUTE_STATEMENT;
+
+    @Test
+    public void rejectsCallersBeyondTheQueueBound() {
+        try (AdmissionController admission = new AdmissionController().limit(OPERATION, 100, 10, 1, 1, 2)) {
+            AdmissionController.Permit held = admission.acquire(OPERATION).join();
+            CompletableFuture<AdmissionController.Permit> first = admission.acquire(OPERATION);
+            CompletableFuture<AdmissionController.Permit> second = admission.acquire(OPERATION);
+
+            CompletableFuture<AdmissionController.Permit> third = admission.acquire(OPERATION);
+
+            assertEquals(2, admission.queued(OPERATION));
+            assertFalse(first.isDone());
+            assertFalse(second.isDone());
+            assertRejected(third);
+            assertNull(admission.tryAcquire(OPERATION));
+            assertNotNull(held);
+        }
+    }
+
+    @Test
+    public void releaseWakesTheFirstWaiter() {
+        try (AdmissionController admission = new AdmissionController().limit(OPERATION, 100, 10, 1, 1, 10)) {
+            AdmissionController.Permit held = admission.acquire(OPERATION).join();
+            CompletableFuture<AdmissionController.Permit> first = admission.acquire(OPERATION);
+            CompletableFuture<AdmissionController.Permit> second = admission.acquire(OPERATION);
+
+            held.release(null);
+
+            assertTrue(first.isDone());
+            assertFalse(second.isDone());
+            assertEquals(1, admission.inFlight(OPERATION));
+            assertEquals(1, admission.queued(OPERATION));
+            first.join().release(null);
+            second.join().release(null);
+            assertEquals(0, admission.inFlight(OPERATION));
+        }
+    }
+
+    @Test
+    public void halvesTheRateOnThrottlingAtMostOncePerCooldown() throws InterruptedException {
+        try (AdmissionController admission = new AdmissionController().limit(OPERATION, 40, 10, 10, 1, 10)) {
+            admission.onThrottled(OPERATION);
+            assertEquals(20, admission.currentRate(OPERATION), 1e-9);
+            // A second throttle within the cooldown is counted but does not halve again.
+            admission.onThrottled(OPERATION);
+            assertEquals(20, admission.currentRate(OPERATION), 1e-9);
+
+            Thread.sleep(1_100);
+            AdmissionController.Permit permit = admission.tryAcquire(OPERATION);
+            assertNotNull(permit);
+            permit.release(SdkServiceException.builder().statusCode(429).message("Rate exceeded").build());
+
+            assertEquals(10, admission.currentRate(OPERATION), 1e-9);
+            assertEquals(3, admission.throttled(OPERATION));
+        }
+    }
+
+    @Test
+    public void successesRaiseTheRateBackUpToTheLimit() {
+        try (AdmissionController admission = new AdmissionController().limit(OPERATION, 40, 1_000, 1_000, 100, 10)) {
+            admission.onThrottled(OPERATION);
+            // Throttling empties the bucket, so these wait for the timer to hand out tokens.
+            admission.acquire(OPERATION).join().release(null);
+            // Each success adds increase / rate.
+            assertEquals(25, admission.currentRate(OPERATION), 1e-9);
+            for (int i = 0; i < 10; i++) {
+                admission.acquire(OPERATION).join().release(null);
+            }
+
+            assertEquals(40, admission.currentRate(OPERATION), 1e-9);
+        }
+    }
+
+    @Test
+    public void closeRejectsWaitersAndLaterCallers() {
+        AdmissionController admission = new AdmissionController().limit(OPERATION, 100, 10, 1, 1, 10);
+        admission.acquire(OPERATION).join();
+        CompletableFuture<AdmissionController.Permit> waiter = admission.acquire(OPERATION);
+
+        admission.close();
+
+        assertRejected(waiter);
+        assertRejected(admission.acquire(OPERATION));
+        assertNull(admission.tryAcquire(OPERATION));
+    }
+
+    private static void assertRejected(CompletableFuture<AdmissionController.Permit> future) {
+        CompletionException e = assertThrows(CompletionException.class, future::join);
+        assertTrue(e.getCause() instanceof AdmissionRejectedException, String.valueOf(e.getCause()));
+    }
+}
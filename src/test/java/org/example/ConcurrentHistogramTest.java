@@ -0,0 +1,77 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrentHistogramTest {
+
+    @Test
+    public void smallValuesGetABucketEach() {
+        for (long value = 0; value < 64; value++) {
+            assertEquals(value, ConcurrentHistogram.bucketIndex(value));
+            assertEquals(value, ConcurrentHistogram.bucketUpperBound((int) value));
+        }
+    }
+
+    @Test
+    public void bucketsAreContiguousAndMonotonic() {
+        int last = ConcurrentHistogram.bucketIndex(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, ConcurrentHistogram.bucketUpperBound(last));
+        for (int index = 1; index <= last; index++) {
+            long lower = ConcurrentHistogram.bucketUpperBound(index - 1) + 1;
+            long upper = ConcurrentHistogram.bucketUpperBound(index);
+            assertTrue(lower <= upper, "bucket " + index);
+            assertEquals(index, ConcurrentHistogram.bucketIndex(lower));
+            assertEquals(index, ConcurrentHistogram.bucketIndex(upper));
+        }
+    }
+
+    @Test
+    public void bucketsKeepTheRelativeErrorBounded() {
+        for (long value = 64; value > 0 && value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+            long upper = ConcurrentHistogram.bucketUpperBound(ConcurrentHistogram.bucketIndex(value));
+            assertTrue(upper >= value);
+            assertTrue((upper - value) / (double) value <= 1.0 / 32, "value " + value);
+        }
+    }
+
+    @Test
+    public void reportsPercentilesWithinTheBucketError() {
+        ConcurrentHistogram histogram = new ConcurrentHistogram();
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value);
+        }
+        ConcurrentHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10_000, snapshot.count());
+        assertEquals(1, snapshot.min());
+        assertEquals(10_000, snapshot.max());
+        assertEquals(5_000.5, snapshot.mean(), 1e-9);
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            long exact = (long) Math.ceil(percentile * 100);
+            long reported = snapshot.percentile(percentile);
+            assertTrue(reported >= exact && reported <= exact * 33 / 32, percentile + ": " + reported);
+        }
+        assertEquals(10_000, snapshot.percentile(100));
+    }
+
+    @Test
+    public void neverReportsAboveTheMaximum() {
+        ConcurrentHistogram histogram = new ConcurrentHistogram();
+        histogram.record(1_000);
+        assertEquals(1_000, histogram.snapshot().percentile(50));
+    }
+
+    @Test
+    public void recordsNegativeValuesAsZeroAndResets() {
+        ConcurrentHistogram histogram = new ConcurrentHistogram();
+        histogram.record(-5);
+        assertEquals(0, histogram.snapshot().max());
+        assertEquals(1, histogram.count());
+        histogram.reset();
+        ConcurrentHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.count());
+        assertEquals(0, snapshot.percentile(99));
+    }
+}
@@ -0,0 +1,88 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExportOutputTest {
+
+    @Test
+    public void writesOnTheEncodingThreadWhenTheExecutorHasNoOtherThread() throws Exception {
+        byte[] expected = new byte[100_000];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = (byte) i;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // Encoding on the executor's only thread, as ResultExporter does.
+            ExportOutput output = new ExportOutput(Channels.newChannel(out), 4_096, executor);
+            CompletableFuture.runAsync(() -> {
+                try {
+                    for (int from = 0; from < expected.length; from += 1_000) {
+                        output.write(ByteBuffer.wrap(expected, from, 1_000));
+                    }
+                    output.flush();
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor).get(10, TimeUnit.SECONDS);
+
+            assertEquals(expected.length, output.bytes());
+            assertArrayEquals(expected, out.toByteArray());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void reportsAFailedWriteToTheEncoder() {
+        WritableByteChannel failing = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer source) throws IOException {
+                throw new IOException("Disk full");
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ExportOutput output = new ExportOutput(failing, 4_096, executor);
+            CompletableFuture<Void> export = CompletableFuture.runAsync(() -> {
+                try {
+                    output.write(ByteBuffer.allocate(10_000));
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> export.get(10, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IOException);
+            assertEquals("Disk full", e.getCause().getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
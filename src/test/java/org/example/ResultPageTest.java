@@ -0,0 +1,157 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.redshiftdata.model.ColumnMetadata;
+import software.amazon.awssdk.services.redshiftdata.model.Field;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResultPageTest {
+
+    private static final Field NULL = Field.builder().isNull(true).build();
+
+    @Test
+    public void roundTripsEveryColumnTypeWithNulls() {
+        ColumnarQueryResult result = new ColumnarQueryResult(List.of(
+                column("id", "int8"), column("score", "float8"), column("seen", "bool"),
+                column("payload", "varbyte"), column("title", "varchar")), List.of(
+                List.of(Field.builder().longValue(Long.MIN_VALUE).build(), Field.builder().doubleValue(-0.5).build(),
+                        Field.builder().booleanValue(true).build(), blob(1, 2, 3), Field.builder().stringValue("héllo").build()),
+                List.of(NULL, NULL, NULL, NULL, NULL),
+                List.of(Field.builder().longValue(Long.MAX_VALUE).build(), Field.builder().doubleValue(Double.NaN).build(),
+                        Field.builder().booleanValue(false).build(), blob(), Field.builder().stringValue("").build())));
+
+        ResultPage page = ResultPage.wrap(ResultPage.encode(result));
+
+        assertEquals(3, page.rowCount());
+        assertEquals(5, page.columnCount());
+        assertEquals("payload", page.columnName(3));
+        assertEquals(ColumnType.BOOLEAN, page.columnType(2));
+        assertEquals(4, page.columnIndex("title"));
+        assertEquals(Long.MIN_VALUE, page.getLong(0, 0));
+        assertEquals(-0.5, page.getDouble(0, 1), 0);
+        assertTrue(page.getBoolean(0, 2));
+        assertArrayEquals(new byte[] {1, 2, 3}, bytes(page.getBlob(0, 3)));
+        assertEquals("héllo", page.getString(0, 4));
+        for (int column = 0; column < 5; column++) {
+            assertTrue(page.isNull(1, column));
+            assertFalse(page.isNull(0, column));
+        }
+        assertNull(page.getBlob(1, 3));
+        assertNull(page.getString(1, 4));
+        // Null rows hold zero values.
+        assertEquals(0, page.longColumn(0).get(1));
+        assertEquals(Long.MAX_VALUE, page.getLong(2, 0));
+        assertTrue(Double.isNaN(page.getDouble(2, 1)));
+        assertFalse(page.getBoolean(2, 2));
+        assertEquals(0, page.getBlob(2, 3).remaining());
+        assertEquals("", page.getString(2, 4));
+    }
+
+    @Test
+    public void storesRepeatedStringsOnceInTheDictionary() {
+        List<List<Field>> rows = new ArrayList<>();
+        for (int row = 0; row < 1_000; row++) {
+            rows.add(List.of(Field.builder().stringValue(row % 2 == 0 ? "drama" : "comedy").build()));
+        }
+        ResultPage repeated = ResultPage.of(new ColumnarQueryResult(List.of(column("genre", "varchar")), rows));
+
+        assertEquals("drama", repeated.getString(998, 0));
+        assertEquals("comedy", repeated.getString(999, 0));
+        assertEquals(StandardCharsets.UTF_8.encode("comedy"), repeated.getUtf8(1, 0));
+        // One byte per row for the codes, plus the header and two dictionary entries.
+        assertTrue(repeated.byteSize() < 1_100, "page of " + repeated.byteSize() + " bytes");
+    }
+
+    @Test
+    public void widensCodesAndVarintsForLargeDictionaries() {
+        String longName = "c".repeat(300);
+        List<List<Field>> rows = new ArrayList<>();
+        // Over 65,536 distinct values need 4-byte codes; names and values over 127 bytes need
+        // two-byte varints.
+        for (int row = 0; row < 80_000; row++) {
+            rows.add(List.of(row % 7 == 0 ? NULL : Field.builder().stringValue("value " + row + " " + "x".repeat(row % 200)).build()));
+        }
+        ColumnarQueryResult result = new ColumnarQueryResult(List.of(column(longName, "varchar")), rows);
+
+        ResultPage page = ResultPage.wrap(ResultPage.encode(result));
+
+        assertEquals(80_000, page.rowCount());
+        assertEquals(longName, page.columnName(0));
+        for (int row = 0; row < 80_000; row++) {
+            assertEquals(result.getString(row, 0), page.getString(row, 0));
+        }
+    }
+
+    @Test
+    public void convertsBackToAColumnarResult() {
+        ColumnarQueryResult result = new ColumnarQueryResult(List.of(column("id", "int4"), column("name", "text")), List.of(
+                List.of(Field.builder().longValue(7L).build(), Field.builder().stringValue("seven").build()),
+                List.of(Field.builder().longValue(8L).build(), NULL)));
+
+        ColumnarQueryResult copy = ResultPage.of(result).toColumnar();
+
+        assertEquals(2, copy.rowCount());
+        assertArrayEquals(new long[] {7, 8}, copy.longColumn(0));
+        assertEquals("seven", copy.getString(0, 1));
+        assertTrue(copy.isNull(1, 1));
+    }
+
+    @Test
+    public void readsConsecutivePagesFromAChannel() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (long first = 0; first < 3; first++) {
+            ResultPage.of(new ColumnarQueryResult(List.of(column("n", "int8")),
+                    List.of(List.of(Field.builder().longValue(first).build())))).writeTo(Channels.newChannel(out));
+        }
+        ReadableByteChannel in = Channels.newChannel(new ByteArrayInputStream(out.toByteArray()));
+
+        for (long first = 0; first < 3; first++) {
+            assertEquals(first, ResultPage.read(in).getLong(0, 0));
+        }
+        assertNull(ResultPage.read(in));
+    }
+
+    @Test
+    public void rejectsTruncatedAndForeignBuffers() {
+        ByteBuffer encoded = ResultPage.encode(new ColumnarQueryResult(List.of(column("n", "int8")),
+                List.of(List.of(Field.builder().longValue(1L).build()))));
+
+        assertThrows(IllegalArgumentException.class, () -> ResultPage.wrap(encoded.duplicate().limit(encoded.limit() - 1)));
+        assertThrows(IllegalArgumentException.class, () -> ResultPage.wrap(ByteBuffer.wrap(new byte[16])));
+    }
+
+    private static ColumnMetadata column(String name, String typeName) {
+        return ColumnMetadata.builder().name(name).typeName(typeName).build();
+    }
+
+    private static Field blob(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return Field.builder().blobValue(SdkBytes.fromByteArray(bytes)).build();
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,188 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.redshiftdata.model.ColumnMetadata;
+import software.amazon.awssdk.services.redshiftdata.model.Field;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpillingResultStoreTest {
+
+    private static final List<ColumnMetadata> COLUMNS = List.of(column("id", "int8"), column("score", "float8"),
+            column("seen", "bool"), column("payload", "varbyte"), column("title", "varchar"));
+    private static final Field NULL = Field.builder().isNull(true).build();
+    private static final Path PROCESS_FILES = Path.of("/proc/self/fd");
+
+    @Test
+    public void keepsPagesBelowTheThresholdInMemory() throws IOException {
+        Path directory = spillDirectory();
+        try (SpillingResultStore store = fill(new SpillingResultStore(COLUMNS, Long.MAX_VALUE, directory), 10_000)) {
+            assertFalse(store.isSpilled());
+            assertTrue(store.memoryBytes() > 0);
+            assertEquals(0, store.spilledBytes());
+            assertEquals(10_000, store.rowCount());
+            assertEquals(0, openFiles(directory));
+            assertRows(store, 10_000);
+        }
+    }
+
+    @Test
+    public void spillsThePagesPastTheThresholdAndReadsThemInOrder() throws IOException {
+        Path directory = spillDirectory();
+        long onePage = page(0).estimatedBytes();
+        int rows = 3 * SpillingResultStore.PAGE_ROWS + 100;
+
+        try (SpillingResultStore store = fill(new SpillingResultStore(COLUMNS, onePage, directory), rows)) {
+            assertTrue(store.isSpilled());
+            assertEquals(onePage, store.memoryBytes());
+            assertTrue(store.spilledBytes() > 0);
+            assertSpillFileOpen(directory);
+            assertEquals(ColumnType.BLOB, store.columnType(3));
+            assertEquals("title", store.columnName(4));
+            // Two cursors read the same rows independently.
+            assertRows(store, rows);
+            assertRows(store, rows);
+        }
+    }
+
+    @Test
+    public void closeDeletesTheSpillFile() throws IOException {
+        Path directory = spillDirectory();
+        SpillingResultStore store = fill(new SpillingResultStore(COLUMNS, 0, directory), 10);
+        assertTrue(store.isSpilled());
+        assertSpillFileOpen(directory);
+
+        store.close();
+
+        assertEquals(0, openFiles(directory));
+        assertThrows(IllegalStateException.class, store::cursor);
+    }
+
+    @Test
+    public void readsOnlyOnceFinished() throws IOException {
+        try (SpillingResultStore store = new SpillingResultStore(COLUMNS, 0, spillDirectory())) {
+            assertThrows(IllegalStateException.class, store::cursor);
+            store.finish();
+            assertFalse(store.cursor().next());
+            assertFalse(store.isSpilled());
+            assertThrows(IllegalStateException.class, () -> store.add(row(0)));
+        }
+    }
+
+    private static SpillingResultStore fill(SpillingResultStore store, int rows) {
+        for (int i = 0; i < rows; i++) {
+            store.add(row(i));
+        }
+        return store.finish();
+    }
+
+    /**
+     * Row {@code i} has a null in column {@code i % 5} when {@code i} is a multiple of 7.
+     */
+    private static List<Field> row(int i) {
+        List<Field> row = new ArrayList<>(List.of(Field.fromLongValue((long) i), Field.fromDoubleValue(i / 2.0),
+                Field.fromBooleanValue(i % 3 == 0), Field.fromBlobValue(SdkBytes.fromByteArray(new byte[] {(byte) i, 7})),
+                Field.fromStringValue("title " + i % 100)));
+        if (i % 7 == 0) {
+            row.set(i % 5, NULL);
+        }
+        return row;
+    }
+
+    private static ColumnarQueryResult page(int first) {
+        List<List<Field>> rows = new ArrayList<>();
+        for (int i = first; i < first + SpillingResultStore.PAGE_ROWS; i++) {
+            rows.add(row(i));
+        }
+        return new ColumnarQueryResult(COLUMNS, rows);
+    }
+
+    private static void assertRows(SpillingResultStore store, int rows) {
+        SpillingResultStore.Cursor cursor = store.cursor();
+        for (int i = 0; i < rows; i++) {
+            assertTrue(cursor.next(), "row " + i);
+            int nullColumn = i % 7 == 0 ? i % 5 : -1;
+            for (int column = 0; column < 5; column++) {
+                assertEquals(column == nullColumn, cursor.isNull(column), "null at row " + i + ", column " + column);
+            }
+            if (nullColumn != 0) {
+                assertEquals(i, cursor.getLong(0));
+            }
+            if (nullColumn != 1) {
+                assertEquals(i / 2.0, cursor.getDouble(1), 0);
+            }
+            if (nullColumn != 2) {
+                assertEquals(i % 3 == 0, cursor.getBoolean(2));
+            }
+            if (nullColumn != 3) {
+                ByteBuffer blob = cursor.getBlob(3);
+                assertEquals(2, blob.remaining());
+                assertEquals((byte) i, blob.get(blob.position()));
+            } else {
+                assertNull(cursor.getBlob(3));
+            }
+            assertEquals(nullColumn == 4 ? null : "title " + i % 100, cursor.getString(4));
+        }
+        assertFalse(cursor.next());
+    }
+
+    private static Path spillDirectory() throws IOException {
+        Path directory = Files.createTempDirectory("spilling-result-store");
+        directory.toFile().deleteOnExit();
+        return directory;
+    }
+
+    /**
+     * The file is unlinked when it is opened, so it never shows up in the directory; where the
+     * process's descriptors can be listed, it is still open until the store is closed.
+     */
+    private static void assertSpillFileOpen(Path directory) throws IOException {
+        assertEquals(0, files(directory));
+        if (Files.isDirectory(PROCESS_FILES)) {
+            assertEquals(1, openFiles(directory));
+        }
+    }
+
+    /**
+     * @return the files in the directory plus, where they can be listed, the descriptors this
+     * process holds open on files that were in it
+     */
+    private static long openFiles(Path directory) throws IOException {
+        long open = 0;
+        if (Files.isDirectory(PROCESS_FILES)) {
+            try (Stream<Path> descriptors = Files.list(PROCESS_FILES)) {
+                for (Path descriptor : (Iterable<Path>) descriptors::iterator) {
+                    try {
+                        open += Files.readSymbolicLink(descriptor).startsWith(directory) ? 1 : 0;
+                    } catch (IOException e) {
+                        // Closed while listing.
+                    }
+                }
+            }
+        }
+        return files(directory) + open;
+    }
+
+    private static long files(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static ColumnMetadata column(String name, String typeName) {
+        return ColumnMetadata.builder().name(name).typeName(typeName).build();
+    }
+}
@@ -0,0 +1,78 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SqlStatementsTest {
+
+    @Test
+    public void readsSingleTable() {
+        assertIterableEquals(List.of("movies"), SqlStatements.readTables("SELECT * FROM movies WHERE year = 2013"));
+    }
+
+    @Test
+    public void readsCommaSeparatedTablesWithAliases() {
+        assertIterableEquals(List.of("t1", "t2"), SqlStatements.readTables("SELECT * FROM t1 a, t2 b WHERE a.id = b.id"));
+        assertIterableEquals(List.of("t1", "t2", "t3"), SqlStatements.readTables("SELECT * FROM t1 AS a ,t2 AS b,t3"));
+        assertIterableEquals(List.of("t1", "t2"), SqlStatements.readTables("select * from t1, t2"));
+    }
+
+    @Test
+    public void readsJoinedTables() {
+        assertIterableEquals(List.of("movies", "ratings", "people"), SqlStatements.readTables(
+                "SELECT m.title FROM movies m JOIN ratings r ON r.id = m.id LEFT JOIN people p ON p.id = m.director"));
+    }
+
+    @Test
+    public void readsSchemaQualifiedAndQuotedTables() {
+        assertIterableEquals(List.of("movies", "ratings"),
+                SqlStatements.readTables("SELECT * FROM public.\"Movies\" m, analytics.ratings r"));
+    }
+
+    @Test
+    public void readsTablesOfSubqueries() {
+        Set<String> tables = SqlStatements.readTables("SELECT * FROM (SELECT id FROM movies) s, ratings WHERE s.id = ratings.id");
+        assertEquals(Set.of("movies", "ratings"), tables);
+    }
+
+    @Test
+    public void stopsAtClauseKeywords() {
+        assertIterableEquals(List.of("movies"), SqlStatements.readTables("SELECT year FROM movies GROUP BY year ORDER BY year"));
+        assertIterableEquals(List.of("movies"), SqlStatements.readTables("SELECT * FROM movies LIMIT 10"));
+    }
+
+    @Test
+    public void ignoresWordsInsideLiterals() {
+        assertIterableEquals(List.of("movies"), SqlStatements.readTables("SELECT * FROM movies WHERE title = 'from x, y'"));
+    }
+
+    @Test
+    public void findsNoTablesWithoutFrom() {
+        assertTrue(SqlStatements.readTables("SELECT 1").isEmpty());
+    }
+
+    @Test
+    public void findsWrittenTable() {
+        assertEquals("movies", SqlStatements.writtenTable("INSERT INTO public.movies (id) VALUES (1)"));
+        assertEquals("movies", SqlStatements.writtenTable("UPDATE movies SET year = 2000"));
+        assertEquals("movies", SqlStatements.writtenTable("DELETE FROM movies WHERE id = 1"));
+        assertEquals("movies", SqlStatements.writtenTable("CREATE TABLE IF NOT EXISTS movies (id int)"));
+        assertEquals("movies", SqlStatements.writtenTable("TRUNCATE TABLE movies"));
+        assertNull(SqlStatements.writtenTable("VACUUM"));
+    }
+
+    @Test
+    public void tellsReadsFromWrites() {
+        assertTrue(SqlStatements.isReadOnly("WITH x AS (SELECT 1) SELECT * FROM x"));
+        assertFalse(SqlStatements.isReadOnly("SELECT * INTO copy FROM movies"));
+        assertFalse(SqlStatements.isReadOnly("INSERT INTO movies VALUES (1)"));
+    }
+}
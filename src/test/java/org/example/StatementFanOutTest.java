@@ -0,0 +1,213 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.redshiftdata.RedshiftDataAsyncClient;
+import software.amazon.awssdk.services.redshiftdata.model.ColumnMetadata;
+import software.amazon.awssdk.services.redshiftdata.model.DescribeStatementRequest;
+import software.amazon.awssdk.services.redshiftdata.model.DescribeStatementResponse;
+import software.amazon.awssdk.services.redshiftdata.model.ExecuteStatementRequest;
+import software.amazon.awssdk.services.redshiftdata.model.ExecuteStatementResponse;
+import software.amazon.awssdk.services.redshiftdata.model.Field;
+import software.amazon.awssdk.services.redshiftdata.model.GetStatementResultRequest;
+import software.amazon.awssdk.services.redshiftdata.model.GetStatementResultResponse;
+import software.amazon.awssdk.services.redshiftdata.model.StatusString;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StatementFanOutTest {
+
+    @Test
+    public void mergesSortedStatementsIntoOneSortedStream() throws Exception {
+        List<List<Long>> partitions = new ArrayList<>();
+        List<Long> expected = new ArrayList<>();
+        for (int partition = 0; partition < 4; partition++) {
+            List<Long> keys = new ArrayList<>();
+            // Far more rows than one merge batch, in pages of different sizes.
+            for (long key = partition; key < 2_000; key += 4) {
+                keys.add(key);
+                expected.add(key);
+            }
+            partitions.add(keys);
+        }
+        partitions.add(List.of());
+        Collections.sort(expected);
+
+        try (FakeDataApi api = new FakeDataApi(partitions)) {
+            List<Long> merged = new ArrayList<>();
+            StatementFanOut.Outcome outcome = api.fanOut()
+                    .parallelism(2)
+                    .sortedBy(StatementFanOut.byLongColumn(0))
+                    .forEach(api.statements(), row -> merged.add(key(row)))
+                    .get(30, TimeUnit.SECONDS);
+
+            assertIterableEquals(expected, merged);
+            assertEquals(expected.size(), outcome.rows());
+            assertEquals(5, outcome.succeeded());
+        }
+    }
+
+    @Test
+    public void keepsEqualKeysAndPutsNullsLast() throws Exception {
+        List<List<Long>> partitions = List.of(
+                List.of(1L, 3L, 3L, 7L),
+                Collections.singletonList(null),
+                List.of(2L, 3L, 9L));
+
+        try (FakeDataApi api = new FakeDataApi(partitions)) {
+            List<Long> merged = new ArrayList<>();
+            api.fanOut()
+                    .sortedBy(StatementFanOut.byLongColumn(0))
+                    .forEach(api.statements(), row -> merged.add(key(row)))
+                    .get(30, TimeUnit.SECONDS);
+
+            assertIterableEquals(Arrays.asList(1L, 2L, 3L, 3L, 3L, 7L, 9L, null), merged);
+        }
+    }
+
+    @Test
+    public void skipsFailedStatementsInASortedMerge() throws Exception {
+        List<List<Long>> partitions = List.of(List.of(1L, 4L), List.of(2L, 5L), List.of(3L, 6L));
+
+        try (FakeDataApi api = new FakeDataApi(partitions)) {
+            api.failing.add(1);
+            List<Long> merged = new ArrayList<>();
+            StatementFanOut.Outcome outcome = api.fanOut()
+                    .failurePolicy(StatementFanOut.FailurePolicy.SKIP_FAILED)
+                    .sortedBy(StatementFanOut.byLongColumn(0))
+                    .forEach(api.statements(), row -> merged.add(key(row)))
+                    .get(30, TimeUnit.SECONDS);
+
+            assertIterableEquals(List.of(1L, 3L, 4L, 6L), merged);
+            assertEquals(2, outcome.succeeded());
+            assertTrue(outcome.failures().get(1) instanceof StatementFailedException);
+        }
+    }
+
+    @Test
+    public void stopsSubmittingAfterTheFirstFailureOfASortedMerge() throws Exception {
+        List<List<Long>> partitions = List.of(List.of(1L), List.of(2L), List.of(3L), List.of(4L));
+
+        try (FakeDataApi api = new FakeDataApi(partitions)) {
+            api.failing.add(0);
+            CompletableFuture<StatementFanOut.Outcome> outcome = api.fanOut()
+                    .parallelism(1)
+                    .sortedBy(StatementFanOut.byLongColumn(0))
+                    .forEach(api.statements(), row -> { });
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> outcome.get(30, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof StatementFailedException);
+            assertEquals(1, api.submitted.size());
+        }
+    }
+
+    private static Long key(List<Field> row) {
+        return FieldDecoder.isNull(row.get(0)) ? null : row.get(0).longValue();
+    }
+
+    /**
+     * Answers the Data API calls of a fan-out from memory: statement {@code i} returns the keys of
+     * partition {@code i}, in pages of {@code i + 2} rows, completed on another thread.
+     */
+    private static final class FakeDataApi implements RedshiftDataAsyncClient {
+        private final List<List<Long>> partitions;
+        private final List<Integer> failing = Collections.synchronizedList(new ArrayList<>());
+        private final Map<String, Integer> submitted = new ConcurrentHashMap<>();
+        private final ExecutorService responses = Executors.newFixedThreadPool(2);
+        private final StatementCompletionTracker tracker;
+
+        private FakeDataApi(List<List<Long>> partitions) {
+            this.partitions = partitions;
+            this.tracker = new StatementCompletionTracker(this, new PollingStrategy() {
+                @Override
+                public long firstDelayMillis(String fingerprint) {
+                    return 1;
+                }
+
+                @Override
+                public long nextDelayMillis(String fingerprint, int polls, long previousDelayMillis) {
+                    return 1;
+                }
+            });
+        }
+
+        private StatementFanOut fanOut() {
+            AsyncStatementExecutor executor = new AsyncStatementExecutor(this, "cluster", "dev", "awsuser");
+            return new StatementFanOut(new StatementPipeline(executor, tracker,
+                    id -> new StatementResultStream(this, id, 2)));
+        }
+
+        private List<StatementFanOut.Statement> statements() {
+            List<StatementFanOut.Statement> statements = new ArrayList<>();
+            for (int i = 0; i < partitions.size(); i++) {
+                statements.add(StatementFanOut.Statement.of("SELECT k FROM t WHERE part = " + i + " ORDER BY k"));
+            }
+            return statements;
+        }
+
+        @Override
+        public CompletableFuture<ExecuteStatementResponse> executeStatement(ExecuteStatementRequest request) {
+            String sql = request.sql();
+            int partition = Integer.parseInt(sql.substring(sql.indexOf("= ") + 2, sql.indexOf(" ORDER")));
+            String id = "statement-" + partition;
+            submitted.put(id, partition);
+            return CompletableFuture.supplyAsync(() -> ExecuteStatementResponse.builder().id(id).build(), responses);
+        }
+
+        @Override
+        public CompletableFuture<DescribeStatementResponse> describeStatement(DescribeStatementRequest request) {
+            boolean failed = failing.contains(submitted.get(request.id()));
+            return CompletableFuture.supplyAsync(() -> DescribeStatementResponse.builder()
+                    .id(request.id())
+                    .status(failed ? StatusString.FAILED : StatusString.FINISHED)
+                    .error(failed ? "Simulated failure" : null)
+                    .hasResultSet(true)
+                    .build(), responses);
+        }
+
+        @Override
+        public CompletableFuture<GetStatementResultResponse> getStatementResult(GetStatementResultRequest request) {
+            int partition = submitted.get(request.id());
+            List<Long> keys = partitions.get(partition);
+            int from = request.nextToken() == null ? 0 : Integer.parseInt(request.nextToken());
+            int to = Math.min(keys.size(), from + partition + 2);
+            List<List<Field>> records = new ArrayList<>();
+            for (Long key : keys.subList(from, to)) {
+                records.add(List.of(key == null ? Field.builder().isNull(true).build() : Field.builder().longValue(key).build()));
+            }
+            GetStatementResultResponse.Builder page = GetStatementResultResponse.builder()
+                    .records(records)
+                    .totalNumRows((long) keys.size())
+                    .nextToken(to < keys.size() ? String.valueOf(to) : null);
+            if (from == 0) {
+                page.columnMetadata(ColumnMetadata.builder().name("k").typeName("int8").build());
+            }
+            return CompletableFuture.supplyAsync(page::build, responses);
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+            tracker.close();
+            responses.shutdownNow();
+        }
+    }
+}
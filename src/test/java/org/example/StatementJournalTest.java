@@ -0,0 +1,170 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StatementJournalTest {
+
+    private static final String CLUSTER = "cluster";
+    private static final String DATABASE = "dev";
+    private static final String USER = "awsuser";
+
+    @Test
+    public void replaysEveryCompleteRecord() throws IOException {
+        Path file = journalFile();
+        try (StatementJournal journal = new StatementJournal(file, 4_096)) {
+            submit(journal, "a", "SELECT * FROM movies");
+            submit(journal, "b", "SELECT * FROM ratings");
+            journal.recordState("b", StatementJournal.State.FINISHED);
+        }
+
+        try (StatementJournal journal = new StatementJournal(file, 4_096)) {
+            assertEquals(2, journal.size());
+            StatementJournal.Entry b = find(journal, "SELECT * FROM ratings");
+            assertEquals("b", b.statementId());
+            assertEquals(StatementJournal.State.FINISHED, b.state());
+            assertTrue(b.recovered());
+            assertEquals(List.of("a"), ids(journal.unfinished()));
+        }
+    }
+
+    @Test
+    public void ignoresARecordWithABadChecksumAndEverythingAfterIt() throws IOException {
+        Path file = journalFile();
+        try (StatementJournal journal = new StatementJournal(file, 4_096)) {
+            submit(journal, "a", "SELECT * FROM movies");
+            submit(journal, "b", "SELECT * FROM ratings");
+            submit(journal, "c", "SELECT * FROM people");
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        List<Integer> offsets = recordOffsets(bytes);
+        assertEquals(3, offsets.size());
+        // A crash after the length of "b" was written but before all of its payload was.
+        bytes[offsets.get(1) + 8 + 3] ^= 0x5a;
+        Files.write(file, bytes);
+
+        try (StatementJournal journal = new StatementJournal(file, 4_096)) {
+            assertEquals(List.of("a"), ids(journal.unfinished()));
+            assertNull(journal.find(CLUSTER, DATABASE, USER, "SELECT * FROM ratings", List.of()));
+            assertNull(journal.find(CLUSTER, DATABASE, USER, "SELECT * FROM people", List.of()));
+        }
+    }
+
+    @Test
+    public void ignoresARecordCutShortByTheEndOfTheFile() throws IOException {
+        Path file = journalFile();
+        try (StatementJournal journal = new StatementJournal(file, 4_096)) {
+            submit(journal, "a", "SELECT * FROM movies");
+            submit(journal, "b", "SELECT * FROM ratings");
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        List<Integer> offsets = recordOffsets(bytes);
+        Files.write(file, Arrays.copyOf(bytes, offsets.get(1) + 12));
+
+        try (StatementJournal journal = new StatementJournal(file, 4_096)) {
+            assertEquals(List.of("a"), ids(journal.unfinished()));
+            // The rewritten journal takes new records after the surviving ones.
+            submit(journal, "c", "SELECT * FROM people");
+        }
+        try (StatementJournal journal = new StatementJournal(file, 4_096)) {
+            assertEquals(List.of("a", "c"), ids(journal.unfinished()));
+        }
+    }
+
+    @Test
+    public void onlyFindsStatementsOfAPreviousProcess() throws IOException {
+        Path file = journalFile();
+        try (StatementJournal journal = new StatementJournal(file, 4_096)) {
+            submit(journal, "a", "SELECT * FROM movies");
+            journal.sync();
+            assertEquals(1, journal.size());
+            assertNull(journal.find(CLUSTER, DATABASE, USER, "SELECT * FROM movies", List.of()));
+        }
+        try (StatementJournal journal = new StatementJournal(file, 4_096)) {
+            assertNotNull(find(journal, "select *  from movies"));
+            journal.recordState("a", StatementJournal.State.FETCHED);
+            journal.sync();
+            assertNull(journal.find(CLUSTER, DATABASE, USER, "SELECT * FROM movies", List.of()));
+        }
+    }
+
+    @Test
+    public void writesMakeTheReadsOfTheirTableStale() throws IOException {
+        Path file = journalFile();
+        try (StatementJournal journal = new StatementJournal(file, 4_096)) {
+            submit(journal, "a", "SELECT * FROM movies");
+            submit(journal, "b", "SELECT * FROM ratings r JOIN people p ON p.id = r.person");
+            journal.recordState("a", StatementJournal.State.FINISHED);
+        }
+        try (StatementJournal journal = new StatementJournal(file, 4_096)) {
+            journal.onWrite(CLUSTER, "other", "DELETE FROM movies");
+            journal.onWrite(CLUSTER, DATABASE, "UPDATE people SET name = 'x'");
+            journal.onWrite(CLUSTER, DATABASE, "SELECT * FROM movies");
+            // A state recorded after the write does not make the entry usable again.
+            journal.recordState("b", StatementJournal.State.FINISHED);
+            journal.sync();
+            assertNotNull(find(journal, "SELECT * FROM movies"));
+            assertNull(journal.find(CLUSTER, DATABASE, USER, "SELECT * FROM ratings r JOIN people p ON p.id = r.person", List.of()));
+        }
+        try (StatementJournal journal = new StatementJournal(file, 4_096)) {
+            assertEquals(1, journal.size());
+            journal.onWrite(CLUSTER, DATABASE, "VACUUM");
+            journal.sync();
+            assertNull(journal.find(CLUSTER, DATABASE, USER, "SELECT * FROM movies", List.of()));
+        }
+    }
+
+    private static Path journalFile() throws IOException {
+        Path directory = Files.createTempDirectory("statement-journal");
+        directory.toFile().deleteOnExit();
+        Path file = directory.resolve("journal");
+        file.toFile().deleteOnExit();
+        return file;
+    }
+
+    private static void submit(StatementJournal journal, String statementId, String sql) {
+        journal.recordSubmitted(statementId, CLUSTER, DATABASE, USER, sql, List.of());
+    }
+
+    private static StatementJournal.Entry find(StatementJournal journal, String sql) {
+        StatementJournal.Entry entry = journal.find(CLUSTER, DATABASE, USER, sql, List.of());
+        assertNotNull(entry, sql);
+        return entry;
+    }
+
+    private static List<String> ids(List<StatementJournal.Entry> entries) {
+        List<String> ids = new ArrayList<>();
+        for (StatementJournal.Entry entry : entries) {
+            ids.add(entry.statementId());
+        }
+        return ids;
+    }
+
+    /**
+     * @return the offset of every record: a length, a CRC and the payload, up to the first zero
+     * length
+     */
+    private static List<Integer> recordOffsets(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        List<Integer> offsets = new ArrayList<>();
+        int offset = 0;
+        int length;
+        while (offset + 8 <= bytes.length && (length = in.getInt(offset)) > 0) {
+            offsets.add(offset);
+            offset += 8 + length;
+        }
+        return offsets;
+    }
+}
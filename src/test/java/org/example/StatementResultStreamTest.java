@@ -0,0 +1,239 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.redshiftdata.RedshiftDataAsyncClient;
+import software.amazon.awssdk.services.redshiftdata.model.ColumnMetadata;
+import software.amazon.awssdk.services.redshiftdata.model.Field;
+import software.amazon.awssdk.services.redshiftdata.model.GetStatementResultRequest;
+import software.amazon.awssdk.services.redshiftdata.model.GetStatementResultResponse;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StatementResultStreamTest {
+
+    @Test
+    public void followsNextTokenAcrossEveryPage() throws Exception {
+        FakeDataApi api = new FakeDataApi(5, 3).answerImmediately();
+        StatementResultStream stream = new StatementResultStream(api, "statement", 2);
+        List<Long> rows = new ArrayList<>();
+
+        long count = stream.forEach(row -> rows.add(row.get(0).longValue())).get(30, TimeUnit.SECONDS);
+
+        assertEquals(15, count);
+        assertIterableEquals(keys(15), rows);
+        assertEquals(5, api.requests.size());
+        assertNull(api.requests.get(0).nextToken());
+        for (int page = 1; page < 5; page++) {
+            assertEquals(String.valueOf(page), api.requests.get(page).nextToken());
+        }
+        assertEquals("k", stream.columnMetadata().join().get(0).name());
+    }
+
+    @Test
+    public void buffersAtMostPrefetchPages() {
+        FakeDataApi api = new FakeDataApi(6, 3);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new StatementResultStream(api, "statement", 2).subscribe(subscriber);
+
+        // Nothing is requested, so fetching stops once two pages are buffered.
+        api.answer(0);
+        api.answer(1);
+        assertEquals(2, api.requests.size());
+        assertTrue(subscriber.rows.isEmpty());
+
+        // Using up the first page makes room for one more.
+        subscriber.subscription.request(3);
+        assertEquals(3, subscriber.rows.size());
+        assertEquals(3, api.requests.size());
+        api.answer(2);
+        assertEquals(3, api.requests.size());
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        for (int page = 3; page < 6; page++) {
+            api.answer(page);
+        }
+        assertIterableEquals(keys(18), subscriber.rows);
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void passesAFailedFetchToOnError() {
+        FakeDataApi api = new FakeDataApi(3, 2);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        StatementResultStream stream = new StatementResultStream(api, "statement", 1);
+        stream.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        api.answer(0);
+        api.calls.get(1).completeExceptionally(new IllegalStateException("Connection reset"));
+
+        assertEquals(2, subscriber.rows.size());
+        assertFalse(subscriber.completed);
+        assertTrue(subscriber.error.getMessage().contains("Connection reset"), subscriber.error.getMessage());
+        assertEquals(2, api.requests.size());
+    }
+
+    @Test
+    public void rejectsASecondSubscriber() {
+        FakeDataApi api = new FakeDataApi(1, 1);
+        StatementResultStream stream = new StatementResultStream(api, "statement", 1);
+        stream.subscribe(new RecordingSubscriber());
+
+        RecordingSubscriber second = new RecordingSubscriber();
+        stream.subscribe(second);
+
+        assertTrue(second.error instanceof IllegalStateException, String.valueOf(second.error));
+        assertEquals(1, api.requests.size());
+    }
+
+    @Test
+    public void iteratesTheRowsBlocking() {
+        FakeDataApi api = new FakeDataApi(4, 1_000).answerImmediately();
+        Iterator<List<Field>> iterator = new StatementResultStream(api, "statement", 2).iterator();
+        List<Long> rows = new ArrayList<>();
+
+        while (iterator.hasNext()) {
+            rows.add(iterator.next().get(0).longValue());
+        }
+
+        assertIterableEquals(keys(4_000), rows);
+        assertThrows(NoSuchElementException.class, iterator::next);
+    }
+
+    @Test
+    public void iteratorThrowsTheFetchError() {
+        FakeDataApi api = new FakeDataApi(2, 1);
+        Iterator<List<Field>> iterator = new StatementResultStream(api, "statement", 1).iterator();
+        api.answer(0);
+        api.calls.get(1).completeExceptionally(new IllegalStateException("Connection reset"));
+
+        assertTrue(iterator.hasNext());
+        assertEquals(Long.valueOf(0), iterator.next().get(0).longValue());
+        RuntimeException e = assertThrows(RuntimeException.class, iterator::hasNext);
+        assertTrue(e.getMessage().contains("Connection reset"), e.getMessage());
+    }
+
+    @Test
+    public void closingTheIteratorStopsFetching() {
+        FakeDataApi api = new FakeDataApi(4, 1);
+        StatementResultStream.RowIterator iterator = new StatementResultStream(api, "statement", 2).iterator();
+
+        iterator.close();
+        api.answer(0);
+
+        assertEquals(1, api.requests.size());
+    }
+
+    private static List<Long> keys(int count) {
+        List<Long> keys = new ArrayList<>();
+        for (long key = 0; key < count; key++) {
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    private static final class RecordingSubscriber implements Flow.Subscriber<List<Field>> {
+        private final List<Long> rows = new CopyOnWriteArrayList<>();
+        private Flow.Subscription subscription;
+        private volatile Throwable error;
+        private volatile boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(List<Field> row) {
+            rows.add(row.get(0).longValue());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    /**
+     * Serves a result of {@code pages} pages of {@code rowsPerPage} consecutive keys; the token of
+     * page {@code i} is {@code "i"}. Calls stay pending until {@link #answer(int)} completes them,
+     * unless the fake answers immediately.
+     */
+    private static final class FakeDataApi implements RedshiftDataAsyncClient {
+        private final int pages;
+        private final int rowsPerPage;
+        private final List<GetStatementResultRequest> requests = new CopyOnWriteArrayList<>();
+        private final List<CompletableFuture<GetStatementResultResponse>> calls = new CopyOnWriteArrayList<>();
+        private volatile boolean immediate;
+
+        private FakeDataApi(int pages, int rowsPerPage) {
+            this.pages = pages;
+            this.rowsPerPage = rowsPerPage;
+        }
+
+        private FakeDataApi answerImmediately() {
+            immediate = true;
+            return this;
+        }
+
+        private void answer(int page) {
+            assertTrue(page < calls.size(), "page " + page + " was not requested");
+            calls.get(page).complete(page(page));
+        }
+
+        private GetStatementResultResponse page(int page) {
+            List<List<Field>> records = new ArrayList<>();
+            for (long key = (long) page * rowsPerPage; key < (long) (page + 1) * rowsPerPage; key++) {
+                records.add(List.of(Field.builder().longValue(key).build()));
+            }
+            GetStatementResultResponse.Builder response = GetStatementResultResponse.builder()
+                    .records(records)
+                    .totalNumRows((long) pages * rowsPerPage)
+                    .nextToken(page + 1 < pages ? String.valueOf(page + 1) : null);
+            if (page == 0) {
+                response.columnMetadata(ColumnMetadata.builder().name("k").typeName("int8").build());
+            }
+            return response.build();
+        }
+
+        @Override
+        public CompletableFuture<GetStatementResultResponse> getStatementResult(GetStatementResultRequest request) {
+            int page = request.nextToken() == null ? 0 : Integer.parseInt(request.nextToken());
+            assertEquals(calls.size(), page);
+            requests.add(request);
+            CompletableFuture<GetStatementResultResponse> call = immediate
+                    ? CompletableFuture.completedFuture(page(page))
+                    : new CompletableFuture<>();
+            calls.add(call);
+            return call;
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}